@@ -0,0 +1,114 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Préstamos por segundo que admite el modelo cuando varios hilos prestan,
+ * devuelven y borran préstamos de alumnos distintos, bloqueando solo la franja
+ * del alumno o, para comparar, todo el modelo. main() lo ejecuta con 1, 2, 4,
+ * 8, 16 y 32 hilos ('gradle jmhHilos').
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ModeloFranjasBenchmark {
+
+	private static final int[] HILOS = { 1, 2, 4, 8, 16, 32 };
+	private static final int NUM_ALUMNOS = 4096;
+	private static final int NUM_LIBROS = 512;
+	private static final LocalDate INICIO = LocalDate.of(2020, 1, 1);
+
+	@Param({ "franja", "global" })
+	private String cerrojo;
+
+	private Modelo modelo;
+	private Alumno[] alumnos;
+	private Libro[] libros;
+
+	/**
+	 * Estado de cada hilo: su propio generador, para no compartir ninguno.
+	 */
+	@State(Scope.Thread)
+	public static class Hilo {
+
+		private Random aleatorio;
+
+		@Setup
+		public void crearAleatorio() {
+			aleatorio = new Random(Thread.currentThread().getId());
+		}
+	}
+
+	@Setup
+	public void crearModelo() throws OperationNotSupportedException {
+		modelo = new Modelo();
+		alumnos = new Alumno[NUM_ALUMNOS];
+		for (int i = 0; i < NUM_ALUMNOS; i++) {
+			alumnos[i] = new Alumno("Alumno Numero", "alumno" + i + "@iesalandalus.org", Curso.values()[i % 4]);
+			modelo.insertar(alumnos[i]);
+		}
+		libros = new Libro[NUM_LIBROS];
+		for (int i = 0; i < NUM_LIBROS; i++) {
+			libros[i] = new Libro("Libro " + i, "Autor " + (i % 50), 100 + i);
+			modelo.insertar(libros[i]);
+		}
+	}
+
+	@Benchmark
+	public void prestarDevolverYBorrar(Hilo hilo) {
+		Alumno alumno = alumnos[hilo.aleatorio.nextInt(NUM_ALUMNOS)];
+		Prestamo prestamo = new Prestamo(alumno, libros[hilo.aleatorio.nextInt(NUM_LIBROS)],
+				INICIO.plusDays(hilo.aleatorio.nextInt(365)));
+		try {
+			ejecutar(alumno, transaccion -> transaccion.prestar(prestamo));
+			ejecutar(alumno, transaccion -> transaccion.devolver(prestamo, prestamo.getFechaPrestamo().plusDays(10)));
+			ejecutar(alumno, transaccion -> transaccion.borrar(prestamo));
+		} catch (OperationNotSupportedException e) {
+			// Otro hilo ha elegido a la vez el mismo alumno y el mismo libro.
+		}
+	}
+
+	private void ejecutar(Alumno alumno, Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		if (cerrojo.equals("franja")) {
+			modelo.ejecutar(alumno, operaciones);
+		} else {
+			modelo.ejecutar(operaciones);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int hilos : HILOS) {
+			new Runner(new OptionsBuilder()
+					.include(ModeloFranjasBenchmark.class.getName())
+					.threads(hilos)
+					.build()).run();
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste de copiar alumnos: con el constructor que valida (lo que hacía antes el
+ * constructor copia) frente al constructor copia actual, y el de get() sobre un
+ * millón de alumnos, que copia la colección entera.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AlumnosCopiaBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Alumno1 {
+
+		private Alumno alumno;
+
+		@Setup
+		public void crearAlumno() {
+			alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.CUARTO);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Coleccion {
+
+		@Param({ "1000000" })
+		private int numAlumnos;
+
+		private Alumnos alumnos;
+		private Alumno alumnoTemporal;
+
+		@Setup
+		public void crearAlumnos() throws OperationNotSupportedException {
+			alumnos = new Alumnos();
+			for (int i = 0; i < numAlumnos; i++) {
+				alumnos.insertar(new Alumno("Alumno " + letras(i), "alumno" + i + "@iesalandalus.org", Curso.values()[i % 4]));
+			}
+			alumnoTemporal = new Alumno("Alumno Temporal", "temporal@iesalandalus.org", Curso.PRIMERO);
+		}
+	}
+
+	/**
+	 * Método que convierte un número en una palabra de letras, válida para el nombre de un alumno.
+	 * @param numero
+	 * @return letras
+	 */
+	static String letras(int numero) {
+		StringBuilder letras = new StringBuilder();
+		do {
+			letras.append((char) ('a' + numero % 26));
+			numero /= 26;
+		} while (numero > 0);
+		return letras.toString();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Alumno copiarValidando(Alumno1 estado) {
+		Alumno alumno = estado.alumno;
+		return new Alumno(alumno.getNombre(), alumno.getCorreo(), alumno.getCurso());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Alumno copiar(Alumno1 estado) {
+		return new Alumno(estado.alumno);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<Alumno> getTrasModificar(Coleccion estado) throws OperationNotSupportedException {
+		// Se modifica la colección para que get() no pueda reutilizar la copia anterior.
+		estado.alumnos.insertar(estado.alumnoTemporal);
+		estado.alumnos.borrar(estado.alumnoTemporal);
+		return estado.alumnos.get();
+	}
+
+}
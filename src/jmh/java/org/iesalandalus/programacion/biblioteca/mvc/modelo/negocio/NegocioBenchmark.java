@@ -0,0 +1,289 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Operaciones de Alumnos, Libros y Prestamos con 1.000, 100.000 y 1.000.000 de
+ * elementos en la colección. Las búsquedas y consultas van rotando por elementos
+ * que existen, elegidos de antemano para no medir el generador de aleatorios.
+ * Las inserciones se deshacen en la misma invocación para que el tamaño no
+ * cambie durante la medida.
+ *
+ * Con la tarea 'gradle jmhJson' los resultados se guardan en JSON en
+ * build/reports/jmh, con el commit en el nombre, para comparar entre versiones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NegocioBenchmark {
+
+	// Elementos por los que rotan las búsquedas; potencia de dos.
+	private static final int NUM_CONSULTAS = 1024;
+	private static final LocalDate FECHA_FINAL = LocalDate.of(2023, 6, 30);
+	// Días hacia atrás desde FECHA_FINAL en los que se reparten los préstamos: tres cursos.
+	private static final int DIAS_PRESTAMOS = 3 * 365;
+
+	@State(Scope.Benchmark)
+	public static class ColeccionAlumnos {
+
+		@Param({ "1000", "100000", "1000000" })
+		private int numElementos;
+
+		private Alumnos alumnos;
+		private Alumno[] consultas;
+		private Alumno alumnoTemporal;
+		private int siguiente;
+
+		@Setup
+		public void crear() throws OperationNotSupportedException {
+			alumnos = new Alumnos();
+			for (int i = 0; i < numElementos; i++) {
+				alumnos.insertar(alumno(i));
+			}
+			consultas = new Alumno[NUM_CONSULTAS];
+			for (int i = 0; i < NUM_CONSULTAS; i++) {
+				consultas[i] = Alumno.getAlumnoFicticio(alumno(indice(i, numElementos)).getCorreo());
+			}
+			alumnoTemporal = new Alumno("Alumno Temporal", "temporal@iesalandalus.org", Curso.PRIMERO);
+		}
+
+		private Alumno siguiente() {
+			return consultas[siguiente++ & (NUM_CONSULTAS - 1)];
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ColeccionLibros {
+
+		@Param({ "1000", "100000", "1000000" })
+		private int numElementos;
+
+		private Libros libros;
+		private Libro[] consultas;
+		private Libro libroTemporal;
+		private int siguiente;
+
+		@Setup
+		public void crear() throws OperationNotSupportedException {
+			libros = new Libros();
+			for (int i = 0; i < numElementos; i++) {
+				libros.insertar(libro(i));
+			}
+			consultas = new Libro[NUM_CONSULTAS];
+			for (int i = 0; i < NUM_CONSULTAS; i++) {
+				Libro libro = libro(indice(i, numElementos));
+				consultas[i] = Libro.getLibroFicticio(libro.getTitulo(), libro.getAutor());
+			}
+			libroTemporal = new Libro("Libro Temporal", "Autor Temporal", 100);
+		}
+
+		private Libro siguiente() {
+			return consultas[siguiente++ & (NUM_CONSULTAS - 1)];
+		}
+	}
+
+	/**
+	 * Préstamos de unos alumnos y libros: cada alumno tiene 20 préstamos, cada uno
+	 * de un libro distinto, y los libros son la mitad que los alumnos, con un
+	 * mínimo de 40, así que cada uno tiene unos 40 préstamos. Las fechas se
+	 * reparten en tres cursos y la mitad de los préstamos están devueltos.
+	 */
+	@State(Scope.Benchmark)
+	public static class ColeccionPrestamos {
+
+		private static final int PRESTAMOS_POR_ALUMNO = 20;
+
+		@Param({ "1000", "100000", "1000000" })
+		private int numElementos;
+
+		private Prestamos prestamos;
+		private Prestamo[] consultas;
+		private Alumno[] alumnosConsulta;
+		private Libro[] librosConsulta;
+		private LocalDate[] fechasConsulta;
+		private Prestamo prestamoTemporal;
+		private int siguiente;
+
+		@Setup
+		public void crear() throws OperationNotSupportedException {
+			int numAlumnos = Math.max(numElementos / PRESTAMOS_POR_ALUMNO, 1);
+			int numLibros = Math.max(numAlumnos / 2, 2 * PRESTAMOS_POR_ALUMNO);
+			Alumno[] alumnos = new Alumno[numAlumnos];
+			for (int i = 0; i < numAlumnos; i++) {
+				alumnos[i] = alumno(i);
+			}
+			Libro[] libros = new Libro[numLibros];
+			for (int i = 0; i < numLibros; i++) {
+				libros[i] = libro(i);
+			}
+			prestamos = new Prestamos();
+			Prestamo[] todos = new Prestamo[numElementos];
+			for (int i = 0; i < numElementos; i++) {
+				int alumno = i % numAlumnos;
+				// Para un mismo alumno, las vueltas dan libros distintos porque hay más libros que préstamos por alumno.
+				int libro = (int) (((long) alumno * 31 + i / numAlumnos) % numLibros);
+				LocalDate fecha = FECHA_FINAL.minusDays(i % DIAS_PRESTAMOS);
+				todos[i] = new Prestamo(alumnos[alumno], libros[libro], fecha);
+				prestamos.prestar(todos[i]);
+				if (i % 2 == 0) {
+					prestamos.devolver(todos[i], fecha.plusDays(1 + i % 30));
+				}
+			}
+			consultas = new Prestamo[NUM_CONSULTAS];
+			alumnosConsulta = new Alumno[NUM_CONSULTAS];
+			librosConsulta = new Libro[NUM_CONSULTAS];
+			fechasConsulta = new LocalDate[NUM_CONSULTAS];
+			for (int i = 0; i < NUM_CONSULTAS; i++) {
+				Prestamo prestamo = todos[indice(i, numElementos)];
+				consultas[i] = Prestamo.getPrestamoFicticio(prestamo.getAlumno(), prestamo.getLibro());
+				alumnosConsulta[i] = prestamo.getAlumno();
+				librosConsulta[i] = prestamo.getLibro();
+				fechasConsulta[i] = prestamo.getFechaPrestamo();
+			}
+			prestamoTemporal = new Prestamo(new Alumno("Alumno Temporal", "temporal@iesalandalus.org", Curso.PRIMERO),
+					new Libro("Libro Temporal", "Autor Temporal", 100), FECHA_FINAL);
+		}
+
+		private int siguiente() {
+			return siguiente++ & (NUM_CONSULTAS - 1);
+		}
+	}
+
+	/**
+	 * Método que reparte las consultas por toda la colección, de forma que no caigan todas al principio.
+	 * @param consulta
+	 * @param numElementos
+	 * @return indice
+	 */
+	private static int indice(int consulta, int numElementos) {
+		return (int) ((consulta * 2654435761L) % numElementos);
+	}
+
+	private static Alumno alumno(int i) {
+		return new Alumno("Alumno " + AlumnosCopiaBenchmark.letras(i), "alumno" + i + "@iesalandalus.org", Curso.values()[i % 4]);
+	}
+
+	private static Libro libro(int i) {
+		return new Libro("Libro " + i, "Autor " + AlumnosCopiaBenchmark.letras(i % 1000), 100 + i % 900);
+	}
+
+	/*********ALUMNOS*********/
+
+	@Benchmark
+	public void alumnosInsertarYBorrar(ColeccionAlumnos estado) throws OperationNotSupportedException {
+		estado.alumnos.insertar(estado.alumnoTemporal);
+		estado.alumnos.borrar(estado.alumnoTemporal);
+	}
+
+	@Benchmark
+	public Alumno alumnosBuscar(ColeccionAlumnos estado) {
+		return estado.alumnos.buscar(estado.siguiente());
+	}
+
+	@Benchmark
+	public List<Alumno> alumnosGet(ColeccionAlumnos estado) {
+		return estado.alumnos.get();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<Alumno> alumnosGetTrasModificar(ColeccionAlumnos estado) throws OperationNotSupportedException {
+		// Se modifica la colección para que get() no pueda reutilizar la copia anterior.
+		alumnosInsertarYBorrar(estado);
+		return estado.alumnos.get();
+	}
+
+	/*********LIBROS*********/
+
+	@Benchmark
+	public void librosInsertarYBorrar(ColeccionLibros estado) throws OperationNotSupportedException {
+		estado.libros.insertar(estado.libroTemporal);
+		estado.libros.borrar(estado.libroTemporal);
+	}
+
+	@Benchmark
+	public Libro librosBuscar(ColeccionLibros estado) {
+		return estado.libros.buscar(estado.siguiente());
+	}
+
+	@Benchmark
+	public List<Libro> librosGet(ColeccionLibros estado) {
+		return estado.libros.get();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<Libro> librosGetTrasModificar(ColeccionLibros estado) throws OperationNotSupportedException {
+		librosInsertarYBorrar(estado);
+		return estado.libros.get();
+	}
+
+	/*********PRÉSTAMOS*********/
+
+	@Benchmark
+	public void prestamosPrestarYBorrar(ColeccionPrestamos estado) throws OperationNotSupportedException {
+		estado.prestamos.prestar(estado.prestamoTemporal);
+		estado.prestamos.borrar(estado.prestamoTemporal);
+	}
+
+	@Benchmark
+	public Prestamo prestamosBuscar(ColeccionPrestamos estado) {
+		return estado.prestamos.buscar(estado.consultas[estado.siguiente()]);
+	}
+
+	@Benchmark
+	public List<Prestamo> prestamosGet(ColeccionPrestamos estado) {
+		return estado.prestamos.get();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<Prestamo> prestamosGetTrasModificar(ColeccionPrestamos estado) throws OperationNotSupportedException {
+		prestamosPrestarYBorrar(estado);
+		return estado.prestamos.get();
+	}
+
+	@Benchmark
+	public List<Prestamo> prestamosGetAlumno(ColeccionPrestamos estado) {
+		return estado.prestamos.get(estado.alumnosConsulta[estado.siguiente()]);
+	}
+
+	@Benchmark
+	public List<Prestamo> prestamosGetLibro(ColeccionPrestamos estado) {
+		return estado.prestamos.get(estado.librosConsulta[estado.siguiente()]);
+	}
+
+	@Benchmark
+	public List<Prestamo> prestamosGetFecha(ColeccionPrestamos estado) {
+		return estado.prestamos.get(estado.fechasConsulta[estado.siguiente()]);
+	}
+
+	@Benchmark
+	public Map<Curso, Integer> prestamosGetEstadisticaMensualPorCurso(ColeccionPrestamos estado) {
+		return estado.prestamos.getEstadisticaMensualPorCurso(estado.fechasConsulta[estado.siguiente()]);
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Alumnos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Libros;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tiempo de cargar un punto de control con muchos préstamos, que es lo que
+ * tarda el arranque cuando el registro de operaciones está vacío.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PuntoControlBenchmark {
+
+	@Param({ "1000000" })
+	private int numPrestamos;
+
+	private Path fichero;
+
+	@Setup
+	public void crearPuntoControl() throws IOException, OperationNotSupportedException {
+		int numAlumnos = Math.max(1, numPrestamos / 50);
+		int numLibros = Math.max(1, numPrestamos / 20);
+		Alumnos alumnos = new Alumnos();
+		Libros libros = new Libros();
+		Prestamos prestamos = new Prestamos();
+		Alumno[] listaAlumnos = new Alumno[numAlumnos];
+		Libro[] listaLibros = new Libro[numLibros];
+		for (int i = 0; i < numAlumnos; i++) {
+			listaAlumnos[i] = new Alumno("Alumno Numero", "alumno" + i + "@iesalandalus.org", Curso.values()[i % 4]);
+			alumnos.insertar(listaAlumnos[i]);
+		}
+		for (int i = 0; i < numLibros; i++) {
+			listaLibros[i] = new Libro("Libro " + i, "Autor " + (i % 500), 100 + i % 900);
+			libros.insertar(listaLibros[i]);
+		}
+		LocalDate inicio = LocalDate.of(2015, 9, 1);
+		for (int i = 0; i < numPrestamos; i++) {
+			Prestamo prestamo = new Prestamo(listaAlumnos[i % numAlumnos], listaLibros[(i / numAlumnos) % numLibros],
+					inicio.plusDays(i % 1500));
+			if (i % 10 != 0) {
+				prestamo.devolver(prestamo.getFechaPrestamo().plusDays(1 + i % 30));
+			}
+			prestamos.prestar(prestamo);
+		}
+		fichero = Files.createTempFile("biblioteca", ".chk");
+		PuntoControl.escribir(fichero, alumnos, libros, prestamos, 1);
+	}
+
+	@TearDown
+	public void borrarPuntoControl() throws IOException {
+		Files.deleteIfExists(fichero);
+	}
+
+	@Benchmark
+	public Prestamos leer() throws IOException {
+		Prestamos prestamos = new Prestamos();
+		PuntoControl.leer(fichero, new Alumnos(), new Libros(), prestamos);
+		return prestamos;
+	}
+
+}
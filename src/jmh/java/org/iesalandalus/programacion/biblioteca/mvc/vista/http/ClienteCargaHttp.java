@@ -0,0 +1,154 @@
+package org.iesalandalus.programacion.biblioteca.mvc.vista.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cliente de carga para la API HTTP: da de alta alumnos y libros y después
+ * varios hilos mezclan, durante un tiempo, listados por páginas, búsquedas y
+ * préstamos con su devolución. Al final muestra las peticiones por segundo y los
+ * percentiles de latencia.
+ *
+ * Argumentos: [url base] [hilos] [segundos]; por defecto http://localhost:8080 4 10.
+ * El servidor se arranca aparte con MainApp --servidor [puerto]; con --sin-nagle
+ * las latencias no incluyen la espera del algoritmo de Nagle.
+ */
+public class ClienteCargaHttp {
+
+	private static final int NUM_ALUMNOS = 1000;
+	private static final int NUM_LIBROS = 200;
+	// Porcentaje de operaciones que son préstamos con su devolución; el resto son consultas.
+	private static final int PORCENTAJE_ESCRITURAS = 20;
+
+	private final HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	private final String base;
+
+	private ClienteCargaHttp(String base) {
+		this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String base = args.length > 0 ? args[0] : "http://localhost:8080";
+		int hilos = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		ClienteCargaHttp carga = new ClienteCargaHttp(base);
+		carga.sembrar();
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		long fin = System.nanoTime() + Duration.ofSeconds(segundos).toNanos();
+		List<Future<Resultado>> futuros = new ArrayList<>();
+		for (int i = 0; i < hilos; i++) {
+			futuros.add(ejecutor.submit(() -> carga.cargar(fin)));
+		}
+		Resultado total = new Resultado();
+		for (Future<Resultado> futuro : futuros) {
+			total.sumar(futuro.get());
+		}
+		ejecutor.shutdown();
+		total.mostrar(hilos, segundos);
+	}
+
+	private void sembrar() throws IOException, InterruptedException {
+		for (int i = 0; i < NUM_ALUMNOS; i++) {
+			enviar("POST", "/alumnos", "{\"nombre\":\"Alumno De Carga\",\"correo\":\"carga" + i + "@iesalandalus.org\",\"curso\":"
+					+ (i % 4 + 1) + "}");
+		}
+		for (int i = 0; i < NUM_LIBROS; i++) {
+			enviar("POST", "/libros", "{\"titulo\":\"Libro " + i + "\",\"autor\":\"Autor De Carga\",\"numPaginas\":" + (100 + i) + "}");
+		}
+	}
+
+	private Resultado cargar(long fin) throws IOException, InterruptedException {
+		Resultado resultado = new Resultado();
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		LocalDate hoy = LocalDate.now();
+		while (System.nanoTime() < fin) {
+			int alumno = azar.nextInt(NUM_ALUMNOS);
+			if (azar.nextInt(100) < PORCENTAJE_ESCRITURAS) {
+				String prestamo = "{\"correo\":\"carga" + alumno + "@iesalandalus.org\",\"titulo\":\"Libro " + azar.nextInt(NUM_LIBROS)
+						+ "\",\"autor\":\"Autor De Carga\",";
+				if (resultado.medir(this, "POST", "/prestamos", prestamo + "\"fechaPrestamo\":\"" + hoy.minusDays(1 + azar.nextInt(30)) + "\"}") == 201) {
+					resultado.medir(this, "POST", "/devoluciones", prestamo + "\"fechaDevolucion\":\"" + hoy + "\"}");
+				}
+			} else if (azar.nextBoolean()) {
+				resultado.medir(this, "GET", "/alumnos?pagina=" + azar.nextInt(NUM_ALUMNOS / 50) + "&tamano=50", null);
+			} else {
+				resultado.medir(this, "GET", "/prestamos?correo=carga" + alumno + "%40iesalandalus.org", null);
+			}
+		}
+		return resultado;
+	}
+
+	private int enviar(String metodo, String ruta, String cuerpo) throws IOException, InterruptedException {
+		HttpRequest.Builder peticion = HttpRequest.newBuilder(URI.create(base + ruta)).timeout(Duration.ofSeconds(30));
+		if (cuerpo == null) {
+			peticion.method(metodo, HttpRequest.BodyPublishers.noBody());
+		} else {
+			peticion.header("Content-Type", "application/json").method(metodo, HttpRequest.BodyPublishers.ofString(cuerpo));
+		}
+		return cliente.send(peticion.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	/**
+	 * Latencias y respuestas de un hilo.
+	 */
+	private static final class Resultado {
+
+		private long[] latencias = new long[1 << 16];
+		private int numPeticiones;
+		private int rechazadas;
+		private int errores;
+
+		private int medir(ClienteCargaHttp carga, String metodo, String ruta, String cuerpo)
+				throws IOException, InterruptedException {
+			long inicio = System.nanoTime();
+			int estado = carga.enviar(metodo, ruta, cuerpo);
+			anotar(System.nanoTime() - inicio);
+			if (estado == 409) {
+				rechazadas++;
+			} else if (estado >= 400) {
+				errores++;
+			}
+			return estado;
+		}
+
+		private void anotar(long latencia) {
+			if (numPeticiones == latencias.length) {
+				latencias = Arrays.copyOf(latencias, latencias.length * 2);
+			}
+			latencias[numPeticiones++] = latencia;
+		}
+
+		private void sumar(Resultado otro) {
+			for (int i = 0; i < otro.numPeticiones; i++) {
+				anotar(otro.latencias[i]);
+			}
+			rechazadas += otro.rechazadas;
+			errores += otro.errores;
+		}
+
+		private void mostrar(int hilos, int segundos) {
+			long[] ordenadas = Arrays.copyOf(latencias, numPeticiones);
+			Arrays.sort(ordenadas);
+			System.out.printf("Hilos: %d, segundos: %d, peticiones: %d (%.1f por segundo), rechazadas (409): %d, errores: %d%n",
+					hilos, segundos, numPeticiones, numPeticiones / (double) segundos, rechazadas, errores);
+			for (double percentil : new double[] { 50, 90, 99, 99.9, 100 }) {
+				long latencia = ordenadas.length == 0 ? 0
+						: ordenadas[Math.min(ordenadas.length - 1, (int) Math.ceil(percentil / 100 * ordenadas.length) - 1)];
+				System.out.printf("p%-5s %8.3f ms%n", percentil, latencia / 1e6);
+			}
+		}
+	}
+
+}
@@ -1,16 +1,56 @@
 package org.iesalandalus.programacion.biblioteca;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import org.iesalandalus.programacion.biblioteca.mvc.controlador.Controlador;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.ModoEjecucion;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
 import org.iesalandalus.programacion.biblioteca.mvc.vista.Vista;
+import org.iesalandalus.programacion.biblioteca.mvc.vista.http.ServidorHttp;
 
 public class MainApp {
 
+	private static final int PUERTO_POR_DEFECTO = 8080;
+
 	public static void main(String[] args) {
 		
 		Modelo modelo = new Modelo();
 		Vista vista = new Vista();
-		Controlador controlador = new Controlador(modelo, vista);
-		controlador.comenzar();
+		// Con el argumento --escritor-unico las modificaciones pasan por un único hilo escritor.
+		ModoEjecucion modo = ModoEjecucion.DIRECTO;
+		// Con el argumento --servidor [puerto] se atienden peticiones HTTP en lugar de usar la consola.
+		Integer puerto = null;
+		// Con el argumento --lote fichero se ejecutan sin intervención del usuario las opciones del fichero.
+		Path lote = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--lote") && i + 1 < args.length) {
+				lote = Paths.get(args[++i]);
+			} else if (args[i].equals("--escritor-unico")) {
+				modo = ModoEjecucion.ESCRITOR_UNICO;
+			} else if (args[i].equals("--sin-nagle")) {
+				// Con el argumento --sin-nagle el servidor envía cada respuesta sin esperar al ACK del cliente.
+				ServidorHttp.desactivarNagle();
+			} else if (args[i].equals("--servidor")) {
+				puerto = PUERTO_POR_DEFECTO;
+				if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+					puerto = Integer.parseInt(args[++i]);
+				}
+			}
+		}
+		Controlador controlador = new Controlador(modelo, vista, modo);
+		try {
+			if (lote != null) {
+				controlador.ejecutarLote(lote);
+			} else if (puerto == null) {
+				controlador.comenzar();
+			} else {
+				controlador.servir(puerto);
+			}
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
 	}
 }
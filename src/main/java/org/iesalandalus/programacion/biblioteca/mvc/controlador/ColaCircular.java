@@ -0,0 +1,167 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cola acotada sobre un anillo de posiciones, con varios productores y un único
+ * consumidor, que no usa cerrojos.
+ *
+ * Cada posición lleva un número de secuencia que indica si está libre para la
+ * vuelta actual del anillo o ya tiene un elemento publicado. Los productores se
+ * reparten las posiciones con una operación atómica sobre la cola y el
+ * consumidor las recorre en orden, de modo que los elementos salen en el orden
+ * en que se reservaron sus posiciones. Si el anillo está lleno, los productores
+ * esperan a que el consumidor libere posiciones.
+ */
+final class ColaCircular<T> {
+
+	/*********ATRIBUTOS*********/
+
+	// Vueltas de espera activa antes de dormir el hilo.
+	private static final int VUELTAS_ESPERA = 100;
+	private static final long ESPERA_LLENA_NANOS = 1_000;
+
+	private final Object[] elementos;
+	// Secuencia de cada posición: igual a la posición si está libre, uno más si tiene un elemento publicado.
+	private final AtomicLongArray secuencias;
+	private final int mascara;
+	// Siguiente posición que reservará un productor.
+	private final AtomicLong cola = new AtomicLong();
+	// Siguiente posición que leerá el consumidor. Solo la usa el consumidor.
+	private long cabeza;
+	// Consumidor dormido esperando elementos, o nulo.
+	private volatile Thread consumidorEsperando;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param capacidad: potencia de dos.
+	 */
+	ColaCircular(int capacidad) {
+		if (capacidad <= 0 || Integer.bitCount(capacidad) != 1) {
+			throw new IllegalArgumentException("ERROR: La capacidad debe ser una potencia de dos positiva.");
+		}
+		elementos = new Object[capacidad];
+		secuencias = new AtomicLongArray(capacidad);
+		for (int i = 0; i < capacidad; i++) {
+			secuencias.set(i, i);
+		}
+		mascara = capacidad - 1;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que añade un elemento si hay sitio, sin esperar.
+	 * @param elemento
+	 * @return true si se ha añadido.
+	 */
+	boolean ofrecer(T elemento) {
+		if (elemento == null) {
+			throw new NullPointerException("ERROR: El elemento no puede ser nulo.");
+		}
+		long posicion = cola.get();
+		while (true) {
+			int indice = (int) posicion & mascara;
+			long diferencia = secuencias.get(indice) - posicion;
+			if (diferencia == 0) {
+				if (cola.compareAndSet(posicion, posicion + 1)) {
+					elementos[indice] = elemento;
+					secuencias.set(indice, posicion + 1);
+					despertarConsumidor();
+					return true;
+				}
+				posicion = cola.get();
+			} else if (diferencia < 0) {
+				// El consumidor aún no ha liberado la posición de la vuelta anterior.
+				return false;
+			} else {
+				posicion = cola.get();
+			}
+		}
+	}
+
+	/**
+	 * Método que añade un elemento, esperando a que haya sitio si el anillo está lleno.
+	 * @param elemento
+	 * @throws InterruptedException
+	 */
+	void poner(T elemento) throws InterruptedException {
+		int vueltas = 0;
+		while (!ofrecer(elemento)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (vueltas++ < VUELTAS_ESPERA) {
+				Thread.onSpinWait();
+			} else {
+				LockSupport.parkNanos(this, ESPERA_LLENA_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Método que saca el siguiente elemento, sin esperar. Solo lo puede llamar el consumidor.
+	 * @return elemento, o nulo si la cola está vacía.
+	 */
+	@SuppressWarnings("unchecked")
+	T tomar() {
+		int indice = (int) cabeza & mascara;
+		if (secuencias.get(indice) != cabeza + 1) {
+			return null;
+		}
+		T elemento = (T) elementos[indice];
+		elementos[indice] = null;
+		secuencias.set(indice, cabeza + elementos.length);
+		cabeza++;
+		return elemento;
+	}
+
+	/**
+	 * Método que saca el siguiente elemento, esperando a que haya alguno. Solo lo
+	 * puede llamar el consumidor. Primero espera activamente unas vueltas, por si
+	 * llega enseguida, y después duerme hasta que un productor lo despierte.
+	 * @return elemento
+	 * @throws InterruptedException
+	 */
+	T esperar() throws InterruptedException {
+		T elemento = tomar();
+		for (int i = 0; elemento == null && i < VUELTAS_ESPERA; i++) {
+			Thread.onSpinWait();
+			elemento = tomar();
+		}
+		if (elemento != null) {
+			return elemento;
+		}
+		// Se anuncia que se va a dormir antes de volver a mirar la cola: un productor
+		// que publique después lo verá y lo despertará.
+		consumidorEsperando = Thread.currentThread();
+		try {
+			while ((elemento = tomar()) == null) {
+				LockSupport.park(this);
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+			return elemento;
+		} finally {
+			consumidorEsperando = null;
+		}
+	}
+
+	/**
+	 * Método que despierta al consumidor si está dormido.
+	 */
+	private void despertarConsumidor() {
+		Thread consumidor = consumidorEsperando;
+		if (consumidor != null) {
+			LockSupport.unpark(consumidor);
+		}
+	}
+
+}
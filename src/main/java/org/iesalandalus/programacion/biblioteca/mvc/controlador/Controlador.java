@@ -1,9 +1,20 @@
 package org.iesalandalus.programacion.biblioteca.mvc.controlador;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.naming.OperationNotSupportedException;
 
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
@@ -11,24 +22,63 @@ import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.Exportador;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.FormatoExportacion;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.ImportadorCsv;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.ResultadoImportacion;
 import org.iesalandalus.programacion.biblioteca.mvc.vista.Vista;
+import org.iesalandalus.programacion.biblioteca.mvc.vista.http.ServidorHttp;
 
 public class Controlador {
 
+	/**
+	 * Llamada al modelo cuya latencia se mide, que puede lanzar una excepción comprobada.
+	 */
+	@FunctionalInterface
+	private interface Medida<T, E extends Exception> {
+
+		T ejecutar() throws E;
+	}
+
+
 	/*********ATRIBUTOS*********/
 	
+	private static final String NOMBRE_MONITOR_MODELO = "org.iesalandalus.programacion.biblioteca:type=Modelo";
+	private static final String NOMBRE_MONITOR_CONTROLADOR = "org.iesalandalus.programacion.biblioteca:type=Controlador";
+	
 	private Vista vista;
 	private Modelo modelo;
+	// Escritor por el que pasan las modificaciones en el modo ESCRITOR_UNICO; nulo en el modo DIRECTO.
+	private EscritorUnico escritor;
+	private final MetricasControlador metricas = new MetricasControlador();
+	// Si este controlador tiene registrados sus MBeans en el servidor JMX de la plataforma.
+	private boolean monitoresRegistrados;
 	
 	
 	/*******CONSTRUCTOR*******/
 	
 	/**
-	 * Constructor con parámetros.
+	 * Constructor con parámetros, que llama directamente al modelo.
 	 * @param modelo
 	 * @param vista
 	 */
 	public Controlador(Modelo modelo, Vista vista) {
+		this(modelo, vista, ModoEjecucion.DIRECTO);
+	}
+	
+	/**
+	 * Constructor con parámetros. En el modo ESCRITOR_UNICO las modificaciones se
+	 * envían como comandos a un único hilo que las aplica en orden; los listados
+	 * completos se leen de la instantánea que publica ese hilo tras cada lote y el
+	 * resto de consultas siguen llamando directamente al modelo.
+	 * @param modelo
+	 * @param vista
+	 * @param modo
+	 */
+	public Controlador(Modelo modelo, Vista vista, ModoEjecucion modo) {
+		if (modo == null) {
+			throw new IllegalArgumentException("ERROR: El modo de ejecución no puede ser nulo.");
+		}
 		if (modelo == null) {
 			throw new IllegalArgumentException("ERROR: El modelo no puede ser nulo.");
 		}
@@ -38,6 +88,9 @@ public class Controlador {
 		this.modelo = modelo;
 		this.vista = vista;
 		this.vista.setControlador(this);
+		if (modo == ModoEjecucion.ESCRITOR_UNICO) {
+			escritor = new EscritorUnico(modelo);
+		}
 	}
 	
 	
@@ -45,15 +98,138 @@ public class Controlador {
 	
 	/**
 	 * Método que llama a otro de la clase Vista para ejecutar la aplicación. 
+	 * @throws IOException si no se pueden recuperar los datos guardados.
 	 */
-	public void comenzar() {
+	public void comenzar() throws IOException {
+		comenzarModelo();
 		vista.comenzar();
 	}
 	
+	/**
+	 * Método que, en lugar de pedir las opciones por teclado, ejecuta las de un
+	 * fichero de órdenes sin intervención del usuario.
+	 * @param fichero: ordinal de cada opción seguido de sus datos, uno por línea.
+	 * @throws IOException si no se pueden recuperar los datos guardados o no se puede abrir el fichero.
+	 */
+	public void ejecutarLote(Path fichero) throws IOException {
+		comenzarModelo();
+		try {
+			vista.ejecutarLote(fichero);
+		} catch (IOException e) {
+			terminar();
+			throw new IOException("ERROR: No se puede leer el fichero de órdenes " + fichero + ": " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Método que, en lugar de la vista de consola, atiende peticiones HTTP en un
+	 * puerto de la interfaz de bucle local hasta que se detiene la aplicación.
+	 * @param puerto: 0 para usar uno libre cualquiera.
+	 * @return servidor, ya en marcha.
+	 * @throws IOException si no se pueden recuperar los datos guardados o no se puede abrir el puerto.
+	 */
+	public ServidorHttp servir(int puerto) throws IOException {
+		ServidorHttp servidor = new ServidorHttp(this, puerto);
+		comenzarModelo();
+		try {
+			servidor.comenzar();
+		} catch (IOException e) {
+			terminar();
+			throw new IOException("ERROR: No se puede atender en el puerto " + puerto + ": " + e.getMessage(), e);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			servidor.terminar();
+			terminar();
+		}, "parada-servidor-biblioteca"));
+		System.out.println("Atendiendo peticiones en http://localhost:" + servidor.getPuerto() + "/");
+		return servidor;
+	}
+	
+	/**
+	 * Método que carga los datos del modelo y arranca el escritor si lo hay. Si
+	 * no se pueden recuperar, la aplicación no debe seguir: trabajaría con un
+	 * modelo a medias y sin registro, y perdería todos los cambios.
+	 * @throws IOException si el punto de control está dañado o no se puede reproducir el registro.
+	 */
+	private void comenzarModelo() throws IOException {
+		try {
+			modelo.comenzar();
+		} catch (IOException e) {
+			String causa = e.getMessage() == null ? e.toString() : e.getMessage().replaceFirst("^ERROR: ", "");
+			throw new IOException("ERROR: No se han podido recuperar los datos guardados: " + causa, e);
+		}
+		if (escritor != null) {
+			escritor.comenzar();
+		}
+		registrarMonitores();
+	}
+	
+	/**
+	 * Método que registra los MBeans del modelo y del controlador en el servidor
+	 * JMX de la plataforma, para consultarlos con una consola JMX conectada a esta
+	 * máquina virtual. Si ya había otros con el mismo nombre, los sustituye.
+	 */
+	private void registrarMonitores() {
+		MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+		try {
+			registrarMonitor(servidor, new ObjectName(NOMBRE_MONITOR_MODELO), new MonitorModelo(modelo));
+			registrarMonitor(servidor, new ObjectName(NOMBRE_MONITOR_CONTROLADOR), new MonitorControlador(metricas));
+			monitoresRegistrados = true;
+		} catch (JMException e) {
+			System.out.println("ERROR: No se han podido registrar los MBeans: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Método que registra un MBean, quitando antes el que tuviera el mismo nombre.
+	 * @param servidor
+	 * @param nombre
+	 * @param monitor
+	 * @throws JMException
+	 */
+	private static void registrarMonitor(MBeanServer servidor, ObjectName nombre, Object monitor) throws JMException {
+		try {
+			servidor.unregisterMBean(nombre);
+		} catch (InstanceNotFoundException e) {
+			// No había ninguno registrado.
+		}
+		servidor.registerMBean(monitor, nombre);
+	}
+	
+	/**
+	 * Método que quita del servidor JMX de la plataforma los MBeans registrados al comenzar.
+	 */
+	private void eliminarMonitores() {
+		if (monitoresRegistrados) {
+			MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+			try {
+				for (String nombre : new String[] { NOMBRE_MONITOR_MODELO, NOMBRE_MONITOR_CONTROLADOR }) {
+					try {
+						servidor.unregisterMBean(new ObjectName(nombre));
+					} catch (InstanceNotFoundException e) {
+						// Ya lo había quitado otro controlador.
+					}
+				}
+			} catch (JMException e) {
+				System.out.println("ERROR: No se han podido quitar los MBeans: " + e.getMessage());
+			}
+			monitoresRegistrados = false;
+		}
+	}
+	
 	/**
 	 * Método que llama a otro de la clase Vista para terminar la aplicación. 
 	 */
 	public void terminar() {
+		eliminarMonitores();
+		if (escritor != null) {
+			escritor.terminar();
+		}
+		try {
+			modelo.terminar();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
 		System.out.println("¡Hasta pronto!");
 	}
 	
@@ -63,7 +239,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void insertar(Alumno alumno) throws OperationNotSupportedException {
-		modelo.insertar(alumno);
+		medir(OperacionControlador.INSERTAR_ALUMNO, () -> {
+			if (escritor == null) {
+				modelo.insertar(alumno);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.insertar(alumno));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -72,7 +255,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void insertar(Libro libro) throws OperationNotSupportedException {
-		modelo.insertar(libro);
+		medir(OperacionControlador.INSERTAR_LIBRO, () -> {
+			if (escritor == null) {
+				modelo.insertar(libro);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.insertar(libro));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -81,7 +271,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void prestar(Prestamo prestamo) throws OperationNotSupportedException {
-		modelo.prestar(prestamo);
+		medir(OperacionControlador.PRESTAR, () -> {
+			if (escritor == null) {
+				modelo.prestar(prestamo);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.prestar(prestamo));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -91,7 +288,107 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void devolver(Prestamo prestamo, LocalDate fechaDevolucion) throws OperationNotSupportedException {
-		modelo.devolver(prestamo, fechaDevolucion);
+		medir(OperacionControlador.DEVOLVER, () -> {
+			if (escritor == null) {
+				modelo.devolver(prestamo, fechaDevolucion);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.devolver(prestamo, fechaDevolucion));
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * Método que importa en el modelo los alumnos de un fichero CSV. 
+	 * @param fichero
+	 * @param rechazos
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarAlumnos(Path fichero, Consumer<String> rechazos) throws IOException {
+		return medir(OperacionControlador.IMPORTAR_ALUMNOS, () -> {
+			if (escritor == null) {
+				return new ImportadorCsv(modelo).importarAlumnos(fichero, rechazos);
+			}
+			return escritor.ejecutar(() -> new ImportadorCsv(modelo).importarAlumnos(fichero, rechazos));
+		});
+	}
+	
+	/**
+	 * Método que importa en el modelo los libros de un fichero CSV. 
+	 * @param fichero
+	 * @param rechazos
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarLibros(Path fichero, Consumer<String> rechazos) throws IOException {
+		return medir(OperacionControlador.IMPORTAR_LIBROS, () -> {
+			if (escritor == null) {
+				return new ImportadorCsv(modelo).importarLibros(fichero, rechazos);
+			}
+			return escritor.ejecutar(() -> new ImportadorCsv(modelo).importarLibros(fichero, rechazos));
+		});
+	}
+	
+	/**
+	 * Método que importa en el modelo los préstamos de un fichero CSV. 
+	 * @param fichero
+	 * @param rechazos
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarPrestamos(Path fichero, Consumer<String> rechazos) throws IOException {
+		return medir(OperacionControlador.IMPORTAR_PRESTAMOS, () -> {
+			if (escritor == null) {
+				return new ImportadorCsv(modelo).importarPrestamos(fichero, rechazos);
+			}
+			return escritor.ejecutar(() -> new ImportadorCsv(modelo).importarPrestamos(fichero, rechazos));
+		});
+	}
+	
+	/**
+	 * Método que exporta los alumnos del modelo a un fichero. 
+	 * @param fichero
+	 * @param formato
+	 * @return número de alumnos exportados
+	 * @throws IOException
+	 */
+	public long exportarAlumnos(Path fichero, FormatoExportacion formato) throws IOException {
+		return medir(OperacionControlador.EXPORTAR_ALUMNOS, () -> {
+			try (BufferedWriter destino = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+				return new Exportador(modelo).exportarAlumnos(destino, formato);
+			}
+		});
+	}
+	
+	/**
+	 * Método que exporta los libros del modelo a un fichero. 
+	 * @param fichero
+	 * @param formato
+	 * @return número de libros exportados
+	 * @throws IOException
+	 */
+	public long exportarLibros(Path fichero, FormatoExportacion formato) throws IOException {
+		return medir(OperacionControlador.EXPORTAR_LIBROS, () -> {
+			try (BufferedWriter destino = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+				return new Exportador(modelo).exportarLibros(destino, formato);
+			}
+		});
+	}
+	
+	/**
+	 * Método que exporta los préstamos del modelo a un fichero. 
+	 * @param fichero
+	 * @param formato
+	 * @return número de préstamos exportados
+	 * @throws IOException
+	 */
+	public long exportarPrestamos(Path fichero, FormatoExportacion formato) throws IOException {
+		return medir(OperacionControlador.EXPORTAR_PRESTAMOS, () -> {
+			try (BufferedWriter destino = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+				return new Exportador(modelo).exportarPrestamos(destino, formato);
+			}
+		});
 	}
 	
 	/**
@@ -100,7 +397,7 @@ public class Controlador {
 	 * @return alumno
 	 */
 	public Alumno buscar(Alumno alumno) {
-		return modelo.buscar(alumno);
+		return medir(OperacionControlador.BUSCAR_ALUMNO, () -> modelo.buscar(alumno));
 	}
 	
 	/**
@@ -109,7 +406,7 @@ public class Controlador {
 	 * @return libro
 	 */
 	public Libro buscar(Libro libro) {
-		return modelo.buscar(libro);
+		return medir(OperacionControlador.BUSCAR_LIBRO, () -> modelo.buscar(libro));
 	}
 	
 	/**
@@ -118,7 +415,7 @@ public class Controlador {
 	 * @return prestamo
 	 */
 	public Prestamo buscar(Prestamo prestamo) {
-		return modelo.buscar(prestamo);
+		return medir(OperacionControlador.BUSCAR_PRESTAMO, () -> modelo.buscar(prestamo));
 	}
 	
 	/**
@@ -127,7 +424,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Alumno alumno) throws OperationNotSupportedException {
-		modelo.borrar(alumno);
+		medir(OperacionControlador.BORRAR_ALUMNO, () -> {
+			if (escritor == null) {
+				modelo.borrar(alumno);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.borrar(alumno));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -136,7 +440,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Libro libro) throws OperationNotSupportedException {
-		modelo.borrar(libro);
+		medir(OperacionControlador.BORRAR_LIBRO, () -> {
+			if (escritor == null) {
+				modelo.borrar(libro);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.borrar(libro));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -145,7 +456,14 @@ public class Controlador {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Prestamo prestamo) throws OperationNotSupportedException {
-		modelo.borrar(prestamo);
+		medir(OperacionControlador.BORRAR_PRESTAMO, () -> {
+			if (escritor == null) {
+				modelo.borrar(prestamo);
+			} else {
+				escritor.ejecutar(transaccion -> transaccion.borrar(prestamo));
+			}
+			return null;
+		});
 	}
 	
 	/**
@@ -153,7 +471,7 @@ public class Controlador {
 	 * @return alumnos
 	 */
 	public List<Alumno> getAlumnos() {
-		return modelo.getAlumnos();
+		return medir(OperacionControlador.GET_ALUMNOS, () -> escritor == null ? modelo.getAlumnos() : escritor.getAlumnos());
 	}
 	
 	/**
@@ -161,7 +479,7 @@ public class Controlador {
 	 * @return libros
 	 */
 	public List<Libro> getLibros() {
-		return modelo.getLibros();
+		return medir(OperacionControlador.GET_LIBROS, () -> escritor == null ? modelo.getLibros() : escritor.getLibros());
 	}
 	
 	/**
@@ -169,7 +487,7 @@ public class Controlador {
 	 * @return prestamos
 	 */
 	public List<Prestamo> getPrestamos() {
-		return modelo.getPrestamos();
+		return medir(OperacionControlador.GET_PRESTAMOS, () -> escritor == null ? modelo.getPrestamos() : escritor.getPrestamos());
 	}
 	
 	/**
@@ -178,7 +496,7 @@ public class Controlador {
 	 * @return prestamos
 	 */
 	public List<Prestamo> getPrestamos(Alumno alumno) {
-		return modelo.getPrestamos(alumno);
+		return medir(OperacionControlador.GET_PRESTAMOS_ALUMNO, () -> modelo.getPrestamos(alumno));
 	}
 	
 	/**
@@ -187,7 +505,7 @@ public class Controlador {
 	 * @return prestamos
 	 */
 	public List<Prestamo> getPrestamos(Libro libro) {
-		return modelo.getPrestamos(libro);
+		return medir(OperacionControlador.GET_PRESTAMOS_LIBRO, () -> modelo.getPrestamos(libro));
 	}
 	
 	/**
@@ -196,7 +514,7 @@ public class Controlador {
 	 * @return prestamos
 	 */
 	public List<Prestamo> getPrestamos(LocalDate fechaPrestamo) {
-		return modelo.getPrestamos(fechaPrestamo);
+		return medir(OperacionControlador.GET_PRESTAMOS_FECHA, () -> modelo.getPrestamos(fechaPrestamo));
 	}
 	
 	/**
@@ -205,6 +523,34 @@ public class Controlador {
 	 * @return
 	 */
 	public Map<Curso, Integer> getEstadisticaMensualPorCurso(LocalDate fecha) {
-		return modelo.getEstadisticaMensualPorCurso(fecha);
+		return medir(OperacionControlador.GET_ESTADISTICA_MENSUAL_POR_CURSO, () -> modelo.getEstadisticaMensualPorCurso(fecha));
+	}
+	
+	/**
+	 * Método que devuelve las latencias y contadores de las operaciones del controlador.
+	 * @return metricas
+	 */
+	public MetricasControlador getMetricas() {
+		return metricas;
+	}
+	
+	/**
+	 * Método que ejecuta una llamada y anota en el histograma de la operación
+	 * cuánto ha tardado y si ha lanzado una excepción, que se vuelve a lanzar.
+	 * @param operacion
+	 * @param medida
+	 * @return resultado de la llamada
+	 */
+	private <T, E extends Exception> T medir(OperacionControlador operacion, Medida<T, E> medida) throws E {
+		HistogramaLatencias histograma = metricas.get(operacion);
+		long inicio = System.nanoTime();
+		try {
+			T resultado = medida.ejecutar();
+			histograma.registrar(System.nanoTime() - inicio);
+			return resultado;
+		} catch (Exception | Error e) {
+			histograma.registrarError(System.nanoTime() - inicio, e instanceof OperationNotSupportedException);
+			throw e;
+		}
 	}
 }
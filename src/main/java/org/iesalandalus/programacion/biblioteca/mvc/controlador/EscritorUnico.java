@@ -0,0 +1,460 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Transaccion;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+/**
+ * Hilo único que aplica al modelo, en orden, las modificaciones que le llegan
+ * como comandos por una cola circular acotada.
+ *
+ * Quien envía un comando espera a que se aplique y recibe su resultado o su
+ * excepción, igual que si hubiera llamado al modelo. El escritor saca de la cola
+ * todos los comandos que ya han llegado y aplica los consecutivos en una sola
+ * transacción, con un punto de retorno por comando: los que fallan se deshacen
+ * solos y el resto se registra y actualiza los índices de una vez.
+ *
+ * Mientras aplica una transacción el escritor tiene el cerrojo de escritura del
+ * modelo, así que quien consultara el modelo tendría que esperarle. Por eso, tras
+ * cada lote y antes de responder a sus comandos, publica una instantánea de la
+ * que getAlumnos(), getLibros() y getPrestamos() leen los listados, que no cambian.
+ * Publicarla no copia nada: cada listado se copia del modelo la primera vez que se
+ * pide, o lo copia el propio escritor cuando se queda sin comandos, así que
+ * responder a un lote no espera a copiar listados que quizá nadie lea. Como se
+ * publica antes de responder, quien envía un comando ya ve su efecto en la
+ * instantánea; un listado que se copia mientras se aplica el lote siguiente espera
+ * a que termine y ya lo incluye.
+ *
+ * Solo los listados completos salen de la instantánea: las búsquedas, los
+ * préstamos de un alumno, de un libro o de una fecha y la estadística los
+ * consulta el controlador directamente en el modelo, que siempre está al día.
+ * Por eso, tras un lote, una búsqueda puede ver un cambio que un listado de la
+ * instantánea anterior aún no tiene, nunca al revés.
+ */
+class EscritorUnico {
+
+	/**
+	 * Tarea que no es una transacción, como una importación, y que el escritor
+	 * ejecuta sola entre dos lotes de comandos.
+	 */
+	@FunctionalInterface
+	interface Tarea<T> {
+
+		T ejecutar() throws IOException;
+	}
+
+	/**
+	 * Comando pendiente de aplicar, con su resultado.
+	 */
+	private static final class Comando {
+
+		private final Transaccion.Operaciones operaciones;
+		private final Tarea<?> tarea;
+		private final CompletableFuture<Object> resultado = new CompletableFuture<>();
+		// Resultado o excepción que se le da al comando cuando se publica la instantánea de su lote.
+		private Object valor;
+		private Throwable error;
+
+		private Comando(Transaccion.Operaciones operaciones, Tarea<?> tarea) {
+			this.operaciones = operaciones;
+			this.tarea = tarea;
+		}
+	}
+
+	/**
+	 * Listados del modelo tras un lote, que no cambian una vez copiados. Cada uno
+	 * se copia del modelo la primera vez que se pide.
+	 */
+	private static final class Instantanea {
+
+		private final Modelo modelo;
+		private volatile List<Alumno> alumnos;
+		private volatile List<Libro> libros;
+		private volatile List<Prestamo> prestamos;
+
+		private Instantanea(Modelo modelo) {
+			this.modelo = modelo;
+		}
+
+		private List<Alumno> getAlumnos() {
+			List<Alumno> copia = alumnos;
+			if (copia == null) {
+				synchronized (this) {
+					copia = alumnos;
+					if (copia == null) {
+						copia = alumnos = modelo.getAlumnos();
+					}
+				}
+			}
+			return copia;
+		}
+
+		private List<Libro> getLibros() {
+			List<Libro> copia = libros;
+			if (copia == null) {
+				synchronized (this) {
+					copia = libros;
+					if (copia == null) {
+						copia = libros = modelo.getLibros();
+					}
+				}
+			}
+			return copia;
+		}
+
+		private List<Prestamo> getPrestamos() {
+			List<Prestamo> copia = prestamos;
+			if (copia == null) {
+				synchronized (this) {
+					copia = prestamos;
+					if (copia == null) {
+						copia = prestamos = modelo.getPrestamos();
+					}
+				}
+			}
+			return copia;
+		}
+
+		/**
+		 * Método que copia los listados que aún nadie ha pedido.
+		 */
+		private void copiar() {
+			getAlumnos();
+			getLibros();
+			getPrestamos();
+		}
+	}
+
+
+	/*********ATRIBUTOS*********/
+
+	private static final int CAPACIDAD_POR_DEFECTO = 1024;
+	// Número máximo de comandos que se aplican en una misma transacción.
+	private static final int TAMANO_LOTE = 256;
+	// Cada cuánto comprueba quien espera un comando que el escritor sigue en marcha.
+	private static final long ESPERA_COMPROBACION_MS = 100;
+	// Comando que indica al escritor que termine.
+	private static final Comando PARAR = new Comando(null, null);
+
+	private final Modelo modelo;
+	private final ColaCircular<Comando> cola;
+	private volatile Thread hilo;
+	private volatile boolean terminado;
+	private volatile Instantanea instantanea;
+
+
+	/*******CONSTRUCTORES*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param modelo
+	 */
+	EscritorUnico(Modelo modelo) {
+		this(modelo, CAPACIDAD_POR_DEFECTO);
+	}
+
+	/**
+	 * Constructor con parámetros.
+	 * @param modelo
+	 * @param capacidad: comandos que caben en la cola; potencia de dos.
+	 */
+	EscritorUnico(Modelo modelo, int capacidad) {
+		if (modelo == null) {
+			throw new IllegalArgumentException("ERROR: El modelo no puede ser nulo.");
+		}
+		this.modelo = modelo;
+		cola = new ColaCircular<>(capacidad);
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que publica la primera instantánea, ya copiada, y arranca el hilo escritor.
+	 */
+	synchronized void comenzar() {
+		if (hilo != null) {
+			throw new IllegalStateException("ERROR: El escritor ya ha comenzado.");
+		}
+		instantanea = new Instantanea(modelo);
+		instantanea.copiar();
+		hilo = new Thread(this::aplicar, "escritor-biblioteca");
+		hilo.setDaemon(true);
+		hilo.start();
+	}
+
+	/**
+	 * Método que espera a que se apliquen los comandos ya enviados y detiene el
+	 * hilo escritor. Los comandos que se envíen después fallan.
+	 */
+	synchronized void terminar() {
+		if (hilo != null && !terminado) {
+			terminado = true;
+			try {
+				cola.poner(PARAR);
+				hilo.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Método que envía unas operaciones al escritor y espera a que las aplique como una transacción.
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	void ejecutar(Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		if (operaciones == null) {
+			throw new NullPointerException("ERROR: Las operaciones no pueden ser nulas.");
+		}
+		try {
+			esperar(enviar(new Comando(operaciones, null)));
+		} catch (IOException e) {
+			// Las transacciones no lanzan excepciones de entrada/salida.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Método que envía una tarea al escritor y espera a que la ejecute.
+	 * @param tarea
+	 * @return resultado de la tarea
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T ejecutar(Tarea<T> tarea) throws IOException {
+		if (tarea == null) {
+			throw new NullPointerException("ERROR: La tarea no puede ser nula.");
+		}
+		try {
+			return (T) esperar(enviar(new Comando(null, tarea)));
+		} catch (OperationNotSupportedException e) {
+			// Las tareas no lanzan esta excepción.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Método que devuelve los alumnos de la última instantánea publicada.
+	 * @return alumnos
+	 */
+	List<Alumno> getAlumnos() {
+		return getInstantanea().getAlumnos();
+	}
+
+	/**
+	 * Método que devuelve los libros de la última instantánea publicada.
+	 * @return libros
+	 */
+	List<Libro> getLibros() {
+		return getInstantanea().getLibros();
+	}
+
+	/**
+	 * Método que devuelve los préstamos de la última instantánea publicada.
+	 * @return prestamos
+	 */
+	List<Prestamo> getPrestamos() {
+		return getInstantanea().getPrestamos();
+	}
+
+	/**
+	 * Método que devuelve la última instantánea publicada.
+	 * @return instantanea
+	 */
+	private Instantanea getInstantanea() {
+		Instantanea actual = instantanea;
+		if (actual == null) {
+			throw new IllegalStateException("ERROR: El escritor no está en marcha.");
+		}
+		return actual;
+	}
+
+	/**
+	 * Método que pone un comando en la cola, esperando si está llena.
+	 * @param comando
+	 * @return comando
+	 */
+	private Comando enviar(Comando comando) {
+		if (hilo == null || terminado) {
+			throw new IllegalStateException("ERROR: El escritor no está en marcha.");
+		}
+		try {
+			cola.poner(comando);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("ERROR: Se ha interrumpido el envío del comando.", e);
+		}
+		return comando;
+	}
+
+	/**
+	 * Método que espera a que se aplique un comando y devuelve su resultado o lanza su excepción.
+	 * @param comando
+	 * @return resultado
+	 * @throws OperationNotSupportedException
+	 * @throws IOException
+	 */
+	private Object esperar(Comando comando) throws OperationNotSupportedException, IOException {
+		boolean interrumpido = false;
+		try {
+			while (true) {
+				try {
+					return comando.resultado.get(ESPERA_COMPROBACION_MS, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// El comando ya está en la cola y se va a aplicar: se espera igualmente.
+					interrumpido = true;
+				} catch (TimeoutException e) {
+					// Si se envió justo mientras el escritor terminaba, ya nadie lo va a aplicar.
+					if (!hilo.isAlive()) {
+						comando.resultado.completeExceptionally(new IllegalStateException("ERROR: El escritor no está en marcha."));
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof OperationNotSupportedException) {
+				throw (OperationNotSupportedException) causa;
+			}
+			if (causa instanceof IOException) {
+				throw (IOException) causa;
+			}
+			if (causa instanceof RuntimeException) {
+				throw (RuntimeException) causa;
+			}
+			if (causa instanceof Error) {
+				throw (Error) causa;
+			}
+			throw new IllegalStateException(causa);
+		} finally {
+			if (interrumpido) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Método que ejecuta el hilo escritor: saca de la cola los comandos que ya han
+	 * llegado, hasta TAMANO_LOTE, y los aplica, hasta encontrar el de parar. Cuando
+	 * no hay comandos, copia los listados de la instantánea antes de esperar.
+	 */
+	private void aplicar() {
+		List<Comando> lote = new ArrayList<>(TAMANO_LOTE);
+		boolean parar = false;
+		while (!parar) {
+			Comando comando = cola.tomar();
+			if (comando == null) {
+				try {
+					instantanea.copiar();
+				} catch (RuntimeException e) {
+					// Quien pida el listado volverá a intentar copiarlo.
+				}
+				try {
+					comando = cola.esperar();
+				} catch (InterruptedException e) {
+					// Nadie más interrumpe este hilo; se sigue esperando al comando de parar.
+					continue;
+				}
+			}
+			lote.add(comando);
+			while (lote.size() < TAMANO_LOTE && (comando = cola.tomar()) != null) {
+				lote.add(comando);
+			}
+			parar = aplicar(lote);
+			lote.clear();
+		}
+		// Comandos que se enviaron mientras se terminaba.
+		Comando comando;
+		while ((comando = cola.tomar()) != null) {
+			comando.resultado.completeExceptionally(new IllegalStateException("ERROR: El escritor no está en marcha."));
+		}
+	}
+
+	/**
+	 * Método que aplica un lote de comandos en orden: los consecutivos que son
+	 * transacciones, juntos en una sola, y las tareas, solas. Después publica la
+	 * instantánea, sin copiar sus listados, y da a los comandos su resultado.
+	 * @param lote
+	 * @return true si el lote contiene el comando de parar.
+	 */
+	private boolean aplicar(List<Comando> lote) {
+		int inicio = 0;
+		int fin = lote.size();
+		boolean parar = false;
+		for (int i = 0; i < lote.size() && !parar; i++) {
+			Comando comando = lote.get(i);
+			if (comando.operaciones == null) {
+				aplicarTransaccion(lote.subList(inicio, i));
+				inicio = i + 1;
+				if (comando == PARAR) {
+					parar = true;
+					fin = i;
+				} else {
+					try {
+						comando.valor = comando.tarea.ejecutar();
+					} catch (IOException | RuntimeException | Error e) {
+						comando.error = e;
+					}
+				}
+			}
+		}
+		if (!parar) {
+			aplicarTransaccion(lote.subList(inicio, lote.size()));
+		}
+		instantanea = new Instantanea(modelo);
+		for (Comando comando : lote.subList(0, fin)) {
+			if (comando.error == null) {
+				comando.resultado.complete(comando.valor);
+			} else {
+				comando.resultado.completeExceptionally(comando.error);
+			}
+		}
+		for (Comando siguiente : lote.subList(Math.min(fin + 1, lote.size()), lote.size())) {
+			siguiente.resultado.completeExceptionally(new IllegalStateException("ERROR: El escritor no está en marcha."));
+		}
+		return parar;
+	}
+
+	/**
+	 * Método que aplica unos comandos en una sola transacción del modelo, con un
+	 * punto de retorno por comando, y anota en cada uno su excepción si ha fallado.
+	 * Si no se puede confirmar, se deshace todo y todos fallan con esa excepción.
+	 * @param comandos
+	 */
+	private void aplicarTransaccion(List<Comando> comandos) {
+		if (comandos.isEmpty()) {
+			return;
+		}
+		try {
+			modelo.ejecutar(transaccion -> {
+				for (Comando comando : comandos) {
+					try {
+						transaccion.ejecutar(comando.operaciones);
+					} catch (OperationNotSupportedException | RuntimeException e) {
+						comando.error = e;
+					}
+				}
+			});
+		} catch (OperationNotSupportedException | RuntimeException | Error e) {
+			for (Comando comando : comandos) {
+				if (comando.error == null) {
+					comando.error = e;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos, con los contadores de llamadas,
+ * errores y operaciones no admitidas, que se puede actualizar desde varios hilos
+ * a la vez sin cerrojos.
+ *
+ * Las latencias se agrupan como en HdrHistogram: los valores menores que
+ * 2 * SUBINTERVALOS van cada uno en su intervalo y, a partir de ahí, cada
+ * potencia de dos se divide en SUBINTERVALOS intervalos iguales. Así el error
+ * relativo de cualquier percentil es como mucho 1 / SUBINTERVALOS (un 3 %), con
+ * un número fijo de contadores desde el nanosegundo hasta unos 18 minutos. Los
+ * valores mayores se cuentan en el último intervalo.
+ */
+public final class HistogramaLatencias {
+
+	/*********ATRIBUTOS*********/
+
+	private static final int BITS_SUBINTERVALO = 5;
+	private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+	private static final int BIT_MAXIMO = 40;
+	private static final long LATENCIA_MAXIMA = (1L << BIT_MAXIMO) - 1;
+	private static final int NUM_INTERVALOS = (BIT_MAXIMO - BITS_SUBINTERVALO + 1) * SUBINTERVALOS;
+
+	private final AtomicLongArray intervalos = new AtomicLongArray(NUM_INTERVALOS);
+	private final LongAdder llamadas = new LongAdder();
+	private final LongAdder errores = new LongAdder();
+	private final LongAdder noAdmitidas = new LongAdder();
+	private final LongAdder sumaNanos = new LongAdder();
+	private final AtomicLong maximoNanos = new AtomicLong();
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que anota una llamada que ha terminado bien.
+	 * @param nanos
+	 */
+	public void registrar(long nanos) {
+		long latencia = Math.min(Math.max(nanos, 0), LATENCIA_MAXIMA);
+		intervalos.incrementAndGet(getIntervalo(latencia));
+		llamadas.increment();
+		sumaNanos.add(latencia);
+		long maximo = maximoNanos.get();
+		while (latencia > maximo && !maximoNanos.compareAndSet(maximo, latencia)) {
+			maximo = maximoNanos.get();
+		}
+	}
+
+	/**
+	 * Método que anota una llamada que ha lanzado una excepción.
+	 * @param nanos
+	 * @param noAdmitida: si la excepción es OperationNotSupportedException.
+	 */
+	public void registrarError(long nanos, boolean noAdmitida) {
+		registrar(nanos);
+		if (noAdmitida) {
+			noAdmitidas.increment();
+		} else {
+			errores.increment();
+		}
+	}
+
+	/**
+	 * Método que devuelve el número de llamadas anotadas.
+	 * @return llamadas
+	 */
+	public long getLlamadas() {
+		return llamadas.sum();
+	}
+
+	/**
+	 * Método que devuelve el número de llamadas que han lanzado una excepción
+	 * distinta de OperationNotSupportedException.
+	 * @return errores
+	 */
+	public long getErrores() {
+		return errores.sum();
+	}
+
+	/**
+	 * Método que devuelve el número de llamadas que han lanzado OperationNotSupportedException.
+	 * @return noAdmitidas
+	 */
+	public long getNoAdmitidas() {
+		return noAdmitidas.sum();
+	}
+
+	/**
+	 * Método que devuelve la latencia media.
+	 * @return media en nanosegundos, o 0 si no hay llamadas.
+	 */
+	public long getMediaNanos() {
+		long numLlamadas = llamadas.sum();
+		return numLlamadas == 0 ? 0 : sumaNanos.sum() / numLlamadas;
+	}
+
+	/**
+	 * Método que devuelve la latencia máxima.
+	 * @return maximo en nanosegundos
+	 */
+	public long getMaximoNanos() {
+		return maximoNanos.get();
+	}
+
+	/**
+	 * Método que devuelve la latencia por debajo de la cual está el porcentaje
+	 * dado de llamadas: el límite superior de su intervalo, sin pasar del máximo.
+	 * Las llamadas que se anotan mientras se calcula pueden contar o no.
+	 * @param percentil: entre 0 y 100.
+	 * @return latencia en nanosegundos, o 0 si no hay llamadas.
+	 */
+	public long getPercentilNanos(double percentil) {
+		if (percentil < 0 || percentil > 100 || Double.isNaN(percentil)) {
+			throw new IllegalArgumentException("ERROR: El percentil debe estar entre 0 y 100.");
+		}
+		long[] copia = new long[NUM_INTERVALOS];
+		long total = 0;
+		for (int i = 0; i < NUM_INTERVALOS; i++) {
+			copia[i] = intervalos.get(i);
+			total += copia[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long objetivo = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+		long acumuladas = 0;
+		for (int i = 0; i < NUM_INTERVALOS; i++) {
+			acumuladas += copia[i];
+			if (acumuladas >= objetivo) {
+				return Math.min(getLimiteSuperior(i), getMaximoNanos());
+			}
+		}
+		return getMaximoNanos();
+	}
+
+	/**
+	 * Método que devuelve el intervalo de una latencia.
+	 * @param latencia: entre 0 y LATENCIA_MAXIMA.
+	 * @return intervalo
+	 */
+	static int getIntervalo(long latencia) {
+		if (latencia < 2 * SUBINTERVALOS) {
+			return (int) latencia;
+		}
+		int desplazamiento = 63 - Long.numberOfLeadingZeros(latencia) - BITS_SUBINTERVALO;
+		return (desplazamiento + 1) * SUBINTERVALOS + (int) ((latencia >>> desplazamiento) & (SUBINTERVALOS - 1));
+	}
+
+	/**
+	 * Método que devuelve la mayor latencia que cae en un intervalo.
+	 * @param intervalo
+	 * @return latencia
+	 */
+	static long getLimiteSuperior(int intervalo) {
+		if (intervalo < 2 * SUBINTERVALOS) {
+			return intervalo;
+		}
+		int desplazamiento = intervalo / SUBINTERVALOS - 1;
+		long inferior = (long) (SUBINTERVALOS + intervalo % SUBINTERVALOS) << desplazamiento;
+		return inferior + (1L << desplazamiento) - 1;
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.Exportador;
+
+/**
+ * Latencias y contadores de cada operación del controlador, desde que se creó.
+ */
+public final class MetricasControlador {
+
+	/*********ATRIBUTOS*********/
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final Map<OperacionControlador, HistogramaLatencias> histogramas = new EnumMap<>(OperacionControlador.class);
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor que crea un histograma vacío para cada operación.
+	 */
+	MetricasControlador() {
+		for (OperacionControlador operacion : OperacionControlador.values()) {
+			histogramas.put(operacion, new HistogramaLatencias());
+		}
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que devuelve el histograma de una operación.
+	 * @param operacion
+	 * @return histograma
+	 */
+	public HistogramaLatencias get(OperacionControlador operacion) {
+		if (operacion == null) {
+			throw new NullPointerException("ERROR: La operación no puede ser nula.");
+		}
+		return histogramas.get(operacion);
+	}
+
+	/**
+	 * Método que escribe las métricas de las operaciones que se han llamado
+	 * alguna vez en JSON Lines, una por línea, con las latencias en nanosegundos:
+	 * {"operacion", "llamadas", "errores", "noAdmitidas", "media", "p50", "p90", "p99", "p99.9", "maximo"}.
+	 * @param salida
+	 * @return número de operaciones escritas
+	 * @throws IOException
+	 */
+	public int volcar(Writer salida) throws IOException {
+		if (salida == null) {
+			throw new NullPointerException("ERROR: La salida no puede ser nula.");
+		}
+		int escritas = 0;
+		for (Map.Entry<OperacionControlador, HistogramaLatencias> entrada : histogramas.entrySet()) {
+			HistogramaLatencias histograma = entrada.getValue();
+			if (histograma.getLlamadas() > 0) {
+				salida.write("{\"operacion\":");
+				Exportador.escribirCadenaJson(salida, entrada.getKey().toString());
+				salida.write(",\"llamadas\":" + histograma.getLlamadas() + ",\"errores\":" + histograma.getErrores()
+						+ ",\"noAdmitidas\":" + histograma.getNoAdmitidas() + ",\"media\":" + histograma.getMediaNanos());
+				for (double percentil : PERCENTILES) {
+					salida.write(",\"p" + formatear(percentil) + "\":" + histograma.getPercentilNanos(percentil));
+				}
+				salida.write(",\"maximo\":" + histograma.getMaximoNanos() + "}\n");
+				escritas++;
+			}
+		}
+		salida.flush();
+		return escritas;
+	}
+
+	/**
+	 * Método que escribe un percentil sin decimales si no los tiene: 99 o 99.9.
+	 * @param percentil
+	 * @return cadena
+	 */
+	static String formatear(double percentil) {
+		return percentil == Math.rint(percentil) ? String.valueOf((long) percentil) : String.valueOf(percentil);
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+public enum ModoEjecucion {
+
+	DIRECTO("Llamadas directas al modelo"),
+	/**
+	 * Las modificaciones las aplica un único hilo. Los listados completos se leen
+	 * de la instantánea que publica tras cada lote y las búsquedas y demás consultas,
+	 * del modelo, así que una búsqueda puede ver un cambio antes que un listado.
+	 */
+	ESCRITOR_UNICO("Un único hilo escritor con cola de comandos");
+
+	/**
+	 * Atributo:
+	 */
+	private final String cadenaAMostrar;
+
+	/**
+	 * Constructor:
+	 * @param cadenaAMostrar: Texto a mostrar.
+	 */
+	private ModoEjecucion(String cadenaAMostrar) {
+		this.cadenaAMostrar = cadenaAMostrar;
+	}
+
+	/**
+	 * Método toString:
+	 * Devolverá el valor almacenado en la variable cadenaAMostrar.
+	 */
+	@Override
+	public String toString() {
+		return cadenaAMostrar;
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * MBean que publica por JMX las llamadas que ha atendido el controlador, sumando
+ * todas las operaciones. El detalle por operación se obtiene con volcarMetricas().
+ */
+public class MonitorControlador implements MonitorControladorMBean {
+
+	/*********ATRIBUTOS*********/
+
+	private final MetricasControlador metricas;
+	// Llamadas y momento de la lectura anterior de getLlamadasPorSegundo().
+	private long llamadasAnteriores;
+	private long nanosAnteriores = System.nanoTime();
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param metricas
+	 */
+	MonitorControlador(MetricasControlador metricas) {
+		if (metricas == null) {
+			throw new NullPointerException("ERROR: Las métricas no pueden ser nulas.");
+		}
+		this.metricas = metricas;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	@Override
+	public long getLlamadas() {
+		long llamadas = 0;
+		for (OperacionControlador operacion : OperacionControlador.values()) {
+			llamadas += metricas.get(operacion).getLlamadas();
+		}
+		return llamadas;
+	}
+
+	@Override
+	public long getErrores() {
+		long errores = 0;
+		for (OperacionControlador operacion : OperacionControlador.values()) {
+			errores += metricas.get(operacion).getErrores();
+		}
+		return errores;
+	}
+
+	@Override
+	public long getNoAdmitidas() {
+		long noAdmitidas = 0;
+		for (OperacionControlador operacion : OperacionControlador.values()) {
+			noAdmitidas += metricas.get(operacion).getNoAdmitidas();
+		}
+		return noAdmitidas;
+	}
+
+	/**
+	 * Método que devuelve las llamadas por segundo desde la lectura anterior de
+	 * este atributo, o desde que se creó el MBean si es la primera, como hace una
+	 * consola JMX que lo consulta periódicamente.
+	 */
+	@Override
+	public synchronized double getLlamadasPorSegundo() {
+		long llamadas = getLlamadas();
+		long nanos = System.nanoTime();
+		double segundos = (nanos - nanosAnteriores) / 1e9;
+		double porSegundo = segundos > 0 ? (llamadas - llamadasAnteriores) / segundos : 0;
+		llamadasAnteriores = llamadas;
+		nanosAnteriores = nanos;
+		return porSegundo;
+	}
+
+	/**
+	 * Método que devuelve las métricas de cada operación en JSON Lines, como MetricasControlador.volcar().
+	 */
+	@Override
+	public String volcarMetricas() throws IOException {
+		StringWriter salida = new StringWriter();
+		metricas.volcar(salida);
+		return salida.toString();
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+
+/**
+ * Interfaz JMX del controlador: llamadas atendidas y su ritmo.
+ */
+public interface MonitorControladorMBean {
+
+	long getLlamadas();
+
+	long getErrores();
+
+	long getNoAdmitidas();
+
+	double getLlamadasPorSegundo();
+
+	String volcarMetricas() throws IOException;
+}
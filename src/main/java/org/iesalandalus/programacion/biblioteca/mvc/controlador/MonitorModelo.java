@@ -0,0 +1,96 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+
+/**
+ * MBean que publica por JMX el estado del modelo. Los tiempos de las copias y
+ * ordenaciones se acumulan desde que se creó el modelo.
+ */
+public class MonitorModelo implements MonitorModeloMBean {
+
+	/*********ATRIBUTOS*********/
+
+	private final Modelo modelo;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param modelo
+	 */
+	MonitorModelo(Modelo modelo) {
+		if (modelo == null) {
+			throw new NullPointerException("ERROR: El modelo no puede ser nulo.");
+		}
+		this.modelo = modelo;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	@Override
+	public int getNumAlumnos() {
+		return modelo.getNumAlumnos();
+	}
+
+	@Override
+	public int getNumLibros() {
+		return modelo.getNumLibros();
+	}
+
+	@Override
+	public int getNumPrestamos() {
+		return modelo.getNumPrestamos();
+	}
+
+	@Override
+	public int getNumPrestamosAbiertos() {
+		return modelo.getNumPrestamosAbiertos();
+	}
+
+	@Override
+	public long getCopias() {
+		return modelo.getCosteCopias().getCopias();
+	}
+
+	@Override
+	public long getElementosCopiados() {
+		return modelo.getCosteCopias().getElementosCopiados();
+	}
+
+	@Override
+	public long getMilisegundosCopia() {
+		return TimeUnit.NANOSECONDS.toMillis(modelo.getCosteCopias().getNanosCopia());
+	}
+
+	@Override
+	public long getOrdenaciones() {
+		return modelo.getCosteCopias().getOrdenaciones();
+	}
+
+	@Override
+	public long getMilisegundosOrdenacion() {
+		return TimeUnit.NANOSECONDS.toMillis(modelo.getCosteCopias().getNanosOrdenacion());
+	}
+
+	/**
+	 * Método que guarda un punto de control del modelo, que debe haber comenzado.
+	 */
+	@Override
+	public void guardarPuntoControl() throws IOException {
+		modelo.guardarPuntoControl();
+	}
+
+	/**
+	 * Método que descarta las copias ordenadas que guardan los listados.
+	 */
+	@Override
+	public void vaciarCaches() {
+		modelo.vaciarCaches();
+	}
+
+}
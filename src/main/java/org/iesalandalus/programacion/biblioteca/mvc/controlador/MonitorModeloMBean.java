@@ -0,0 +1,32 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import java.io.IOException;
+
+/**
+ * Interfaz JMX del modelo: tamaño de las colecciones, préstamos sin devolver y
+ * coste de las copias que devuelven los listados.
+ */
+public interface MonitorModeloMBean {
+
+	int getNumAlumnos();
+
+	int getNumLibros();
+
+	int getNumPrestamos();
+
+	int getNumPrestamosAbiertos();
+
+	long getCopias();
+
+	long getElementosCopiados();
+
+	long getMilisegundosCopia();
+
+	long getOrdenaciones();
+
+	long getMilisegundosOrdenacion();
+
+	void guardarPuntoControl() throws IOException;
+
+	void vaciarCaches();
+}
@@ -0,0 +1,51 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+public enum OperacionControlador {
+
+	INSERTAR_ALUMNO("insertar(Alumno)"),
+	INSERTAR_LIBRO("insertar(Libro)"),
+	PRESTAR("prestar"),
+	DEVOLVER("devolver"),
+	IMPORTAR_ALUMNOS("importarAlumnos"),
+	IMPORTAR_LIBROS("importarLibros"),
+	IMPORTAR_PRESTAMOS("importarPrestamos"),
+	EXPORTAR_ALUMNOS("exportarAlumnos"),
+	EXPORTAR_LIBROS("exportarLibros"),
+	EXPORTAR_PRESTAMOS("exportarPrestamos"),
+	BUSCAR_ALUMNO("buscar(Alumno)"),
+	BUSCAR_LIBRO("buscar(Libro)"),
+	BUSCAR_PRESTAMO("buscar(Prestamo)"),
+	BORRAR_ALUMNO("borrar(Alumno)"),
+	BORRAR_LIBRO("borrar(Libro)"),
+	BORRAR_PRESTAMO("borrar(Prestamo)"),
+	GET_ALUMNOS("getAlumnos"),
+	GET_LIBROS("getLibros"),
+	GET_PRESTAMOS("getPrestamos"),
+	GET_PRESTAMOS_ALUMNO("getPrestamos(Alumno)"),
+	GET_PRESTAMOS_LIBRO("getPrestamos(Libro)"),
+	GET_PRESTAMOS_FECHA("getPrestamos(LocalDate)"),
+	GET_ESTADISTICA_MENSUAL_POR_CURSO("getEstadisticaMensualPorCurso");
+
+	/**
+	 * Atributo:
+	 */
+	private final String cadenaAMostrar;
+
+	/**
+	 * Constructor:
+	 * @param cadenaAMostrar: Método del controlador que se mide.
+	 */
+	private OperacionControlador(String cadenaAMostrar) {
+		this.cadenaAMostrar = cadenaAMostrar;
+	}
+
+	/**
+	 * Método toString:
+	 * Devolverá el valor almacenado en la variable cadenaAMostrar.
+	 */
+	@Override
+	public String toString() {
+		return cadenaAMostrar;
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de Transaccion.borrar(), por la que pasan
+ * Modelo.borrar() y el escritor único. Al borrar un alumno o un libro se borran
+ * también sus préstamos.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Borrar")
+@Label("Borrar")
+@Description("Borrado de un alumno, un libro o un préstamo, con los préstamos que se borran en cascada.")
+final class EventoBorrar extends EventoModelo {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Entidad")
+	String entidad;
+
+	@Label("Préstamos borrados")
+	int prestamosBorrados;
+
+	@Label("Admitido")
+	@Description("Falso si la operación ha lanzado una excepción.")
+	boolean admitido;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param entidad: Alumno, Libro o Prestamo.
+	 * @param borrada
+	 */
+	void terminar(String entidad, Object borrada) {
+		if (shouldCommit()) {
+			this.entidad = entidad;
+			clave = getClave(borrada);
+			commit();
+		}
+	}
+
+}
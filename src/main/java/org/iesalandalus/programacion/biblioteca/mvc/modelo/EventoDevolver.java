@@ -0,0 +1,38 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de Transaccion.devolver(), por la que pasan
+ * Modelo.devolver(), los lotes y el escritor único.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Devolver")
+@Label("Devolver")
+@Description("Devolución de un libro prestado.")
+final class EventoDevolver extends EventoModelo {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Admitido")
+	@Description("Falso si la operación ha lanzado una excepción.")
+	boolean admitido;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param prestamo
+	 */
+	void terminar(Prestamo prestamo) {
+		if (shouldCommit()) {
+			clave = getClave(prestamo);
+			commit();
+		}
+	}
+
+}
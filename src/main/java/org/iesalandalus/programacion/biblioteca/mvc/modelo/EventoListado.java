@@ -0,0 +1,42 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de las consultas y recorridos del modelo.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Listado")
+@Label("Listado")
+@Description("Consulta de una lista de alumnos, libros o préstamos, o de la estadística mensual.")
+final class EventoListado extends EventoModelo {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Listado")
+	@Description("Método del modelo.")
+	String listado;
+
+	@Label("Elementos")
+	int elementos;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param listado
+	 * @param filtro: alumno, libro o fecha de la consulta, o nulo.
+	 * @param elementos
+	 */
+	void terminar(String listado, Object filtro, int elementos) {
+		if (shouldCommit()) {
+			this.listado = listado;
+			clave = getClave(filtro);
+			this.elementos = elementos;
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder de una operación del modelo.
+ *
+ * Mientras no se está grabando, begin(), shouldCommit() y commit() no hacen nada
+ * y el compilador elimina el propio evento, así que el coste es casi nulo. Por
+ * eso los campos solo se rellenan después de comprobar shouldCommit().
+ */
+@Category({ "Biblioteca", "Modelo" })
+@StackTrace(false)
+abstract class EventoModelo extends Event {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Clave")
+	@Description("Correo del alumno, título y autor del libro, ambos en un préstamo, o fecha.")
+	String clave;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que devuelve la clave con la que se muestra en el evento un alumno,
+	 * un libro, un préstamo o cualquier otro objeto.
+	 * @param entidad
+	 * @return clave, o nulo si la entidad es nula.
+	 */
+	static String getClave(Object entidad) {
+		if (entidad instanceof Alumno) {
+			return ((Alumno) entidad).getCorreo();
+		}
+		if (entidad instanceof Libro) {
+			Libro libro = (Libro) entidad;
+			return libro.getTitulo() + " (" + libro.getAutor() + ")";
+		}
+		if (entidad instanceof Prestamo) {
+			Prestamo prestamo = (Prestamo) entidad;
+			return getClave(prestamo.getAlumno()) + " / " + getClave(prestamo.getLibro());
+		}
+		return entidad == null ? null : entidad.toString();
+	}
+
+}
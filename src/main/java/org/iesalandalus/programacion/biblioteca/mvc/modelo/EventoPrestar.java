@@ -0,0 +1,38 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de Transaccion.prestar(), por la que pasan
+ * Modelo.prestar(), los lotes y el escritor único.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Prestar")
+@Label("Prestar")
+@Description("Préstamo de un libro a un alumno.")
+final class EventoPrestar extends EventoModelo {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Admitido")
+	@Description("Falso si la operación ha lanzado una excepción.")
+	boolean admitido;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param prestamo
+	 */
+	void terminar(Prestamo prestamo) {
+		if (shouldCommit()) {
+			clave = getClave(prestamo);
+			commit();
+		}
+	}
+
+}
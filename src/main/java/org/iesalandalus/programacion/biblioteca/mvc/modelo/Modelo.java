@@ -1,8 +1,19 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -11,16 +22,57 @@ import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Alumnos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.CosteCopias;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Libros;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia.PuntoControl;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia.RegistroOperaciones;
 
+/**
+ * Modelo de la biblioteca, que se puede usar desde varios hilos a la vez.
+ *
+ * Los préstamos se reparten en franjas según el correo del alumno y cada franja
+ * tiene su cerrojo. Las modificaciones de un solo alumno, como prestar, devolver
+ * o borrar un alumno con sus préstamos, bloquean solo su franja, así que las de
+ * alumnos de franjas distintas se hacen a la vez; además toman el cerrojo general
+ * en modo lectura. Las que afectan a todo el modelo, como las de libros o las
+ * transacciones, toman el cerrojo general en modo escritura y esperan a todas.
+ * En ambos casos son atómicas.
+ *
+ * Las consultas que solo leen estructuras concurrentes (los alumnos, los libros
+ * y el índice de préstamos por meses son listas por saltos, y los índices por
+ * alumno y por libro y los puntos de cada franja, mapas concurrentes) se hacen
+ * primero sin bloquear, con una lectura optimista del cerrojo general y de las
+ * franjas que consultan, y solo si una modificación ha coincidido con ellas se
+ * repiten con esos cerrojos en modo lectura. Las que recorren la colección de
+ * préstamos de una franja, que no admite lecturas a la vez que una modificación,
+ * toman siempre los cerrojos en modo lectura. Las de toda la colección, como el listado de préstamos o las
+ * estadísticas, miran todas las franjas, así que ven un estado coherente.
+ *
+ * Los préstamos, devoluciones, borrados y listados emiten eventos de Java Flight
+ * Recorder con su clave, el número de elementos y su duración, que se pueden
+ * grabar, por ejemplo, con -XX:StartFlightRecording. Mientras no se graban no
+ * cuestan casi nada. Los de las modificaciones los emite Transaccion, así que
+ * también se emiten en las transacciones que se ejecutan con ejecutar().
+ */
 public class Modelo {
 
 	/*********ATRIBUTOS*********/
 	
+	private static final Path DIRECTORIO_DATOS = Paths.get("datos");
+	private static final String FICHERO_REGISTRO = "operaciones.wal";
+	private static final String FICHERO_PUNTO_CONTROL = "biblioteca.chk";
+	// Elementos que copian los recorridos en cada lectura.
+	private static final int TAMANO_TROZO_RECORRIDO = 1024;
+	
 	private Alumnos alumnos;
 	private Libros libros;
 	private Prestamos prestamos;
+	private RegistroOperaciones registro;
+	private Path directorioDatos;
+	private long generacion;
+	private final StampedLock cerrojo = new StampedLock();
+	private final StampedLock[] cerrojosFranja = crearCerrojosFranja();
 	
 	
 	/*******CONSTRUCTOR*******/
@@ -33,16 +85,199 @@ public class Modelo {
 		prestamos = new Prestamos();
 	}
 	
+	/**
+	 * Método que crea un cerrojo por cada franja de préstamos.
+	 * @return cerrojosFranja
+	 */
+	private static StampedLock[] crearCerrojosFranja() {
+		StampedLock[] cerrojosFranja = new StampedLock[Prestamos.NUM_FRANJAS];
+		for (int i = 0; i < cerrojosFranja.length; i++) {
+			cerrojosFranja[i] = new StampedLock();
+		}
+		return cerrojosFranja;
+	}
+	
 
 	/********OTROS MÉTODOS********/
 	
+	/**
+	 * Método que recupera el estado guardado en el directorio de datos por defecto
+	 * y empieza a registrar en él las operaciones.
+	 * @throws IOException
+	 */
+	public void comenzar() throws IOException {
+		comenzar(DIRECTORIO_DATOS);
+	}
+	
+	/**
+	 * Método que carga el último punto de control guardado en el directorio indicado,
+	 * aplica las operaciones registradas después y empieza a registrar en él las
+	 * nuevas operaciones.
+	 * @param directorio
+	 * @throws IOException
+	 */
+	public synchronized void comenzar(Path directorio) throws IOException {
+		if (directorio == null) {
+			throw new NullPointerException("ERROR: El directorio de datos no puede ser nulo.");
+		}
+		if (registro != null) {
+			throw new IllegalStateException("ERROR: El modelo ya ha comenzado.");
+		}
+		Files.createDirectories(directorio);
+		Path puntoControl = directorio.resolve(FICHERO_PUNTO_CONTROL);
+		generacion = 0;
+		if (Files.exists(puntoControl)) {
+			long sello = cerrojo.writeLock();
+			try {
+				generacion = PuntoControl.leer(puntoControl, alumnos, libros, prestamos);
+			} finally {
+				cerrojo.unlockWrite(sello);
+			}
+		}
+		Path fichero = directorio.resolve(FICHERO_REGISTRO);
+		RegistroOperaciones.reproducir(fichero, this, generacion);
+		RegistroOperaciones registroNuevo = new RegistroOperaciones(fichero, generacion);
+		long sello = cerrojo.writeLock();
+		try {
+			registro = registroNuevo;
+		} finally {
+			cerrojo.unlockWrite(sello);
+		}
+		directorioDatos = directorio;
+	}
+	
+	/**
+	 * Método que guarda un punto de control con el estado actual y vacía el
+	 * registro de operaciones, cuyas operaciones ya incluye. Mientras tanto las
+	 * modificaciones esperan, pero las consultas no.
+	 * @throws IOException
+	 */
+	public synchronized void guardarPuntoControl() throws IOException {
+		if (registro == null) {
+			throw new IllegalStateException("ERROR: El modelo no ha comenzado.");
+		}
+		long[] sellos = bloquearLectura(0, Prestamos.NUM_FRANJAS);
+		try {
+			registro.sincronizar();
+			// El punto de control y la entrada de su directorio ya están en disco: el registro se puede vaciar.
+			PuntoControl.escribir(directorioDatos.resolve(FICHERO_PUNTO_CONTROL), alumnos, libros, prestamos, generacion + 1);
+			generacion++;
+			registro.vaciar(generacion);
+		} finally {
+			desbloquearLectura(0, Prestamos.NUM_FRANJAS, sellos);
+		}
+	}
+	
+	/**
+	 * Método que guarda un punto de control, para que el siguiente arranque no
+	 * tenga que reproducir el registro, y lo cierra.
+	 * @throws IOException
+	 */
+	public synchronized void terminar() throws IOException {
+		if (registro != null) {
+			try {
+				guardarPuntoControl();
+			} finally {
+				long sello = cerrojo.writeLock();
+				try {
+					registro.cerrar();
+					registro = null;
+				} finally {
+					cerrojo.unlockWrite(sello);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Método que ejecuta unas operaciones como una transacción: se aplican todas o,
+	 * si alguna lanza una excepción, ninguna. Mientras tanto las demás
+	 * modificaciones esperan y las consultas ven el estado anterior.
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	public void ejecutar(Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		if (operaciones == null) {
+			throw new NullPointerException("ERROR: Las operaciones no pueden ser nulas.");
+		}
+		long sello = cerrojo.writeLock();
+		try {
+			ejecutar(new Transaccion(alumnos, libros, prestamos, registro), operaciones);
+		} finally {
+			cerrojo.unlockWrite(sello);
+		}
+	}
+	
+	/**
+	 * Método que ejecuta como una transacción unas operaciones sobre un solo alumno
+	 * y sus préstamos. Solo bloquea la franja del alumno, así que se puede ejecutar
+	 * a la vez que las de alumnos de otras franjas; no puede operar sobre otros
+	 * alumnos ni sobre los libros.
+	 * @param alumno
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	public void ejecutar(Alumno alumno, Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		if (alumno == null) {
+			throw new NullPointerException("ERROR: El alumno no puede ser nulo.");
+		}
+		if (operaciones == null) {
+			throw new NullPointerException("ERROR: Las operaciones no pueden ser nulas.");
+		}
+		StampedLock cerrojoFranja = cerrojosFranja[Prestamos.getFranja(alumno.getCorreo())];
+		long sello = cerrojo.readLock();
+		try {
+			long selloFranja = cerrojoFranja.writeLock();
+			try {
+				ejecutar(new Transaccion(alumnos, libros, prestamos, registro, alumno), operaciones);
+			} finally {
+				cerrojoFranja.unlockWrite(selloFranja);
+			}
+		} finally {
+			cerrojo.unlockRead(sello);
+		}
+	}
+	
+	/**
+	 * Método que ejecuta unas operaciones en una transacción ya abierta y la
+	 * confirma o, si alguna lanza una excepción, la deshace.
+	 * @param transaccion
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	private static void ejecutar(Transaccion transaccion, Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		try {
+			operaciones.ejecutar(transaccion);
+			transaccion.confirmar();
+		} catch (OperationNotSupportedException | RuntimeException e) {
+			transaccion.deshacer();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Método que ejecuta unas operaciones sobre un alumno bloqueando solo su franja.
+	 * Si el alumno es nulo las ejecuta sobre todo el modelo, para que la operación
+	 * lance su propio error.
+	 * @param alumno
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	private void ejecutarEnFranja(Alumno alumno, Transaccion.Operaciones operaciones) throws OperationNotSupportedException {
+		if (alumno == null) {
+			ejecutar(operaciones);
+		} else {
+			ejecutar(alumno, operaciones);
+		}
+	}
+	
 	/**
 	 * Método que permite insertar un alumno.
 	 * @param alumno
 	 * @throws OperationNotSupportedException
 	 */
 	public void insertar(Alumno alumno) throws OperationNotSupportedException, NullPointerException {
-		alumnos.insertar(alumno);
+		ejecutarEnFranja(alumno, transaccion -> transaccion.insertar(alumno));
 	}
 	
 	/**
@@ -51,7 +286,7 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void insertar(Libro libro) throws OperationNotSupportedException, NullPointerException  {
-		libros.insertar(libro);
+		ejecutar(transaccion -> transaccion.insertar(libro));
 	}
 	
 	/**
@@ -60,18 +295,7 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void prestar(Prestamo prestamo) throws OperationNotSupportedException {
-		if (prestamo ==  null) {
-			throw new NullPointerException("ERROR: No se puede prestar un préstamo nulo.");
-		}
-		Alumno alumno = alumnos.buscar(prestamo.getAlumno());
-		if (alumno == null) {
-			throw new OperationNotSupportedException("ERROR: No existe el alumno del préstamo.");
-		}
-		Libro libro = libros.buscar(prestamo.getLibro());
-		if (libro == null) {
-			throw new OperationNotSupportedException("ERROR: No existe el libro del préstamo.");
-		}
-		prestamos.prestar(new Prestamo(alumno, libro, prestamo.getFechaPrestamo()));
+		ejecutarEnFranja(getAlumno(prestamo), transaccion -> transaccion.prestar(prestamo));
 	}
 	
 	/**
@@ -81,10 +305,76 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void devolver(Prestamo prestamo, LocalDate fechaDevolucion) throws OperationNotSupportedException, NullPointerException, IllegalArgumentException {
-		if (prestamos.buscar(prestamo) == null) {
-			throw new OperationNotSupportedException("ERROR: No se puede devolver un préstamo no prestado.");
+		ejecutarEnFranja(getAlumno(prestamo), transaccion -> transaccion.devolver(prestamo, fechaDevolucion));
+	}
+	
+	/**
+	 * Método que inserta un lote de alumnos. Los que no se pueden insertar no
+	 * interrumpen el lote: se devuelven, por su posición en él, con el motivo.
+	 * @param lote
+	 * @return rechazados: posición en el lote y mensaje de error.
+	 */
+	public Map<Integer, String> insertarAlumnos(List<Alumno> lote) {
+		return ejecutarLote(lote, Transaccion::insertar);
+	}
+	
+	/**
+	 * Método que inserta un lote de libros. Los que no se pueden insertar no
+	 * interrumpen el lote: se devuelven, por su posición en él, con el motivo.
+	 * @param lote
+	 * @return rechazados: posición en el lote y mensaje de error.
+	 */
+	public Map<Integer, String> insertarLibros(List<Libro> lote) {
+		return ejecutarLote(lote, Transaccion::insertar);
+	}
+	
+	/**
+	 * Método que realiza un lote de préstamos. Si un préstamo trae fecha de
+	 * devolución, se devuelve a continuación; si la devolución falla, tampoco se 
+	 * presta. Los que no se pueden realizar no interrumpen el lote: se devuelven, 
+	 * por su posición en él, con el motivo.
+	 * @param lote
+	 * @return rechazados: posición en el lote y mensaje de error.
+	 */
+	public Map<Integer, String> prestarPrestamos(List<Prestamo> lote) {
+		return ejecutarLote(lote, (transaccion, prestamo) -> {
+			transaccion.prestar(prestamo);
+			if (prestamo.getFechaDevolucion() != null) {
+				transaccion.devolver(prestamo, prestamo.getFechaDevolucion());
+			}
+		});
+	}
+	
+	/**
+	 * Método que aplica una operación a cada elemento de un lote en una única
+	 * transacción, con un punto de retorno por elemento: los que fallan se deshacen
+	 * y se devuelven, por su posición en el lote, con el motivo. Así el lote se
+	 * registra y actualiza los índices una sola vez.
+	 * @param lote
+	 * @param operacion
+	 * @return rechazados: posición en el lote y mensaje de error.
+	 */
+	private <T> Map<Integer, String> ejecutarLote(List<T> lote, OperacionLote<T> operacion) {
+		if (lote == null) {
+			throw new NullPointerException("ERROR: El lote no puede ser nulo.");
 		}
-		prestamos.devolver(prestamo, fechaDevolucion);
+		Map<Integer, String> rechazados = new LinkedHashMap<>();
+		try {
+			ejecutar(transaccion -> {
+				for (int i = 0; i < lote.size(); i++) {
+					T elemento = lote.get(i);
+					try {
+						transaccion.ejecutar(transaccionElemento -> operacion.ejecutar(transaccionElemento, elemento));
+					} catch (OperationNotSupportedException | IllegalArgumentException | NullPointerException e) {
+						rechazados.put(i, e.getMessage());
+					}
+				}
+			});
+		} catch (OperationNotSupportedException e) {
+			// Cada elemento recoge sus propias excepciones, así que no puede ocurrir.
+			throw new IllegalStateException(e);
+		}
+		return rechazados;
 	}
 	
 	/**
@@ -93,7 +383,7 @@ public class Modelo {
 	 * @return alumno
 	 */
 	public Alumno buscar(Alumno alumno) throws NullPointerException, IllegalArgumentException {
-		return alumnos.buscar(alumno);
+		return leer(alumno, () -> alumnos.buscar(alumno));
 	}
 	
 	/**
@@ -102,7 +392,7 @@ public class Modelo {
 	 * @return libro
 	 */
 	public Libro buscar(Libro libro) throws NullPointerException, IllegalArgumentException {
-		return libros.buscar(libro);
+		return leerLibros(() -> libros.buscar(libro));
 	}
 	
 	/**
@@ -111,7 +401,7 @@ public class Modelo {
 	 * @return prestamo
 	 */
 	public Prestamo buscar(Prestamo prestamo) throws NullPointerException, IllegalArgumentException {
-		return prestamos.buscar(prestamo);
+		return leerBloqueando(getAlumno(prestamo), () -> prestamos.buscar(prestamo));
 	}
 	
 	/**
@@ -120,11 +410,7 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Alumno alumno) throws OperationNotSupportedException, IllegalArgumentException {
-		List<Prestamo> prestamosAlumno = prestamos.get(alumno);
-		for (Prestamo prestamo : prestamosAlumno) {
-			prestamos.borrar(prestamo);
-		}
-		alumnos.borrar(alumno);
+		ejecutarEnFranja(alumno, transaccion -> transaccion.borrar(alumno));
 	}
 	
 	/**
@@ -133,11 +419,7 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Libro libro) throws OperationNotSupportedException, IllegalArgumentException {
-		List<Prestamo> prestamosLibro = prestamos.get(libro);
-		for (Prestamo prestamo : prestamosLibro) {
-			prestamos.borrar(prestamo);
-		}
-		libros.borrar(libro);
+		ejecutar(transaccion -> transaccion.borrar(libro));
 	}
 	
 	/**
@@ -146,7 +428,7 @@ public class Modelo {
 	 * @throws OperationNotSupportedException
 	 */
 	public void borrar(Prestamo prestamo) throws OperationNotSupportedException, IllegalArgumentException {
-		prestamos.borrar(prestamo);
+		ejecutarEnFranja(getAlumno(prestamo), transaccion -> transaccion.borrar(prestamo));
 	}
 	
 	/**
@@ -154,7 +436,7 @@ public class Modelo {
 	 * @return alumnos
 	 */
 	public List<Alumno> getAlumnos() {
-		return alumnos.get();
+		return listar("getAlumnos", null, () -> leer(alumnos::get), List::size);
 	}
 	
 	/**
@@ -162,7 +444,7 @@ public class Modelo {
 	 * @return libros
 	 */
 	public List<Libro> getLibros() {
-		return libros.get();
+		return listar("getLibros", null, () -> leerLibros(libros::get), List::size);
 	}
 	
 	/**
@@ -170,7 +452,45 @@ public class Modelo {
 	 * @return prestamos
 	 */
 	public List<Prestamo> getPrestamos() {
-		return prestamos.get();
+		return listar("getPrestamos", null, () -> leer(prestamos::get), List::size);
+	}
+	
+	/**
+	 * Método que pasa a la acción cada alumno, en el orden de getAlumnos(), sin
+	 * hacer la copia de todos que devuelve getAlumnos(). Los copia por trozos de
+	 * TAMANO_TROZO_RECORRIDO, cada uno en una lectura corta, y pasa cada trozo a la
+	 * acción sin tener ningún cerrojo, así que la acción puede tardar, por ejemplo
+	 * escribiendo en un fichero, sin que las modificaciones tengan que esperar, y la
+	 * memoria usada no depende del número de alumnos. Cada trozo es coherente, pero
+	 * un trozo ve las modificaciones hechas mientras se recorrían los anteriores.
+	 * @param accion
+	 */
+	public void recorrerAlumnos(Consumer<? super Alumno> accion) {
+		recorrer("recorrerAlumnos", (Alumno anterior) -> leer(() -> alumnos.getSiguientes(anterior, TAMANO_TROZO_RECORRIDO)),
+				accion);
+	}
+	
+	/**
+	 * Método que pasa a la acción cada libro, en el orden de getLibros(), por
+	 * trozos y sin tener ningún cerrojo, como recorrerAlumnos().
+	 * @param accion
+	 */
+	public void recorrerLibros(Consumer<? super Libro> accion) {
+		recorrer("recorrerLibros", (Libro anterior) -> leerLibros(() -> libros.getSiguientes(anterior, TAMANO_TROZO_RECORRIDO)),
+				accion);
+	}
+	
+	/**
+	 * Método que pasa a la acción cada préstamo, en el orden de getPrestamos(), por
+	 * trozos y sin tener ningún cerrojo, como recorrerAlumnos(). Cada trozo se
+	 * copia del índice por meses con los cerrojos en modo lectura, porque copiar
+	 * un préstamo lee su fecha de devolución, que las devoluciones modifican. Los
+	 * préstamos que recibe la acción son de solo lectura.
+	 * @param accion
+	 */
+	public void recorrerPrestamos(Consumer<? super Prestamo> accion) {
+		recorrer("recorrerPrestamos",
+				(Prestamo anterior) -> leerBloqueando(() -> prestamos.getSiguientes(anterior, TAMANO_TROZO_RECORRIDO)), accion);
 	}
 	
 	/**
@@ -179,7 +499,7 @@ public class Modelo {
 	 * @return prestamos.get(alumno)
 	 */
 	public List<Prestamo> getPrestamos(Alumno alumno) {
-		return prestamos.get(alumno);
+		return listar("getPrestamos(Alumno)", alumno, () -> leer(alumno, () -> prestamos.get(alumno)), List::size);
 	}
 	
 	/**
@@ -188,7 +508,7 @@ public class Modelo {
 	 * @return prestamos.get(libro)
 	 */
 	public List<Prestamo> getPrestamos(Libro libro) {
-		return prestamos.get(libro);
+		return listar("getPrestamos(Libro)", libro, () -> leer(() -> prestamos.get(libro)), List::size);
 	}
 	
 	/**
@@ -197,7 +517,7 @@ public class Modelo {
 	 * @return prestamos.get(fechaPrestamo)
 	 */
 	public List<Prestamo> getPrestamos(LocalDate fechaPrestamo) {
-		return prestamos.get(fechaPrestamo);
+		return listar("getPrestamos(LocalDate)", fechaPrestamo, () -> leer(() -> prestamos.get(fechaPrestamo)), List::size);
 	}
 	
 	/**
@@ -206,7 +526,302 @@ public class Modelo {
 	 * @return
 	 */
 	public Map<Curso, Integer> getEstadisticaMensualPorCurso(LocalDate fecha) {
-		return prestamos.getEstadisticaMensualPorCurso(fecha);
+		return listar("getEstadisticaMensualPorCurso", fecha, () -> leer(() -> prestamos.getEstadisticaMensualPorCurso(fecha)), Map::size);
+	}
+	
+	/**
+	 * Método que devuelve el número de alumnos.
+	 * @return numAlumnos
+	 */
+	public int getNumAlumnos() {
+		return leer(alumnos::getTamano);
+	}
+	
+	/**
+	 * Método que devuelve el número de libros.
+	 * @return numLibros
+	 */
+	public int getNumLibros() {
+		return leerLibros(libros::getTamano);
+	}
+	
+	/**
+	 * Método que devuelve el número de préstamos.
+	 * @return numPrestamos
+	 */
+	public int getNumPrestamos() {
+		return leer(prestamos::getTamano);
+	}
+	
+	/**
+	 * Método que devuelve el número de préstamos que aún no se han devuelto.
+	 * Recorre todos los préstamos.
+	 * @return numPrestamosAbiertos
+	 */
+	public int getNumPrestamosAbiertos() {
+		return leerBloqueando(prestamos::getNumAbiertos);
+	}
+	
+	/**
+	 * Método que devuelve cuántas copias profundas y ordenaciones han hecho los
+	 * listados de alumnos, libros y préstamos y cuánto han tardado, sumados.
+	 * @return coste
+	 */
+	public CosteCopias getCosteCopias() {
+		CosteCopias coste = new CosteCopias();
+		coste.sumar(alumnos.getCosteCopias());
+		coste.sumar(libros.getCosteCopias());
+		coste.sumar(prestamos.getCosteCopias());
+		return coste;
+	}
+	
+	/**
+	 * Método que descarta las copias ordenadas que guardan los listados de
+	 * alumnos, libros y préstamos, que se volverán a hacer al pedirlos.
+	 */
+	public void vaciarCaches() {
+		alumnos.vaciarCache();
+		libros.vaciarCache();
+		prestamos.vaciarCache();
+	}
+	
+	/**
+	 * Operación que se aplica a cada elemento de un lote dentro de una transacción.
+	 */
+	@FunctionalInterface
+	private interface OperacionLote<T> {
+		
+		void ejecutar(Transaccion transaccion, T elemento) throws OperationNotSupportedException;
+	}
+	
+	/**
+	 * Método que devuelve el alumno de un préstamo, o nulo si el préstamo es nulo.
+	 * @param prestamo
+	 * @return alumno
+	 */
+	private static Alumno getAlumno(Prestamo prestamo) {
+		return prestamo == null ? null : prestamo.getAlumno();
+	}
+	
+	/**
+	 * Método que lee una colección por trozos y pasa a la acción cada elemento de
+	 * un trozo una vez soltados los cerrojos, emitiendo el evento del recorrido.
+	 * Cada trozo empieza después del último elemento del anterior; uno incompleto
+	 * indica que ya no quedan más.
+	 * @param listado
+	 * @param lecturaTrozo: lee el trozo que sigue al elemento indicado, o el primero si es nulo.
+	 * @param accion
+	 */
+	private static <T> void recorrer(String listado, Function<T, List<T>> lecturaTrozo, Consumer<? super T> accion) {
+		if (accion == null) {
+			throw new NullPointerException("ERROR: La acción no puede ser nula.");
+		}
+		EventoListado evento = new EventoListado();
+		evento.begin();
+		int recorridos = 0;
+		List<T> trozo = lecturaTrozo.apply(null);
+		while (!trozo.isEmpty()) {
+			for (T elemento : trozo) {
+				accion.accept(elemento);
+			}
+			recorridos += trozo.size();
+			trozo = (trozo.size() < TAMANO_TROZO_RECORRIDO) ? Collections.emptyList() : lecturaTrozo.apply(trozo.get(trozo.size() - 1));
+		}
+		evento.terminar(listado, null, recorridos);
+	}
+	
+	/**
+	 * Método que hace un listado y emite su evento de Java Flight Recorder.
+	 * @param listado: método del modelo.
+	 * @param filtro: alumno, libro o fecha del listado, o nulo.
+	 * @param lectura
+	 * @param tamano: número de elementos del resultado.
+	 * @return resultado del listado
+	 */
+	private static <T> T listar(String listado, Object filtro, Supplier<T> lectura, ToIntFunction<T> tamano) {
+		EventoListado evento = new EventoListado();
+		evento.begin();
+		T resultado = lectura.get();
+		evento.terminar(listado, filtro, tamano.applyAsInt(resultado));
+		return resultado;
+	}
+	
+	/**
+	 * Método que hace una consulta de todo el modelo, que mira todas las franjas.
+	 * Solo debe leer estructuras concurrentes o campos sueltos.
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leer(Supplier<T> lectura) {
+		return leer(0, Prestamos.NUM_FRANJAS, lectura);
+	}
+	
+	/**
+	 * Método que hace una consulta de un solo alumno, que mira solo su franja. Si
+	 * el alumno es nulo la consulta se hace como si fuera de todo el modelo.
+	 * Solo debe leer estructuras concurrentes o campos sueltos.
+	 * @param alumno
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leer(Alumno alumno, Supplier<T> lectura) {
+		if (alumno == null) {
+			return leer(lectura);
+		}
+		int franja = Prestamos.getFranja(alumno.getCorreo());
+		return leer(franja, franja + 1, lectura);
+	}
+	
+	/**
+	 * Método que hace una consulta de los libros, que solo se modifican con el
+	 * cerrojo general en modo escritura y por eso no miran ninguna franja.
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leerLibros(Supplier<T> lectura) {
+		return leer(0, 0, lectura);
+	}
+	
+	/**
+	 * Método que hace una consulta que recorre los mapas de las franjas, con el
+	 * cerrojo general y los de todas las franjas en modo lectura.
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leerBloqueando(Supplier<T> lectura) {
+		return leerBloqueando(0, Prestamos.NUM_FRANJAS, lectura);
+	}
+	
+	/**
+	 * Método que hace una consulta que recorre los mapas de la franja de un alumno,
+	 * con el cerrojo general y el de su franja en modo lectura. Si el alumno es
+	 * nulo la consulta se hace como si fuera de todo el modelo.
+	 * @param alumno
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leerBloqueando(Alumno alumno, Supplier<T> lectura) {
+		if (alumno == null) {
+			return leerBloqueando(lectura);
+		}
+		int franja = Prestamos.getFranja(alumno.getCorreo());
+		return leerBloqueando(franja, franja + 1, lectura);
+	}
+	
+	/**
+	 * Método que hace una consulta con el cerrojo general y los de las franjas
+	 * indicadas en modo lectura, de modo que ninguna modificación coincide con ella.
+	 * @param primera: primera franja que mira la consulta.
+	 * @param ultima: franja siguiente a la última que mira la consulta.
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leerBloqueando(int primera, int ultima, Supplier<T> lectura) {
+		long[] sellos = bloquearLectura(primera, ultima);
+		try {
+			return lectura.get();
+		} finally {
+			desbloquearLectura(primera, ultima, sellos);
+		}
+	}
+	
+	/**
+	 * Método que hace una consulta con una lectura optimista, sin bloquear, del
+	 * cerrojo general y de las franjas indicadas. Si mientras tanto se ha
+	 * modificado alguna de ellas o todo el modelo, la consulta puede haber visto un
+	 * estado a medias, incluso haber fallado, y se repite con esos cerrojos en
+	 * modo lectura. Solo es seguro si la consulta lee estructuras concurrentes o
+	 * campos sueltos: sobre ellas una modificación a la vez puede dar un resultado
+	 * incoherente, que validar() descarta, pero no dejar la consulta en un bucle.
+	 * @param primera: primera franja que mira la consulta.
+	 * @param ultima: franja siguiente a la última que mira la consulta.
+	 * @param lectura
+	 * @return resultado de la consulta
+	 */
+	private <T> T leer(int primera, int ultima, Supplier<T> lectura) {
+		long[] sellos = leerOptimista(primera, ultima);
+		if (sellos != null) {
+			try {
+				T resultado = lectura.get();
+				if (validar(primera, ultima, sellos)) {
+					return resultado;
+				}
+			} catch (RuntimeException e) {
+				if (validar(primera, ultima, sellos)) {
+					throw e;
+				}
+			}
+		}
+		return leerBloqueando(primera, ultima, lectura);
+	}
+	
+	/**
+	 * Método que comienza una lectura optimista del cerrojo general, en la primera
+	 * posición, y de las franjas indicadas.
+	 * @param primera
+	 * @param ultima
+	 * @return sellos, o nulo si alguno de los cerrojos está bloqueado para escribir.
+	 */
+	private long[] leerOptimista(int primera, int ultima) {
+		long[] sellos = new long[ultima - primera + 1];
+		sellos[0] = cerrojo.tryOptimisticRead();
+		if (sellos[0] == 0) {
+			return null;
+		}
+		for (int i = primera; i < ultima; i++) {
+			sellos[i - primera + 1] = cerrojosFranja[i].tryOptimisticRead();
+			if (sellos[i - primera + 1] == 0) {
+				return null;
+			}
+		}
+		return sellos;
+	}
+	
+	/**
+	 * Método que comprueba que ni el modelo ni las franjas indicadas se han
+	 * modificado desde que se comenzó la lectura optimista.
+	 * @param primera
+	 * @param ultima
+	 * @param sellos
+	 * @return true si la lectura es válida.
+	 */
+	private boolean validar(int primera, int ultima, long[] sellos) {
+		boolean valida = cerrojo.validate(sellos[0]);
+		for (int i = primera; i < ultima && valida; i++) {
+			valida = cerrojosFranja[i].validate(sellos[i - primera + 1]);
+		}
+		return valida;
+	}
+	
+	/**
+	 * Método que bloquea en modo lectura el cerrojo general y, en orden, las
+	 * franjas indicadas, de modo que esperan las modificaciones de todo el modelo
+	 * y las de esas franjas. Las modificaciones de un alumno toman los cerrojos en
+	 * el mismo orden, así que no se pueden bloquear mutuamente.
+	 * @param primera
+	 * @param ultima
+	 * @return sellos: el del cerrojo general, en la primera posición, y los de las franjas.
+	 */
+	private long[] bloquearLectura(int primera, int ultima) {
+		long[] sellos = new long[ultima - primera + 1];
+		sellos[0] = cerrojo.readLock();
+		for (int i = primera; i < ultima; i++) {
+			sellos[i - primera + 1] = cerrojosFranja[i].readLock();
+		}
+		return sellos;
+	}
+	
+	/**
+	 * Método que desbloquea los cerrojos bloqueados por bloquearLectura().
+	 * @param primera
+	 * @param ultima
+	 * @param sellos
+	 */
+	private void desbloquearLectura(int primera, int ultima, long[] sellos) {
+		for (int i = ultima - 1; i >= primera; i--) {
+			cerrojosFranja[i].unlockRead(sellos[i - primera + 1]);
+		}
+		cerrojo.unlockRead(sellos[0]);
 	}
 	
 }
@@ -0,0 +1,397 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Alumnos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Libros;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia.RegistroOperaciones;
+
+/**
+ * Transacción sobre las colecciones del modelo, que se obtiene con Modelo.ejecutar().
+ *
+ * Cada operación se aplica en el momento, para que las siguientes vean su efecto,
+ * y guarda cómo deshacerse. Si una operación lanza una excepción, Modelo.ejecutar()
+ * deshace todas las anteriores; si no, las confirma: las escribe juntas en el
+ * registro de operaciones y actualiza de una vez el índice por meses, los puntos
+ * y la versión de los préstamos, que durante la transacción quedan pendientes.
+ *
+ * ejecutar() abre un punto de retorno: si sus operaciones fallan se deshacen solo
+ * ellas y la transacción puede seguir.
+ *
+ * Las transacciones de un solo alumno, que se obtienen con Modelo.ejecutar(alumno, ...),
+ * solo bloquean su franja de préstamos y por eso solo admiten operaciones sobre ese
+ * alumno y sus préstamos.
+ *
+ * Los préstamos, devoluciones y borrados emiten aquí sus eventos de Java Flight
+ * Recorder, así que se graban pasen por Modelo, por un lote o por el escritor
+ * único, que ejecuta las transacciones directamente.
+ */
+public class Transaccion {
+
+	/**
+	 * Operaciones que se ejecutan dentro de una transacción.
+	 */
+	@FunctionalInterface
+	public interface Operaciones {
+
+		void ejecutar(Transaccion transaccion) throws OperationNotSupportedException;
+	}
+
+	/**
+	 * Forma de deshacer una operación ya aplicada.
+	 */
+	@FunctionalInterface
+	private interface Deshacer {
+
+		void deshacer() throws OperationNotSupportedException;
+	}
+
+
+	/*********ATRIBUTOS*********/
+
+	private final Alumnos alumnos;
+	private final Libros libros;
+	private final Prestamos prestamos;
+	private final RegistroOperaciones registro;
+	// Alumno al que se limita la transacción, o nulo si puede modificar todo el modelo.
+	private final Alumno alumnoTransaccion;
+	private final List<Deshacer> deshacer = new ArrayList<>();
+	private final List<Consumer<RegistroOperaciones>> registros = new ArrayList<>();
+	private boolean terminada;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor que abre la transacción. Quien la crea debe tener el cerrojo de
+	 * escritura del modelo hasta confirmarla o deshacerla.
+	 * @param alumnos
+	 * @param libros
+	 * @param prestamos
+	 * @param registro: puede ser nulo si no se registran las operaciones.
+	 */
+	Transaccion(Alumnos alumnos, Libros libros, Prestamos prestamos, RegistroOperaciones registro) {
+		this(alumnos, libros, prestamos, registro, null);
+	}
+	
+	/**
+	 * Constructor que abre una transacción limitada a un alumno. Quien la crea debe
+	 * tener el cerrojo de escritura de su franja hasta confirmarla o deshacerla.
+	 * @param alumnos
+	 * @param libros
+	 * @param prestamos
+	 * @param registro: puede ser nulo si no se registran las operaciones.
+	 * @param alumno: nulo si la transacción puede modificar todo el modelo.
+	 */
+	Transaccion(Alumnos alumnos, Libros libros, Prestamos prestamos, RegistroOperaciones registro, Alumno alumno) {
+		this.alumnos = alumnos;
+		this.libros = libros;
+		this.prestamos = prestamos;
+		this.registro = registro;
+		this.alumnoTransaccion = alumno;
+		if (alumno == null) {
+			prestamos.comenzarLote();
+		} else {
+			prestamos.comenzarLote(alumno);
+		}
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que ejecuta unas operaciones dentro de la transacción. Si alguna lanza
+	 * una excepción, se deshacen las que ya se habían aplicado y se relanza.
+	 * @param operaciones
+	 * @throws OperationNotSupportedException
+	 */
+	public void ejecutar(Operaciones operaciones) throws OperationNotSupportedException {
+		comprobarActiva();
+		if (operaciones == null) {
+			throw new NullPointerException("ERROR: Las operaciones no pueden ser nulas.");
+		}
+		int deshacerAntes = deshacer.size();
+		int registrosAntes = registros.size();
+		try {
+			operaciones.ejecutar(this);
+		} catch (OperationNotSupportedException | RuntimeException e) {
+			deshacerHasta(deshacerAntes);
+			registros.subList(registrosAntes, registros.size()).clear();
+			throw e;
+		}
+	}
+
+	/**
+	 * Método que inserta un alumno.
+	 * @param alumno
+	 * @throws OperationNotSupportedException
+	 */
+	public void insertar(Alumno alumno) throws OperationNotSupportedException {
+		comprobarActiva();
+		comprobarAlumno(alumno);
+		alumnos.insertar(alumno);
+		deshacer.add(() -> alumnos.borrar(alumno));
+		registros.add(registroOperaciones -> registroOperaciones.registrarInsercion(alumno));
+	}
+
+	/**
+	 * Método que inserta un libro.
+	 * @param libro
+	 * @throws OperationNotSupportedException
+	 */
+	public void insertar(Libro libro) throws OperationNotSupportedException {
+		comprobarActiva();
+		comprobarLibros();
+		libros.insertar(libro);
+		deshacer.add(() -> libros.borrar(libro));
+		registros.add(registroOperaciones -> registroOperaciones.registrarInsercion(libro));
+	}
+
+	/**
+	 * Método que presta un libro a un alumno, ambos ya existentes.
+	 * @param prestamo
+	 * @throws OperationNotSupportedException
+	 */
+	public void prestar(Prestamo prestamo) throws OperationNotSupportedException {
+		EventoPrestar evento = new EventoPrestar();
+		evento.begin();
+		try {
+			comprobarActiva();
+			if (prestamo == null) {
+				throw new NullPointerException("ERROR: No se puede prestar un préstamo nulo.");
+			}
+			comprobarAlumno(prestamo.getAlumno());
+			// El préstamo que se guarda referencia el alumno y el libro de sus colecciones, sin copiarlos.
+			Alumno alumno = alumnos.buscar(prestamo.getAlumno());
+			if (alumno == null) {
+				throw new OperationNotSupportedException("ERROR: No existe el alumno del préstamo.");
+			}
+			Libro libro = libros.buscar(prestamo.getLibro());
+			if (libro == null) {
+				throw new OperationNotSupportedException("ERROR: No existe el libro del préstamo.");
+			}
+			Prestamo prestamoNuevo = Prestamo.getPrestamoCompartido(new Prestamo(alumno, libro, prestamo.getFechaPrestamo()),
+					alumno, libro);
+			prestamos.prestar(prestamoNuevo);
+			deshacer.add(() -> prestamos.borrar(prestamoNuevo));
+			registros.add(registroOperaciones -> registroOperaciones.registrarPrestamo(prestamo));
+			evento.admitido = true;
+		} finally {
+			evento.terminar(prestamo);
+		}
+	}
+
+	/**
+	 * Método que devuelve un préstamo.
+	 * @param prestamo
+	 * @param fechaDevolucion
+	 * @throws OperationNotSupportedException
+	 */
+	public void devolver(Prestamo prestamo, LocalDate fechaDevolucion) throws OperationNotSupportedException {
+		EventoDevolver evento = new EventoDevolver();
+		evento.begin();
+		try {
+			comprobarActiva();
+			if (prestamo != null) {
+				comprobarAlumno(prestamo.getAlumno());
+			}
+			Prestamo prestado = prestamos.buscar(prestamo);
+			if (prestado == null) {
+				throw new OperationNotSupportedException("ERROR: No se puede devolver un préstamo no prestado.");
+			}
+			prestamos.devolver(prestamo, fechaDevolucion);
+			deshacer.add(() -> {
+				prestamos.borrar(prestado);
+				prestamos.prestar(prestado);
+			});
+			registros.add(registroOperaciones -> registroOperaciones.registrarDevolucion(prestamo, fechaDevolucion));
+			evento.admitido = true;
+		} finally {
+			evento.terminar(prestamo);
+		}
+	}
+
+	/**
+	 * Método que borra un alumno y sus préstamos.
+	 * @param alumno
+	 * @return número de préstamos borrados con el alumno.
+	 * @throws OperationNotSupportedException
+	 */
+	public int borrar(Alumno alumno) throws OperationNotSupportedException {
+		EventoBorrar evento = new EventoBorrar();
+		evento.begin();
+		try {
+			comprobarActiva();
+			comprobarAlumno(alumno);
+			List<Prestamo> prestamosAlumno = prestamos.get(alumno);
+			for (Prestamo prestamo : prestamosAlumno) {
+				prestamos.borrar(prestamo);
+				deshacer.add(() -> prestamos.prestar(prestamo));
+			}
+			Alumno alumnoBorrado = alumnos.buscar(alumno);
+			alumnos.borrar(alumno);
+			deshacer.add(() -> alumnos.insertar(alumnoBorrado));
+			registros.add(registroOperaciones -> registroOperaciones.registrarBorrado(alumno));
+			evento.prestamosBorrados = prestamosAlumno.size();
+			evento.admitido = true;
+			return prestamosAlumno.size();
+		} finally {
+			evento.terminar("Alumno", alumno);
+		}
+	}
+
+	/**
+	 * Método que borra un libro y sus préstamos.
+	 * @param libro
+	 * @return número de préstamos borrados con el libro.
+	 * @throws OperationNotSupportedException
+	 */
+	public int borrar(Libro libro) throws OperationNotSupportedException {
+		EventoBorrar evento = new EventoBorrar();
+		evento.begin();
+		try {
+			comprobarActiva();
+			comprobarLibros();
+			List<Prestamo> prestamosLibro = prestamos.get(libro);
+			for (Prestamo prestamo : prestamosLibro) {
+				prestamos.borrar(prestamo);
+				deshacer.add(() -> prestamos.prestar(prestamo));
+			}
+			Libro libroBorrado = libros.buscar(libro);
+			libros.borrar(libro);
+			deshacer.add(() -> libros.insertar(libroBorrado));
+			registros.add(registroOperaciones -> registroOperaciones.registrarBorrado(libro));
+			evento.prestamosBorrados = prestamosLibro.size();
+			evento.admitido = true;
+			return prestamosLibro.size();
+		} finally {
+			evento.terminar("Libro", libro);
+		}
+	}
+
+	/**
+	 * Método que borra un préstamo.
+	 * @param prestamo
+	 * @throws OperationNotSupportedException
+	 */
+	public void borrar(Prestamo prestamo) throws OperationNotSupportedException {
+		EventoBorrar evento = new EventoBorrar();
+		evento.begin();
+		try {
+			comprobarActiva();
+			if (prestamo == null) {
+				throw new IllegalArgumentException("ERROR: No se puede borrar un préstamo nulo.");
+			}
+			comprobarAlumno(prestamo.getAlumno());
+			Prestamo prestamoBorrado = prestamos.buscar(prestamo);
+			prestamos.borrar(prestamo);
+			deshacer.add(() -> prestamos.prestar(prestamoBorrado));
+			registros.add(registroOperaciones -> registroOperaciones.registrarBorrado(prestamo));
+			evento.prestamosBorrados = 1;
+			evento.admitido = true;
+		} finally {
+			evento.terminar("Prestamo", prestamo);
+		}
+	}
+
+	/**
+	 * Método que confirma la transacción: registra sus operaciones como una sola,
+	 * espera a que estén forzadas a disco y solo entonces aplica las
+	 * actualizaciones pendientes de los préstamos. Como quien la ejecuta tiene aún
+	 * los cerrojos, ninguna consulta ve sus cambios antes de que sean duraderos.
+	 * Si no se pueden registrar, lanza la excepción y la transacción sigue
+	 * pendiente de deshacer.
+	 */
+	void confirmar() {
+		comprobarActiva();
+		if (registro != null && !registros.isEmpty()) {
+			registro.registrarTransaccion(registroOperaciones -> {
+				for (Consumer<RegistroOperaciones> operacion : registros) {
+					operacion.accept(registroOperaciones);
+				}
+			});
+		}
+		terminada = true;
+		terminarLote();
+	}
+
+	/**
+	 * Método que deshace todas las operaciones aplicadas y cierra la transacción.
+	 */
+	void deshacer() {
+		if (!terminada) {
+			terminada = true;
+			try {
+				deshacerHasta(0);
+			} finally {
+				terminarLote();
+			}
+		}
+	}
+
+	/**
+	 * Método que deshace, de la última a la primera, las operaciones aplicadas
+	 * desde la posición indicada.
+	 * @param posicion
+	 */
+	private void deshacerHasta(int posicion) {
+		for (int i = deshacer.size() - 1; i >= posicion; i--) {
+			try {
+				deshacer.remove(i).deshacer();
+			} catch (OperationNotSupportedException e) {
+				throw new IllegalStateException("ERROR: No se pudo deshacer la transacción: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Método que termina el lote de préstamos que abrió el constructor.
+	 */
+	private void terminarLote() {
+		if (alumnoTransaccion == null) {
+			prestamos.terminarLote();
+		} else {
+			prestamos.terminarLote(alumnoTransaccion);
+		}
+	}
+	
+	/**
+	 * Método que comprueba que una transacción limitada a un alumno solo opera
+	 * sobre él. Los alumnos nulos se dejan pasar para que la operación lance su error.
+	 * @param otro
+	 */
+	private void comprobarAlumno(Alumno otro) {
+		if (alumnoTransaccion != null && otro != null && !alumnoTransaccion.getCorreo().equals(otro.getCorreo())) {
+			throw new IllegalStateException("ERROR: La transacción solo puede operar sobre el alumno " + alumnoTransaccion.getCorreo() + ".");
+		}
+	}
+	
+	/**
+	 * Método que comprueba que la transacción puede modificar los libros, es decir,
+	 * que no está limitada a un alumno.
+	 */
+	private void comprobarLibros() {
+		if (alumnoTransaccion != null) {
+			throw new IllegalStateException("ERROR: Una transacción de un solo alumno no puede modificar los libros.");
+		}
+	}
+	
+	/**
+	 * Método que comprueba que la transacción no ha terminado.
+	 */
+	private void comprobarActiva() {
+		if (terminada) {
+			throw new IllegalStateException("ERROR: La transacción ya ha terminado.");
+		}
+	}
+
+}
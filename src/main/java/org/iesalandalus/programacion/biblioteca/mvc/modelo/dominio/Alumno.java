@@ -1,5 +1,7 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio;
 
+import java.util.regex.Pattern;
+
 public class Alumno {
 
 	
@@ -7,9 +9,13 @@ public class Alumno {
 	
 	private static final String ER_NOMBRE = "[a-zA-ZÁáÉéÍíÓóÚúÑñ]+[\\s]+[a-zA-ZÁáÉéÍíÓóÚúÑñ\\s]*";
 	private static final String ER_CORREO = ".+@[a-zA-Z]+\\.[a-zA-Z]+";
+	private static final Pattern PATRON_NOMBRE = Pattern.compile(ER_NOMBRE);
+	private static final Pattern PATRON_CORREO = Pattern.compile(ER_CORREO);
 	private String nombre;
 	private String correo;
 	private Curso curso;
+	// Los alumnos que se comparten entre la colección y sus listados no se pueden modificar.
+	private boolean soloLectura;
 	
 	
 	/*******CONSTRUCTORES*******/
@@ -28,14 +34,17 @@ public class Alumno {
 	
 	/**
 	 * Constructor copia:
+	 * Los atributos de un alumno ya se validaron al crearlo, por lo que se copian
+	 * directamente sin volver a validarlos ni a formatear el nombre. La copia
+	 * siempre se puede modificar, aunque el original sea de solo lectura.
 	 * @param copiaAlumno: Copia del objeto Alumno. 
 	 */
 	public Alumno (Alumno copiaAlumno) throws NullPointerException, IllegalArgumentException {
 		if(copiaAlumno == null)
 			throw new NullPointerException("ERROR: No es posible copiar un alumno nulo.");
-		setNombre(copiaAlumno.getNombre());
-		setCorreo(copiaAlumno.getCorreo());
-		setCurso(copiaAlumno.getCurso());
+		nombre = copiaAlumno.nombre;
+		correo = copiaAlumno.correo;
+		curso = copiaAlumno.curso;
 	}
 
 	/**
@@ -47,9 +56,37 @@ public class Alumno {
 		return new Alumno("Marta García", correo, Curso.CUARTO);
 	}
 	
+	/**
+	 * Método que devolverá una copia del alumno que no se puede modificar, o el
+	 * mismo alumno si ya era de solo lectura. Sirve para los alumnos que se
+	 * comparten entre la colección y sus listados: quien quiera cambiar el curso
+	 * de uno debe copiarlo antes con el constructor copia.
+	 * @param alumno
+	 * @return alumnoSoloLectura
+	 */
+	public static Alumno getAlumnoSoloLectura (Alumno alumno) throws NullPointerException {
+		if(alumno == null) {
+			throw new NullPointerException("ERROR: No es posible copiar un alumno nulo.");
+		}
+		if(alumno.soloLectura) {
+			return alumno;
+		}
+		Alumno alumnoSoloLectura = new Alumno(alumno);
+		alumnoSoloLectura.soloLectura = true;
+		return alumnoSoloLectura;
+	}
+	
 	
 	/*********GETTERS Y SETTERS**********/
 	
+	/**
+	 * Método que indica si el alumno es de solo lectura.
+	 * @return soloLectura
+	 */
+	public boolean isSoloLectura() {
+		return soloLectura;
+	}
+	
 	/**
 	 * Método que devuelve el nombre del alumno.
 	 * @return nombre
@@ -66,7 +103,7 @@ public class Alumno {
 		if(nombre == null) {
 			throw new NullPointerException("ERROR: El nombre no puede ser nulo.");
 		}
-		if(!nombre.matches(ER_NOMBRE)) {
+		if(!PATRON_NOMBRE.matcher(nombre).matches()) {
 			throw new IllegalArgumentException("ERROR: El nombre no tiene un formato válido.");
 		}
 		this.nombre = formateaNombre(nombre);
@@ -76,25 +113,30 @@ public class Alumno {
 	/**
 	 * Método que formatea el nombre del alumno.
 	 * Convierte la primera letra de cada palabra en mayúscula y elimina espacios
-	 * en blanco sobrantes.
+	 * en blanco sobrantes. Se hace en una sola pasada, sin expresiones regulares.
 	 * @param nombre
 	 * @return nombreFormateado
 	 */
 	private String formateaNombre(String nombre) {
 		
-		String nombreFormateado = nombre.toLowerCase();
+		String nombreMinusculas = nombre.toLowerCase();
+		StringBuilder nombreFormateado = new StringBuilder(nombreMinusculas.length());
 		
-		char[] caracteres = nombreFormateado.toCharArray();
-		caracteres[0] = Character.toUpperCase(caracteres[0]);
-		
-		for (int i = 0; i < caracteres.length; i++) {
-			if (caracteres[i] == ' ' || caracteres[i] == '.' || caracteres[i] == ',') {
-				caracteres[i + 1] = Character.toUpperCase(caracteres[i + 1]);
+		char anterior = ' ';
+		for (int i = 0; i < nombreMinusculas.length(); i++) {
+			char caracter = nombreMinusculas.charAt(i);
+			if (i == 0 || anterior == ' ' || anterior == '.' || anterior == ',') {
+				caracter = Character.toUpperCase(caracter);
+			}
+			anterior = nombreMinusculas.charAt(i);
+			if (caracter == ' ' && (nombreFormateado.length() == 0 
+					|| nombreFormateado.charAt(nombreFormateado.length() - 1) == ' ')) {
+				continue;
 			}
+			nombreFormateado.append(caracter);
 		}
-		nombreFormateado = new String(caracteres);
 		
-		return nombreFormateado.replaceAll(" +", " ").trim();
+		return nombreFormateado.toString().trim();
 	}
 	
 	
@@ -114,7 +156,7 @@ public class Alumno {
 		if(correo == null) {
 			throw new NullPointerException("ERROR: El correo no puede ser nulo.");
 		}
-		if(!correo.matches(ER_CORREO)) {
+		if(!PATRON_CORREO.matcher(correo).matches()) {
 			throw new IllegalArgumentException("ERROR: El formato del correo no es válido.");
 		}
 		this.correo = correo;
@@ -128,9 +170,8 @@ public class Alumno {
 	private String getIniciales() {
 		
 		String iniciales = "";
-		String nombreFormateado = formateaNombre(nombre);
 		
-		String[] letras = nombreFormateado.split(" ");
+		String[] letras = nombre.split(" ");
 		for (int i = 0; i < letras.length; i++) {
 			iniciales += letras[i].substring(0, 1);
 		}
@@ -151,6 +192,9 @@ public class Alumno {
 	 * @param curso
 	 */
 	public void setCurso(Curso curso) {
+		if(soloLectura) {
+			throw new UnsupportedOperationException("ERROR: El alumno es de un listado y no se puede modificar.");
+		}
 		if(curso == null) {
 			throw new NullPointerException("ERROR: El curso no puede ser nulo.");
 		}
@@ -198,7 +242,7 @@ public class Alumno {
 	@Override
 	public String toString() {
 		return String.format("nombre=%s (%s), correo=%s, curso=%s", 
-				formateaNombre(nombre), getIniciales(), correo, curso);
+				nombre, getIniciales(), correo, curso);
 	}
 
 	
@@ -6,6 +6,8 @@ public class Libro {
 	
 	private static final int PAGINAS_PARA_RECOMPENSA = 25;
 	private static final float PUNTOS_PREMIO = 0.5f;
+	// Carácter con el que las colecciones separan el título y el autor en las claves de los préstamos.
+	private static final char CARACTER_RESERVADO = '\u001F';
 	private String titulo;
 	private String autor;
 	private int numPaginas;
@@ -69,6 +71,9 @@ public class Libro {
 		if (titulo.trim().equals("")) {
 			throw new IllegalArgumentException("ERROR: El título no puede estar vacío.");
 		}
+		if (titulo.indexOf(CARACTER_RESERVADO) >= 0) {
+			throw new IllegalArgumentException("ERROR: El título contiene un carácter no válido.");
+		}
 		this.titulo = titulo;
 	}
 	
@@ -91,6 +96,9 @@ public class Libro {
 		if (autor.trim().equals("")) {
 			throw new IllegalArgumentException("ERROR: El autor no puede estar vacío.");
 		}
+		if (autor.indexOf(CARACTER_RESERVADO) >= 0) {
+			throw new IllegalArgumentException("ERROR: El autor contiene un carácter no válido.");
+		}
 		this.autor = autor;
 	}
 	
@@ -8,12 +8,14 @@ public class Prestamo {
 
 	/*********ATRIBUTOS*********/
 	
-	private static final int MAX_DIAS_PRESTAMO = 20;
+	public static final int MAX_DIAS_PRESTAMO = 20;
 	public static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 	private LocalDate fechaPrestamo;
 	private LocalDate fechaDevolucion;
 	private Alumno alumno;
 	private Libro libro;
+	// Los préstamos de las copias que se reutilizan entre listados no se pueden devolver.
+	private boolean soloLectura;
 	
 	
 	/*******CONSTRUCTORES*******/
@@ -32,19 +34,22 @@ public class Prestamo {
 	
 	/**
 	 * Constructor copia:
+	 * Si el alumno del original es de solo lectura, como los de las colecciones, la
+	 * copia comparte su instancia; si no, tiene su propio alumno, porque el curso se
+	 * puede modificar. Un libro no se puede modificar, así que comparte su instancia
+	 * con el original. Las fechas ya se validaron, por lo que se copian
+	 * directamente. La copia siempre se puede devolver, aunque el original sea de
+	 * solo lectura.
 	 * @param copiaPrestamo: copia del objeto Prestamo.
 	 */
 	public Prestamo (Prestamo copiaPrestamo) throws NullPointerException, IllegalArgumentException {
 		if(copiaPrestamo == null) {
 			throw new NullPointerException("ERROR: No es posible copiar un préstamo nulo.");
 		}
-		setAlumno(copiaPrestamo.getAlumno());
-		setLibro(copiaPrestamo.getLibro());
-		setFechaPrestamo(copiaPrestamo.getFechaPrestamo());
-		
-		if(copiaPrestamo.getFechaDevolucion() != null) {
-			setFechaDevolucion(copiaPrestamo.getFechaDevolucion());
-		}
+		alumno = copiaPrestamo.alumno.isSoloLectura() ? copiaPrestamo.alumno : new Alumno(copiaPrestamo.alumno);
+		libro = copiaPrestamo.libro;
+		fechaPrestamo = copiaPrestamo.fechaPrestamo;
+		fechaDevolucion = copiaPrestamo.fechaDevolucion;
 	}
 	
 	/**
@@ -65,11 +70,57 @@ public class Prestamo {
 		return new Prestamo(alumno, libro, LocalDate.now());
 	}
 	
+	/**
+	 * Método que devolverá una copia del préstamo que referencia directamente, sin
+	 * copiarlos, el alumno y el libro pasados. Sirve para que los préstamos de un 
+	 * mismo alumno o de un mismo libro compartan una única instancia.
+	 * @param prestamo
+	 * @param alumno: debe ser igual al alumno del préstamo.
+	 * @param libro: debe ser igual al libro del préstamo.
+	 * @return prestamoCompartido
+	 */
+	public static Prestamo getPrestamoCompartido (Prestamo prestamo, Alumno alumno, Libro libro) throws NullPointerException, IllegalArgumentException {
+		if(prestamo == null) {
+			throw new NullPointerException("ERROR: No es posible copiar un préstamo nulo.");
+		}
+		if(alumno == null) {
+			throw new NullPointerException("ERROR: El alumno no puede ser nulo.");
+		}
+		if(libro == null) {
+			throw new NullPointerException("ERROR: El libro no puede ser nulo.");
+		}
+		if(!alumno.equals(prestamo.alumno) || !libro.equals(prestamo.libro)) {
+			throw new IllegalArgumentException("ERROR: El alumno y el libro deben ser los del préstamo.");
+		}
+		Prestamo prestamoCompartido = new Prestamo(prestamo);
+		prestamoCompartido.alumno = alumno;
+		prestamoCompartido.libro = libro;
+		return prestamoCompartido;
+	}
+	
+	/**
+	 * Método que devolverá una copia del préstamo que no se puede devolver y cuyo
+	 * alumno no se puede modificar. Sirve para las copias que se comparten entre
+	 * varios listados: quien quiera modificar uno de sus préstamos debe copiarlo
+	 * antes con el constructor copia.
+	 * @param prestamo
+	 * @return prestamoSoloLectura
+	 */
+	public static Prestamo getPrestamoSoloLectura (Prestamo prestamo) throws NullPointerException {
+		Prestamo prestamoSoloLectura = new Prestamo(prestamo);
+		prestamoSoloLectura.alumno = Alumno.getAlumnoSoloLectura(prestamoSoloLectura.alumno);
+		prestamoSoloLectura.soloLectura = true;
+		return prestamoSoloLectura;
+	}
+	
 	/**
 	 * Método para devolver un libro.
 	 * @param fechaDevolucion
 	 */
 	public void devolver (LocalDate fechaDevolucion) throws NullPointerException, IllegalArgumentException {
+		if(soloLectura) {
+			throw new UnsupportedOperationException("ERROR: El préstamo es de un listado y no se puede modificar.");
+		}
 		setFechaDevolucion(fechaDevolucion);
 	}
 	
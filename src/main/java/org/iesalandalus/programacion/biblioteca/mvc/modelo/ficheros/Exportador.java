@@ -0,0 +1,301 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+/**
+ * Exportación de los listados de alumnos, libros y préstamos en CSV o en JSON
+ * Lines (un objeto JSON por línea), en el mismo orden en que se listan.
+ *
+ * Cada elemento se escribe según se recorre la colección con los métodos recorrer
+ * del modelo, que la copian por trozos de tamaño fijo, sin construir la lista
+ * ordenada que devuelven los métodos get, así que la memoria usada no depende del
+ * tamaño de la colección. El CSV tiene el mismo formato que lee
+ * ImportadorCsv, de modo que un fichero exportado se puede volver a importar.
+ */
+public class Exportador {
+
+	/*********ATRIBUTOS*********/
+
+	private static final char SEPARADOR = ',';
+	private static final char COMILLAS = '"';
+	private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	static final String CABECERA_ALUMNOS = "nombre,correo,curso";
+	static final String CABECERA_LIBROS = "titulo,autor,numPaginas";
+	static final String CABECERA_PRESTAMOS = "correo,titulo,autor,fechaPrestamo,fechaDevolucion";
+
+	private final Modelo modelo;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param modelo: del que se exportan los listados.
+	 */
+	public Exportador(Modelo modelo) {
+		if (modelo == null) {
+			throw new NullPointerException("ERROR: El modelo no puede ser nulo.");
+		}
+		this.modelo = modelo;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que exporta los alumnos ordenados por correo.
+	 * @param destino: no se cierra al terminar.
+	 * @param formato
+	 * @return número de alumnos exportados
+	 * @throws IOException
+	 */
+	public long exportarAlumnos(Writer destino, FormatoExportacion formato) throws IOException {
+		return exportar(destino, formato, CABECERA_ALUMNOS, modelo::recorrerAlumnos, Exportador::escribirAlumno);
+	}
+
+	/**
+	 * Método que exporta los libros ordenados por título y autor.
+	 * @param destino: no se cierra al terminar.
+	 * @param formato
+	 * @return número de libros exportados
+	 * @throws IOException
+	 */
+	public long exportarLibros(Writer destino, FormatoExportacion formato) throws IOException {
+		return exportar(destino, formato, CABECERA_LIBROS, modelo::recorrerLibros, Exportador::escribirLibro);
+	}
+
+	/**
+	 * Método que exporta los préstamos ordenados por fecha, alumno y libro.
+	 * @param destino: no se cierra al terminar.
+	 * @param formato
+	 * @return número de préstamos exportados
+	 * @throws IOException
+	 */
+	public long exportarPrestamos(Writer destino, FormatoExportacion formato) throws IOException {
+		return exportar(destino, formato, CABECERA_PRESTAMOS, modelo::recorrerPrestamos, Exportador::escribirPrestamo);
+	}
+
+	/**
+	 * Método que recorre una colección escribiendo cada elemento en una línea.
+	 * @param destino
+	 * @param formato
+	 * @param cabecera: primera línea del CSV.
+	 * @param recorrer: recorre la colección pasando cada elemento a una acción.
+	 * @param escribir: escribe un elemento en el formato indicado.
+	 * @return número de elementos exportados
+	 * @throws IOException
+	 */
+	static <T> long exportar(Writer destino, FormatoExportacion formato, String cabecera, Consumer<Consumer<T>> recorrer,
+			Escritura<T> escribir) throws IOException {
+		if (destino == null) {
+			throw new NullPointerException("ERROR: El destino no puede ser nulo.");
+		}
+		if (formato == null) {
+			throw new NullPointerException("ERROR: El formato no puede ser nulo.");
+		}
+		Writer salida = (destino instanceof BufferedWriter) ? destino : new BufferedWriter(destino);
+		long[] exportados = { 0 };
+		try {
+			if (formato == FormatoExportacion.CSV) {
+				salida.write(cabecera);
+				salida.write('\n');
+			}
+			recorrer.accept(elemento -> {
+				try {
+					escribir.escribir(salida, elemento, formato);
+					salida.write('\n');
+					exportados[0]++;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		salida.flush();
+		return exportados[0];
+	}
+
+	/**
+	 * Método que escribe un alumno: nombre, correo y curso (de 1 a 4).
+	 * @param salida
+	 * @param alumno
+	 * @param formato
+	 * @throws IOException
+	 */
+	public static void escribirAlumno(Writer salida, Alumno alumno, FormatoExportacion formato) throws IOException {
+		int curso = alumno.getCurso().ordinal() + 1;
+		if (formato == FormatoExportacion.CSV) {
+			escribirCampoCsv(salida, alumno.getNombre());
+			salida.write(SEPARADOR);
+			escribirCampoCsv(salida, alumno.getCorreo());
+			salida.write(SEPARADOR);
+			salida.write(String.valueOf(curso));
+		} else {
+			salida.write("{\"nombre\":");
+			escribirCadenaJson(salida, alumno.getNombre());
+			salida.write(",\"correo\":");
+			escribirCadenaJson(salida, alumno.getCorreo());
+			salida.write(",\"curso\":");
+			salida.write(String.valueOf(curso));
+			salida.write('}');
+		}
+	}
+
+	/**
+	 * Método que escribe un libro: título, autor y número de páginas.
+	 * @param salida
+	 * @param libro
+	 * @param formato
+	 * @throws IOException
+	 */
+	public static void escribirLibro(Writer salida, Libro libro, FormatoExportacion formato) throws IOException {
+		if (formato == FormatoExportacion.CSV) {
+			escribirCampoCsv(salida, libro.getTitulo());
+			salida.write(SEPARADOR);
+			escribirCampoCsv(salida, libro.getAutor());
+			salida.write(SEPARADOR);
+			salida.write(String.valueOf(libro.getNumPaginas()));
+		} else {
+			salida.write("{\"titulo\":");
+			escribirCadenaJson(salida, libro.getTitulo());
+			salida.write(",\"autor\":");
+			escribirCadenaJson(salida, libro.getAutor());
+			salida.write(",\"numPaginas\":");
+			salida.write(String.valueOf(libro.getNumPaginas()));
+			salida.write('}');
+		}
+	}
+
+	/**
+	 * Método que escribe un préstamo: correo del alumno, título y autor del libro
+	 * y fechas de préstamo y devolución. En CSV las fechas van como dd/MM/yyyy y
+	 * en JSON en formato ISO; si no se ha devuelto, la fecha de devolución queda
+	 * vacía en CSV y es null en JSON.
+	 * @param salida
+	 * @param prestamo
+	 * @param formato
+	 * @throws IOException
+	 */
+	public static void escribirPrestamo(Writer salida, Prestamo prestamo, FormatoExportacion formato) throws IOException {
+		LocalDate fechaDevolucion = prestamo.getFechaDevolucion();
+		if (formato == FormatoExportacion.CSV) {
+			escribirCampoCsv(salida, prestamo.getAlumno().getCorreo());
+			salida.write(SEPARADOR);
+			escribirCampoCsv(salida, prestamo.getLibro().getTitulo());
+			salida.write(SEPARADOR);
+			escribirCampoCsv(salida, prestamo.getLibro().getAutor());
+			salida.write(SEPARADOR);
+			salida.write(FORMATO_FECHA.format(prestamo.getFechaPrestamo()));
+			salida.write(SEPARADOR);
+			if (fechaDevolucion != null) {
+				salida.write(FORMATO_FECHA.format(fechaDevolucion));
+			}
+		} else {
+			salida.write("{\"correo\":");
+			escribirCadenaJson(salida, prestamo.getAlumno().getCorreo());
+			salida.write(",\"titulo\":");
+			escribirCadenaJson(salida, prestamo.getLibro().getTitulo());
+			salida.write(",\"autor\":");
+			escribirCadenaJson(salida, prestamo.getLibro().getAutor());
+			salida.write(",\"fechaPrestamo\":\"");
+			salida.write(prestamo.getFechaPrestamo().toString());
+			salida.write("\",\"fechaDevolucion\":");
+			if (fechaDevolucion != null) {
+				salida.write('"');
+				salida.write(fechaDevolucion.toString());
+				salida.write('"');
+			} else {
+				salida.write("null");
+			}
+			salida.write('}');
+		}
+	}
+
+	/**
+	 * Método que escribe un campo CSV, entre comillas si contiene el separador,
+	 * comillas o saltos de línea.
+	 * @param salida
+	 * @param campo
+	 * @throws IOException
+	 */
+	private static void escribirCampoCsv(Writer salida, String campo) throws IOException {
+		boolean entrecomillar = false;
+		for (int i = 0; i < campo.length() && !entrecomillar; i++) {
+			char caracter = campo.charAt(i);
+			entrecomillar = caracter == SEPARADOR || caracter == COMILLAS || caracter == '\n' || caracter == '\r';
+		}
+		if (!entrecomillar) {
+			salida.write(campo);
+			return;
+		}
+		salida.write(COMILLAS);
+		for (int i = 0; i < campo.length(); i++) {
+			char caracter = campo.charAt(i);
+			if (caracter == COMILLAS) {
+				salida.write(COMILLAS);
+			}
+			salida.write(caracter);
+		}
+		salida.write(COMILLAS);
+	}
+
+	/**
+	 * Método que escribe una cadena JSON, escapando comillas, barras y caracteres de control.
+	 * @param salida
+	 * @param cadena
+	 * @throws IOException
+	 */
+	public static void escribirCadenaJson(Writer salida, String cadena) throws IOException {
+		salida.write('"');
+		for (int i = 0; i < cadena.length(); i++) {
+			char caracter = cadena.charAt(i);
+			switch (caracter) {
+			case '"':
+				salida.write("\\\"");
+				break;
+			case '\\':
+				salida.write("\\\\");
+				break;
+			case '\n':
+				salida.write("\\n");
+				break;
+			case '\r':
+				salida.write("\\r");
+				break;
+			case '\t':
+				salida.write("\\t");
+				break;
+			default:
+				if (caracter < 0x20) {
+					salida.write(String.format("\\u%04x", (int) caracter));
+				} else {
+					salida.write(caracter);
+				}
+			}
+		}
+		salida.write('"');
+	}
+
+
+	/**
+	 * Escritura de un elemento en un formato, que puede lanzar IOException.
+	 */
+	@FunctionalInterface
+	interface Escritura<T> {
+
+		void escribir(Writer salida, T elemento, FormatoExportacion formato) throws IOException;
+	}
+
+}
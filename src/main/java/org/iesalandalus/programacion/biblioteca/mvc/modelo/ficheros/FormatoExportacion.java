@@ -0,0 +1,30 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+public enum FormatoExportacion {
+
+	CSV("CSV"),
+	JSON_LINES("JSON Lines");
+
+	/**
+	 * Atributo:
+	 */
+	private final String cadenaAMostrar;
+
+	/**
+	 * Constructor:
+	 * @param cadenaAMostrar: Texto a mostrar.
+	 */
+	private FormatoExportacion(String cadenaAMostrar) {
+		this.cadenaAMostrar = cadenaAMostrar;
+	}
+
+	/**
+	 * Método toString:
+	 * Devolverá el valor almacenado en la variable cadenaAMostrar.
+	 */
+	@Override
+	public String toString() {
+		return cadenaAMostrar;
+	}
+
+}
@@ -0,0 +1,420 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+/**
+ * Generador de alumnos, libros y préstamos sintéticos con la forma de los datos
+ * reales de la biblioteca, para pruebas de carga y benchmarks.
+ *
+ * - Los alumnos se reparten por igual entre los cuatro cursos.
+ * - La popularidad de los libros sigue una ley de Zipf: el libro de rango r (el
+ *   libro r, empezando por 0) se presta en proporción a 1 / (r + 1)^exponente.
+ * - Los préstamos caen en días lectivos (de lunes a viernes, del 15 de septiembre
+ *   al 23 de junio) de los últimos cursos escolares, sin pasar de la fecha de hoy.
+ * - Tres de cada cuatro devoluciones llegan dentro de MAX_DIAS_PRESTAMO, casi una
+ *   de cada cinco llega tarde, hasta el triple del plazo, y el resto no llega. Si
+ *   la devolución caería después de hoy, el préstamo sigue abierto.
+ *
+ * Todo sale de la semilla: con la misma semilla, las mismas cantidades y la misma
+ * fecha de hoy se generan siempre los mismos datos, en el mismo orden. Los alumnos
+ * y libros se calculan a partir de su posición, sin guardarlos, así que se pueden
+ * generar colecciones de cualquier tamaño; de los préstamos solo se guardan los
+ * pares de alumno y libro ya usados, para no repetirlos.
+ */
+public class GeneradorDatos {
+
+	/*********ATRIBUTOS*********/
+
+	private static final double EXPONENTE_ZIPF_POR_DEFECTO = 1.0;
+	private static final int CURSOS_ESCOLARES_POR_DEFECTO = 3;
+	private static final int DIA_INICIO_CURSO = 15;
+	private static final int DIA_FIN_CURSO = 23;
+	// Porcentajes de devoluciones en plazo y con retraso; el resto no se devuelve.
+	private static final int PORCENTAJE_EN_PLAZO = 75;
+	private static final int PORCENTAJE_CON_RETRASO = 20;
+	// Intentos de elegir un libro que el alumno aún no tenga prestado antes de pasar al siguiente libro libre.
+	private static final int INTENTOS_PAR_NUEVO = 32;
+	private static final int INTENTOS_DIA_LECTIVO = 1000;
+	// Constantes para derivar semillas independientes de la semilla principal.
+	private static final long MEZCLA = 0x9E3779B97F4A7C15L;
+	private static final long SEMILLA_ALUMNOS = 1;
+	private static final long SEMILLA_LIBROS = 2;
+	private static final long SEMILLA_PRESTAMOS = 3;
+
+	private static final String[] NOMBRES = { "José", "María", "Andrés", "Lucía", "Ramón", "Carmen", "Álvaro", "Inés", "Jesús",
+			"Sofía", "Raúl", "Paula", "Iván", "Marta", "Óscar", "Elena", "Rubén", "Nuria", "Ángel", "Begoña" };
+	private static final String[] APELLIDOS = { "García", "Jiménez", "Rodríguez", "López", "Martínez", "Sánchez", "Pérez",
+			"Gómez", "Martín", "Ruiz", "Hernández", "Díaz", "Moreno", "Muñoz", "Álvarez", "Romero", "Navarro", "Torres", "Ramírez",
+			"Gil", "Serrano", "Molina", "Castro", "Ortiz", "Rubio", "Marín", "Sanz", "Núñez", "Iglesias", "Medina" };
+	private static final String[] PALABRAS_TITULO = { "La sombra", "El jardín", "Los secretos", "La ciudad", "El viaje",
+			"La isla", "El invierno", "Las cartas", "El silencio", "La memoria", "El río", "Los caminos" };
+	private static final String[] COMPLEMENTOS_TITULO = { "del viento", "de las estrellas", "del olvido", "sin nombre",
+			"de papel", "del norte", "de la noche", "sin final", "del sur", "de la luna" };
+
+	private final long semilla;
+	private final int numAlumnos;
+	private final int numLibros;
+	private final int numPrestamos;
+	private final LocalDate hoy;
+	private final double exponenteZipf;
+	private final int numCursosEscolares;
+	// Probabilidad acumulada de cada libro según su rango; se calcula la primera vez que hace falta.
+	private double[] popularidadAcumulada;
+
+
+	/*******CONSTRUCTORES*******/
+
+	/**
+	 * Constructor con parámetros, con la popularidad de Zipf de exponente 1 y tres cursos escolares.
+	 * @param semilla
+	 * @param numAlumnos
+	 * @param numLibros
+	 * @param numPrestamos
+	 * @param hoy: fecha a partir de la cual no hay préstamos ni devoluciones; no puede ser futura.
+	 */
+	public GeneradorDatos(long semilla, int numAlumnos, int numLibros, int numPrestamos, LocalDate hoy) {
+		this(semilla, numAlumnos, numLibros, numPrestamos, hoy, EXPONENTE_ZIPF_POR_DEFECTO, CURSOS_ESCOLARES_POR_DEFECTO);
+	}
+
+	/**
+	 * Constructor con parámetros.
+	 * @param semilla
+	 * @param numAlumnos
+	 * @param numLibros
+	 * @param numPrestamos: como mucho la mitad de los pares posibles de alumno y libro.
+	 * @param hoy: fecha a partir de la cual no hay préstamos ni devoluciones; no puede ser futura.
+	 * @param exponenteZipf: 0 para que todos los libros sean igual de populares.
+	 * @param numCursosEscolares: cursos escolares hacia atrás, contando el actual, en los que caen los préstamos.
+	 */
+	public GeneradorDatos(long semilla, int numAlumnos, int numLibros, int numPrestamos, LocalDate hoy, double exponenteZipf,
+			int numCursosEscolares) {
+		if (numAlumnos < 0 || numLibros < 0 || numPrestamos < 0) {
+			throw new IllegalArgumentException("ERROR: Las cantidades a generar no pueden ser negativas.");
+		}
+		if (numPrestamos > 0 && (numAlumnos == 0 || numLibros == 0)) {
+			throw new IllegalArgumentException("ERROR: No se pueden generar préstamos sin alumnos o sin libros.");
+		}
+		if (numPrestamos > (long) numAlumnos * numLibros / 2) {
+			throw new IllegalArgumentException("ERROR: Hay demasiados préstamos para tan pocos alumnos y libros.");
+		}
+		if (hoy == null) {
+			throw new NullPointerException("ERROR: La fecha de hoy no puede ser nula.");
+		}
+		if (hoy.isAfter(LocalDate.now())) {
+			throw new IllegalArgumentException("ERROR: La fecha de hoy no puede ser futura.");
+		}
+		if (exponenteZipf < 0 || Double.isNaN(exponenteZipf) || Double.isInfinite(exponenteZipf)) {
+			throw new IllegalArgumentException("ERROR: El exponente de Zipf debe ser un número no negativo.");
+		}
+		if (numCursosEscolares < 1) {
+			throw new IllegalArgumentException("ERROR: Debe haber al menos un curso escolar.");
+		}
+		this.semilla = semilla;
+		this.numAlumnos = numAlumnos;
+		this.numLibros = numLibros;
+		this.numPrestamos = numPrestamos;
+		this.hoy = hoy;
+		this.exponenteZipf = exponenteZipf;
+		this.numCursosEscolares = numCursosEscolares;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que devuelve el alumno de una posición. Su correo lleva la posición, así que no se repite.
+	 * @param posicion: de 0 a numAlumnos - 1.
+	 * @return alumno
+	 */
+	public Alumno getAlumno(int posicion) {
+		comprobarPosicion(posicion, numAlumnos);
+		SplittableRandom azar = azar(SEMILLA_ALUMNOS, posicion);
+		String nombre = elegir(azar, NOMBRES);
+		String apellido1 = elegir(azar, APELLIDOS);
+		String apellido2 = elegir(azar, APELLIDOS);
+		String correo = sinTildes(nombre + "." + apellido1).toLowerCase() + posicion + "@iesalandalus.org";
+		return new Alumno(nombre + " " + apellido1 + " " + apellido2, correo, Curso.values()[azar.nextInt(Curso.values().length)]);
+	}
+
+	/**
+	 * Método que devuelve el libro de una posición, que es también su rango de
+	 * popularidad: el 0 es el más prestado. Su título lleva la posición, así que no se repite.
+	 * @param posicion: de 0 a numLibros - 1.
+	 * @return libro
+	 */
+	public Libro getLibro(int posicion) {
+		comprobarPosicion(posicion, numLibros);
+		SplittableRandom azar = azar(SEMILLA_LIBROS, posicion);
+		String titulo = elegir(azar, PALABRAS_TITULO) + " " + elegir(azar, COMPLEMENTOS_TITULO) + " " + (posicion + 1);
+		String autor = elegir(azar, NOMBRES) + " " + elegir(azar, APELLIDOS);
+		// Entre 48 y unas 1200 páginas, con la mayoría entre 150 y 400.
+		int numPaginas = (int) Math.round(Math.exp(5.6 + 0.45 * azar.nextDouble(-2.0, 2.0) + 0.3 * azar.nextDouble(-2.0, 2.0)));
+		return new Libro(titulo, autor, Math.max(numPaginas, 48));
+	}
+
+	/**
+	 * Método que pasa cada alumno, en orden, a una acción.
+	 * @param accion
+	 */
+	public void recorrerAlumnos(Consumer<? super Alumno> accion) {
+		for (int i = 0; i < numAlumnos; i++) {
+			accion.accept(getAlumno(i));
+		}
+	}
+
+	/**
+	 * Método que pasa cada libro, en orden, a una acción.
+	 * @param accion
+	 */
+	public void recorrerLibros(Consumer<? super Libro> accion) {
+		for (int i = 0; i < numLibros; i++) {
+			accion.accept(getLibro(i));
+		}
+	}
+
+	/**
+	 * Método que pasa cada préstamo, con su devolución si la hay, a una acción.
+	 * Cada alumno tiene como mucho un préstamo de cada libro.
+	 * @param accion
+	 */
+	public void recorrerPrestamos(Consumer<? super Prestamo> accion) {
+		SplittableRandom azar = azar(SEMILLA_PRESTAMOS, 0);
+		Set<Long> pares = new HashSet<>();
+		LocalDate[] iniciosCurso = getIniciosCurso();
+		for (int i = 0; i < numPrestamos; i++) {
+			int alumno = azar.nextInt(numAlumnos);
+			int libro = elegirLibroNuevo(azar, alumno, pares);
+			LocalDate fechaPrestamo = elegirDiaLectivo(azar, iniciosCurso);
+			Prestamo prestamo = new Prestamo(getAlumno(alumno), getLibro(libro), fechaPrestamo);
+			LocalDate fechaDevolucion = elegirDevolucion(azar, fechaPrestamo);
+			if (fechaDevolucion != null) {
+				prestamo.devolver(fechaDevolucion);
+			}
+			accion.accept(prestamo);
+		}
+	}
+
+	/**
+	 * Método que escribe los alumnos, los libros y los préstamos en los ficheros
+	 * alumnos, libros y prestamos de un directorio, con la extensión .csv o .jsonl
+	 * según el formato. Los CSV se pueden importar con ImportadorCsv.
+	 * @param directorio: se crea si no existe.
+	 * @param formato
+	 * @return número de alumnos, libros y préstamos escritos.
+	 * @throws IOException
+	 */
+	public long[] escribir(Path directorio, FormatoExportacion formato) throws IOException {
+		if (directorio == null) {
+			throw new NullPointerException("ERROR: El directorio no puede ser nulo.");
+		}
+		if (formato == null) {
+			throw new NullPointerException("ERROR: El formato no puede ser nulo.");
+		}
+		Files.createDirectories(directorio);
+		String extension = (formato == FormatoExportacion.CSV) ? ".csv" : ".jsonl";
+		long[] escritos = new long[3];
+		try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("alumnos" + extension), StandardCharsets.UTF_8)) {
+			escritos[0] = Exportador.exportar(salida, formato, Exportador.CABECERA_ALUMNOS, this::recorrerAlumnos, Exportador::escribirAlumno);
+		}
+		try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("libros" + extension), StandardCharsets.UTF_8)) {
+			escritos[1] = Exportador.exportar(salida, formato, Exportador.CABECERA_LIBROS, this::recorrerLibros, Exportador::escribirLibro);
+		}
+		try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("prestamos" + extension), StandardCharsets.UTF_8)) {
+			escritos[2] = Exportador.exportar(salida, formato, Exportador.CABECERA_PRESTAMOS, this::recorrerPrestamos,
+					Exportador::escribirPrestamo);
+		}
+		return escritos;
+	}
+
+	/**
+	 * Método que devuelve un generador de aleatorios para un tipo de dato y una
+	 * posición, independiente de los demás, de forma que cada elemento se puede
+	 * calcular por separado y siempre sale igual.
+	 * @param tipo
+	 * @param posicion
+	 * @return azar
+	 */
+	private SplittableRandom azar(long tipo, long posicion) {
+		return new SplittableRandom(semilla * MEZCLA + tipo * (MEZCLA >>> 1) + posicion * (MEZCLA | 1) * 31);
+	}
+
+	/**
+	 * Método que elige un libro según su popularidad, repitiendo si el alumno ya
+	 * lo tiene prestado. Si tras INTENTOS_PAR_NUEVO sigue sin encontrar uno, toma
+	 * el siguiente libro que el alumno no tenga.
+	 * @param azar
+	 * @param alumno
+	 * @param pares: pares de alumno y libro ya usados; se añade el elegido.
+	 * @return libro
+	 */
+	private int elegirLibroNuevo(SplittableRandom azar, int alumno, Set<Long> pares) {
+		int libro = elegirLibro(azar);
+		for (int intento = 1; intento < INTENTOS_PAR_NUEVO && pares.contains(par(alumno, libro)); intento++) {
+			libro = elegirLibro(azar);
+		}
+		while (!pares.add(par(alumno, libro))) {
+			libro = (libro + 1) % numLibros;
+		}
+		return libro;
+	}
+
+	/**
+	 * Método que elige un libro según la ley de Zipf, buscando en la probabilidad acumulada.
+	 * @param azar
+	 * @return libro
+	 */
+	private int elegirLibro(SplittableRandom azar) {
+		double[] acumulada = getPopularidadAcumulada();
+		int posicion = Arrays.binarySearch(acumulada, azar.nextDouble() * acumulada[acumulada.length - 1]);
+		return Math.min(posicion < 0 ? -posicion - 1 : posicion, numLibros - 1);
+	}
+
+	/**
+	 * Método que devuelve la probabilidad acumulada, sin normalizar, de los libros por rango.
+	 * @return acumulada
+	 */
+	private double[] getPopularidadAcumulada() {
+		if (popularidadAcumulada == null) {
+			double[] acumulada = new double[numLibros];
+			double suma = 0;
+			for (int i = 0; i < numLibros; i++) {
+				suma += 1 / Math.pow(i + 1, exponenteZipf);
+				acumulada[i] = suma;
+			}
+			popularidadAcumulada = acumulada;
+		}
+		return popularidadAcumulada;
+	}
+
+	/**
+	 * Método que devuelve el primer día de cada curso escolar, del más antiguo al
+	 * actual. El actual es el último que ha empezado hoy o antes.
+	 * @return iniciosCurso
+	 */
+	private LocalDate[] getIniciosCurso() {
+		LocalDate inicioActual = LocalDate.of(hoy.getYear(), Month.SEPTEMBER, DIA_INICIO_CURSO);
+		if (inicioActual.isAfter(hoy)) {
+			inicioActual = inicioActual.minusYears(1);
+		}
+		LocalDate[] iniciosCurso = new LocalDate[numCursosEscolares];
+		for (int i = 0; i < numCursosEscolares; i++) {
+			iniciosCurso[i] = inicioActual.minusYears(numCursosEscolares - 1 - i);
+		}
+		return iniciosCurso;
+	}
+
+	/**
+	 * Método que elige un día lectivo que no sea posterior a hoy. Solo si tras
+	 * INTENTOS_DIA_LECTIVO no sale ninguno, que únicamente pasa cuando el curso
+	 * acaba de empezar en fin de semana y no hay cursos anteriores, se queda el último.
+	 * @param azar
+	 * @param iniciosCurso
+	 * @return fecha
+	 */
+	private LocalDate elegirDiaLectivo(SplittableRandom azar, LocalDate[] iniciosCurso) {
+		LocalDate fecha;
+		int intento = 0;
+		do {
+			LocalDate inicio = iniciosCurso[azar.nextInt(iniciosCurso.length)];
+			LocalDate fin = LocalDate.of(inicio.getYear() + 1, Month.JUNE, DIA_FIN_CURSO);
+			if (fin.isAfter(hoy)) {
+				fin = hoy;
+			}
+			fecha = inicio.plusDays(azar.nextLong(ChronoUnit.DAYS.between(inicio, fin) + 1));
+		} while (esFinDeSemana(fecha) && ++intento < INTENTOS_DIA_LECTIVO);
+		return fecha;
+	}
+
+	/**
+	 * Método que elige la fecha de devolución de un préstamo.
+	 * @param azar
+	 * @param fechaPrestamo
+	 * @return fechaDevolucion, o null si no se devuelve o se devolvería después de hoy.
+	 */
+	private LocalDate elegirDevolucion(SplittableRandom azar, LocalDate fechaPrestamo) {
+		int tipo = azar.nextInt(100);
+		long dias;
+		if (tipo < PORCENTAJE_EN_PLAZO) {
+			// Más devoluciones a mitad de plazo que el primer o el último día.
+			dias = 1 + (azar.nextInt(Prestamo.MAX_DIAS_PRESTAMO) + azar.nextInt(Prestamo.MAX_DIAS_PRESTAMO)) / 2;
+		} else if (tipo < PORCENTAJE_EN_PLAZO + PORCENTAJE_CON_RETRASO) {
+			dias = Prestamo.MAX_DIAS_PRESTAMO + 1 + azar.nextInt(2 * Prestamo.MAX_DIAS_PRESTAMO);
+		} else {
+			return null;
+		}
+		LocalDate fechaDevolucion = fechaPrestamo.plusDays(dias);
+		return fechaDevolucion.isAfter(hoy) ? null : fechaDevolucion;
+	}
+
+	private static boolean esFinDeSemana(LocalDate fecha) {
+		return fecha.getDayOfWeek() == DayOfWeek.SATURDAY || fecha.getDayOfWeek() == DayOfWeek.SUNDAY;
+	}
+
+	private long par(int alumno, int libro) {
+		return (long) alumno * numLibros + libro;
+	}
+
+	private static String elegir(SplittableRandom azar, String[] opciones) {
+		return opciones[azar.nextInt(opciones.length)];
+	}
+
+	private static void comprobarPosicion(int posicion, int cantidad) {
+		if (posicion < 0 || posicion >= cantidad) {
+			throw new IllegalArgumentException("ERROR: La posición debe estar entre 0 y " + (cantidad - 1) + ".");
+		}
+	}
+
+	/**
+	 * Método que quita las tildes y cambia la eñe por ene, para los correos.
+	 * @param cadena
+	 * @return cadena sin tildes
+	 */
+	private static String sinTildes(String cadena) {
+		StringBuilder resultado = new StringBuilder(cadena.length());
+		for (char caracter : cadena.toCharArray()) {
+			int posicion = "ÁÉÍÓÚáéíóúÑñ".indexOf(caracter);
+			resultado.append(posicion < 0 ? caracter : "AEIOUaeiouNn".charAt(posicion));
+		}
+		return resultado.toString();
+	}
+
+	/**
+	 * Método que genera los ficheros desde la línea de órdenes.
+	 * Argumentos: directorio alumnos libros préstamos [semilla] [csv|jsonl].
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.out.println("Uso: GeneradorDatos directorio alumnos libros préstamos [semilla] [csv|jsonl]");
+			return;
+		}
+		long semilla = args.length > 4 ? Long.parseLong(args[4]) : 0;
+		FormatoExportacion formato = args.length > 5 && args[5].equalsIgnoreCase("jsonl") ? FormatoExportacion.JSON_LINES
+				: FormatoExportacion.CSV;
+		GeneradorDatos generador = new GeneradorDatos(semilla, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+				Integer.parseInt(args[3]), LocalDate.now());
+		long[] escritos = generador.escribir(Paths.get(args[0]), formato);
+		System.out.printf("Alumnos: %d, libros: %d, préstamos: %d.%n", escritos[0], escritos[1], escritos[2]);
+	}
+
+}
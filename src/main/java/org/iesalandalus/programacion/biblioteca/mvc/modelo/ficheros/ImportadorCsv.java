@@ -0,0 +1,454 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+/**
+ * Importación masiva de alumnos, libros y préstamos desde ficheros CSV (UTF-8,
+ * campos separados por comas y, si hace falta, entre comillas dobles):
+ * <pre>
+ * alumnos:   nombre,correo,curso          (curso de 1 a 4)
+ * libros:    titulo,autor,numPaginas
+ * préstamos: correo,titulo,autor,fechaPrestamo[,fechaDevolucion]   (fechas dd/MM/yyyy)
+ * </pre>
+ * La primera línea se ignora si es la cabecera con los nombres de los campos.
+ * Un campo entre comillas puede ocupar varias líneas, hasta LINEAS_MAXIMAS_FILA:
+ * una fila que sigue con las comillas abiertas tras ellas se rechaza entera.
+ *
+ * El fichero se lee por lotes de TAMANO_LOTE filas: mientras un lote se inserta
+ * en el modelo, el siguiente se lee y se convierte en paralelo, de modo que la
+ * memoria usada no depende del tamaño del fichero. Cada lote se inserta en
+ * transacciones de TAMANO_TRANSACCION filas, para que las consultas y las demás
+ * modificaciones no esperen a que se inserte el lote entero. Las filas rechazadas
+ * se informan con el número de la línea en que empiezan.
+ */
+public class ImportadorCsv {
+
+	/*********ATRIBUTOS*********/
+
+	private static final int TAMANO_LOTE = 8192;
+	// Filas que se insertan en cada transacción: cuantas más, menos veces se vuelca el registro
+	// de operaciones, pero más tiempo tiene el modelo el cerrojo de escritura.
+	private static final int TAMANO_TRANSACCION = 1024;
+	// Líneas que puede ocupar una fila con campos entre comillas que contienen saltos de línea.
+	private static final int LINEAS_MAXIMAS_FILA = 100;
+	private static final char SEPARADOR = ',';
+	private static final char COMILLAS = '"';
+	private static final char BOM = '\uFEFF';
+	private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+	private static final String CABECERA_ALUMNOS = "nombre,correo,curso";
+	private static final String CABECERA_LIBROS = "titulo,autor,numPaginas";
+	private static final String CABECERA_PRESTAMOS = "correo,titulo,autor,fechaPrestamo";
+
+	private final Modelo modelo;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param modelo: en el que se insertan las filas importadas.
+	 */
+	public ImportadorCsv(Modelo modelo) {
+		if (modelo == null) {
+			throw new NullPointerException("ERROR: El modelo no puede ser nulo.");
+		}
+		this.modelo = modelo;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que importa los alumnos de un fichero CSV.
+	 * @param fichero
+	 * @param rechazos: recibe un mensaje por cada fila rechazada.
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarAlumnos(Path fichero, Consumer<String> rechazos) throws IOException {
+		return importar(fichero, CABECERA_ALUMNOS, ImportadorCsv::convertirAlumno, modelo::insertarAlumnos, rechazos);
+	}
+
+	/**
+	 * Método que importa los libros de un fichero CSV.
+	 * @param fichero
+	 * @param rechazos: recibe un mensaje por cada fila rechazada.
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarLibros(Path fichero, Consumer<String> rechazos) throws IOException {
+		return importar(fichero, CABECERA_LIBROS, ImportadorCsv::convertirLibro, modelo::insertarLibros, rechazos);
+	}
+
+	/**
+	 * Método que importa los préstamos de un fichero CSV. El alumno y el libro de
+	 * cada préstamo tienen que existir ya en el modelo.
+	 * @param fichero
+	 * @param rechazos: recibe un mensaje por cada fila rechazada.
+	 * @return resultado
+	 * @throws IOException
+	 */
+	public ResultadoImportacion importarPrestamos(Path fichero, Consumer<String> rechazos) throws IOException {
+		return importar(fichero, CABECERA_PRESTAMOS, ImportadorCsv::convertirPrestamo, modelo::prestarPrestamos, rechazos);
+	}
+
+	/**
+	 * Método que recorre el fichero por lotes. Cada lote se convierte en paralelo
+	 * mientras se inserta el anterior, en transacciones de TAMANO_TRANSACCION
+	 * filas, y las inserciones se hacen siempre en el orden del fichero.
+	 * @param fichero
+	 * @param cabecera
+	 * @param convertir: pasa los campos de una fila a un objeto válido o lanza una excepción.
+	 * @param insertar: inserta un lote y devuelve las posiciones rechazadas.
+	 * @param rechazos
+	 * @return resultado
+	 * @throws IOException
+	 */
+	private <T> ResultadoImportacion importar(Path fichero, String cabecera, Function<String[], T> convertir,
+			Function<List<T>, Map<Integer, String>> insertar, Consumer<String> rechazos) throws IOException {
+		if (fichero == null) {
+			throw new NullPointerException("ERROR: El fichero no puede ser nulo.");
+		}
+		if (rechazos == null) {
+			throw new NullPointerException("ERROR: El receptor de los rechazos no puede ser nulo.");
+		}
+		long importadas = 0;
+		long rechazadas = 0;
+		try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+			Lote lote = new Lote(0);
+			lote.leer(lector, cabecera);
+			CompletableFuture<List<Fila<T>>> conversion = lote.convertir(convertir);
+			while (conversion != null) {
+				Lote siguiente = new Lote(lote.ultimaLinea);
+				CompletableFuture<List<Fila<T>>> siguienteConversion = null;
+				if (siguiente.leer(lector, null)) {
+					siguienteConversion = siguiente.convertir(convertir);
+				}
+				List<Fila<T>> filas = esperar(conversion);
+				List<T> validas = new ArrayList<>(filas.size());
+				List<Integer> lineasValidas = new ArrayList<>(filas.size());
+				for (Fila<T> fila : filas) {
+					if (fila.error == null) {
+						validas.add(fila.valor);
+						lineasValidas.add(fila.linea);
+					} else {
+						rechazos.accept(mensajeRechazo(fila.linea, fila.error));
+						rechazadas++;
+					}
+				}
+				for (int inicio = 0; inicio < validas.size(); inicio += TAMANO_TRANSACCION) {
+					int fin = Math.min(inicio + TAMANO_TRANSACCION, validas.size());
+					Map<Integer, String> noInsertadas = insertar.apply(validas.subList(inicio, fin));
+					for (Map.Entry<Integer, String> rechazo : noInsertadas.entrySet()) {
+						rechazos.accept(mensajeRechazo(lineasValidas.get(inicio + rechazo.getKey()), rechazo.getValue()));
+					}
+					importadas += fin - inicio - noInsertadas.size();
+					rechazadas += noInsertadas.size();
+				}
+				lote = siguiente;
+				conversion = siguienteConversion;
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return new ResultadoImportacion(importadas, rechazadas);
+	}
+
+	/**
+	 * Método que espera a que termine la conversión de un lote.
+	 * @param conversion
+	 * @return filas
+	 */
+	private static <T> List<Fila<T>> esperar(CompletableFuture<List<Fila<T>>> conversion) {
+		try {
+			return conversion.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Método que devuelve el mensaje con el que se informa de una fila rechazada.
+	 * @param linea
+	 * @param error
+	 * @return mensaje
+	 */
+	private static String mensajeRechazo(int linea, String error) {
+		return "Línea " + linea + ": " + error;
+	}
+
+	/**
+	 * Método que convierte los campos de una fila en un alumno.
+	 * @param campos
+	 * @return alumno
+	 */
+	private static Alumno convertirAlumno(String[] campos) {
+		comprobarNumeroCampos(campos, 3, 3);
+		int numeroCurso = convertirEntero(campos[2], "ERROR: El curso debe ser un número entre 1 y 4.");
+		if (numeroCurso < 1 || numeroCurso > Curso.values().length) {
+			throw new IllegalArgumentException("ERROR: El curso debe ser un número entre 1 y 4.");
+		}
+		return new Alumno(campos[0], campos[1], Curso.values()[numeroCurso - 1]);
+	}
+
+	/**
+	 * Método que convierte los campos de una fila en un libro.
+	 * @param campos
+	 * @return libro
+	 */
+	private static Libro convertirLibro(String[] campos) {
+		comprobarNumeroCampos(campos, 3, 3);
+		int numPaginas = convertirEntero(campos[2], "ERROR: El número de páginas no es un número válido.");
+		return new Libro(campos[0], campos[1], numPaginas);
+	}
+
+	/**
+	 * Método que convierte los campos de una fila en un préstamo, devuelto si trae fecha de devolución.
+	 * @param campos
+	 * @return prestamo
+	 */
+	private static Prestamo convertirPrestamo(String[] campos) {
+		comprobarNumeroCampos(campos, 4, 5);
+		Alumno alumno = Alumno.getAlumnoFicticio(campos[0]);
+		Libro libro = Libro.getLibroFicticio(campos[1], campos[2]);
+		Prestamo prestamo = new Prestamo(alumno, libro, convertirFecha(campos[3]));
+		if (campos.length == 5 && !campos[4].isEmpty()) {
+			prestamo.devolver(convertirFecha(campos[4]));
+		}
+		return prestamo;
+	}
+
+	/**
+	 * Método que comprueba que una fila tiene un número de campos admitido.
+	 * @param campos
+	 * @param minimo
+	 * @param maximo
+	 */
+	private static void comprobarNumeroCampos(String[] campos, int minimo, int maximo) {
+		if (campos.length < minimo || campos.length > maximo) {
+			throw new IllegalArgumentException("ERROR: La fila tiene " + campos.length + " campos y se esperaban "
+					+ (minimo == maximo ? String.valueOf(minimo) : minimo + " o " + maximo) + ".");
+		}
+	}
+
+	/**
+	 * Método que convierte un campo en un entero.
+	 * @param campo
+	 * @param error: mensaje si el campo no es un entero.
+	 * @return entero
+	 */
+	private static int convertirEntero(String campo, String error) {
+		try {
+			return Integer.parseInt(campo.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(error);
+		}
+	}
+
+	/**
+	 * Método que convierte un campo en una fecha con el mismo formato que se pide por consola.
+	 * @param campo
+	 * @return fecha
+	 */
+	private static LocalDate convertirFecha(String campo) {
+		try {
+			return LocalDate.parse(campo.trim(), FORMATO_FECHA);
+		} catch (DateTimeException e) {
+			throw new IllegalArgumentException("ERROR: El formato de la fecha no es correcto.");
+		}
+	}
+
+	/**
+	 * Método que indica si una fila CSV acaba con las comillas de un campo
+	 * abiertas, es decir, si el campo sigue en la línea siguiente. Sigue las mismas
+	 * reglas que dividir.
+	 * @param fila
+	 * @return true si quedan comillas abiertas.
+	 */
+	static boolean quedanComillasAbiertas(String fila) {
+		if (fila.indexOf(COMILLAS) < 0) {
+			return false;
+		}
+		boolean entreComillas = false;
+		boolean inicioCampo = true;
+		for (int i = 0; i < fila.length(); i++) {
+			char caracter = fila.charAt(i);
+			if (entreComillas) {
+				if (caracter == COMILLAS) {
+					if (i + 1 < fila.length() && fila.charAt(i + 1) == COMILLAS) {
+						i++;
+					} else {
+						entreComillas = false;
+					}
+				}
+			} else if (caracter == COMILLAS && inicioCampo) {
+				entreComillas = true;
+				inicioCampo = false;
+			} else {
+				inicioCampo = caracter == SEPARADOR;
+			}
+		}
+		return entreComillas;
+	}
+
+	/**
+	 * Método que separa los campos de una fila CSV. Un campo entre comillas puede
+	 * contener comas y saltos de línea, y dos comillas seguidas dentro de él
+	 * representan unas comillas.
+	 * @param linea
+	 * @return campos
+	 */
+	static String[] dividir(String linea) {
+		List<String> campos = new ArrayList<>();
+		StringBuilder campo = new StringBuilder();
+		boolean entreComillas = false;
+		for (int i = 0; i < linea.length(); i++) {
+			char caracter = linea.charAt(i);
+			if (entreComillas) {
+				if (caracter == COMILLAS) {
+					if (i + 1 < linea.length() && linea.charAt(i + 1) == COMILLAS) {
+						campo.append(COMILLAS);
+						i++;
+					} else {
+						entreComillas = false;
+					}
+				} else {
+					campo.append(caracter);
+				}
+			} else if (caracter == COMILLAS && campo.length() == 0) {
+				entreComillas = true;
+			} else if (caracter == SEPARADOR) {
+				campos.add(campo.toString());
+				campo.setLength(0);
+			} else {
+				campo.append(caracter);
+			}
+		}
+		if (entreComillas) {
+			throw new IllegalArgumentException("ERROR: Hay unas comillas sin cerrar.");
+		}
+		campos.add(campo.toString());
+		return campos.toArray(new String[0]);
+	}
+
+
+	/**
+	 * Línea del fichero convertida: el objeto, o el error si la fila no es válida.
+	 */
+	private static class Fila<T> {
+
+		private final int linea;
+		private final T valor;
+		private final String error;
+
+		private Fila(int linea, T valor, String error) {
+			this.linea = linea;
+			this.valor = valor;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Lote de filas leídas del fichero, con el número de la línea en que empieza cada una.
+	 */
+	private static class Lote {
+
+		private final List<String> lineas = new ArrayList<>(TAMANO_LOTE);
+		private final List<Integer> numeros = new ArrayList<>(TAMANO_LOTE);
+		private int ultimaLinea;
+
+		private Lote(int ultimaLinea) {
+			this.ultimaLinea = ultimaLinea;
+		}
+
+		/**
+		 * Método que lee hasta TAMANO_LOTE filas no vacías. Si una línea deja las
+		 * comillas de un campo abiertas, la fila sigue en las siguientes, hasta
+		 * LINEAS_MAXIMAS_FILA; si tras ellas siguen abiertas, dividir la rechaza.
+		 * @param lector
+		 * @param cabecera: si no es nula, se descarta la primera línea cuando coincide con ella.
+		 * @return true si se leyó alguna fila
+		 */
+		private boolean leer(BufferedReader lector, String cabecera) {
+			try {
+				String linea;
+				while (lineas.size() < TAMANO_LOTE && (linea = lector.readLine()) != null) {
+					ultimaLinea++;
+					if (ultimaLinea == 1) {
+						if (!linea.isEmpty() && linea.charAt(0) == BOM) {
+							linea = linea.substring(1);
+						}
+						if (cabecera != null && linea.trim().toLowerCase().startsWith(cabecera.toLowerCase())) {
+							continue;
+						}
+					}
+					int primeraLinea = ultimaLinea;
+					String siguiente;
+					if (quedanComillasAbiertas(linea)) {
+						StringBuilder fila = new StringBuilder(linea);
+						while (ultimaLinea - primeraLinea + 1 < LINEAS_MAXIMAS_FILA && quedanComillasAbiertas(linea)
+								&& (siguiente = lector.readLine()) != null) {
+							ultimaLinea++;
+							linea = fila.append('\n').append(siguiente).toString();
+						}
+					}
+					if (!linea.trim().isEmpty()) {
+						lineas.add(linea);
+						numeros.add(primeraLinea);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return !lineas.isEmpty();
+		}
+
+		/**
+		 * Método que convierte en paralelo las líneas del lote, conservando su orden.
+		 * @param convertir
+		 * @return conversion
+		 */
+		private <T> CompletableFuture<List<Fila<T>>> convertir(Function<String[], T> convertir) {
+			if (lineas.isEmpty()) {
+				return null;
+			}
+			return CompletableFuture.supplyAsync(() -> {
+				List<Fila<T>> filas = new ArrayList<>(lineas.size());
+				IntStream.range(0, lineas.size()).parallel().mapToObj(i -> {
+					try {
+						return new Fila<>(numeros.get(i), convertir.apply(dividir(lineas.get(i))), null);
+					} catch (IllegalArgumentException | NullPointerException e) {
+						return new Fila<T>(numeros.get(i), null, e.getMessage());
+					}
+				}).forEachOrdered(filas::add);
+				return filas;
+			});
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+/**
+ * Número de filas importadas y rechazadas de un fichero.
+ */
+public class ResultadoImportacion {
+
+	/*********ATRIBUTOS*********/
+
+	private final long importadas;
+	private final long rechazadas;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param importadas
+	 * @param rechazadas
+	 */
+	public ResultadoImportacion(long importadas, long rechazadas) {
+		this.importadas = importadas;
+		this.rechazadas = rechazadas;
+	}
+
+
+	/*********GETTERS**********/
+
+	/**
+	 * Método que devuelve el número de filas importadas.
+	 * @return importadas
+	 */
+	public long getImportadas() {
+		return importadas;
+	}
+
+	/**
+	 * Método que devuelve el número de filas rechazadas.
+	 * @return rechazadas
+	 */
+	public long getRechazadas() {
+		return rechazadas;
+	}
+
+	/**
+	 * Método toString.
+	 */
+	@Override
+	public String toString() {
+		return String.format("Filas importadas: %d. Filas rechazadas: %d.", importadas, rechazadas);
+	}
+
+}
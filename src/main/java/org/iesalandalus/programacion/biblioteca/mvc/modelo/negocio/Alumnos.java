@@ -1,8 +1,11 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -12,7 +15,17 @@ public class Alumnos {
 
 	/*********ATRIBUTOS*********/
 	
-	private List<Alumno> coleccionAlumnos;
+	// Alumnos indexados por su correo (clave primaria) y ordenados por él, que es el orden en que se listan.
+	// Son de solo lectura, así que los listados los comparten en lugar de copiarlos.
+	// Una lista por saltos admite lecturas mientras otro hilo la modifica, sin quedar atrapadas en un recorrido a medias.
+	private NavigableMap<String, Alumno> coleccionAlumnos;
+	// Versión de la colección, que se incrementa al terminar cada modificación. Es atómica porque
+	// el modelo inserta y borra a la vez alumnos de distintas franjas.
+	private final AtomicLong version = new AtomicLong();
+	// Última copia ordenada devuelta por get(), con la versión de la colección a partir de la que se hizo.
+	private volatile CopiaOrdenada<Alumno> alumnosOrdenados;
+	// Copias que hace get() y cuánto tardan.
+	private final CosteCopias coste = new CosteCopias();
 	
 		
 	/*******CONSTRUCTORES*******/
@@ -20,34 +33,58 @@ public class Alumnos {
 	 * Constructor sin parámetros.
 	 */
 	public Alumnos () throws NullPointerException, IllegalArgumentException {
-		coleccionAlumnos = new ArrayList<>();
+		coleccionAlumnos = new ConcurrentSkipListMap<>();
 	}
 
 	
 	/**
-	 * Método que devuelve una copia profunda de la colección.
+	 * Método que devuelve una copia de la colección, ordenada por correo.
+	 * La copia no se puede modificar y se reutiliza mientras la colección no cambie,
+	 * así que sus alumnos son los de la colección, de solo lectura: si quien la
+	 * recibe pudiera cambiar su curso, cambiaría también lo que ven los siguientes
+	 * listados.
 	 * @return alumnosOrdenados
 	 */
 	public List<Alumno> get() throws NullPointerException, IllegalArgumentException {
-		List<Alumno> alumnosOrdenados = copiaProfundaAlumnos();
-		alumnosOrdenados.sort(Comparator.comparing(Alumno::getCorreo));
-		return alumnosOrdenados;
+		long versionActual = version.get();
+		CopiaOrdenada<Alumno> copia = alumnosOrdenados;
+		if (copia == null || !copia.esVersion(versionActual)) {
+			EventoRecorrido evento = new EventoRecorrido();
+			evento.begin();
+			long inicio = System.nanoTime();
+			List<Alumno> copiaAlumnos = new ArrayList<>(coleccionAlumnos.values());
+			coste.anotarCopia(copiaAlumnos.size(), System.nanoTime() - inicio);
+			evento.terminar("Alumnos", "get", copiaAlumnos.size());
+			copia = new CopiaOrdenada<>(copiaAlumnos, versionActual);
+			alumnosOrdenados = copia;
+		}
+		return copia.getLista();
 	}
 	
 	
 	/**
-	 * Método que devuelve una copia de la colección de alumnos.
-	 * @return copiaAlumnos
+	 * Método que devuelve los alumnos, de solo lectura, que siguen a uno dado, por
+	 * correo, como mucho cantidad, sin copiar el resto de la colección. Sirve para
+	 * recorrerla por trozos sin hacer la copia entera de get().
+	 * @param anterior: último del trozo anterior, aunque ya no esté en la colección, o nulo para empezar por el primero.
+	 * @param cantidad
+	 * @return trozo
 	 */
-	private List<Alumno> copiaProfundaAlumnos() throws NullPointerException, IllegalArgumentException {
-		List<Alumno> copiaAlumnos = new ArrayList<>();
-		for (Alumno alumno : coleccionAlumnos) {
-			copiaAlumnos.add(new Alumno(alumno));
+	public List<Alumno> getSiguientes(Alumno anterior, int cantidad) {
+		if (cantidad < 1) {
+			throw new IllegalArgumentException("ERROR: La cantidad debe ser mayor que cero.");
+		}
+		Map<String, Alumno> siguientes = (anterior == null) ? coleccionAlumnos : coleccionAlumnos.tailMap(anterior.getCorreo(), false);
+		List<Alumno> trozo = new ArrayList<>();
+		for (Alumno alumno : siguientes.values()) {
+			trozo.add(alumno);
+			if (trozo.size() == cantidad) {
+				break;
+			}
 		}
-		return copiaAlumnos;
+		return trozo;
 	}
 	
-	
 	/**
 	 *  Método que devuelve el tamaño.
 	 * @return coleccionAlumnos.size()
@@ -56,6 +93,22 @@ public class Alumnos {
 		return coleccionAlumnos.size();
 	}
 	
+	/**
+	 * Método que devuelve cuántas copias ha hecho get() y cuánto han tardado.
+	 * @return coste
+	 */
+	public CosteCopias getCosteCopias() {
+		return coste;
+	}
+	
+	/**
+	 * Método que descarta la copia ordenada guardada, de modo que el siguiente
+	 * get() hará una nueva aunque la colección no haya cambiado.
+	 */
+	public void vaciarCache() {
+		alumnosOrdenados = null;
+	}
+	
 		
 	/********OTROS MÉTODOS********/
 	
@@ -68,16 +121,18 @@ public class Alumnos {
 		if (alumno == null) {
 			throw new NullPointerException("ERROR: No se puede insertar un alumno nulo.");
 		}
-		int indice = coleccionAlumnos.indexOf(alumno);
-		if (indice == -1) {
-			coleccionAlumnos.add(new Alumno(alumno));
+		if (!coleccionAlumnos.containsKey(alumno.getCorreo())) {
+			coleccionAlumnos.put(alumno.getCorreo(), Alumno.getAlumnoSoloLectura(alumno));
+			version.incrementAndGet();
 		} else {
 			throw new OperationNotSupportedException("ERROR: Ya existe un alumno con ese correo.");
 		}
 	}
 
 	/**
-	 * Método que permite buscar un alumno en la colección.
+	 * Método que permite buscar un alumno en la colección. Devuelve el de la
+	 * colección, sin copiarlo: es de solo lectura, así que los préstamos del alumno
+	 * lo comparten en lugar de guardar cada uno su propia copia.
 	 * @param alumno
 	 * @return alumno
 	 */
@@ -85,12 +140,7 @@ public class Alumnos {
 		if (alumno == null) {
 			throw new IllegalArgumentException("ERROR: No se puede buscar un alumno nulo.");
 		}
-		int indice = coleccionAlumnos.indexOf(alumno);
-		if (indice == -1) {
-			return null;
-		} else {
-			return new Alumno(coleccionAlumnos.get(indice));
-		}
+		return coleccionAlumnos.get(alumno.getCorreo());
 	}
 	
 	/**
@@ -102,12 +152,10 @@ public class Alumnos {
 		if (alumno == null) {
 			throw new IllegalArgumentException("ERROR: No se puede borrar un alumno nulo.");
 		}
-		int indice = coleccionAlumnos.indexOf(alumno);
-		if (indice == -1) {
+		if (coleccionAlumnos.remove(alumno.getCorreo()) == null) {
 			throw new OperationNotSupportedException("ERROR: No existe ningún alumno con ese correo.");
-		} else {
-			coleccionAlumnos.remove(indice);
 		}
+		version.incrementAndGet();
 	}
 	
 }
@@ -0,0 +1,77 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+
+/**
+ * Clave con la que se indexa un libro: su título y su autor, que son los campos
+ * que usa Libro.equals. Se ordena por título y después por autor, que es el orden
+ * en que se listan los libros. Guarda su código hash para que buscarla en un
+ * índice no tenga que recorrer las dos cadenas cada vez.
+ */
+final class ClaveLibro implements Comparable<ClaveLibro> {
+
+	/*********ATRIBUTOS*********/
+
+	private final String titulo;
+	private final String autor;
+	private final int hash;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param libro
+	 */
+	ClaveLibro(Libro libro) {
+		titulo = libro.getTitulo();
+		autor = libro.getAutor();
+		hash = 31 * titulo.hashCode() + autor.hashCode();
+	}
+
+
+	/*********GETTERS**********/
+
+	/**
+	 * Método que devuelve el título del libro.
+	 * @return titulo
+	 */
+	String getTitulo() {
+		return titulo;
+	}
+
+	/**
+	 * Método que devuelve el autor del libro.
+	 * @return autor
+	 */
+	String getAutor() {
+		return autor;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	@Override
+	public int compareTo(ClaveLibro otra) {
+		int comparacion = titulo.compareTo(otra.titulo);
+		return (comparacion != 0) ? comparacion : autor.compareTo(otra.autor);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ClaveLibro)) {
+			return false;
+		}
+		ClaveLibro otra = (ClaveLibro) obj;
+		return hash == otra.hash && titulo.equals(otra.titulo) && autor.equals(otra.autor);
+	}
+
+}
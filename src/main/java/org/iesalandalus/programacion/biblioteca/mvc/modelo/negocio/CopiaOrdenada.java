@@ -0,0 +1,51 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copia ordenada de una colección junto a la versión de la colección a partir de
+ * la que se hizo. Se guarda en un único campo volátil para que quien lea la copia
+ * lea también su versión, aunque otro hilo esté guardando una copia nueva.
+ */
+final class CopiaOrdenada<T> {
+
+	/*********ATRIBUTOS*********/
+
+	private final List<T> lista;
+	private final long version;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param lista: se guarda como no modificable.
+	 * @param version
+	 */
+	CopiaOrdenada(List<T> lista, long version) {
+		this.lista = Collections.unmodifiableList(lista);
+		this.version = version;
+	}
+
+
+	/*********GETTERS**********/
+
+	/**
+	 * Método que devuelve la copia, que no se puede modificar.
+	 * @return lista
+	 */
+	List<T> getLista() {
+		return lista;
+	}
+
+	/**
+	 * Método que indica si la copia corresponde a la versión indicada.
+	 * @param version
+	 * @return true si es de esa versión.
+	 */
+	boolean esVersion(long version) {
+		return this.version == version;
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Número de copias profundas y de ordenaciones que ha hecho una colección al
+ * devolver sus listados y el tiempo que ha pasado en ellas. Se puede actualizar
+ * desde varios hilos a la vez sin cerrojos.
+ */
+public final class CosteCopias {
+
+	/*********ATRIBUTOS*********/
+
+	private final LongAdder copias = new LongAdder();
+	private final LongAdder elementosCopiados = new LongAdder();
+	private final LongAdder nanosCopia = new LongAdder();
+	private final LongAdder ordenaciones = new LongAdder();
+	private final LongAdder nanosOrdenacion = new LongAdder();
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que anota una copia profunda.
+	 * @param elementos: número de elementos copiados.
+	 * @param nanos
+	 */
+	void anotarCopia(int elementos, long nanos) {
+		copias.increment();
+		elementosCopiados.add(elementos);
+		nanosCopia.add(nanos);
+	}
+
+	/**
+	 * Método que anota una ordenación.
+	 * @param nanos
+	 */
+	void anotarOrdenacion(long nanos) {
+		ordenaciones.increment();
+		nanosOrdenacion.add(nanos);
+	}
+
+	/**
+	 * Método que suma a este coste el de otra colección.
+	 * @param otro
+	 */
+	public void sumar(CosteCopias otro) {
+		if (otro == null) {
+			throw new NullPointerException("ERROR: El coste a sumar no puede ser nulo.");
+		}
+		copias.add(otro.getCopias());
+		elementosCopiados.add(otro.getElementosCopiados());
+		nanosCopia.add(otro.getNanosCopia());
+		ordenaciones.add(otro.getOrdenaciones());
+		nanosOrdenacion.add(otro.getNanosOrdenacion());
+	}
+
+	/**
+	 * Método que devuelve el número de copias profundas.
+	 * @return copias
+	 */
+	public long getCopias() {
+		return copias.sum();
+	}
+
+	/**
+	 * Método que devuelve el número de elementos copiados en todas las copias.
+	 * @return elementosCopiados
+	 */
+	public long getElementosCopiados() {
+		return elementosCopiados.sum();
+	}
+
+	/**
+	 * Método que devuelve el tiempo total de las copias profundas.
+	 * @return nanosCopia
+	 */
+	public long getNanosCopia() {
+		return nanosCopia.sum();
+	}
+
+	/**
+	 * Método que devuelve el número de ordenaciones.
+	 * @return ordenaciones
+	 */
+	public long getOrdenaciones() {
+		return ordenaciones.sum();
+	}
+
+	/**
+	 * Método que devuelve el tiempo total de las ordenaciones.
+	 * @return nanosOrdenacion
+	 */
+	public long getNanosOrdenacion() {
+		return nanosOrdenacion.sum();
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de la ordenación de un listado que no sale ya
+ * ordenado de sus índices. Mientras no se está grabando no cuesta casi nada.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Ordenacion")
+@Label("Ordenación")
+@Description("Ordenación de los préstamos de un alumno o de un libro.")
+@Category({ "Biblioteca", "Colecciones" })
+final class EventoOrdenacion extends Event {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Listado")
+	String listado;
+
+	@Label("Elementos")
+	int elementos;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param listado
+	 * @param elementos
+	 */
+	void terminar(String listado, int elementos) {
+		if (shouldCommit()) {
+			this.listado = listado;
+			this.elementos = elementos;
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder de un recorrido de toda una colección, como
+ * rehacer la copia ordenada de get() o contar los préstamos abiertos. Mientras
+ * no se está grabando no cuesta casi nada.
+ */
+@Name("org.iesalandalus.programacion.biblioteca.Recorrido")
+@Label("Recorrido completo")
+@Description("Recorrido de todos los elementos de una colección.")
+@Category({ "Biblioteca", "Colecciones" })
+final class EventoRecorrido extends Event {
+
+	/*********ATRIBUTOS*********/
+
+	@Label("Colección")
+	String coleccion;
+
+	@Label("Motivo")
+	String motivo;
+
+	@Label("Elementos")
+	int elementos;
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que termina el evento y, si se está grabando, lo guarda.
+	 * @param coleccion
+	 * @param motivo
+	 * @param elementos
+	 */
+	void terminar(String coleccion, String motivo, int elementos) {
+		if (shouldCommit()) {
+			this.coleccion = coleccion;
+			this.motivo = motivo;
+			this.elementos = elementos;
+			commit();
+		}
+	}
+
+}
@@ -1,8 +1,12 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -12,7 +16,19 @@ public class Libros {
 
 	/*********ATRIBUTOS*********/
 	
-	private List<Libro> coleccionLibros;
+	// Libros indexados por su título y autor (clave primaria). Las búsquedas van a esta tabla hash.
+	private Map<ClaveLibro, Libro> coleccionLibros;
+	// Los mismos libros, ordenados por título y autor, que es el orden en que se listan. Solo lo usan los
+	// listados. Una lista por saltos admite lecturas mientras otro hilo la modifica, sin quedar atrapadas
+	// en un recorrido a medias.
+	private NavigableMap<ClaveLibro, Libro> indiceOrdenado;
+	// Versión de la colección, que se incrementa al terminar cada modificación. Es atómica, como
+	// la de Alumnos, para que no se pierda un incremento aunque dos modificaciones coincidan.
+	private final AtomicLong version = new AtomicLong();
+	// Última copia ordenada devuelta por get(), con la versión de la colección a partir de la que se hizo.
+	private volatile CopiaOrdenada<Libro> librosOrdenados;
+	// Copias profundas que hace get() y cuánto tardan.
+	private final CosteCopias coste = new CosteCopias();
 	
 	
 	/*******CONSTRUCTORES*******/
@@ -21,18 +37,30 @@ public class Libros {
 	 * Constructor sin parámetros.
 	 */
 	public Libros() throws NullPointerException, IllegalArgumentException {
-		coleccionLibros = new ArrayList<>();
+		coleccionLibros = new ConcurrentHashMap<>();
+		indiceOrdenado = new ConcurrentSkipListMap<>();
 	}
 	
 	
 	/**
-	 * Método que devuelve una copia de la colección.
+	 * Método que devuelve una copia ordenada de la colección.
+	 * La copia no se puede modificar y se reutiliza mientras la colección no cambie.
 	 * @return librosOrdenados
 	 */
 	public List<Libro> get() throws NullPointerException, IllegalArgumentException {
-		List<Libro> librosOrdenados = copiaProfundaLibros();
-		librosOrdenados.sort(Comparator.comparing(Libro::getTitulo).thenComparing(Libro::getAutor));
-		return librosOrdenados;
+		long versionActual = version.get();
+		CopiaOrdenada<Libro> copia = librosOrdenados;
+		if (copia == null || !copia.esVersion(versionActual)) {
+			EventoRecorrido evento = new EventoRecorrido();
+			evento.begin();
+			long inicio = System.nanoTime();
+			List<Libro> copiaLibros = copiaProfundaLibros();
+			coste.anotarCopia(copiaLibros.size(), System.nanoTime() - inicio);
+			evento.terminar("Libros", "get", copiaLibros.size());
+			copia = new CopiaOrdenada<>(copiaLibros, versionActual);
+			librosOrdenados = copia;
+		}
+		return copia.getLista();
 	}
 	
 	/**
@@ -41,13 +69,37 @@ public class Libros {
 	 */
 	private List<Libro> copiaProfundaLibros() throws NullPointerException, IllegalArgumentException {
 		List<Libro> copiaLibros = new ArrayList<>();
-		for (Libro libro : coleccionLibros) {
+		for (Libro libro : indiceOrdenado.values()) {
 			copiaLibros.add(new Libro(libro));
 		}
 		return copiaLibros;
 	}
 	
 	
+	
+	/**
+	 * Método que devuelve una copia de los libros que siguen a uno dado, por título y autor,
+	 * como mucho cantidad, sin copiar el resto de la colección. Sirve para
+	 * recorrerla por trozos sin hacer la copia entera de get().
+	 * @param anterior: último del trozo anterior, aunque ya no esté en la colección, o nulo para empezar por el primero.
+	 * @param cantidad
+	 * @return trozo
+	 */
+	public List<Libro> getSiguientes(Libro anterior, int cantidad) {
+		if (cantidad < 1) {
+			throw new IllegalArgumentException("ERROR: La cantidad debe ser mayor que cero.");
+		}
+		Map<ClaveLibro, Libro> siguientes = (anterior == null) ? indiceOrdenado : indiceOrdenado.tailMap(getClave(anterior), false);
+		List<Libro> trozo = new ArrayList<>();
+		for (Libro libro : siguientes.values()) {
+			trozo.add(new Libro(libro));
+			if (trozo.size() == cantidad) {
+				break;
+			}
+		}
+		return trozo;
+	}
+	
 	/**
 	 * Método que devuelve el tamaño de la colección.
 	 * @return coleccionLibros.size
@@ -56,6 +108,33 @@ public class Libros {
 		return coleccionLibros.size();
 	}
 	
+	/**
+	 * Método que devuelve cuántas copias profundas ha hecho get() y cuánto han tardado.
+	 * @return coste
+	 */
+	public CosteCopias getCosteCopias() {
+		return coste;
+	}
+	
+	/**
+	 * Método que descarta la copia ordenada guardada, de modo que el siguiente
+	 * get() hará una nueva aunque la colección no haya cambiado.
+	 */
+	public void vaciarCache() {
+		librosOrdenados = null;
+	}
+	
+	
+	/**
+	 * Método que devuelve la clave con la que se indexa un libro.
+	 * Está formada por el título y el autor, que son los campos que usa Libro.equals.
+	 * @param libro
+	 * @return clave
+	 */
+	static ClaveLibro getClave(Libro libro) {
+		return new ClaveLibro(libro);
+	}
+	
 
 	/********OTROS MÉTODOS********/
 	
@@ -68,9 +147,12 @@ public class Libros {
 		if (libro == null) {
 			throw new NullPointerException("ERROR: No se puede insertar un libro nulo.");
 		}
-		int indice = coleccionLibros.indexOf(libro);
-		if (indice == -1) {
-			coleccionLibros.add(new Libro(libro));
+		ClaveLibro clave = getClave(libro);
+		if (!coleccionLibros.containsKey(clave)) {
+			Libro libroNuevo = new Libro(libro);
+			coleccionLibros.put(clave, libroNuevo);
+			indiceOrdenado.put(clave, libroNuevo);
+			version.incrementAndGet();
 		} else {
 			throw new OperationNotSupportedException("ERROR: Ya existe un libro con ese título y autor.");
 		}
@@ -78,7 +160,9 @@ public class Libros {
 	
 	
 	/**
-	 * Método que permite buscar un libro en la colección.
+	 * Método que permite buscar un libro en la colección. Devuelve el de la
+	 * colección, sin copiarlo: un libro no se puede modificar, así que los préstamos
+	 * del libro lo comparten en lugar de guardar cada uno su propia copia.
 	 * @param libro
 	 * @return libro
 	 */
@@ -86,12 +170,7 @@ public class Libros {
 		if (libro == null) {
 			throw new IllegalArgumentException("ERROR: No se puede buscar un libro nulo.");
 		}
-		int indice = coleccionLibros.indexOf(libro);
-		if (indice == -1) {
-			return null;
-		} else {
-			return new Libro(coleccionLibros.get(indice));
-		}
+		return coleccionLibros.get(getClave(libro));
 	}
 	
 	/**
@@ -103,12 +182,12 @@ public class Libros {
 		if (libro == null) {
 			throw new IllegalArgumentException("ERROR: No se puede borrar un libro nulo.");
 		}
-		int indice = coleccionLibros.indexOf(libro);
-		if (indice == -1) {
+		ClaveLibro clave = getClave(libro);
+		if (coleccionLibros.remove(clave) == null) {
 			throw new OperationNotSupportedException("ERROR: No existe ningún libro con ese título y autor.");
-		} else {
-			coleccionLibros.remove(indice);
 		}
+		indiceOrdenado.remove(clave);
+		version.incrementAndGet();
 	}
 
 }
@@ -1,11 +1,24 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -14,11 +27,66 @@ import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
 
+/**
+ * Colección de préstamos, repartida en franjas según el correo del alumno.
+ *
+ * Cada franja guarda los préstamos de sus alumnos con sus índices por alumno y
+ * por libro, sus puntos por mes y curso y su versión, de modo que las
+ * modificaciones de alumnos de franjas distintas no comparten ninguna estructura
+ * salvo el índice por meses, que es una lista por saltos. Así el modelo puede
+ * modificar a la vez varias franjas, con un cerrojo por franja; las consultas de
+ * toda la colección juntan las franjas.
+ */
 public class Prestamos {
-
+	
 	/*********ATRIBUTOS*********/
 	
-	private List<Prestamo> coleccionPrestamos;
+	// Número de franjas en que se reparten los préstamos. Es una potencia de dos.
+	public static final int NUM_FRANJAS = 16;
+	private static final char SEPARADOR_CLAVE = '\u001F';
+	// Orden en que se listan los préstamos: fecha de préstamo, nombre del alumno y título
+	// y autor del libro. El correo del alumno desempata préstamos que coinciden en todo lo anterior.
+	private static final Comparator<Prestamo> ORDEN_PRESTAMOS = Comparator.comparing(Prestamo::getFechaPrestamo)
+			.thenComparing(prestamo -> prestamo.getAlumno().getNombre())
+			.thenComparing(prestamo -> prestamo.getLibro().getTitulo())
+			.thenComparing(prestamo -> prestamo.getLibro().getAutor())
+			.thenComparing(prestamo -> prestamo.getAlumno().getCorreo());
+	// Préstamos de cada franja.
+	private final Franja[] franjas;
+	// Índice secundario: préstamos de cada mes, según su fecha de préstamo, en el orden en que se listan.
+	// Son listas por saltos para que se puedan recorrer y modificar desde varias franjas a la vez.
+	// Los meses no se quitan al quedarse vacíos: otra franja podría estar añadiendo un préstamo.
+	private NavigableMap<YearMonth, NavigableSet<Prestamo>> prestamosPorMes;
+	// Última copia ordenada devuelta por get(), con la versión de la colección a partir de la que se hizo.
+	private volatile CopiaOrdenada<Prestamo> prestamosOrdenados;
+	// Copias profundas y ordenaciones que hacen los listados y cuánto tardan.
+	private final CosteCopias coste = new CosteCopias();
+	
+	/**
+	 * Préstamos de los alumnos de una franja.
+	 */
+	private static final class Franja {
+		
+		// Préstamos indexados por el correo del alumno y el título y autor del libro, en orden de inserción.
+		private final Map<String, Prestamo> coleccionPrestamos = new LinkedHashMap<>();
+		// Índice secundario: préstamos de cada alumno, por su correo.
+		// Los índices y los puntos son mapas concurrentes para que se puedan consultar sin bloquear la franja.
+		private final Map<String, Map<String, Prestamo>> prestamosPorAlumno = new ConcurrentHashMap<>();
+		// Índice secundario: préstamos de cada libro, por su clave.
+		private final Map<ClaveLibro, Map<String, Prestamo>> prestamosPorLibro = new ConcurrentHashMap<>();
+		// Puntos acumulados por cada curso en cada mes, actualizados en cada operación. Los mapas de
+		// cada mes tienen ya todos los cursos, así que sumarles puntos no cambia su estructura.
+		private final Map<YearMonth, Map<Curso, Integer>> puntosPorMes = new ConcurrentHashMap<>();
+		// Versión de la franja, que se incrementa al terminar cada modificación.
+		private volatile long version;
+		// Mientras hay un lote abierto: préstamos pendientes de añadir (true) o quitar (false) del índice
+		// por meses, en qué orden llegaron (una lista compartida por todas las franjas si el lote es de
+		// todas), puntos pendientes de sumar por mes y curso y si se ha modificado algo.
+		private Map<Prestamo, Boolean> cambiosMesLote;
+		private List<Prestamo> ordenCambiosMesLote;
+		private Map<YearMonth, Map<Curso, Integer>> puntosLote;
+		private boolean modificadoEnLote;
+	}
 	
 	
 	/*******CONSTRUCTORES*******/
@@ -27,44 +95,181 @@ public class Prestamos {
 	 * Constructor sin parámetros.
 	 */
 	public Prestamos() throws NullPointerException, IllegalArgumentException {
-		coleccionPrestamos = new ArrayList<>();
+		franjas = new Franja[NUM_FRANJAS];
+		for (int i = 0; i < NUM_FRANJAS; i++) {
+			franjas[i] = new Franja();
+		}
+		prestamosPorMes = new ConcurrentSkipListMap<>();
+	}
+	
+	
+	/**
+	 * Método que devuelve la franja a la que pertenecen los préstamos de un alumno.
+	 * @param correo: correo del alumno.
+	 * @return franja, entre 0 y NUM_FRANJAS - 1.
+	 */
+	public static int getFranja(String correo) {
+		if (correo == null) {
+			throw new NullPointerException("ERROR: El correo no puede ser nulo.");
+		}
+		int hash = correo.hashCode();
+		return (hash ^ (hash >>> 16)) & (NUM_FRANJAS - 1);
+	}
+	
+	/**
+	 * Método que devuelve la franja de un alumno.
+	 * @param alumno
+	 * @return franja
+	 */
+	private Franja getFranja(Alumno alumno) {
+		return franjas[getFranja(alumno.getCorreo())];
 	}
-
 	
 	/**
-	 * Método que devuelve una copia de la colección.
+	 * Método que devuelve la versión de la colección: la suma de las versiones de
+	 * las franjas, que solo crecen, así que cambia con cualquier modificación.
+	 * @return version
+	 */
+	private long getVersion() {
+		long version = 0;
+		for (Franja franja : franjas) {
+			version += franja.version;
+		}
+		return version;
+	}
+	
+	/**
+	 * Método que devuelve una copia ordenada de la colección.
+	 * La copia no se puede modificar y se reutiliza mientras la colección no cambie,
+	 * así que sus préstamos son de solo lectura: si quien la recibe pudiera
+	 * devolverlos, cambiaría también lo que ven los siguientes listados.
 	 * @return prestamosOrdenados
 	 */
 	public List<Prestamo> get() throws NullPointerException, IllegalArgumentException {
-		List<Prestamo> prestamosOrdenados = copiaProfundaPrestamos();
-		Comparator<Alumno> comparadorAlumno = Comparator.comparing(Alumno::getNombre);
-		Comparator<Libro> comparadorLibro = Comparator.comparing(Libro::getTitulo).thenComparing(Libro::getAutor);
-		Comparator<Prestamo> comparadorPrestamo = Comparator.comparing(Prestamo::getFechaPrestamo)
-				.thenComparing(Prestamo::getAlumno, comparadorAlumno)
-				.thenComparing(Prestamo::getLibro, comparadorLibro);
-		prestamosOrdenados.sort(comparadorPrestamo);
-		
-		return prestamosOrdenados;
+		long versionActual = getVersion();
+		CopiaOrdenada<Prestamo> copia = prestamosOrdenados;
+		if (copia == null || !copia.esVersion(versionActual)) {
+			EventoRecorrido evento = new EventoRecorrido();
+			evento.begin();
+			long inicio = System.nanoTime();
+			List<Prestamo> copiaPrestamos = new ArrayList<>(getTamano());
+			for (NavigableSet<Prestamo> prestamosMes : prestamosPorMes.values()) {
+				for (Prestamo prestamo : prestamosMes) {
+					copiaPrestamos.add(Prestamo.getPrestamoSoloLectura(prestamo));
+				}
+			}
+			coste.anotarCopia(copiaPrestamos.size(), System.nanoTime() - inicio);
+			evento.terminar("Prestamos", "get", copiaPrestamos.size());
+			copia = new CopiaOrdenada<>(copiaPrestamos, versionActual);
+			prestamosOrdenados = copia;
+		}
+		return copia.getLista();
 	}
 	
 	/**
-	 * Método que devuelve una copia de la colección de alumnos.
-	 * @return copiaAlumnos
+	 * Método que devuelve una copia de solo lectura de los préstamos que siguen a
+	 * uno dado, en el orden de get(), como mucho cantidad, sin copiar el resto de
+	 * la colección. Los toma del índice por meses, que ya está en ese orden, así
+	 * que sirve para recorrer la colección por trozos sin hacer la copia de get().
+	 * @param anterior: último del trozo anterior, aunque ya no esté en la colección, o nulo para empezar por el primero.
+	 * @param cantidad
+	 * @return trozo
 	 */
-	private List<Prestamo> copiaProfundaPrestamos() throws NullPointerException, IllegalArgumentException {
-		List<Prestamo> copiaPrestamos = new ArrayList<>();
-		for (Prestamo prestamo : coleccionPrestamos) {
-			copiaPrestamos.add(new Prestamo(prestamo));
+	public List<Prestamo> getSiguientes(Prestamo anterior, int cantidad) {
+		if (cantidad < 1) {
+			throw new IllegalArgumentException("ERROR: La cantidad debe ser mayor que cero.");
+		}
+		Map<YearMonth, NavigableSet<Prestamo>> meses = prestamosPorMes;
+		YearMonth mesAnterior = null;
+		if (anterior != null) {
+			mesAnterior = YearMonth.from(anterior.getFechaPrestamo());
+			meses = prestamosPorMes.tailMap(mesAnterior, true);
 		}
-		return copiaPrestamos;
+		List<Prestamo> trozo = new ArrayList<>();
+		for (Map.Entry<YearMonth, NavigableSet<Prestamo>> mes : meses.entrySet()) {
+			NavigableSet<Prestamo> prestamosMes = mes.getKey().equals(mesAnterior) ? mes.getValue().tailSet(anterior, false)
+					: mes.getValue();
+			for (Prestamo prestamo : prestamosMes) {
+				trozo.add(Prestamo.getPrestamoSoloLectura(prestamo));
+				if (trozo.size() == cantidad) {
+					return trozo;
+				}
+			}
+		}
+		return trozo;
 	}
 	
 	/**
 	 *  Método que devuelve el tamaño de la colección.
-	 * @return coleccionPrestamos.size()
+	 * @return tamano
 	 */
 	public int getTamano() {
-		return coleccionPrestamos.size();
+		int tamano = 0;
+		for (Franja franja : franjas) {
+			tamano += franja.coleccionPrestamos.size();
+		}
+		return tamano;
+	}
+	
+	/**
+	 * Método que devuelve el número de préstamos que aún no se han devuelto.
+	 * Recorre todos los préstamos, así que no se debe llamar en cada operación.
+	 * @return abiertos
+	 */
+	public int getNumAbiertos() {
+		EventoRecorrido evento = new EventoRecorrido();
+		evento.begin();
+		int abiertos = 0;
+		for (Franja franja : franjas) {
+			for (Prestamo prestamo : franja.coleccionPrestamos.values()) {
+				if (prestamo.getFechaDevolucion() == null) {
+					abiertos++;
+				}
+			}
+		}
+		evento.terminar("Prestamos", "getNumAbiertos", getTamano());
+		return abiertos;
+	}
+	
+	/**
+	 * Método que devuelve cuántas copias profundas y ordenaciones han hecho los
+	 * listados y cuánto han tardado.
+	 * @return coste
+	 */
+	public CosteCopias getCosteCopias() {
+		return coste;
+	}
+	
+	/**
+	 * Método que descarta la copia ordenada guardada, de modo que el siguiente
+	 * get() hará una nueva aunque la colección no haya cambiado.
+	 */
+	public void vaciarCache() {
+		prestamosOrdenados = null;
+	}
+	
+	
+	/**
+	 * Método que devuelve la clave con la que se indexa un préstamo.
+	 * Está formada por el correo del alumno y el título y el autor del libro, que
+	 * son los campos que usa Prestamo.equals. Ni el título ni el autor pueden
+	 * contener el separador, así que dos préstamos distintos no comparten clave.
+	 * @param prestamo
+	 * @return clave
+	 */
+	static String getClave(Prestamo prestamo) {
+		return getClave(prestamo.getAlumno().getCorreo(), Libros.getClave(prestamo.getLibro()));
+	}
+	
+	/**
+	 * Método que devuelve la clave de un préstamo a partir del correo del alumno
+	 * y de la clave del libro, para quien ya la tiene y no quiere volver a formarla.
+	 * @param correo
+	 * @param claveLibro
+	 * @return clave
+	 */
+	private static String getClave(String correo, ClaveLibro claveLibro) {
+		return correo + SEPARADOR_CLAVE + claveLibro.getTitulo() + SEPARADOR_CLAVE + claveLibro.getAutor();
 	}
 	
 	
@@ -77,22 +282,30 @@ public class Prestamos {
 		if (alumno == null) {
 			throw new NullPointerException("ERROR: El alumno no puede ser nulo.");
 		}
+		long inicio = System.nanoTime();
 		List<Prestamo> prestamosAlumno = new ArrayList<>();
-		for (Prestamo prestamo : coleccionPrestamos) {
-			if (prestamo.getAlumno().equals(alumno)) {
+		Map<String, Prestamo> indiceAlumno = getFranja(alumno).prestamosPorAlumno.get(alumno.getCorreo());
+		if (indiceAlumno != null) {
+			for (Prestamo prestamo : indiceAlumno.values()) {
 				prestamosAlumno.add(new Prestamo(prestamo));
 			}
 		}
+		long finCopia = System.nanoTime();
+		coste.anotarCopia(prestamosAlumno.size(), finCopia - inicio);
+		EventoOrdenacion evento = new EventoOrdenacion();
+		evento.begin();
 		Comparator<Libro> comparadorLibro = Comparator.comparing(Libro::getTitulo).thenComparing(Libro::getAutor);
 		Comparator<Prestamo> comparadorPrestamo = Comparator.comparing(Prestamo::getFechaPrestamo)
 				.thenComparing(Prestamo::getLibro, comparadorLibro);
 		prestamosAlumno.sort(comparadorPrestamo);
-		
+		coste.anotarOrdenacion(System.nanoTime() - finCopia);
+		evento.terminar("get(Alumno)", prestamosAlumno.size());
+	
 		return prestamosAlumno;
 	}
 	
 	/**
-	 * Método que devuelve los préstamos realizados de un libro.
+	 * Método que devuelve los préstamos realizados de un libro, juntando los de todas las franjas.
 	 * @param libro
 	 * @return prestamosLibro
 	 */
@@ -100,17 +313,28 @@ public class Prestamos {
 		if (libro == null) {
 			throw new NullPointerException("ERROR: El libro no puede ser nulo.");
 		}
+		long inicio = System.nanoTime();
 		List<Prestamo> prestamosLibro = new ArrayList<>();
-		for (Prestamo prestamo : coleccionPrestamos) {
-			if (prestamo.getLibro().equals(libro)) {
-				prestamosLibro.add(new Prestamo(prestamo));
+		ClaveLibro claveLibro = Libros.getClave(libro);
+		for (Franja franja : franjas) {
+			Map<String, Prestamo> indiceLibro = franja.prestamosPorLibro.get(claveLibro);
+			if (indiceLibro != null) {
+				for (Prestamo prestamo : indiceLibro.values()) {
+					prestamosLibro.add(new Prestamo(prestamo));
+				}
 			}
 		}
-		Comparator<Alumno> comparadorAlumno = Comparator.comparing(Alumno::getNombre);
+		long finCopia = System.nanoTime();
+		coste.anotarCopia(prestamosLibro.size(), finCopia - inicio);
+		EventoOrdenacion evento = new EventoOrdenacion();
+		evento.begin();
+		Comparator<Alumno> comparadorAlumno = Comparator.comparing(Alumno::getNombre).thenComparing(Alumno::getCorreo);
 		Comparator<Prestamo> comparadorPrestamo = Comparator.comparing(Prestamo::getFechaPrestamo)
 				.thenComparing(Prestamo::getAlumno, comparadorAlumno);
 		prestamosLibro.sort(comparadorPrestamo);
-		
+		coste.anotarOrdenacion(System.nanoTime() - finCopia);
+		evento.terminar("get(Libro)", prestamosLibro.size());
+	
 		return prestamosLibro;
 	}
 	
@@ -123,32 +347,56 @@ public class Prestamos {
 		if (fechaPrestamo == null) {
 			throw new NullPointerException("ERROR: La fecha no puede ser nula.");
 		}
+		long inicio = System.nanoTime();
 		List<Prestamo> prestamosFecha = new ArrayList<>();
-		for (Prestamo prestamo : coleccionPrestamos) {
-			if (mismoMes(prestamo.getFechaPrestamo(), fechaPrestamo)) {
-				prestamosFecha.add(new Prestamo(prestamo));
-			}
+		for (Prestamo prestamo : getPrestamosMes(fechaPrestamo)) {
+			prestamosFecha.add(new Prestamo(prestamo));
 		}
-		Comparator<Alumno> comparadorAlumno = Comparator.comparing(Alumno::getNombre);
-		Comparator<Libro> comparadorLibro = Comparator.comparing(Libro::getTitulo).thenComparing(Libro::getAutor);
-		Comparator<Prestamo> comparadorPrestamo = Comparator.comparing(Prestamo::getFechaPrestamo)
-				.thenComparing(Prestamo::getAlumno, comparadorAlumno)
-				.thenComparing(Prestamo::getLibro, comparadorLibro);
-		prestamosFecha.sort(comparadorPrestamo);
-		
+		coste.anotarCopia(prestamosFecha.size(), System.nanoTime() - inicio);
 		return prestamosFecha;
 	}
 	
 	
 	/**
-	 * Método que devolverá un mapa con los puntos obtenidos por cada curso en un mes dado.
+	 * Método que devolverá un mapa con los puntos obtenidos por cada curso en un
+	 * mes dado, sumando los de todas las franjas.
 	 * @param fecha
 	 * @return estadisticasMensualesPorCurso
 	 */
 	public Map<Curso, Integer> getEstadisticaMensualPorCurso(LocalDate fecha) {
+		if (fecha == null) {
+			throw new NullPointerException("ERROR: La fecha no puede ser nula.");
+		}
+		return getPuntosMes(YearMonth.from(fecha));
+	}
+	
+	/**
+	 * Método que suma los puntos acumulados por cada curso en un mes en todas las franjas.
+	 * @param mes
+	 * @return puntosMes
+	 */
+	private Map<Curso, Integer> getPuntosMes(YearMonth mes) {
+		Map<Curso, Integer> puntosMes = inicializarEstadisticas();
+		for (Franja franja : franjas) {
+			Map<Curso, Integer> puntosFranja = franja.puntosPorMes.get(mes);
+			if (puntosFranja != null) {
+				for (Map.Entry<Curso, Integer> puntosCurso : puntosFranja.entrySet()) {
+					puntosMes.merge(puntosCurso.getKey(), puntosCurso.getValue(), Integer::sum);
+				}
+			}
+		}
+		return puntosMes;
+	}
+	
+	
+	/**
+	 * Método que recalcula desde los préstamos almacenados la estadística por curso de un mes.
+	 * @param mes
+	 * @return estadisticasMensualesPorCurso
+	 */
+	private Map<Curso, Integer> calcularEstadisticaMensualPorCurso(YearMonth mes) {
 		Map<Curso, Integer> estadisticasMensualesPorCurso = inicializarEstadisticas();
-		List<Prestamo> prestamosMensuales = get(fecha);
-		for (Prestamo prestamo : prestamosMensuales) {
+		for (Prestamo prestamo : getPrestamosMes(mes.atDay(1))) {
 			Curso cursoAlumno = prestamo.getAlumno().getCurso();
 			estadisticasMensualesPorCurso.put(cursoAlumno, estadisticasMensualesPorCurso.get(cursoAlumno)
 					+ Math.round(prestamo.getPuntos()));
@@ -157,6 +405,199 @@ public class Prestamos {
 	}
 	
 	
+	/**
+	 * Método que comprueba que los puntos acumulados por mes y curso coinciden
+	 * con los que resultan de recalcularlos a partir de todos los préstamos.
+	 * @return true si son consistentes
+	 */
+	public boolean comprobarEstadisticas() {
+		Set<YearMonth> meses = new HashSet<>(prestamosPorMes.keySet());
+		for (Franja franja : franjas) {
+			meses.addAll(franja.puntosPorMes.keySet());
+		}
+		for (YearMonth mes : meses) {
+			if (!getPuntosMes(mes).equals(calcularEstadisticaMensualPorCurso(mes))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Método que suma (o resta, si son negativos) puntos a la estadística del mes
+	 * y el curso del préstamo en su franja.
+	 * @param franja
+	 * @param prestamo
+	 * @param puntos
+	 */
+	private void sumarPuntos(Franja franja, Prestamo prestamo, int puntos) {
+		if (puntos != 0) {
+			sumarPuntos(franja.puntosLote != null ? franja.puntosLote : franja.puntosPorMes,
+					YearMonth.from(prestamo.getFechaPrestamo()), prestamo.getAlumno().getCurso(), puntos);
+		}
+	}
+	
+	/**
+	 * Método que suma puntos a un mes y un curso de una tabla de puntos.
+	 * @param puntos: tabla de puntos por mes y curso.
+	 * @param mes
+	 * @param curso
+	 * @param cantidad
+	 */
+	private void sumarPuntos(Map<YearMonth, Map<Curso, Integer>> puntos, YearMonth mes, Curso curso, int cantidad) {
+		puntos.computeIfAbsent(mes, mesNuevo -> inicializarEstadisticas()).merge(curso, cantidad, Integer::sum);
+	}
+	
+	/**
+	 * Método que anota que una franja ha cambiado. Fuera de un lote incrementa
+	 * su versión; dentro, se incrementa una sola vez al terminarlo.
+	 * @param franja
+	 */
+	private void marcarModificacion(Franja franja) {
+		if (franja.cambiosMesLote != null) {
+			franja.modificadoEnLote = true;
+		} else {
+			franja.version++;
+		}
+	}
+	
+	/**
+	 * Método que abre un lote de modificaciones en todas las franjas. Hasta que se
+	 * termine, el índice por meses, los puntos y la versión no se actualizan en cada
+	 * operación sino una sola vez al final, de modo que mientras tanto get(),
+	 * get(LocalDate) y las estadísticas no reflejan los cambios del lote. El resto
+	 * de consultas sí.
+	 */
+	public void comenzarLote() {
+		for (Franja franja : franjas) {
+			comprobarSinLote(franja);
+		}
+		List<Prestamo> ordenCambiosMes = new ArrayList<>();
+		for (Franja franja : franjas) {
+			comenzarLote(franja, ordenCambiosMes);
+		}
+	}
+	
+	/**
+	 * Método que abre un lote de modificaciones solo en la franja de un alumno,
+	 * que no debe modificar préstamos de otras franjas. Mientras tanto se pueden
+	 * abrir y terminar lotes de otras franjas.
+	 * @param alumno
+	 */
+	public void comenzarLote(Alumno alumno) {
+		if (alumno == null) {
+			throw new NullPointerException("ERROR: El alumno no puede ser nulo.");
+		}
+		Franja franja = getFranja(alumno);
+		comprobarSinLote(franja);
+		comenzarLote(franja, new ArrayList<>());
+	}
+	
+	/**
+	 * Método que comprueba que una franja no tiene un lote abierto.
+	 * @param franja
+	 */
+	private void comprobarSinLote(Franja franja) {
+		if (franja.cambiosMesLote != null) {
+			throw new IllegalStateException("ERROR: Ya hay un lote abierto.");
+		}
+	}
+	
+	/**
+	 * Método que abre un lote en una franja.
+	 * @param franja
+	 * @param ordenCambiosMes: lista donde se anota el orden de los cambios del índice por meses.
+	 */
+	private void comenzarLote(Franja franja, List<Prestamo> ordenCambiosMes) {
+		franja.cambiosMesLote = new IdentityHashMap<>();
+		franja.ordenCambiosMesLote = ordenCambiosMes;
+		franja.puntosLote = new HashMap<>();
+		franja.modificadoEnLote = false;
+	}
+	
+	/**
+	 * Método que termina el lote abierto en todas las franjas con comenzarLote().
+	 */
+	public void terminarLote() {
+		for (Franja franja : franjas) {
+			comprobarConLote(franja);
+		}
+		aplicarCambiosMes(franjas[0].ordenCambiosMesLote);
+		for (Franja franja : franjas) {
+			terminarLote(franja);
+		}
+	}
+	
+	/**
+	 * Método que termina el lote abierto en la franja de un alumno con comenzarLote(alumno).
+	 * @param alumno
+	 */
+	public void terminarLote(Alumno alumno) {
+		if (alumno == null) {
+			throw new NullPointerException("ERROR: El alumno no puede ser nulo.");
+		}
+		Franja franja = getFranja(alumno);
+		comprobarConLote(franja);
+		aplicarCambiosMes(franja.ordenCambiosMesLote);
+		terminarLote(franja);
+	}
+	
+	/**
+	 * Método que comprueba que una franja tiene un lote abierto.
+	 * @param franja
+	 */
+	private void comprobarConLote(Franja franja) {
+		if (franja.cambiosMesLote == null) {
+			throw new IllegalStateException("ERROR: No hay ningún lote abierto.");
+		}
+	}
+	
+	/**
+	 * Método que aplica al índice por meses los cambios pendientes de un lote.
+	 * Primero se quitan y luego se añaden: un préstamo borrado y vuelto a prestar en
+	 * el mismo lote es otra instancia, igual para el índice que la que se quita.
+	 * Se aplican en el orden en que llegaron, incluso entre franjas, y no en el del
+	 * mapa de cambios, que es aleatorio: si llegan ordenados, como al cargar un
+	 * punto de control, cada inserción en las listas por saltos recorre casi los
+	 * mismos nodos que la anterior. Un préstamo anulado y vuelto a anotar aparece
+	 * dos veces en la lista, pero añadirlo o quitarlo dos veces no cambia el índice.
+	 * @param ordenCambiosMes
+	 */
+	private void aplicarCambiosMes(List<Prestamo> ordenCambiosMes) {
+		for (boolean anadir : new boolean[] { false, true }) {
+			for (Prestamo prestamo : ordenCambiosMes) {
+				Boolean cambio = getFranja(prestamo.getAlumno()).cambiosMesLote.get(prestamo);
+				if (cambio != null && cambio == anadir) {
+					cambiarIndiceMes(prestamo, anadir);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Método que termina el lote abierto en una franja aplicando de una vez los
+	 * puntos pendientes e incrementando su versión. Los cambios del índice por
+	 * meses ya se han aplicado con aplicarCambiosMes().
+	 * @param franja
+	 */
+	private void terminarLote(Franja franja) {
+		for (Map.Entry<YearMonth, Map<Curso, Integer>> puntosMes : franja.puntosLote.entrySet()) {
+			for (Map.Entry<Curso, Integer> puntosCurso : puntosMes.getValue().entrySet()) {
+				if (puntosCurso.getValue() != 0) {
+					sumarPuntos(franja.puntosPorMes, puntosMes.getKey(), puntosCurso.getKey(), puntosCurso.getValue());
+				}
+			}
+		}
+		franja.cambiosMesLote = null;
+		franja.ordenCambiosMesLote = null;
+		franja.puntosLote = null;
+		if (franja.modificadoEnLote) {
+			franja.version++;
+		}
+	}
+	
+	
 	/**
 	 * Método para inicializar las estadísticas.
 	 * @return mapa
@@ -171,22 +612,19 @@ public class Prestamos {
 	
 	
 	/**
-	 * Método que devuelve true o false si las fechas de préstamo son iguales o no.
-	 * @param fechaUno
-	 * @param fechaDos
-	 * @return fechaIgual
+	 * Método que devuelve, sin copiarlos y ya ordenados, los préstamos almacenados del mes de la fecha dada.
+	 * @param fecha
+	 * @return prestamosMes
 	 */
-	private boolean mismoMes(LocalDate fechaUno, LocalDate fechaDos) {
-		boolean fechaIgual = false;
-		int anoUno = fechaUno.getYear();
-		int anoDos = fechaDos.getYear();
-		if (anoUno == anoDos && fechaUno.getMonth().equals(fechaDos.getMonth())) {
-			fechaIgual = true;
+	private Collection<Prestamo> getPrestamosMes(LocalDate fecha) {
+		NavigableSet<Prestamo> prestamosMes = prestamosPorMes.get(YearMonth.from(fecha));
+		if (prestamosMes == null) {
+			return Collections.emptyList();
 		}
-		return fechaIgual;
+		return prestamosMes;
 	}
 	
-
+	
 	/********OTROS MÉTODOS********/
 	
 	/**
@@ -198,9 +636,16 @@ public class Prestamos {
 		if (prestamo == null) {
 			throw new NullPointerException("ERROR: No se puede prestar un préstamo nulo.");
 		}
-		int indice = coleccionPrestamos.indexOf(prestamo);
-		if (indice == -1) {
-			coleccionPrestamos.add(new Prestamo(prestamo));
+		Franja franja = getFranja(prestamo.getAlumno());
+		// La clave del libro se forma una sola vez: la usan la clave del préstamo y los índices.
+		ClaveLibro claveLibro = Libros.getClave(prestamo.getLibro());
+		String clave = getClave(prestamo.getAlumno().getCorreo(), claveLibro);
+		if (!franja.coleccionPrestamos.containsKey(clave)) {
+			Prestamo prestamoNuevo = compartirAlumnoYLibro(franja, prestamo, claveLibro);
+			franja.coleccionPrestamos.put(clave, prestamoNuevo);
+			indexar(franja, clave, claveLibro, prestamoNuevo);
+			sumarPuntos(franja, prestamoNuevo, prestamoNuevo.getPuntos());
+			marcarModificacion(franja);
 		} else {
 			throw new OperationNotSupportedException("ERROR: Ya existe un préstamo igual.");
 		}
@@ -208,7 +653,7 @@ public class Prestamos {
 	
 	
 	/**
-	 * Método para devolver un préstamo. 
+	 * Método para devolver un préstamo.
 	 * @param prestamo
 	 * @param fechaDevolucion
 	 * @throws OperationNotSupportedException
@@ -220,11 +665,14 @@ public class Prestamos {
 		if (fechaDevolucion == null) {
 			throw new NullPointerException("ERROR: La fecha no puede ser nula.");
 		}
-		int indice = coleccionPrestamos.indexOf(prestamo);
-		if (indice == -1) {
+		Franja franja = getFranja(prestamo.getAlumno());
+		Prestamo prestamoEncontrado = franja.coleccionPrestamos.get(getClave(prestamo));
+		if (prestamoEncontrado == null) {
 			throw new OperationNotSupportedException("ERROR: No existe ningún préstamo igual.");
 		} else {
-			coleccionPrestamos.get(indice).devolver(fechaDevolucion);
+			prestamoEncontrado.devolver(fechaDevolucion);
+			sumarPuntos(franja, prestamoEncontrado, prestamoEncontrado.getPuntos());
+			marcarModificacion(franja);
 		}
 	}
 	
@@ -238,11 +686,11 @@ public class Prestamos {
 		if (prestamo == null) {
 			throw new IllegalArgumentException("ERROR: No se puede buscar un préstamo nulo.");
 		}
-		int indice = coleccionPrestamos.indexOf(prestamo);
-		if (indice == -1) {
+		Prestamo prestamoEncontrado = getFranja(prestamo.getAlumno()).coleccionPrestamos.get(getClave(prestamo));
+		if (prestamoEncontrado == null) {
 			return null;
 		} else {
-			return new Prestamo(coleccionPrestamos.get(indice));
+			return new Prestamo(prestamoEncontrado);
 		}
 	}
 	
@@ -255,12 +703,127 @@ public class Prestamos {
 		if (prestamo == null) {
 			throw new IllegalArgumentException("ERROR: No se puede borrar un préstamo nulo.");
 		}
-		int indice = coleccionPrestamos.indexOf(prestamo);
-		if (indice == -1) {
+		Franja franja = getFranja(prestamo.getAlumno());
+		String clave = getClave(prestamo);
+		Prestamo prestamoBorrado = franja.coleccionPrestamos.remove(clave);
+		if (prestamoBorrado == null) {
 			throw new OperationNotSupportedException("ERROR: No existe ningún préstamo igual.");
+		}
+		desindexar(franja, clave, prestamoBorrado);
+		sumarPuntos(franja, prestamoBorrado, -prestamoBorrado.getPuntos());
+		marcarModificacion(franja);
+	}
+	
+	/**
+	 * Método que devuelve la copia del préstamo que se va a almacenar. Los préstamos
+	 * que llegan del modelo ya referencian el alumno y el libro de sus colecciones,
+	 * que se guardan tal cual y comparten todos sus préstamos, sea cual sea su
+	 * franja. Para los demás, si ya hay
+	 * préstamos del mismo alumno o del mismo libro en la franja, con los mismos
+	 * datos, la copia reutiliza su instancia en lugar de guardar otra igual. Si no,
+	 * guarda una copia de solo lectura del alumno, porque quien prestó el préstamo
+	 * puede cambiar el curso del suyo y los listados comparten la que se guarda; el
+	 * libro no se puede modificar y se guarda el del préstamo.
+	 * @param franja
+	 * @param prestamo
+	 * @param claveLibro
+	 * @return prestamoCompartido
+	 */
+	private Prestamo compartirAlumnoYLibro(Franja franja, Prestamo prestamo, ClaveLibro claveLibro) {
+		Alumno alumno = prestamo.getAlumno();
+		Map<String, Prestamo> indiceAlumno = franja.prestamosPorAlumno.get(alumno.getCorreo());
+		if (indiceAlumno != null) {
+			Alumno alumnoCompartido = indiceAlumno.values().iterator().next().getAlumno();
+			if (alumnoCompartido.getNombre().equals(alumno.getNombre()) && alumnoCompartido.getCurso() == alumno.getCurso()) {
+				alumno = alumnoCompartido;
+			}
+		}
+		if (alumno == prestamo.getAlumno()) {
+			alumno = Alumno.getAlumnoSoloLectura(alumno);
+		}
+		Libro libro = prestamo.getLibro();
+		Map<String, Prestamo> indiceLibro = franja.prestamosPorLibro.get(claveLibro);
+		if (indiceLibro != null) {
+			Libro libroCompartido = indiceLibro.values().iterator().next().getLibro();
+			if (libroCompartido.getNumPaginas() == libro.getNumPaginas()) {
+				libro = libroCompartido;
+			}
+		}
+		return Prestamo.getPrestamoCompartido(prestamo, alumno, libro);
+	}
+	
+	/**
+	 * Método que añade un préstamo ya almacenado a los índices secundarios.
+	 * Los índices guardan la misma instancia que la colección, por lo que una
+	 * devolución queda reflejada en ellos sin tener que actualizarlos.
+	 * @param franja
+	 * @param clave
+	 * @param claveLibro
+	 * @param prestamo
+	 */
+	private void indexar(Franja franja, String clave, ClaveLibro claveLibro, Prestamo prestamo) {
+		franja.prestamosPorAlumno.computeIfAbsent(prestamo.getAlumno().getCorreo(), correo -> new ConcurrentHashMap<>())
+				.put(clave, prestamo);
+		franja.prestamosPorLibro.computeIfAbsent(claveLibro, claveNueva -> new ConcurrentHashMap<>())
+				.put(clave, prestamo);
+		anotarCambioMes(franja, prestamo, true);
+	}
+	
+	/**
+	 * Método que elimina un préstamo de los índices secundarios.
+	 * @param franja
+	 * @param clave
+	 * @param prestamo
+	 */
+	private void desindexar(Franja franja, String clave, Prestamo prestamo) {
+		desindexar(franja.prestamosPorAlumno, prestamo.getAlumno().getCorreo(), clave);
+		desindexar(franja.prestamosPorLibro, Libros.getClave(prestamo.getLibro()), clave);
+		anotarCambioMes(franja, prestamo, false);
+	}
+	
+	/**
+	 * Método que añade o quita un préstamo del índice por meses o, si la franja
+	 * tiene un lote abierto, lo deja pendiente. Un cambio pendiente y el contrario se anulan.
+	 * @param franja
+	 * @param prestamo
+	 * @param anadir
+	 */
+	private void anotarCambioMes(Franja franja, Prestamo prestamo, boolean anadir) {
+		if (franja.cambiosMesLote == null) {
+			cambiarIndiceMes(prestamo, anadir);
+		} else if (franja.cambiosMesLote.remove(prestamo) == null) {
+			franja.cambiosMesLote.put(prestamo, anadir);
+			franja.ordenCambiosMesLote.add(prestamo);
+		}
+	}
+	
+	/**
+	 * Método que añade o quita un préstamo del índice por meses.
+	 * @param prestamo
+	 * @param anadir
+	 */
+	private void cambiarIndiceMes(Prestamo prestamo, boolean anadir) {
+		YearMonth mes = YearMonth.from(prestamo.getFechaPrestamo());
+		if (anadir) {
+			prestamosPorMes.computeIfAbsent(mes, mesNuevo -> new ConcurrentSkipListSet<>(ORDEN_PRESTAMOS)).add(prestamo);
 		} else {
-			coleccionPrestamos.remove(indice);
+			prestamosPorMes.get(mes).remove(prestamo);
 		}
 	}
 	
+	/**
+	 * Método que elimina un préstamo del grupo indicado de un índice secundario,
+	 * quitando el grupo si se queda vacío.
+	 * @param indice
+	 * @param claveGrupo
+	 * @param clave
+	 */
+	private <K> void desindexar(Map<K, Map<String, Prestamo>> indice, K claveGrupo, String clave) {
+		Map<String, Prestamo> grupo = indice.get(claveGrupo);
+		grupo.remove(clave);
+		if (grupo.isEmpty()) {
+			indice.remove(claveGrupo);
+		}
+	}
+
 }
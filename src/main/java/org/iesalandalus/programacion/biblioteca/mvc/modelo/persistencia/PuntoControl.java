@@ -0,0 +1,288 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Alumnos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Libros;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+
+/**
+ * Punto de control: copia binaria de todos los alumnos, libros y préstamos en un
+ * único fichero, para que arrancar no dependa de la longitud del registro de
+ * operaciones.
+ *
+ * Formato (versión 1), con enteros en big-endian:
+ * <pre>
+ * int MAGICO, short VERSION, long generacion
+ * int numCadenas, { int longitud, bytes UTF-8 } x numCadenas
+ * int numAlumnos, { int nombre, int correo, byte curso } x numAlumnos
+ * int numLibros, { int titulo, int autor, int numPaginas } x numLibros
+ * int numPrestamos, { int alumno, int libro, int fechaPrestamo, int fechaDevolucion } x numPrestamos
+ * int crc32 de todo lo anterior
+ * </pre>
+ * Los textos se guardan una sola vez en el diccionario de cadenas y se referencian
+ * por su posición; los préstamos referencian al alumno y al libro por su posición
+ * en sus secciones. Las fechas son días desde la época y SIN_FECHA indica que el
+ * préstamo no se ha devuelto.
+ */
+public class PuntoControl {
+
+	/*********ATRIBUTOS*********/
+
+	private static final int MAGICO = 0x42494231;
+	private static final short VERSION = 1;
+	private static final int SIN_FECHA = Integer.MIN_VALUE;
+
+
+	/*******CONSTRUCTOR*******/
+
+	private PuntoControl() {
+		// Evita que se instancie la clase.
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que guarda el punto de control. Se escribe en un fichero temporal que
+	 * después sustituye al anterior, de modo que nunca queda un punto de control a medias.
+	 * Cuando el método termina, el nuevo punto de control y su nombre ya están en disco.
+	 * @param fichero
+	 * @param alumnos
+	 * @param libros
+	 * @param prestamos
+	 * @param generacion
+	 * @throws IOException
+	 */
+	public static void escribir(Path fichero, Alumnos alumnos, Libros libros, Prestamos prestamos, long generacion) throws IOException {
+		if (fichero == null) {
+			throw new NullPointerException("ERROR: El fichero del punto de control no puede ser nulo.");
+		}
+		List<Alumno> listaAlumnos = alumnos.get();
+		List<Libro> listaLibros = libros.get();
+		List<Prestamo> listaPrestamos = prestamos.get();
+
+		Map<String, Integer> diccionario = new HashMap<>();
+		List<String> cadenas = new ArrayList<>();
+		Map<Alumno, Integer> posicionesAlumnos = new HashMap<>();
+		Map<Libro, Integer> posicionesLibros = new HashMap<>();
+		int[] datosAlumnos = new int[listaAlumnos.size() * 2];
+		int[] datosLibros = new int[listaLibros.size() * 2];
+		for (int i = 0; i < listaAlumnos.size(); i++) {
+			Alumno alumno = listaAlumnos.get(i);
+			datosAlumnos[2 * i] = codificar(alumno.getNombre(), diccionario, cadenas);
+			datosAlumnos[2 * i + 1] = codificar(alumno.getCorreo(), diccionario, cadenas);
+			posicionesAlumnos.put(alumno, i);
+		}
+		for (int i = 0; i < listaLibros.size(); i++) {
+			Libro libro = listaLibros.get(i);
+			datosLibros[2 * i] = codificar(libro.getTitulo(), diccionario, cadenas);
+			datosLibros[2 * i + 1] = codificar(libro.getAutor(), diccionario, cadenas);
+			posicionesLibros.put(libro, i);
+		}
+
+		Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+		CRC32 crc = new CRC32();
+		try (CheckedOutputStream comprobado = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)), crc);
+				DataOutputStream salida = new DataOutputStream(comprobado)) {
+			salida.writeInt(MAGICO);
+			salida.writeShort(VERSION);
+			salida.writeLong(generacion);
+			salida.writeInt(cadenas.size());
+			for (String cadena : cadenas) {
+				byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+				salida.writeInt(bytes.length);
+				salida.write(bytes);
+			}
+			salida.writeInt(listaAlumnos.size());
+			for (int i = 0; i < listaAlumnos.size(); i++) {
+				salida.writeInt(datosAlumnos[2 * i]);
+				salida.writeInt(datosAlumnos[2 * i + 1]);
+				salida.writeByte(listaAlumnos.get(i).getCurso().ordinal());
+			}
+			salida.writeInt(listaLibros.size());
+			for (int i = 0; i < listaLibros.size(); i++) {
+				salida.writeInt(datosLibros[2 * i]);
+				salida.writeInt(datosLibros[2 * i + 1]);
+				salida.writeInt(listaLibros.get(i).getNumPaginas());
+			}
+			salida.writeInt(listaPrestamos.size());
+			for (Prestamo prestamo : listaPrestamos) {
+				Integer alumno = posicionesAlumnos.get(prestamo.getAlumno());
+				Integer libro = posicionesLibros.get(prestamo.getLibro());
+				if (alumno == null || libro == null) {
+					throw new IOException("ERROR: Hay préstamos de alumnos o libros que no existen.");
+				}
+				salida.writeInt(alumno);
+				salida.writeInt(libro);
+				salida.writeInt((int) prestamo.getFechaPrestamo().toEpochDay());
+				LocalDate fechaDevolucion = prestamo.getFechaDevolucion();
+				salida.writeInt(fechaDevolucion == null ? SIN_FECHA : (int) fechaDevolucion.toEpochDay());
+			}
+			salida.flush();
+			salida.writeInt((int) crc.getValue());
+		}
+		try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+			canal.force(true);
+		}
+		Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		sincronizarDirectorio(fichero.toAbsolutePath().getParent());
+	}
+
+	/**
+	 * Método que fuerza a disco la entrada del directorio, para que el cambio de
+	 * nombre del punto de control sobreviva a un corte antes de vaciar el registro.
+	 * @param directorio
+	 * @throws IOException
+	 */
+	private static void sincronizarDirectorio(Path directorio) throws IOException {
+		try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+			canal.force(true);
+		} catch (AccessDeniedException e) {
+			// Windows no permite abrir directorios; allí el cambio de nombre ya queda en el diario del sistema de ficheros.
+		}
+	}
+
+	/**
+	 * Método que devuelve la posición de una cadena en el diccionario, añadiéndola si no estaba.
+	 * @param cadena
+	 * @param diccionario
+	 * @param cadenas
+	 * @return posicion
+	 */
+	private static int codificar(String cadena, Map<String, Integer> diccionario, List<String> cadenas) {
+		Integer posicion = diccionario.get(cadena);
+		if (posicion == null) {
+			posicion = cadenas.size();
+			diccionario.put(cadena, posicion);
+			cadenas.add(cadena);
+		}
+		return posicion;
+	}
+
+	/**
+	 * Método que carga el punto de control en las colecciones, que deberían estar
+	 * vacías. El fichero se proyecta en memoria: se comprueba su CRC y
+	 * se recorre después una sola vez, sin copiarlo a un buffer intermedio.
+	 * @param fichero
+	 * @param alumnos
+	 * @param libros
+	 * @param prestamos
+	 * @return la generación del punto de control
+	 * @throws IOException si el fichero no es un punto de control válido
+	 */
+	public static long leer(Path fichero, Alumnos alumnos, Libros libros, Prestamos prestamos) throws IOException {
+		if (fichero == null) {
+			throw new NullPointerException("ERROR: El fichero del punto de control no puede ser nulo.");
+		}
+		try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+			long tamano = canal.size();
+			if (tamano > Integer.MAX_VALUE || tamano < Integer.BYTES) {
+				throw new IOException("ERROR: El tamaño del punto de control no es válido.");
+			}
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+			CRC32 crc = new CRC32();
+			buffer.limit((int) tamano - Integer.BYTES);
+			crc.update(buffer);
+			buffer.limit((int) tamano);
+			if (buffer.getInt() != (int) crc.getValue()) {
+				throw new IOException("ERROR: El punto de control está dañado.");
+			}
+			buffer.rewind();
+			if (buffer.getInt() != MAGICO) {
+				throw new IOException("ERROR: El fichero no es un punto de control.");
+			}
+			short version = buffer.getShort();
+			if (version != VERSION) {
+				throw new IOException("ERROR: Versión del punto de control no soportada: " + version);
+			}
+			long generacion = buffer.getLong();
+			leerColecciones(buffer, alumnos, libros, prestamos);
+			return generacion;
+		}
+	}
+
+	/**
+	 * Método que lee el diccionario y las secciones de alumnos, libros y préstamos.
+	 * Los préstamos se cargan en un único lote, así que el índice por meses, los
+	 * puntos y la versión se actualizan una sola vez al final y no en cada fila.
+	 * @param buffer
+	 * @param alumnos
+	 * @param libros
+	 * @param prestamos
+	 * @throws IOException
+	 */
+	private static void leerColecciones(MappedByteBuffer buffer, Alumnos alumnos, Libros libros, Prestamos prestamos) throws IOException {
+		try {
+			String[] cadenas = new String[buffer.getInt()];
+			byte[] bytes = new byte[64];
+			for (int i = 0; i < cadenas.length; i++) {
+				int longitud = buffer.getInt();
+				if (longitud > bytes.length) {
+					bytes = new byte[Math.max(longitud, bytes.length * 2)];
+				}
+				buffer.get(bytes, 0, longitud);
+				cadenas[i] = new String(bytes, 0, longitud, StandardCharsets.UTF_8);
+			}
+			Curso[] cursos = Curso.values();
+			Alumno[] listaAlumnos = new Alumno[buffer.getInt()];
+			for (int i = 0; i < listaAlumnos.length; i++) {
+				listaAlumnos[i] = new Alumno(cadenas[buffer.getInt()], cadenas[buffer.getInt()], cursos[buffer.get()]);
+				alumnos.insertar(listaAlumnos[i]);
+				listaAlumnos[i] = alumnos.buscar(listaAlumnos[i]);
+			}
+			Libro[] listaLibros = new Libro[buffer.getInt()];
+			for (int i = 0; i < listaLibros.length; i++) {
+				listaLibros[i] = new Libro(cadenas[buffer.getInt()], cadenas[buffer.getInt()], buffer.getInt());
+				libros.insertar(listaLibros[i]);
+				listaLibros[i] = libros.buscar(listaLibros[i]);
+			}
+			int numPrestamos = buffer.getInt();
+			prestamos.comenzarLote();
+			try {
+				for (int i = 0; i < numPrestamos; i++) {
+					Alumno alumno = listaAlumnos[buffer.getInt()];
+					Libro libro = listaLibros[buffer.getInt()];
+					// Los préstamos comparten el alumno y el libro de sus colecciones.
+					Prestamo prestamo = Prestamo.getPrestamoCompartido(new Prestamo(alumno, libro, LocalDate.ofEpochDay(buffer.getInt())),
+							alumno, libro);
+					int fechaDevolucion = buffer.getInt();
+					if (fechaDevolucion != SIN_FECHA) {
+						prestamo.devolver(LocalDate.ofEpochDay(fechaDevolucion));
+					}
+					prestamos.prestar(prestamo);
+				}
+			} finally {
+				prestamos.terminarLote();
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+				| NullPointerException | OperationNotSupportedException e) {
+			throw new IOException("ERROR: El punto de control no es coherente: " + e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,579 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+
+/**
+ * Registro de escritura anticipada (write-ahead log) de las operaciones que
+ * modifican el modelo.
+ *
+ * Cada operación se guarda como un registro binario: longitud, tipo, datos y
+ * CRC32. Quien registra una operación no vuelve hasta que su registro está
+ * escrito y forzado a disco, así que una operación confirmada no se pierde
+ * aunque la aplicación caiga justo después. Los registros se acumulan en memoria
+ * y el primero que los espera escribe y fuerza todos los pendientes; los que
+ * llegan mientras tanto esperan y se escriben juntos en el siguiente volcado,
+ * de forma que una ráfaga de operaciones comparte un único volcado (group commit).
+ *
+ * Las operaciones de una transacción se guardan juntas en un único registro, así
+ * que tras una caída se aplican todas o ninguna.
+ *
+ * El primer registro del fichero indica su generación: la del último punto de
+ * control guardado. Al reproducirlo se descarta si es de una generación anterior,
+ * porque sus operaciones ya están incluidas en el punto de control.
+ */
+public class RegistroOperaciones {
+
+	/*********ATRIBUTOS*********/
+
+	private static final byte GENERACION = 0;
+	private static final byte INSERTAR_ALUMNO = 1;
+	private static final byte INSERTAR_LIBRO = 2;
+	private static final byte PRESTAR = 3;
+	private static final byte DEVOLVER = 4;
+	private static final byte BORRAR_ALUMNO = 5;
+	private static final byte BORRAR_LIBRO = 6;
+	private static final byte BORRAR_PRESTAMO = 7;
+	private static final byte TRANSACCION = 8;
+	private static final int LONGITUD_MAXIMA_REGISTRO = 1 << 26;
+
+	private final FileChannel canal;
+	private final Object escritura = new Object();
+	private ByteArrayOutputStream pendientes = new ByteArrayOutputStream();
+	// Bytes añadidos al registro desde que se abrió y, de ellos, los que ya se han forzado a disco.
+	// Cada registro espera a que los forzados lleguen hasta su final.
+	private long anadidos;
+	private long sincronizados;
+	private IOException errorSincronizacion;
+	private List<byte[]> operacionesTransaccion;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor que abre (o crea) el fichero del registro para añadir operaciones al final.
+	 * @param fichero
+	 * @throws IOException
+	 */
+	public RegistroOperaciones(Path fichero) throws IOException {
+		this(fichero, 0);
+	}
+	
+	/**
+	 * Constructor que abre (o crea) el fichero del registro para añadir operaciones al final.
+	 * Si el fichero está vacío, empieza indicando la generación dada.
+	 * @param fichero
+	 * @param generacion
+	 * @throws IOException
+	 */
+	public RegistroOperaciones(Path fichero, long generacion) throws IOException {
+		this(abrir(fichero), generacion);
+	}
+	
+	/**
+	 * Constructor que escribe en un canal ya abierto para añadir al final. Las
+	 * pruebas lo usan para simular fallos del disco.
+	 * @param canal
+	 * @param generacion
+	 * @throws IOException
+	 */
+	RegistroOperaciones(FileChannel canal, long generacion) throws IOException {
+		this.canal = canal;
+		if (canal.size() == 0) {
+			anadirGeneracion(generacion);
+			sincronizar();
+		}
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que abre (o crea) el fichero del registro para añadir al final.
+	 * @param fichero
+	 * @return canal
+	 * @throws IOException
+	 */
+	private static FileChannel abrir(Path fichero) throws IOException {
+		if (fichero == null) {
+			throw new NullPointerException("ERROR: El fichero del registro no puede ser nulo.");
+		}
+		return FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Método que añade el registro con la generación del fichero.
+	 * @param generacion
+	 */
+	private void anadirGeneracion(long generacion) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(GENERACION);
+			datos.writeLong(generacion);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		anadir(bytes.toByteArray());
+	}
+	
+	/**
+	 * Método que registra la inserción de un alumno.
+	 * @param alumno
+	 */
+	public void registrarInsercion(Alumno alumno) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(INSERTAR_ALUMNO);
+			datos.writeUTF(alumno.getNombre());
+			datos.writeUTF(alumno.getCorreo());
+			datos.writeByte(alumno.getCurso().ordinal());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		anadirOperacion(bytes.toByteArray());
+	}
+
+	/**
+	 * Método que registra la inserción de un libro.
+	 * @param libro
+	 */
+	public void registrarInsercion(Libro libro) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(INSERTAR_LIBRO);
+			datos.writeUTF(libro.getTitulo());
+			datos.writeUTF(libro.getAutor());
+			datos.writeInt(libro.getNumPaginas());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		anadirOperacion(bytes.toByteArray());
+	}
+
+	/**
+	 * Método que registra un préstamo.
+	 * @param prestamo
+	 */
+	public void registrarPrestamo(Prestamo prestamo) {
+		anadirOperacion(codificarPrestamo(PRESTAR, prestamo, prestamo.getFechaPrestamo()));
+	}
+
+	/**
+	 * Método que registra la devolución de un préstamo.
+	 * @param prestamo
+	 * @param fechaDevolucion
+	 */
+	public void registrarDevolucion(Prestamo prestamo, LocalDate fechaDevolucion) {
+		anadirOperacion(codificarPrestamo(DEVOLVER, prestamo, fechaDevolucion));
+	}
+
+	/**
+	 * Método que registra el borrado de un alumno (y, por tanto, de sus préstamos).
+	 * @param alumno
+	 */
+	public void registrarBorrado(Alumno alumno) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(BORRAR_ALUMNO);
+			datos.writeUTF(alumno.getCorreo());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		anadirOperacion(bytes.toByteArray());
+	}
+
+	/**
+	 * Método que registra el borrado de un libro (y, por tanto, de sus préstamos).
+	 * @param libro
+	 */
+	public void registrarBorrado(Libro libro) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(BORRAR_LIBRO);
+			datos.writeUTF(libro.getTitulo());
+			datos.writeUTF(libro.getAutor());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		anadirOperacion(bytes.toByteArray());
+	}
+
+	/**
+	 * Método que registra el borrado de un préstamo.
+	 * @param prestamo
+	 */
+	public void registrarBorrado(Prestamo prestamo) {
+		anadirOperacion(codificarPrestamo(BORRAR_PRESTAMO, prestamo, null));
+	}
+
+	/**
+	 * Método que codifica una operación sobre un préstamo: correo del alumno,
+	 * título y autor del libro y, si se indica, una fecha como día de época.
+	 * @param tipo
+	 * @param prestamo
+	 * @param fecha
+	 * @return bytes
+	 */
+	private byte[] codificarPrestamo(byte tipo, Prestamo prestamo, LocalDate fecha) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream datos = new DataOutputStream(bytes)) {
+			datos.writeByte(tipo);
+			datos.writeUTF(prestamo.getAlumno().getCorreo());
+			datos.writeUTF(prestamo.getLibro().getTitulo());
+			datos.writeUTF(prestamo.getLibro().getAutor());
+			if (fecha != null) {
+				datos.writeInt((int) fecha.toEpochDay());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Método que registra como un único registro todas las operaciones que registre
+	 * la acción, que son las de una transacción ya aplicada en el modelo, y espera
+	 * a que esté forzado a disco.
+	 * @param operaciones
+	 */
+	public void registrarTransaccion(Consumer<RegistroOperaciones> operaciones) {
+		long secuencia;
+		synchronized (this) {
+			List<byte[]> registradas = new ArrayList<>();
+			operacionesTransaccion = registradas;
+			try {
+				operaciones.accept(this);
+			} finally {
+				operacionesTransaccion = null;
+			}
+			secuencia = anadirTransaccion(registradas);
+		}
+		esperarSincronizacion(secuencia);
+	}
+
+	/**
+	 * Método que añade a los pendientes de escribir las operaciones de una
+	 * transacción: la operación sola si es una, o un registro que las agrupa.
+	 * @param registradas
+	 * @return secuencia: bytes añadidos al registro hasta el final de la transacción.
+	 */
+	private long anadirTransaccion(List<byte[]> registradas) {
+		if (registradas.size() == 1) {
+			return anadir(registradas.get(0));
+		} else if (registradas.size() > 1) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (DataOutputStream datos = new DataOutputStream(bytes)) {
+				datos.writeByte(TRANSACCION);
+				datos.writeInt(registradas.size());
+				for (byte[] operacion : registradas) {
+					datos.writeInt(operacion.length);
+					datos.write(operacion);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			if (bytes.size() > LONGITUD_MAXIMA_REGISTRO) {
+				throw new IllegalStateException("ERROR: La transacción es demasiado grande para el registro de operaciones.");
+			}
+			return anadir(bytes.toByteArray());
+		}
+		return anadidos;
+	}
+
+	/**
+	 * Método que añade una operación a la transacción que se está registrando o,
+	 * si no hay ninguna, la registra sola y espera a que esté forzada a disco.
+	 * @param datos
+	 */
+	private void anadirOperacion(byte[] datos) {
+		long secuencia;
+		synchronized (this) {
+			if (operacionesTransaccion != null) {
+				operacionesTransaccion.add(datos);
+				return;
+			}
+			secuencia = anadir(datos);
+		}
+		esperarSincronizacion(secuencia);
+	}
+
+	/**
+	 * Método que añade un registro (longitud, datos y CRC32) a los pendientes de escribir.
+	 * @param datos
+	 * @return secuencia: bytes añadidos al registro hasta el final de este.
+	 */
+	private synchronized long anadir(byte[] datos) {
+		if (errorSincronizacion != null) {
+			throw new IllegalStateException("ERROR: No se pudo escribir en el registro de operaciones: "
+					+ errorSincronizacion.getMessage());
+		}
+		ByteBuffer cabecera = ByteBuffer.allocate(Integer.BYTES);
+		cabecera.putInt(datos.length);
+		pendientes.write(cabecera.array(), 0, Integer.BYTES);
+		pendientes.write(datos, 0, datos.length);
+		cabecera.clear();
+		cabecera.putInt(calcularCrc(datos));
+		pendientes.write(cabecera.array(), 0, Integer.BYTES);
+		anadidos += 2 * Integer.BYTES + datos.length;
+		return anadidos;
+	}
+
+	/**
+	 * Método que espera a que el registro esté forzado a disco hasta la secuencia
+	 * dada. Si aún no lo está, vuelca todos los pendientes, con los que hayan
+	 * añadido otros hilos mientras esperaba. Si el registro no llega a forzarse hasta
+	 * la secuencia, porque falló el volcado de otro hilo que la incluía, también falla.
+	 * @param secuencia
+	 */
+	private void esperarSincronizacion(long secuencia) {
+		try {
+			synchronized (escritura) {
+				if (sincronizados < secuencia) {
+					sincronizar();
+				}
+				if (sincronizados < secuencia) {
+					throw new IOException("el volcado que incluía la operación no llegó a disco");
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("ERROR: No se pudo escribir en el registro de operaciones: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Método que escribe en el fichero todos los registros pendientes y los fuerza a disco.
+	 * Las operaciones registradas mientras se fuerza el volcado irán en el siguiente.
+	 * Si el volcado falla, no se sabe qué parte llegó a disco, así que el registro
+	 * deja de admitir operaciones y los siguientes volcados fallan con el mismo error.
+	 * @throws IOException
+	 */
+	public void sincronizar() throws IOException {
+		synchronized (escritura) {
+			byte[] datos;
+			long hasta;
+			synchronized (this) {
+				if (errorSincronizacion != null) {
+					throw new IOException(errorSincronizacion.getMessage(), errorSincronizacion);
+				}
+				if (pendientes.size() == 0) {
+					return;
+				}
+				datos = pendientes.toByteArray();
+				hasta = anadidos;
+				pendientes = new ByteArrayOutputStream();
+			}
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(datos);
+				while (buffer.hasRemaining()) {
+					canal.write(buffer);
+				}
+				canal.force(false);
+			} catch (IOException e) {
+				synchronized (this) {
+					errorSincronizacion = e;
+				}
+				throw e;
+			}
+			sincronizados = hasta;
+		}
+	}
+
+	/**
+	 * Método que vuelca lo pendiente y cierra el fichero.
+	 * @throws IOException
+	 */
+	public void cerrar() throws IOException {
+		try {
+			sincronizar();
+		} finally {
+			canal.close();
+		}
+	}
+
+	/**
+	 * Método que vacía el fichero del registro después de guardar un punto de
+	 * control que ya incluye todas sus operaciones, y lo empieza con su generación.
+	 * @param generacion: la del punto de control guardado.
+	 * @throws IOException
+	 */
+	public void vaciar(long generacion) throws IOException {
+		synchronized (escritura) {
+			synchronized (this) {
+				pendientes = new ByteArrayOutputStream();
+				sincronizados = anadidos;
+			}
+			canal.truncate(0);
+			anadirGeneracion(generacion);
+		}
+		sincronizar();
+	}
+
+	/**
+	 * Método que aplica sobre el modelo todas las operaciones guardadas en el fichero.
+	 * Si el último registro está incompleto o dañado (por ejemplo, porque la
+	 * aplicación terminó mientras se escribía) se descarta y se recorta el fichero.
+	 * @param fichero
+	 * @param modelo
+	 * @return número de operaciones aplicadas
+	 * @throws IOException si una operación no se puede aplicar
+	 */
+	public static int reproducir(Path fichero, Modelo modelo) throws IOException {
+		return reproducir(fichero, modelo, 0);
+	}
+	
+	/**
+	 * Método que aplica sobre el modelo las operaciones guardadas en el fichero si
+	 * son posteriores al punto de control de la generación dada. Si el fichero es de
+	 * una generación anterior se vacía sin aplicar nada.
+	 * @param fichero
+	 * @param modelo
+	 * @param generacion: la del punto de control cargado en el modelo.
+	 * @return número de operaciones aplicadas
+	 * @throws IOException si una operación no se puede aplicar o el fichero es de una generación posterior
+	 */
+	public static int reproducir(Path fichero, Modelo modelo, long generacion) throws IOException {
+		if (!Files.exists(fichero)) {
+			return 0;
+		}
+		int operaciones = 0;
+		long posicionValida = 0;
+		boolean primerRegistro = true;
+		try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichero)))) {
+			while (true) {
+				byte[] datos;
+				try {
+					int longitud = entrada.readInt();
+					if (longitud <= 0 || longitud > LONGITUD_MAXIMA_REGISTRO) {
+						break;
+					}
+					datos = new byte[longitud];
+					entrada.readFully(datos);
+					if (entrada.readInt() != calcularCrc(datos)) {
+						break;
+					}
+				} catch (EOFException e) {
+					break;
+				}
+				if (primerRegistro && datos[0] == GENERACION) {
+					long generacionRegistro = ByteBuffer.wrap(datos, 1, Long.BYTES).getLong();
+					if (generacionRegistro < generacion) {
+						break;
+					}
+					if (generacionRegistro > generacion) {
+						throw new IOException("ERROR: El registro de operaciones es posterior al punto de control.");
+					}
+				} else {
+					aplicar(datos, modelo);
+					operaciones++;
+				}
+				primerRegistro = false;
+				posicionValida += Integer.BYTES + datos.length + Integer.BYTES;
+			}
+		}
+		if (Files.size(fichero) > posicionValida) {
+			try (FileChannel canalRecorte = FileChannel.open(fichero, StandardOpenOption.WRITE)) {
+				canalRecorte.truncate(posicionValida);
+			}
+		}
+		return operaciones;
+	}
+
+	/**
+	 * Método que decodifica un registro y aplica su operación sobre el modelo.
+	 * @param bytes
+	 * @param modelo
+	 * @throws IOException
+	 */
+	private static void aplicar(byte[] bytes, Modelo modelo) throws IOException {
+		DataInputStream datos = new DataInputStream(new ByteArrayInputStream(bytes));
+		byte tipo = datos.readByte();
+		try {
+			switch (tipo) {
+			case INSERTAR_ALUMNO:
+				modelo.insertar(new Alumno(datos.readUTF(), datos.readUTF(), Curso.values()[datos.readByte()]));
+				break;
+			case INSERTAR_LIBRO:
+				modelo.insertar(new Libro(datos.readUTF(), datos.readUTF(), datos.readInt()));
+				break;
+			case PRESTAR:
+				Alumno alumno = Alumno.getAlumnoFicticio(datos.readUTF());
+				Libro libro = Libro.getLibroFicticio(datos.readUTF(), datos.readUTF());
+				modelo.prestar(new Prestamo(alumno, libro, LocalDate.ofEpochDay(datos.readInt())));
+				break;
+			case DEVOLVER:
+				Prestamo prestamo = leerPrestamoFicticio(datos);
+				modelo.devolver(prestamo, LocalDate.ofEpochDay(datos.readInt()));
+				break;
+			case BORRAR_ALUMNO:
+				modelo.borrar(Alumno.getAlumnoFicticio(datos.readUTF()));
+				break;
+			case BORRAR_LIBRO:
+				modelo.borrar(Libro.getLibroFicticio(datos.readUTF(), datos.readUTF()));
+				break;
+			case BORRAR_PRESTAMO:
+				modelo.borrar(leerPrestamoFicticio(datos));
+				break;
+			case TRANSACCION:
+				int numOperaciones = datos.readInt();
+				for (int i = 0; i < numOperaciones; i++) {
+					byte[] operacion = new byte[datos.readInt()];
+					datos.readFully(operacion);
+					aplicar(operacion, modelo);
+				}
+				break;
+			default:
+				throw new IOException("ERROR: Tipo de operación desconocido en el registro: " + tipo);
+			}
+		} catch (OperationNotSupportedException | IllegalArgumentException | NullPointerException e) {
+			throw new IOException("ERROR: El registro de operaciones no es coherente: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Método que lee el correo del alumno y el título y autor del libro de un
+	 * registro y devuelve el préstamo ficticio correspondiente.
+	 * @param datos
+	 * @return prestamo
+	 * @throws IOException
+	 */
+	private static Prestamo leerPrestamoFicticio(DataInputStream datos) throws IOException {
+		Alumno alumno = Alumno.getAlumnoFicticio(datos.readUTF());
+		Libro libro = Libro.getLibroFicticio(datos.readUTF(), datos.readUTF());
+		return Prestamo.getPrestamoFicticio(alumno, libro);
+	}
+
+	/**
+	 * Método que calcula el CRC32 de los datos de un registro.
+	 * @param datos
+	 * @return crc
+	 */
+	private static int calcularCrc(byte[] datos) {
+		CRC32 crc = new CRC32();
+		crc.update(datos, 0, datos.length);
+		return (int) crc.getValue();
+	}
+
+}
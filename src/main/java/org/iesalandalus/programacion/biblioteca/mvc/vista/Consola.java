@@ -1,5 +1,8 @@
 package org.iesalandalus.programacion.biblioteca.mvc.vista;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -8,6 +11,7 @@ import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.FormatoExportacion;
 import org.iesalandalus.programacion.utilidades.Entrada;
 
 public class Consola {
@@ -167,4 +171,64 @@ public class Consola {
 		}
 		return fecha;
 	}
+	
+	/**
+	 * Método para elegir qué datos contiene un fichero.
+	 * @return 1 para alumnos, 2 para libros y 3 para préstamos.
+	 */
+	public static int elegirDatosFichero() {
+		int datos;
+		do {
+			System.out.print("¿Qué contiene el fichero? (1.- Alumnos, 2.- Libros, 3.- Préstamos): ");
+			datos = Entrada.entero();
+		} while (datos < 1 || datos > 3);
+		return datos;
+	}
+	
+	/**
+	 * Método para elegir el formato de un fichero exportado.
+	 * @return formato
+	 */
+	public static FormatoExportacion elegirFormatoExportacion() {
+		int ordinalFormato;
+		do {
+			System.out.print("Elige el formato (1.- " + FormatoExportacion.CSV + ", 2.- " + FormatoExportacion.JSON_LINES + "): ");
+			ordinalFormato = Entrada.entero();
+		} while (ordinalFormato < 1 || ordinalFormato > FormatoExportacion.values().length);
+		return FormatoExportacion.values()[ordinalFormato - 1];
+	}
+	
+	/**
+	 * Método para introducir la ruta de un fichero.
+	 * @return fichero
+	 */
+	public static Path leerFichero() {
+		Path fichero = null;
+		System.out.print("Introduce la ruta del fichero: ");
+		try {
+			fichero = Paths.get(Entrada.cadena());
+		} catch (InvalidPathException e) {
+			System.out.println("ERROR: La ruta del fichero no es válida.");
+		}
+		return fichero;
+	}
+	
+	/**
+	 * Método para introducir la ruta de un fichero que se puede dejar en blanco.
+	 * @param mensaje
+	 * @return fichero, o null si se deja en blanco o no es válida.
+	 */
+	public static Path leerFicheroOpcional(String mensaje) {
+		System.out.print(mensaje);
+		String ruta = Entrada.cadena().trim();
+		if (ruta.isEmpty()) {
+			return null;
+		}
+		try {
+			return Paths.get(ruta);
+		} catch (InvalidPathException e) {
+			System.out.println("ERROR: La ruta del fichero no es válida.");
+			return null;
+		}
+	}
 }
@@ -87,6 +87,21 @@ public enum Opcion {
 			vista.mostrarEstadisticaMensualPorCurso();
 		}
 	},
+	IMPORTAR_CSV("Importar alumnos, libros o préstamos desde un fichero CSV") {
+		public void ejecutar() {
+			vista.importarCsv();
+		}
+	},
+	EXPORTAR("Exportar alumnos, libros o préstamos a un fichero CSV o JSON Lines") {
+		public void ejecutar() {
+			vista.exportar();
+		}
+	},
+	MOSTRAR_METRICAS("Mostrar tiempos de respuesta de las operaciones") {
+		public void ejecutar() {
+			vista.mostrarMetricas();
+		}
+	},
 	SALIR("Salir") {
 		public void ejecutar() {
 			vista.terminar();
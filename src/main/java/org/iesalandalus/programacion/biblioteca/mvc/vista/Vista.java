@@ -1,19 +1,39 @@
 package org.iesalandalus.programacion.biblioteca.mvc.vista;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
 import javax.naming.OperationNotSupportedException;
 
 import org.iesalandalus.programacion.biblioteca.mvc.controlador.Controlador;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.HistogramaLatencias;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.MetricasControlador;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.OperacionControlador;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.FormatoExportacion;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.ResultadoImportacion;
+import org.iesalandalus.programacion.utilidades.Entrada;
 
 public class Vista {
 
-	/*********ATRIBUTO*********/
+	/*********ATRIBUTOS*********/
+	
+	private static final int TAMANO_BUFER_SALIDA = 1 << 16;
 	
 	private Controlador controlador;
 	
@@ -40,13 +60,56 @@ public class Vista {
 	 */
 	public void comenzar() {
 		Consola.mostrarCabecera("GESTIÓN DE PRÉSTAMOS DE LA BIBLIOTECA <<IES AL-ÁNDALUS>>");
-		int opcion;
-		do {
-			Consola.mostrarMenu();
-			opcion = Consola.elegirOpcion();
-			Opcion opcionElegida = Opcion.getOpcionSegunOrdinal(opcion);
-			opcionElegida.ejecutar();
-		} while (opcion != Opcion.SALIR.ordinal());
+		ejecutarOpciones(true);
+	}
+	
+	/**
+	 * Método que ejecuta sin intervención del usuario las opciones de un fichero
+	 * de órdenes: el ordinal de cada opción seguido de los datos que pide, uno
+	 * por línea, igual que se escribirían por teclado. Termina con la opción de
+	 * salir o al acabarse el fichero. Mientras tanto la salida se acumula en un
+	 * búfer y no se muestra el menú.
+	 * @param fichero
+	 * @throws IOException si no se puede abrir el fichero.
+	 */
+	public void ejecutarLote(Path fichero) throws IOException {
+		if (fichero == null) {
+			throw new NullPointerException("ERROR: El fichero de órdenes no puede ser nulo.");
+		}
+		PrintStream salidaOriginal = System.out;
+		// No se cierra al terminar: cerraría también la salida estándar.
+		PrintStream salida = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), TAMANO_BUFER_SALIDA), false);
+		try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+			Entrada.setEntrada(lector);
+			System.setOut(salida);
+			ejecutarOpciones(false);
+		} finally {
+			salida.flush();
+			System.setOut(salidaOriginal);
+			Entrada.setEntrada(new InputStreamReader(System.in));
+		}
+	}
+	
+	/**
+	 * Método que pide y ejecuta opciones hasta la de salir. Si la entrada se
+	 * acaba antes, termina la aplicación igualmente para no perder los cambios.
+	 * @param conMenu: si se muestra el menú antes de cada opción.
+	 */
+	private void ejecutarOpciones(boolean conMenu) {
+		int opcion = -1;
+		try {
+			do {
+				if (conMenu) {
+					Consola.mostrarMenu();
+				}
+				opcion = Consola.elegirOpcion();
+				Opcion opcionElegida = Opcion.getOpcionSegunOrdinal(opcion);
+				opcionElegida.ejecutar();
+			} while (opcion != Opcion.SALIR.ordinal());
+		} catch (UncheckedIOException e) {
+			System.out.println();
+			terminar();
+		}
 	}
 	
 	/**
@@ -310,4 +373,83 @@ public class Vista {
 		}
 	}
 	
+	/**
+	 * Método que muestra las latencias de las operaciones del controlador que se
+	 * han usado, en microsegundos, y permite guardarlas en JSON Lines.
+	 */
+	public void mostrarMetricas() {
+		Consola.mostrarCabecera("TIEMPOS DE RESPUESTA DE LAS OPERACIONES");
+		MetricasControlador metricas = controlador.getMetricas();
+		System.out.printf("%-30s %9s %7s %7s %10s %10s %10s %10s %10s%n", "Operación", "Llamadas", "Errores", "No adm.",
+				"Media µs", "p50 µs", "p99 µs", "p99.9 µs", "Máx. µs");
+		boolean hayLlamadas = false;
+		for (OperacionControlador operacion : OperacionControlador.values()) {
+			HistogramaLatencias histograma = metricas.get(operacion);
+			if (histograma.getLlamadas() > 0) {
+				hayLlamadas = true;
+				System.out.printf("%-30s %9d %7d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n", operacion, histograma.getLlamadas(),
+						histograma.getErrores(), histograma.getNoAdmitidas(), histograma.getMediaNanos() / 1e3,
+						histograma.getPercentilNanos(50) / 1e3, histograma.getPercentilNanos(99) / 1e3,
+						histograma.getPercentilNanos(99.9) / 1e3, histograma.getMaximoNanos() / 1e3);
+			}
+		}
+		if (!hayLlamadas) {
+			System.out.println("Aún no se ha llamado a ninguna operación.");
+			return;
+		}
+		Path fichero = Consola.leerFicheroOpcional("Fichero en el que guardarlas en JSON Lines (en blanco para no guardarlas): ");
+		if (fichero != null) {
+			try (BufferedWriter salida = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+				System.out.println("Operaciones guardadas: " + metricas.volcar(salida) + ".");
+			} catch (IOException e) {
+				System.out.println("ERROR: No se pudieron guardar las métricas: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Método que llama a otro para importar alumnos, libros o préstamos desde un fichero CSV.
+	 */
+	public void importarCsv() {
+		Consola.mostrarCabecera("IMPORTAR DESDE CSV");
+		int datos = Consola.elegirDatosFichero();
+		Path fichero = Consola.leerFichero();
+		try {
+			ResultadoImportacion resultado;
+			if (datos == 1) {
+				resultado = controlador.importarAlumnos(fichero, System.out::println);
+			} else if (datos == 2) {
+				resultado = controlador.importarLibros(fichero, System.out::println);
+			} else {
+				resultado = controlador.importarPrestamos(fichero, System.out::println);
+			}
+			System.out.println(resultado);
+		} catch (IOException | IllegalArgumentException | NullPointerException e) {
+			System.out.println("ERROR: No se pudo importar el fichero: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Método que llama a otro para exportar alumnos, libros o préstamos a un fichero.
+	 */
+	public void exportar() {
+		Consola.mostrarCabecera("EXPORTAR A FICHERO");
+		int datos = Consola.elegirDatosFichero();
+		FormatoExportacion formato = Consola.elegirFormatoExportacion();
+		Path fichero = Consola.leerFichero();
+		try {
+			long exportados;
+			if (datos == 1) {
+				exportados = controlador.exportarAlumnos(fichero, formato);
+			} else if (datos == 2) {
+				exportados = controlador.exportarLibros(fichero, formato);
+			} else {
+				exportados = controlador.exportarPrestamos(fichero, formato);
+			}
+			System.out.println("Filas exportadas: " + exportados + ".");
+		} catch (IOException | NullPointerException e) {
+			System.out.println("ERROR: No se pudo exportar el fichero: " + e.getMessage());
+		}
+	}
+	
 }
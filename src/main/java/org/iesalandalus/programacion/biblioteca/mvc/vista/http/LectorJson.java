@@ -0,0 +1,201 @@
+package org.iesalandalus.programacion.biblioteca.mvc.vista.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lector de los cuerpos de las peticiones: un objeto JSON plano, cuyos valores
+ * son cadenas, números, booleanos o null. Los números y booleanos se devuelven
+ * como el texto que los representa y null como valor nulo.
+ */
+final class LectorJson {
+
+	/*********ATRIBUTOS*********/
+
+	private static final String ERROR_FORMATO = "ERROR: El cuerpo de la petición no es un objeto JSON válido.";
+
+	private final String texto;
+	private int posicion;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param texto
+	 */
+	private LectorJson(String texto) {
+		this.texto = texto;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que lee un objeto JSON plano.
+	 * @param texto
+	 * @return campos del objeto, en el orden en que aparecen.
+	 */
+	static Map<String, String> leerObjeto(String texto) {
+		if (texto == null) {
+			throw new IllegalArgumentException(ERROR_FORMATO);
+		}
+		LectorJson lector = new LectorJson(texto);
+		lector.saltarEspacios();
+		Map<String, String> campos = lector.leerObjeto();
+		lector.saltarEspacios();
+		if (lector.posicion != texto.length()) {
+			throw new IllegalArgumentException(ERROR_FORMATO);
+		}
+		return campos;
+	}
+
+	/**
+	 * Método que lee un objeto desde la posición actual.
+	 * @return campos
+	 */
+	private Map<String, String> leerObjeto() {
+		Map<String, String> campos = new LinkedHashMap<>();
+		esperar('{');
+		saltarEspacios();
+		if (mirar() == '}') {
+			posicion++;
+			return campos;
+		}
+		while (true) {
+			saltarEspacios();
+			String clave = leerCadena();
+			saltarEspacios();
+			esperar(':');
+			saltarEspacios();
+			campos.put(clave, leerValor());
+			saltarEspacios();
+			char siguiente = leer();
+			if (siguiente == '}') {
+				return campos;
+			}
+			if (siguiente != ',') {
+				throw new IllegalArgumentException(ERROR_FORMATO);
+			}
+		}
+	}
+
+	/**
+	 * Método que lee un valor simple: cadena, número, booleano o null.
+	 * @return valor
+	 */
+	private String leerValor() {
+		char caracter = mirar();
+		if (caracter == '"') {
+			return leerCadena();
+		}
+		int inicio = posicion;
+		while (posicion < texto.length() && "-+.eE0123456789truefalsn".indexOf(texto.charAt(posicion)) >= 0) {
+			posicion++;
+		}
+		String valor = texto.substring(inicio, posicion);
+		if (valor.equals("null")) {
+			return null;
+		}
+		if (valor.equals("true") || valor.equals("false") || valor.matches("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?")) {
+			return valor;
+		}
+		throw new IllegalArgumentException(ERROR_FORMATO);
+	}
+
+	/**
+	 * Método que lee una cadena entre comillas, resolviendo sus secuencias de escape.
+	 * @return cadena
+	 */
+	private String leerCadena() {
+		esperar('"');
+		StringBuilder cadena = new StringBuilder();
+		while (true) {
+			char caracter = leer();
+			if (caracter == '"') {
+				return cadena.toString();
+			}
+			if (caracter != '\\') {
+				cadena.append(caracter);
+				continue;
+			}
+			char escape = leer();
+			switch (escape) {
+			case '"':
+			case '\\':
+			case '/':
+				cadena.append(escape);
+				break;
+			case 'b':
+				cadena.append('\b');
+				break;
+			case 'f':
+				cadena.append('\f');
+				break;
+			case 'n':
+				cadena.append('\n');
+				break;
+			case 'r':
+				cadena.append('\r');
+				break;
+			case 't':
+				cadena.append('\t');
+				break;
+			case 'u':
+				if (posicion + 4 > texto.length()) {
+					throw new IllegalArgumentException(ERROR_FORMATO);
+				}
+				try {
+					cadena.append((char) Integer.parseInt(texto.substring(posicion, posicion + 4), 16));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException(ERROR_FORMATO);
+				}
+				posicion += 4;
+				break;
+			default:
+				throw new IllegalArgumentException(ERROR_FORMATO);
+			}
+		}
+	}
+
+	/**
+	 * Método que salta los espacios en blanco.
+	 */
+	private void saltarEspacios() {
+		while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+			posicion++;
+		}
+	}
+
+	/**
+	 * Método que comprueba que el siguiente carácter es el esperado y lo salta.
+	 * @param esperado
+	 */
+	private void esperar(char esperado) {
+		if (leer() != esperado) {
+			throw new IllegalArgumentException(ERROR_FORMATO);
+		}
+	}
+
+	/**
+	 * Método que devuelve el siguiente carácter sin saltarlo.
+	 * @return caracter
+	 */
+	private char mirar() {
+		if (posicion >= texto.length()) {
+			throw new IllegalArgumentException(ERROR_FORMATO);
+		}
+		return texto.charAt(posicion);
+	}
+
+	/**
+	 * Método que devuelve el siguiente carácter y lo salta.
+	 * @return caracter
+	 */
+	private char leer() {
+		char caracter = mirar();
+		posicion++;
+		return caracter;
+	}
+
+}
@@ -0,0 +1,592 @@
+package org.iesalandalus.programacion.biblioteca.mvc.vista.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.Controlador;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.Exportador;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.FormatoExportacion;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servidor HTTP local que expone las operaciones del controlador como una API JSON.
+ *
+ * Atiende solo en la interfaz de bucle local. Cada petición se atiende en su
+ * propio hilo virtual si la JVM los tiene (Java 21 o posterior) y si no en un
+ * grupo acotado de hilos reutilizables. Los alumnos, libros y préstamos se escriben con
+ * el mismo formato que la exportación JSON Lines y las fechas van en formato ISO.
+ *
+ * Recursos:
+ * - GET /alumnos?pagina=&tamano=, GET /alumnos?correo=, POST /alumnos {nombre, correo, curso},
+ *   DELETE /alumnos?correo=
+ * - GET /libros?pagina=&tamano=, GET /libros?titulo=&autor=, POST /libros {titulo, autor, numPaginas},
+ *   DELETE /libros?titulo=&autor=
+ * - GET /prestamos?pagina=&tamano= (filtrados opcionalmente por correo, por titulo y autor o por fecha),
+ *   POST /prestamos {correo, titulo, autor, fechaPrestamo}, DELETE /prestamos?correo=&titulo=&autor=
+ * - POST /devoluciones {correo, titulo, autor, fechaDevolucion}, que responde 204 sin cuerpo
+ *   si otra petición ha borrado el préstamo justo después de devolverlo
+ * - GET /estadisticas?fecha=
+ * - GET /metricas
+ *
+ * Los errores se devuelven como {"error": mensaje}: 400 si la petición no es
+ * válida, 404 si no existe lo buscado, 405 si el método no se admite, 409 si el
+ * modelo no admite la operación, 413 si el cuerpo supera TAMANO_CUERPO_MAXIMO y
+ * 500 si falla la entrada/salida al atender la petición.
+ */
+public class ServidorHttp {
+
+	/**
+	 * Forma de atender las peticiones de un recurso.
+	 */
+	@FunctionalInterface
+	private interface Recurso {
+
+		Respuesta atender(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+				throws OperationNotSupportedException, IOException;
+	}
+
+	/**
+	 * Forma de escribir un elemento de un listado, como las de Exportador.
+	 */
+	@FunctionalInterface
+	private interface EscrituraJson<T> {
+
+		void escribir(Writer salida, T elemento, FormatoExportacion formato) throws IOException;
+	}
+
+	/**
+	 * Estado y cuerpo JSON de una respuesta.
+	 */
+	private static final class Respuesta {
+
+		private final int estado;
+		private final String cuerpo;
+
+		private Respuesta(int estado, String cuerpo) {
+			this.estado = estado;
+			this.cuerpo = cuerpo;
+		}
+	}
+
+	/**
+	 * Error de una petición cuyo cuerpo es demasiado grande para leerlo.
+	 */
+	private static final class CuerpoDemasiadoGrande extends IllegalArgumentException {
+
+		private static final long serialVersionUID = 1L;
+
+		private CuerpoDemasiadoGrande() {
+			super("ERROR: El cuerpo de la petición no puede superar " + TAMANO_CUERPO_MAXIMO + " bytes.");
+		}
+	}
+
+
+	/*********ATRIBUTOS*********/
+
+	private static final int TAMANO_PAGINA_POR_DEFECTO = 50;
+	private static final int TAMANO_PAGINA_MAXIMO = 1000;
+	private static final int PETICIONES_EN_ESPERA = 1024;
+	private static final int SEGUNDOS_PARA_TERMINAR = 2;
+	// Hilos del grupo que atiende las peticiones cuando no hay hilos virtuales.
+	private static final int HILOS_POR_PROCESADOR = 4;
+	private static final long SEGUNDOS_HILO_INACTIVO = 60;
+	// Los cuerpos de las peticiones son objetos JSON con unos pocos campos.
+	private static final int TAMANO_CUERPO_MAXIMO = 64 * 1024;
+
+	private final Controlador controlador;
+	private final int puerto;
+	private HttpServer servidor;
+	private ExecutorService ejecutor;
+
+
+	/*******CONSTRUCTOR*******/
+
+	/**
+	 * Constructor con parámetros.
+	 * @param controlador
+	 * @param puerto: 0 para usar uno libre cualquiera.
+	 */
+	public ServidorHttp(Controlador controlador, int puerto) {
+		if (controlador == null) {
+			throw new IllegalArgumentException("ERROR: El controlador no puede ser nulo.");
+		}
+		if (puerto < 0 || puerto > 65535) {
+			throw new IllegalArgumentException("ERROR: El puerto debe estar entre 0 y 65535.");
+		}
+		this.controlador = controlador;
+		this.puerto = puerto;
+	}
+
+
+	/********OTROS MÉTODOS********/
+
+	/**
+	 * Método que hace que los servidores envíen cada respuesta sin esperar al
+	 * algoritmo de Nagle. Sin esto, la cabecera y el cuerpo van en dos segmentos TCP
+	 * y el segundo espera al ACK diferido del cliente. Cambia la propiedad
+	 * sun.net.httpserver.nodelay, que es de toda la JVM y que el JDK solo lee al
+	 * crear el primer servidor HTTP, así que hay que llamarlo antes de crearlo.
+	 */
+	public static void desactivarNagle() {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	/**
+	 * Método que empieza a atender peticiones.
+	 * @throws IOException
+	 */
+	public synchronized void comenzar() throws IOException {
+		if (servidor != null) {
+			throw new IllegalStateException("ERROR: El servidor ya ha comenzado.");
+		}
+		servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), PETICIONES_EN_ESPERA);
+		ejecutor = crearEjecutor();
+		servidor.setExecutor(ejecutor);
+		publicar("/alumnos", this::atenderAlumnos);
+		publicar("/libros", this::atenderLibros);
+		publicar("/prestamos", this::atenderPrestamos);
+		publicar("/devoluciones", this::atenderDevoluciones);
+		publicar("/estadisticas", this::atenderEstadisticas);
+		publicar("/metricas", this::atenderMetricas);
+		servidor.start();
+	}
+
+	/**
+	 * Método que deja de atender peticiones, esperando un poco a las que están en curso.
+	 */
+	public synchronized void terminar() {
+		if (servidor != null) {
+			servidor.stop(SEGUNDOS_PARA_TERMINAR);
+			ejecutor.shutdown();
+			try {
+				ejecutor.awaitTermination(SEGUNDOS_PARA_TERMINAR, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			servidor = null;
+		}
+	}
+
+	/**
+	 * Método que devuelve el puerto en el que atiende el servidor.
+	 * @return puerto
+	 */
+	public synchronized int getPuerto() {
+		if (servidor == null) {
+			throw new IllegalStateException("ERROR: El servidor no ha comenzado.");
+		}
+		return servidor.getAddress().getPort();
+	}
+
+	/**
+	 * Método que crea el ejecutor de las peticiones: un hilo virtual por petición
+	 * si la JVM los tiene, que se busca por reflexión porque el proyecto se compila
+	 * para Java 11 (sourceCompatibility en build.gradle); si no, un grupo de hilos
+	 * que se reutilizan, como mucho HILOS_POR_PROCESADOR por procesador, con una
+	 * cola de PETICIONES_EN_ESPERA. Si la cola se llena, la petición la atiende el
+	 * hilo del servidor que acepta las conexiones, que mientras tanto deja de
+	 * aceptar otras, así que ni los hilos ni la cola crecen sin límite.
+	 * @return ejecutor
+	 */
+	private static ExecutorService crearEjecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			int hilos = HILOS_POR_PROCESADOR * Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor grupo = new ThreadPoolExecutor(hilos, hilos, SEGUNDOS_HILO_INACTIVO, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(PETICIONES_EN_ESPERA), new ThreadPoolExecutor.CallerRunsPolicy());
+			grupo.allowCoreThreadTimeOut(true);
+			return grupo;
+		}
+	}
+
+	/**
+	 * Método que publica un recurso en una ruta. Solo atiende esa ruta exacta y
+	 * convierte las excepciones en respuestas de error.
+	 * @param ruta
+	 * @param recurso
+	 */
+	private void publicar(String ruta, Recurso recurso) {
+		servidor.createContext(ruta, intercambio -> {
+			Respuesta respuesta;
+			try {
+				if (!intercambio.getRequestURI().getPath().equals(ruta)) {
+					respuesta = error(404, "ERROR: No existe el recurso.");
+				} else {
+					respuesta = recurso.atender(intercambio.getRequestMethod(), leerParametros(intercambio), intercambio);
+				}
+			} catch (OperationNotSupportedException e) {
+				respuesta = error(409, e.getMessage());
+			} catch (CuerpoDemasiadoGrande e) {
+				respuesta = error(413, e.getMessage());
+			} catch (IllegalArgumentException | NullPointerException | DateTimeException e) {
+				respuesta = error(400, e.getMessage());
+			} catch (IllegalStateException e) {
+				respuesta = error(503, e.getMessage());
+			} catch (IOException e) {
+				respuesta = error(500, "ERROR: No se pudo atender la petición: " + e.getMessage());
+			} catch (RuntimeException e) {
+				respuesta = error(500, "ERROR: " + e);
+			}
+			responder(intercambio, respuesta);
+		});
+	}
+
+	/**
+	 * Método que atiende el recurso /alumnos.
+	 */
+	private Respuesta atenderAlumnos(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+			throws OperationNotSupportedException, IOException {
+		switch (metodo) {
+		case "GET":
+			if (parametros.containsKey("correo")) {
+				Alumno alumno = controlador.buscar(Alumno.getAlumnoFicticio(parametros.get("correo")));
+				if (alumno == null) {
+					return error(404, "ERROR: No existe ningún alumno con ese correo.");
+				}
+				return new Respuesta(200, escribir(alumno, Exportador::escribirAlumno));
+			}
+			return pagina(parametros, controlador.getAlumnos(), Exportador::escribirAlumno);
+		case "POST":
+			Map<String, String> campos = leerCuerpo(intercambio);
+			Alumno alumno = new Alumno(campos.get("nombre"), campos.get("correo"), convertirCurso(campos.get("curso")));
+			controlador.insertar(alumno);
+			return new Respuesta(201, escribir(alumno, Exportador::escribirAlumno));
+		case "DELETE":
+			controlador.borrar(Alumno.getAlumnoFicticio(parametros.get("correo")));
+			return new Respuesta(204, null);
+		default:
+			return metodoNoPermitido();
+		}
+	}
+
+	/**
+	 * Método que atiende el recurso /libros.
+	 */
+	private Respuesta atenderLibros(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+			throws OperationNotSupportedException, IOException {
+		switch (metodo) {
+		case "GET":
+			if (parametros.containsKey("titulo") || parametros.containsKey("autor")) {
+				Libro libro = controlador.buscar(Libro.getLibroFicticio(parametros.get("titulo"), parametros.get("autor")));
+				if (libro == null) {
+					return error(404, "ERROR: No existe ningún libro con ese título y autor.");
+				}
+				return new Respuesta(200, escribir(libro, Exportador::escribirLibro));
+			}
+			return pagina(parametros, controlador.getLibros(), Exportador::escribirLibro);
+		case "POST":
+			Map<String, String> campos = leerCuerpo(intercambio);
+			Libro libro = new Libro(campos.get("titulo"), campos.get("autor"),
+					convertirEntero(campos.get("numPaginas"), "ERROR: El número de páginas no es un número válido."));
+			controlador.insertar(libro);
+			return new Respuesta(201, escribir(libro, Exportador::escribirLibro));
+		case "DELETE":
+			controlador.borrar(Libro.getLibroFicticio(parametros.get("titulo"), parametros.get("autor")));
+			return new Respuesta(204, null);
+		default:
+			return metodoNoPermitido();
+		}
+	}
+
+	/**
+	 * Método que atiende el recurso /prestamos.
+	 */
+	private Respuesta atenderPrestamos(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+			throws OperationNotSupportedException, IOException {
+		switch (metodo) {
+		case "GET":
+			List<Prestamo> prestamos;
+			if (parametros.containsKey("correo")) {
+				prestamos = controlador.getPrestamos(Alumno.getAlumnoFicticio(parametros.get("correo")));
+			} else if (parametros.containsKey("titulo") || parametros.containsKey("autor")) {
+				prestamos = controlador.getPrestamos(Libro.getLibroFicticio(parametros.get("titulo"), parametros.get("autor")));
+			} else if (parametros.containsKey("fecha")) {
+				prestamos = controlador.getPrestamos(convertirFecha(parametros.get("fecha")));
+			} else {
+				prestamos = controlador.getPrestamos();
+			}
+			return pagina(parametros, prestamos, Exportador::escribirPrestamo);
+		case "POST":
+			Map<String, String> campos = leerCuerpo(intercambio);
+			Prestamo prestamo = new Prestamo(Alumno.getAlumnoFicticio(campos.get("correo")),
+					Libro.getLibroFicticio(campos.get("titulo"), campos.get("autor")), convertirFecha(campos.get("fechaPrestamo")));
+			controlador.prestar(prestamo);
+			// Un préstamo recién hecho tiene los datos de la petición; otra petición puede haberlo borrado ya.
+			return new Respuesta(201, escribir(prestamo, Exportador::escribirPrestamo));
+		case "DELETE":
+			controlador.borrar(getPrestamoFicticio(parametros));
+			return new Respuesta(204, null);
+		default:
+			return metodoNoPermitido();
+		}
+	}
+
+	/**
+	 * Método que atiende el recurso /devoluciones.
+	 */
+	private Respuesta atenderDevoluciones(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+			throws OperationNotSupportedException, IOException {
+		if (!metodo.equals("POST")) {
+			return metodoNoPermitido();
+		}
+		Map<String, String> campos = leerCuerpo(intercambio);
+		Prestamo prestamo = getPrestamoFicticio(campos);
+		controlador.devolver(prestamo, convertirFecha(campos.get("fechaDevolucion")));
+		// La fecha del préstamo no viene en la petición, así que se busca; otra petición puede haberlo borrado ya.
+		Prestamo devuelto = controlador.buscar(prestamo);
+		if (devuelto == null) {
+			return new Respuesta(204, null);
+		}
+		return new Respuesta(200, escribir(devuelto, Exportador::escribirPrestamo));
+	}
+
+	/**
+	 * Método que atiende el recurso /estadisticas: puntos de cada curso, del 1 al 4, en el mes de la fecha.
+	 */
+	private Respuesta atenderEstadisticas(String metodo, Map<String, String> parametros, HttpExchange intercambio) {
+		if (!metodo.equals("GET")) {
+			return metodoNoPermitido();
+		}
+		LocalDate fecha = convertirFecha(parametros.get("fecha"));
+		Map<Curso, Integer> estadistica = controlador.getEstadisticaMensualPorCurso(fecha);
+		StringBuilder cuerpo = new StringBuilder("{\"mes\":\"").append(YearMonth.from(fecha)).append("\",\"puntos\":{");
+		for (Curso curso : Curso.values()) {
+			if (curso.ordinal() > 0) {
+				cuerpo.append(',');
+			}
+			cuerpo.append('"').append(curso.ordinal() + 1).append("\":").append(estadistica.get(curso));
+		}
+		return new Respuesta(200, cuerpo.append("}}").toString());
+	}
+
+	/**
+	 * Método que atiende el recurso /metricas: las latencias de las operaciones
+	 * del controlador que se han usado, como una lista JSON.
+	 */
+	private Respuesta atenderMetricas(String metodo, Map<String, String> parametros, HttpExchange intercambio)
+			throws IOException {
+		if (!metodo.equals("GET")) {
+			return metodoNoPermitido();
+		}
+		StringWriter lineas = new StringWriter();
+		controlador.getMetricas().volcar(lineas);
+		String texto = lineas.toString().trim();
+		return new Respuesta(200, "[" + texto.replace("\n", ",") + "]");
+	}
+
+	/**
+	 * Método que devuelve una página de un listado: {"pagina", "tamano", "total", "elementos"}.
+	 * Los listados del modelo son copias que no cambian, así que la página no copia nada.
+	 * @param parametros: pagina, desde 0, y tamano, hasta TAMANO_PAGINA_MAXIMO.
+	 * @param lista
+	 * @param escritura
+	 * @return respuesta
+	 */
+	private static <T> Respuesta pagina(Map<String, String> parametros, List<T> lista, EscrituraJson<T> escritura)
+			throws IOException {
+		int numeroPagina = parametros.containsKey("pagina")
+				? convertirEntero(parametros.get("pagina"), "ERROR: La página no es un número válido.") : 0;
+		int tamano = parametros.containsKey("tamano")
+				? convertirEntero(parametros.get("tamano"), "ERROR: El tamaño de página no es un número válido.")
+				: TAMANO_PAGINA_POR_DEFECTO;
+		if (numeroPagina < 0) {
+			throw new IllegalArgumentException("ERROR: La página no puede ser negativa.");
+		}
+		if (tamano < 1 || tamano > TAMANO_PAGINA_MAXIMO) {
+			throw new IllegalArgumentException("ERROR: El tamaño de página debe estar entre 1 y " + TAMANO_PAGINA_MAXIMO + ".");
+		}
+		long inicio = (long) numeroPagina * tamano;
+		StringWriter salida = new StringWriter();
+		salida.write("{\"pagina\":" + numeroPagina + ",\"tamano\":" + tamano + ",\"total\":" + lista.size() + ",\"elementos\":[");
+		for (long i = inicio; i < Math.min(inicio + tamano, lista.size()); i++) {
+			if (i > inicio) {
+				salida.write(',');
+			}
+			escritura.escribir(salida, lista.get((int) i), FormatoExportacion.JSON_LINES);
+		}
+		salida.write("]}");
+		return new Respuesta(200, salida.toString());
+	}
+
+	/**
+	 * Método que escribe un elemento en JSON.
+	 * @param elemento
+	 * @param escritura
+	 * @return json
+	 */
+	private static <T> String escribir(T elemento, EscrituraJson<T> escritura) throws IOException {
+		StringWriter salida = new StringWriter();
+		escritura.escribir(salida, elemento, FormatoExportacion.JSON_LINES);
+		return salida.toString();
+	}
+
+	/**
+	 * Método que devuelve una respuesta de error.
+	 * @param estado
+	 * @param mensaje
+	 * @return respuesta
+	 */
+	private static Respuesta error(int estado, String mensaje) {
+		StringWriter salida = new StringWriter();
+		try {
+			salida.write("{\"error\":");
+			Exportador.escribirCadenaJson(salida, String.valueOf(mensaje));
+			salida.write('}');
+		} catch (IOException e) {
+			// Un StringWriter no lanza excepciones de entrada/salida.
+		}
+		return new Respuesta(estado, salida.toString());
+	}
+
+	/**
+	 * Método que devuelve la respuesta a un método no admitido.
+	 * @return respuesta
+	 */
+	private static Respuesta metodoNoPermitido() {
+		return error(405, "ERROR: Método no admitido.");
+	}
+
+	/**
+	 * Método que envía la respuesta y cierra el intercambio.
+	 * @param intercambio
+	 * @param respuesta
+	 * @throws IOException
+	 */
+	private static void responder(HttpExchange intercambio, Respuesta respuesta) throws IOException {
+		try {
+			if (respuesta.cuerpo == null) {
+				intercambio.sendResponseHeaders(respuesta.estado, -1);
+			} else {
+				byte[] bytes = respuesta.cuerpo.getBytes(StandardCharsets.UTF_8);
+				intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				intercambio.sendResponseHeaders(respuesta.estado, bytes.length);
+				try (OutputStream salida = intercambio.getResponseBody()) {
+					salida.write(bytes);
+				}
+			}
+		} finally {
+			intercambio.close();
+		}
+	}
+
+	/**
+	 * Método que lee los parámetros de la consulta de la URI.
+	 * @param intercambio
+	 * @return parametros
+	 */
+	private static Map<String, String> leerParametros(HttpExchange intercambio) {
+		Map<String, String> parametros = new HashMap<>();
+		String consulta = intercambio.getRequestURI().getRawQuery();
+		if (consulta != null && !consulta.isEmpty()) {
+			for (String parametro : consulta.split("&")) {
+				int igual = parametro.indexOf('=');
+				String clave = igual < 0 ? parametro : parametro.substring(0, igual);
+				String valor = igual < 0 ? "" : parametro.substring(igual + 1);
+				parametros.put(URLDecoder.decode(clave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+			}
+		}
+		return parametros;
+	}
+
+	/**
+	 * Método que lee el cuerpo de la petición como un objeto JSON plano. Si
+	 * supera TAMANO_CUERPO_MAXIMO, lo rechaza sin guardarlo entero en memoria.
+	 * @param intercambio
+	 * @return campos
+	 * @throws IOException
+	 */
+	private static Map<String, String> leerCuerpo(HttpExchange intercambio) throws IOException {
+		String longitud = intercambio.getRequestHeaders().getFirst("Content-Length");
+		if (longitud != null && longitud.length() > 0 && Long.parseLong(longitud) > TAMANO_CUERPO_MAXIMO) {
+			throw new CuerpoDemasiadoGrande();
+		}
+		try (InputStream entrada = intercambio.getRequestBody()) {
+			byte[] cuerpo = entrada.readNBytes(TAMANO_CUERPO_MAXIMO + 1);
+			if (cuerpo.length > TAMANO_CUERPO_MAXIMO) {
+				throw new CuerpoDemasiadoGrande();
+			}
+			return LectorJson.leerObjeto(new String(cuerpo, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Método que devuelve el préstamo ficticio que identifican los campos correo, titulo y autor.
+	 * @param campos
+	 * @return prestamo
+	 */
+	private static Prestamo getPrestamoFicticio(Map<String, String> campos) {
+		return Prestamo.getPrestamoFicticio(Alumno.getAlumnoFicticio(campos.get("correo")),
+				Libro.getLibroFicticio(campos.get("titulo"), campos.get("autor")));
+	}
+
+	/**
+	 * Método que convierte el número de curso, de 1 a 4.
+	 * @param campo
+	 * @return curso
+	 */
+	private static Curso convertirCurso(String campo) {
+		int numeroCurso = convertirEntero(campo, "ERROR: El curso debe ser un número entre 1 y 4.");
+		if (numeroCurso < 1 || numeroCurso > Curso.values().length) {
+			throw new IllegalArgumentException("ERROR: El curso debe ser un número entre 1 y 4.");
+		}
+		return Curso.values()[numeroCurso - 1];
+	}
+
+	/**
+	 * Método que convierte un campo en un entero.
+	 * @param campo
+	 * @param error: mensaje si el campo no es un entero.
+	 * @return entero
+	 */
+	private static int convertirEntero(String campo, String error) {
+		try {
+			return Integer.parseInt(String.valueOf(campo).trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(error);
+		}
+	}
+
+	/**
+	 * Método que convierte un campo en una fecha en formato ISO (aaaa-mm-dd).
+	 * @param campo
+	 * @return fecha
+	 */
+	private static LocalDate convertirFecha(String campo) {
+		if (campo == null) {
+			throw new IllegalArgumentException("ERROR: Falta la fecha.");
+		}
+		try {
+			return LocalDate.parse(campo.trim());
+		} catch (DateTimeException e) {
+			throw new IllegalArgumentException("ERROR: El formato de la fecha no es correcto.");
+		}
+	}
+
+}
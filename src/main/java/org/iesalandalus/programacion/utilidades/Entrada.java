@@ -1,8 +1,11 @@
 package org.iesalandalus.programacion.utilidades;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 
 /**
  * Clase que nos permite leer datos por teclado asegurándose
@@ -12,6 +15,13 @@ import java.io.InputStreamReader;
  */
 public class Entrada {
 	
+	/**
+	 * Lector compartido por todas las lecturas. Crear uno nuevo en cada lectura
+	 * perdería lo que el anterior ya hubiera leído de más en su búfer, y con la
+	 * entrada redirigida desde un fichero se saltarían líneas.
+	 */
+	private static BufferedReader lector = new BufferedReader(new InputStreamReader(System.in));
+	
 	/**
 	 * Constructor privado para evitar que java genere el suyo
 	 * por defecto y así evitar que se puedan instanciar objetos
@@ -20,19 +30,35 @@ public class Entrada {
 		// No se permiten instanciar objetos de esta clase
 	}
 	
+	/**
+	 * Método estático que cambia de dónde se leen los datos, por ejemplo
+	 * para leerlos de un fichero en lugar del teclado
+	 * @param entrada de la que se leerá a partir de ahora
+	 */
+	public static void setEntrada(Reader entrada) {
+            if (entrada == null) {
+                    throw new NullPointerException("ERROR: La entrada no puede ser nula.");
+            }
+            lector = (entrada instanceof BufferedReader) ? (BufferedReader) entrada : new BufferedReader(entrada);
+	}
+	
 	/**
 	 * Método estático que lee una cadena por teclado
 	 * @return la cadena leída
+	 * @throws UncheckedIOException si la entrada se ha terminado, para
+	 * que los métodos que repiten la lectura hasta que sea válida no
+	 * esperen indefinidamente
 	 */
 	public static String cadena() {
             String valor = "";
-            InputStreamReader flujo = new InputStreamReader(System.in);
-            BufferedReader teclado = new BufferedReader(flujo);
             try {
-                    valor = teclado.readLine();
+                    valor = lector.readLine();
             } catch (IOException e) {
                     System.out.print("Error de Entrada/Salida. Inténtalo de nuevo: ");
             }
+            if (valor == null) {
+                    throw new UncheckedIOException(new EOFException("Fin de la entrada."));
+            }
             return valor;
 	}
 
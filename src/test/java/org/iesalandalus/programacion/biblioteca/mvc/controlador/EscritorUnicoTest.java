@@ -0,0 +1,176 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EscritorUnicoTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String EXCEPCION_ESPERADA = "Debería haber saltado la excepción.";
+	private static final String MENSAJE_NO_CORRECTO = "El mensaje devuelto por la excepción no es correcto.";
+	private static final String ESTADO_NO_ESPERADO = "El estado del modelo no es el esperado.";
+	private static final String CONSULTA_BLOQUEADA = "Los listados no deberían esperar a la transacción del escritor.";
+	private static final String ORDEN_NO_ESPERADO = "Los elementos no salen de la cola en el orden esperado.";
+	private static final LocalDate FECHA = LocalDate.of(2020, 3, 2);
+
+	private Modelo modelo;
+	private EscritorUnico escritor;
+	private Libro libro;
+
+	@Before
+	public void inicializar() throws OperationNotSupportedException {
+		modelo = new Modelo();
+		libro = new Libro("Don Quijote", "Cervantes", 1000);
+		modelo.insertar(libro);
+		// Una cola pequeña para que los productores tengan que esperar a que se vacíe.
+		escritor = new EscritorUnico(modelo, 8);
+		escritor.comenzar();
+	}
+
+	@After
+	public void terminar() {
+		escritor.terminar();
+	}
+
+	@Test
+	public void colaCircularDevuelveLosElementosEnOrdenYSeLlena() {
+		ColaCircular<Integer> cola = new ColaCircular<>(4);
+		assertThat(ORDEN_NO_ESPERADO, cola.tomar(), is(nullValue()));
+		for (int vuelta = 0; vuelta < 3; vuelta++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(cola.ofrecer(vuelta * 4 + i));
+			}
+			assertFalse(cola.ofrecer(-1));
+			for (int i = 0; i < 4; i++) {
+				assertThat(ORDEN_NO_ESPERADO, cola.tomar(), is(vuelta * 4 + i));
+			}
+			assertThat(ORDEN_NO_ESPERADO, cola.tomar(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void ejecutarDevuelveLaExcepcionDelComandoSinAfectarALosDemas() {
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		try {
+			escritor.ejecutar(transaccion -> transaccion.insertar(alumno));
+			escritor.ejecutar(transaccion -> transaccion.prestar(new Prestamo(alumno, libro, FECHA)));
+			escritor.ejecutar(transaccion -> transaccion.insertar(alumno));
+			fail(EXCEPCION_ESPERADA);
+		} catch (OperationNotSupportedException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: Ya existe un alumno con ese correo."));
+		}
+		assertThat(ESTADO_NO_ESPERADO, modelo.buscar(new Prestamo(alumno, libro, FECHA)), is(notNullValue()));
+	}
+
+	@Test
+	public void variosHilosEnvianComandosYSeAplicanTodos() throws InterruptedException {
+		int numHilos = 4;
+		int alumnosPorHilo = 200;
+		ExecutorService hilos = Executors.newFixedThreadPool(numHilos);
+		Queue<Throwable> errores = new ConcurrentLinkedQueue<>();
+		CountDownLatch salida = new CountDownLatch(1);
+		for (int h = 0; h < numHilos; h++) {
+			int hilo = h;
+			hilos.execute(() -> {
+				try {
+					salida.await();
+					for (int i = 0; i < alumnosPorHilo; i++) {
+						Alumno alumno = new Alumno("Alumno De Prueba", "alumno" + hilo + "-" + i + "@iesalandalus.org",
+								Curso.values()[i % 4]);
+						escritor.ejecutar(transaccion -> transaccion.insertar(alumno));
+						// Lo que ya se ha aplicado se ve en las consultas, que no pasan por el escritor.
+						if (modelo.buscar(alumno) == null) {
+							throw new AssertionError(ESTADO_NO_ESPERADO);
+						}
+						escritor.ejecutar(transaccion -> transaccion.prestar(new Prestamo(alumno, libro, FECHA)));
+					}
+				} catch (Throwable e) {
+					errores.add(e);
+				}
+			});
+		}
+		salida.countDown();
+		hilos.shutdown();
+		assertTrue(hilos.awaitTermination(60, TimeUnit.SECONDS));
+		assertTrue(EXCEPCION_NO_PROCEDE + errores, errores.isEmpty());
+		assertThat(ESTADO_NO_ESPERADO, modelo.getAlumnos().size(), is(numHilos * alumnosPorHilo));
+		assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(libro).size(), is(numHilos * alumnosPorHilo));
+	}
+
+	@Test
+	public void listadosSeLeenDeLaInstantaneaSinEsperarAlEscritor() throws Exception {
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		CountDownLatch dentro = new CountDownLatch(1);
+		CountDownLatch seguir = new CountDownLatch(1);
+		ExecutorService hilos = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> comando = hilos.submit(() -> {
+				escritor.ejecutar(transaccion -> {
+					transaccion.insertar(alumno);
+					dentro.countDown();
+					try {
+						seguir.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				return null;
+			});
+			assertTrue(dentro.await(10, TimeUnit.SECONDS));
+			// El escritor tiene ahora el cerrojo de escritura del modelo.
+			Future<int[]> listados = hilos.submit(() -> new int[] { escritor.getAlumnos().size(),
+					escritor.getLibros().size(), escritor.getPrestamos().size() });
+			int[] tamanos = listados.get(10, TimeUnit.SECONDS);
+			assertThat(CONSULTA_BLOQUEADA, tamanos[0], is(0));
+			assertThat(CONSULTA_BLOQUEADA, tamanos[1], is(1));
+			assertThat(CONSULTA_BLOQUEADA, tamanos[2], is(0));
+			assertFalse(comando.isDone());
+			seguir.countDown();
+			comando.get(10, TimeUnit.SECONDS);
+			// Quien ha enviado el comando ya ve su efecto.
+			assertThat(ESTADO_NO_ESPERADO, escritor.getAlumnos().size(), is(1));
+		} finally {
+			seguir.countDown();
+			hilos.shutdownNow();
+		}
+	}
+
+	@Test
+	public void ejecutarTrasTerminarLanzaExcepcion() {
+		escritor.terminar();
+		try {
+			escritor.ejecutar(transaccion -> transaccion.insertar(libro));
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalStateException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El escritor no está en marcha."));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+}
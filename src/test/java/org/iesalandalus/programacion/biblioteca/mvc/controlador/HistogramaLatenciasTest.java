@@ -0,0 +1,107 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.vista.Vista;
+import org.junit.Test;
+
+public class HistogramaLatenciasTest {
+
+	private static final String EXCEPCION_ESPERADA = "Debería haber saltado la excepción.";
+	private static final String VALOR_NO_ESPERADO = "El valor del histograma no es el esperado.";
+
+	@Test
+	public void cadaLatenciaCaeEnUnIntervaloQueLaContieneConErrorMenorDelTresPorCiento() {
+		int anterior = -1;
+		for (long latencia = 0; latencia < (1L << 40); latencia = latencia < 200 ? latencia + 1 : latencia + latencia / 7) {
+			int intervalo = HistogramaLatencias.getIntervalo(latencia);
+			long superior = HistogramaLatencias.getLimiteSuperior(intervalo);
+			assertTrue(VALOR_NO_ESPERADO, intervalo >= anterior);
+			assertTrue(VALOR_NO_ESPERADO, superior >= latencia && superior - latencia <= latencia / 32);
+			assertTrue(VALOR_NO_ESPERADO, intervalo == 0 || HistogramaLatencias.getLimiteSuperior(intervalo - 1) < latencia);
+			anterior = intervalo;
+		}
+	}
+
+	@Test
+	public void percentilesYContadores() {
+		HistogramaLatencias histograma = new HistogramaLatencias();
+		assertThat(VALOR_NO_ESPERADO, histograma.getPercentilNanos(99), is(0L));
+		for (long i = 1; i <= 1000; i++) {
+			histograma.registrar(i * 1000);
+		}
+		histograma.registrarError(5_000_000, true);
+		histograma.registrarError(10, false);
+		assertThat(VALOR_NO_ESPERADO, histograma.getLlamadas(), is(1002L));
+		assertThat(VALOR_NO_ESPERADO, histograma.getNoAdmitidas(), is(1L));
+		assertThat(VALOR_NO_ESPERADO, histograma.getErrores(), is(1L));
+		assertThat(VALOR_NO_ESPERADO, histograma.getMaximoNanos(), is(5_000_000L));
+		assertThat(VALOR_NO_ESPERADO, histograma.getPercentilNanos(100), is(5_000_000L));
+		long p50 = histograma.getPercentilNanos(50);
+		assertTrue(VALOR_NO_ESPERADO + p50, p50 >= 500_000 && p50 <= 500_000 * 33 / 32);
+		long p99 = histograma.getPercentilNanos(99);
+		assertTrue(VALOR_NO_ESPERADO + p99, p99 >= 990_000 && p99 <= 990_000 * 33 / 32);
+		try {
+			histograma.getPercentilNanos(101);
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalArgumentException e) {
+			assertThat(VALOR_NO_ESPERADO, e.getMessage(), is("ERROR: El percentil debe estar entre 0 y 100."));
+		}
+	}
+
+	@Test
+	public void variosHilosRegistranSinPerderLlamadas() throws InterruptedException {
+		HistogramaLatencias histograma = new HistogramaLatencias();
+		ExecutorService hilos = Executors.newFixedThreadPool(4);
+		for (int h = 0; h < 4; h++) {
+			hilos.execute(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					histograma.registrar(i % 5000);
+				}
+			});
+		}
+		hilos.shutdown();
+		assertTrue(hilos.awaitTermination(60, TimeUnit.SECONDS));
+		assertThat(VALOR_NO_ESPERADO, histograma.getLlamadas(), is(400_000L));
+		assertThat(VALOR_NO_ESPERADO, histograma.getMaximoNanos(), is(4999L));
+	}
+
+	@Test
+	public void controladorMideSusOperacionesYLasVuelca() throws IOException {
+		Controlador controlador = new Controlador(new Modelo(), new Vista());
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		try {
+			controlador.insertar(alumno);
+			controlador.insertar(alumno);
+			fail(EXCEPCION_ESPERADA);
+		} catch (OperationNotSupportedException e) {
+			// La segunda inserción no se admite.
+		}
+		controlador.getAlumnos();
+		HistogramaLatencias insertar = controlador.getMetricas().get(OperacionControlador.INSERTAR_ALUMNO);
+		assertThat(VALOR_NO_ESPERADO, insertar.getLlamadas(), is(2L));
+		assertThat(VALOR_NO_ESPERADO, insertar.getNoAdmitidas(), is(1L));
+		assertThat(VALOR_NO_ESPERADO, insertar.getErrores(), is(0L));
+		StringWriter volcado = new StringWriter();
+		assertThat(VALOR_NO_ESPERADO, controlador.getMetricas().volcar(volcado), is(2));
+		assertThat(VALOR_NO_ESPERADO, volcado.toString(),
+				containsString("{\"operacion\":\"insertar(Alumno)\",\"llamadas\":2,\"errores\":0,\"noAdmitidas\":1,"));
+		assertThat(VALOR_NO_ESPERADO, volcado.toString(), containsString("\"p99.9\":"));
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.iesalandalus.programacion.biblioteca.mvc.controlador;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Test;
+
+public class MonitorModeloTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String VALOR_NO_ESPERADO = "El valor del atributo JMX no es el esperado.";
+
+	@Test
+	public void atributosYOperacionesSeConsultanPorJmx() throws JMException {
+		Modelo modelo = new Modelo();
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		Libro libro1 = new Libro("Cien años de soledad", "Gabriel García Márquez", 471);
+		Libro libro2 = new Libro("El alquimista", "Paulo Coelho", 224);
+		LocalDate fecha = LocalDate.now().minusDays(10);
+		try {
+			modelo.insertar(alumno);
+			modelo.insertar(libro1);
+			modelo.insertar(libro2);
+			modelo.prestar(new Prestamo(alumno, libro1, fecha));
+			modelo.prestar(new Prestamo(alumno, libro2, fecha));
+			modelo.devolver(new Prestamo(alumno, libro1, fecha), fecha.plusDays(1));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+		ObjectName nombre = new ObjectName("org.iesalandalus.programacion.biblioteca:type=Modelo,name=MonitorModeloTest");
+		servidor.registerMBean(new MonitorModelo(modelo), nombre);
+		try {
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "NumAlumnos"), is(1));
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "NumLibros"), is(2));
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "NumPrestamos"), is(2));
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "NumPrestamosAbiertos"), is(1));
+			modelo.getLibros();
+			modelo.getPrestamos(alumno);
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "Copias"), is(2L));
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "ElementosCopiados"), is(4L));
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "Ordenaciones"), is(1L));
+			modelo.getLibros();
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "Copias"), is(2L));
+			servidor.invoke(nombre, "vaciarCaches", null, null);
+			modelo.getLibros();
+			assertThat(VALOR_NO_ESPERADO, servidor.getAttribute(nombre, "Copias"), is(3L));
+		} finally {
+			servidor.unregisterMBean(nombre);
+		}
+	}
+
+}
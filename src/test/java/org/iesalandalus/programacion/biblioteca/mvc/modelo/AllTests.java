@@ -1,11 +1,20 @@
 package org.iesalandalus.programacion.biblioteca.mvc.modelo;
 
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.EscritorUnicoTest;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.HistogramaLatenciasTest;
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.MonitorModeloTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.AlumnoTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.LibroTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.PrestamoTest;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.ExportadorTest;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.GeneradorDatosTest;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros.ImportadorCsvTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.AlumnosTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.LibrosTest;
 import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.PrestamosTest;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia.PuntoControlTest;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia.RegistroOperacionesTest;
+import org.iesalandalus.programacion.biblioteca.mvc.vista.http.ServidorHttpTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -13,7 +22,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ AlumnoTest.class, LibroTest.class, PrestamoTest.class,
 				AlumnosTest.class, LibrosTest.class, PrestamosTest.class,
-				ModeloTest.class })
+				ModeloTest.class, ModeloConcurrenciaTest.class, TransaccionTest.class, RegistroOperacionesTest.class, PuntoControlTest.class,
+				ImportadorCsvTest.class, ExportadorTest.class, GeneradorDatosTest.class, EscritorUnicoTest.class,
+				ServidorHttpTest.class, HistogramaLatenciasTest.class, MonitorModeloTest.class, EventosModeloTest.class })
 public class AllTests {
 
 }
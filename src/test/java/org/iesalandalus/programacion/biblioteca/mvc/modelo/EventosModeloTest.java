@@ -0,0 +1,155 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class EventosModeloTest {
+
+	private static final String PREFIJO = "org.iesalandalus.programacion.biblioteca.";
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String EVENTOS_NO_ESPERADOS = "Los eventos grabados no son los esperados.";
+
+	@Test
+	public void operacionesDelModeloEmitenSusEventos() throws IOException {
+		Modelo modelo = new Modelo();
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		Libro libro1 = new Libro("Cien años de soledad", "Gabriel García Márquez", 471);
+		Libro libro2 = new Libro("El alquimista", "Paulo Coelho", 224);
+		LocalDate fecha = LocalDate.now().minusDays(10);
+		Path fichero = Files.createTempFile("eventos", ".jfr");
+		try (Recording grabacion = new Recording()) {
+			for (String evento : new String[] { "Prestar", "Devolver", "Borrar", "Listado", "Recorrido", "Ordenacion" }) {
+				grabacion.enable(PREFIJO + evento).withoutThreshold();
+			}
+			grabacion.start();
+			try {
+				modelo.insertar(alumno);
+				modelo.insertar(libro1);
+				modelo.insertar(libro2);
+				modelo.prestar(new Prestamo(alumno, libro1, fecha));
+				modelo.prestar(new Prestamo(alumno, libro2, fecha));
+				modelo.devolver(new Prestamo(alumno, libro1, fecha), fecha.plusDays(1));
+				modelo.getPrestamos();
+				modelo.getPrestamos(alumno);
+				modelo.borrar(alumno);
+			} catch (OperationNotSupportedException e) {
+				fail(EXCEPCION_NO_PROCEDE);
+			}
+			try {
+				modelo.prestar(new Prestamo(alumno, libro1, fecha));
+				fail(EXCEPCION_NO_PROCEDE);
+			} catch (OperationNotSupportedException e) {
+				// El alumno ya no existe.
+			}
+			grabacion.stop();
+			grabacion.dump(fichero);
+			List<RecordedEvent> eventos = new ArrayList<>();
+			for (RecordedEvent evento : RecordingFile.readAllEvents(fichero)) {
+				if (evento.getEventType().getName().startsWith(PREFIJO)) {
+					eventos.add(evento);
+				}
+			}
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Prestar"), is(3));
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Devolver"), is(1));
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Listado"), is(2));
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Recorrido"), is(1));
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Ordenacion"), is(2));
+			RecordedEvent borrado = buscar(eventos, "Borrar");
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getString("entidad"), is("Alumno"));
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getString("clave"), is("joseramon.jimenez@iesalandalus.org"));
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getInt("prestamosBorrados"), is(2));
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getBoolean("admitido"), is(true));
+			int rechazados = 0;
+			for (RecordedEvent evento : eventos) {
+				if (evento.getEventType().getName().equals(PREFIJO + "Prestar") && !evento.getBoolean("admitido")) {
+					rechazados++;
+				}
+			}
+			assertThat(EVENTOS_NO_ESPERADOS, rechazados, is(1));
+		} finally {
+			Files.deleteIfExists(fichero);
+		}
+	}
+
+	@Test
+	public void operacionesDeUnaTransaccionEmitenSusEventos() throws IOException {
+		Modelo modelo = new Modelo();
+		Alumno alumno = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		Libro libro = new Libro("Cien años de soledad", "Gabriel García Márquez", 471);
+		LocalDate fecha = LocalDate.now().minusDays(10);
+		Path fichero = Files.createTempFile("eventos", ".jfr");
+		try (Recording grabacion = new Recording()) {
+			for (String evento : new String[] { "Prestar", "Devolver", "Borrar" }) {
+				grabacion.enable(PREFIJO + evento).withoutThreshold();
+			}
+			grabacion.start();
+			try {
+				// Como el escritor único, que ejecuta las operaciones sin pasar por Modelo.prestar().
+				modelo.ejecutar(transaccion -> {
+					transaccion.insertar(alumno);
+					transaccion.insertar(libro);
+					transaccion.prestar(new Prestamo(alumno, libro, fecha));
+					transaccion.devolver(new Prestamo(alumno, libro, fecha), fecha.plusDays(1));
+					transaccion.borrar(new Prestamo(alumno, libro, fecha));
+				});
+			} catch (OperationNotSupportedException e) {
+				fail(EXCEPCION_NO_PROCEDE);
+			}
+			grabacion.stop();
+			grabacion.dump(fichero);
+			List<RecordedEvent> eventos = new ArrayList<>();
+			for (RecordedEvent evento : RecordingFile.readAllEvents(fichero)) {
+				if (evento.getEventType().getName().startsWith(PREFIJO)) {
+					eventos.add(evento);
+				}
+			}
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Prestar"), is(1));
+			assertThat(EVENTOS_NO_ESPERADOS, contar(eventos, "Devolver"), is(1));
+			RecordedEvent borrado = buscar(eventos, "Borrar");
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getString("entidad"), is("Prestamo"));
+			assertThat(EVENTOS_NO_ESPERADOS, borrado.getBoolean("admitido"), is(true));
+		} finally {
+			Files.deleteIfExists(fichero);
+		}
+	}
+
+	private static int contar(List<RecordedEvent> eventos, String nombre) {
+		int total = 0;
+		for (RecordedEvent evento : eventos) {
+			if (evento.getEventType().getName().equals(PREFIJO + nombre)) {
+				total++;
+			}
+		}
+		return total;
+	}
+
+	private static RecordedEvent buscar(List<RecordedEvent> eventos, String nombre) {
+		for (RecordedEvent evento : eventos) {
+			if (evento.getEventType().getName().equals(PREFIJO + nombre)) {
+				return evento;
+			}
+		}
+		throw new AssertionError(EVENTOS_NO_ESPERADOS);
+	}
+
+}
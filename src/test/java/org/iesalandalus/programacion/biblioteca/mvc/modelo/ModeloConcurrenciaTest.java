@@ -0,0 +1,306 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModeloConcurrenciaTest {
+
+	private static final String ERRORES_NO_ESPERADOS = "Ningún hilo debería haber fallado: ";
+	private static final String PRESTAMO_HUERFANO = "Hay un préstamo de un alumno o un libro que no existe.";
+	private static final String ESTADISTICA_NO_ESPERADA = "La estadística no coincide con los préstamos del mes.";
+	private static final String LECTURA_NO_COHERENTE = "Una consulta ha devuelto un estado a medias.";
+	private static final String RECORRIDO_BLOQUEA = "Un recorrido no debería hacer esperar a las modificaciones.";
+	private static final int NUM_ALUMNOS = 40;
+	private static final int NUM_LIBROS = 15;
+	private static final int ITERACIONES = 3000;
+	private static final LocalDate INICIO = LocalDate.of(2020, 1, 1);
+
+	private Modelo modelo;
+	private Alumno[] alumnos;
+	private Libro[] libros;
+	private ExecutorService hilos;
+	private Queue<Throwable> errores;
+	private CountDownLatch salida;
+
+	@Before
+	public void inicializar() throws OperationNotSupportedException {
+		modelo = new Modelo();
+		alumnos = new Alumno[NUM_ALUMNOS];
+		for (int i = 0; i < NUM_ALUMNOS; i++) {
+			alumnos[i] = new Alumno("Alumno De Prueba", "alumno" + i + "@iesalandalus.org", Curso.values()[i % 4]);
+			modelo.insertar(alumnos[i]);
+		}
+		libros = new Libro[NUM_LIBROS];
+		for (int i = 0; i < NUM_LIBROS; i++) {
+			libros[i] = new Libro("Libro " + i, "Autor " + (i % 3), 50 + i * 40);
+			modelo.insertar(libros[i]);
+		}
+		hilos = Executors.newFixedThreadPool(6);
+		errores = new ConcurrentLinkedQueue<>();
+		salida = new CountDownLatch(1);
+	}
+
+	@After
+	public void terminar() {
+		hilos.shutdownNow();
+	}
+
+	private interface Tarea {
+		void ejecutar(Random aleatorio) throws Exception;
+	}
+
+	private void lanzar(int semilla, Tarea tarea) {
+		hilos.execute(() -> {
+			try {
+				salida.await();
+				tarea.ejecutar(new Random(semilla));
+			} catch (Throwable e) {
+				errores.add(e);
+			}
+		});
+	}
+
+	private void esperar() throws InterruptedException {
+		salida.countDown();
+		hilos.shutdown();
+		assertTrue("Los hilos no han terminado a tiempo.", hilos.awaitTermination(60, TimeUnit.SECONDS));
+		assertTrue(ERRORES_NO_ESPERADOS + errores, errores.isEmpty());
+	}
+
+	private Prestamo prestamoAleatorio(Random aleatorio) {
+		return new Prestamo(alumnos[aleatorio.nextInt(NUM_ALUMNOS)], libros[aleatorio.nextInt(NUM_LIBROS)],
+				INICIO.plusDays(aleatorio.nextInt(90)));
+	}
+
+	@Test
+	public void prestarMientrasSeBorranAlumnosYLibrosNoDejaPrestamosHuerfanos() throws InterruptedException {
+		for (int h = 0; h < 3; h++) {
+			lanzar(h, aleatorio -> {
+				for (int i = 0; i < ITERACIONES; i++) {
+					try {
+						modelo.prestar(prestamoAleatorio(aleatorio));
+					} catch (OperationNotSupportedException e) {
+						// El alumno o el libro se acaban de borrar, o el préstamo ya existía.
+					}
+				}
+			});
+		}
+		lanzar(10, aleatorio -> {
+			for (int i = 0; i < ITERACIONES / 10; i++) {
+				Alumno alumno = alumnos[aleatorio.nextInt(NUM_ALUMNOS)];
+				modelo.borrar(alumno);
+				modelo.insertar(alumno);
+			}
+		});
+		lanzar(11, aleatorio -> {
+			for (int i = 0; i < ITERACIONES / 20; i++) {
+				Libro libro = libros[aleatorio.nextInt(NUM_LIBROS)];
+				modelo.borrar(libro);
+				modelo.insertar(libro);
+			}
+		});
+		lanzar(12, aleatorio -> {
+			for (int i = 0; i < ITERACIONES; i++) {
+				Alumno alumno = alumnos[aleatorio.nextInt(NUM_ALUMNOS)];
+				for (Prestamo prestamo : modelo.getPrestamos(alumno)) {
+					if (!prestamo.getAlumno().equals(alumno)) {
+						throw new AssertionError(LECTURA_NO_COHERENTE);
+					}
+				}
+			}
+		});
+		esperar();
+		for (Prestamo prestamo : modelo.getPrestamos()) {
+			assertThat(PRESTAMO_HUERFANO, modelo.buscar(prestamo.getAlumno()), is(notNullValue()));
+			assertThat(PRESTAMO_HUERFANO, modelo.buscar(prestamo.getLibro()), is(notNullValue()));
+		}
+	}
+
+	@Test
+	public void consultasOptimistasDuranteModificacionesDevuelvenResultadosValidos() throws InterruptedException {
+		for (int h = 0; h < 2; h++) {
+			lanzar(h, aleatorio -> {
+				for (int i = 0; i < ITERACIONES; i++) {
+					Prestamo prestamo = prestamoAleatorio(aleatorio);
+					try {
+						switch (aleatorio.nextInt(3)) {
+						case 0:
+							modelo.prestar(prestamo);
+							break;
+						case 1:
+							modelo.devolver(prestamo, prestamo.getFechaPrestamo().plusDays(1 + aleatorio.nextInt(30)));
+							break;
+						default:
+							modelo.borrar(prestamo);
+						}
+					} catch (OperationNotSupportedException | IllegalArgumentException e) {
+						// El préstamo no existía, ya existía, ya se había devuelto o se hizo después de esa fecha.
+					}
+				}
+			});
+		}
+		AtomicBoolean leido = new AtomicBoolean();
+		for (int h = 0; h < 3; h++) {
+			lanzar(20 + h, aleatorio -> {
+				for (int i = 0; i < ITERACIONES; i++) {
+					Prestamo buscado = prestamoAleatorio(aleatorio);
+					Prestamo encontrado = modelo.buscar(buscado);
+					if (encontrado != null && !encontrado.equals(buscado)) {
+						throw new AssertionError(LECTURA_NO_COHERENTE);
+					}
+					Map<Curso, Integer> estadistica = modelo.getEstadisticaMensualPorCurso(buscado.getFechaPrestamo());
+					if (estadistica.size() != Curso.values().length) {
+						throw new AssertionError(LECTURA_NO_COHERENTE);
+					}
+					for (Prestamo prestamo : modelo.getPrestamos(buscado.getAlumno())) {
+						if (!prestamo.getAlumno().equals(buscado.getAlumno())) {
+							throw new AssertionError(LECTURA_NO_COHERENTE);
+						}
+					}
+					for (Prestamo prestamo : modelo.getPrestamos(buscado.getLibro())) {
+						if (!prestamo.getLibro().equals(buscado.getLibro())) {
+							throw new AssertionError(LECTURA_NO_COHERENTE);
+						}
+					}
+					List<Prestamo> prestamos = modelo.getPrestamos();
+					for (int j = 1; j < prestamos.size(); j++) {
+						if (prestamos.get(j - 1).getFechaPrestamo().isAfter(prestamos.get(j).getFechaPrestamo())) {
+							throw new AssertionError(LECTURA_NO_COHERENTE);
+						}
+					}
+					leido.set(true);
+				}
+			});
+		}
+		esperar();
+		assertTrue(leido.get());
+		for (int mes = 0; mes < 3; mes++) {
+			LocalDate fecha = INICIO.plusMonths(mes);
+			Map<Curso, Integer> esperada = new EnumMap<>(Curso.class);
+			for (Curso curso : Curso.values()) {
+				esperada.put(curso, 0);
+			}
+			for (Prestamo prestamo : modelo.getPrestamos(fecha.withDayOfMonth(1))) {
+				esperada.merge(prestamo.getAlumno().getCurso(), Math.round(prestamo.getPuntos()), Integer::sum);
+			}
+			assertThat(ESTADISTICA_NO_ESPERADA, modelo.getEstadisticaMensualPorCurso(fecha), is(esperada));
+		}
+	}
+
+	@Test
+	public void consultasDeTodoElModeloNoVenATransaccionesDeUnAlumnoAMedias() throws InterruptedException {
+		// Cada hilo trabaja con sus propios alumnos, en franjas distintas o no, y presta y
+		// borra siempre los préstamos de dos en dos: cualquier estado coherente tiene un
+		// número par de préstamos y estadísticas que no cuentan medio par.
+		for (int h = 0; h < 4; h++) {
+			int primerAlumno = h * (NUM_ALUMNOS / 4);
+			lanzar(h, aleatorio -> {
+				for (int i = 0; i < ITERACIONES; i++) {
+					Alumno alumno = alumnos[primerAlumno + aleatorio.nextInt(NUM_ALUMNOS / 4)];
+					int libro = aleatorio.nextInt(NUM_LIBROS - 1);
+					Prestamo prestamo1 = new Prestamo(alumno, libros[libro], INICIO);
+					Prestamo prestamo2 = new Prestamo(alumno, libros[libro + 1], INICIO);
+					modelo.ejecutar(alumno, transaccion -> {
+						transaccion.prestar(prestamo1);
+						transaccion.prestar(prestamo2);
+						transaccion.devolver(prestamo2, INICIO.plusDays(1 + aleatorio.nextInt(30)));
+					});
+					modelo.ejecutar(alumno, transaccion -> {
+						transaccion.borrar(prestamo1);
+						transaccion.borrar(prestamo2);
+					});
+				}
+			});
+		}
+		AtomicBoolean leido = new AtomicBoolean();
+		for (int h = 0; h < 2; h++) {
+			lanzar(20 + h, aleatorio -> {
+				for (int i = 0; i < ITERACIONES; i++) {
+					if (modelo.getPrestamos().size() % 2 != 0 || modelo.getPrestamos(INICIO).size() % 2 != 0) {
+						throw new AssertionError(LECTURA_NO_COHERENTE);
+					}
+					int prestamosLibros = 0;
+					for (Libro libro : libros) {
+						prestamosLibros += modelo.getPrestamos(libro).size();
+					}
+					if (prestamosLibros > 2 * 4) {
+						throw new AssertionError(LECTURA_NO_COHERENTE);
+					}
+					leido.set(true);
+				}
+			});
+		}
+		esperar();
+		assertTrue(leido.get());
+		assertThat(LECTURA_NO_COHERENTE, modelo.getPrestamos().size(), is(0));
+		for (Integer puntos : modelo.getEstadisticaMensualPorCurso(INICIO).values()) {
+			assertThat(ESTADISTICA_NO_ESPERADA, puntos, is(0));
+		}
+	}
+
+	@Test
+	public void modificacionesNoEsperanAQueTermineUnRecorrido() throws Exception {
+		modelo.prestar(new Prestamo(alumnos[0], libros[0], INICIO));
+		modelo.prestar(new Prestamo(alumnos[1], libros[1], INICIO));
+		int[] recorridos = { 0 };
+		modelo.recorrerPrestamos(prestamo -> {
+			if (recorridos[0]++ == 0) {
+				// Mientras se escribe el primer préstamo, otro hilo presta, devuelve y borra.
+				try {
+					hilos.submit(() -> {
+						modelo.prestar(new Prestamo(alumnos[2], libros[2], INICIO));
+						modelo.devolver(new Prestamo(alumnos[0], libros[0], INICIO), INICIO.plusDays(1));
+						modelo.borrar(libros[1]);
+						return null;
+					}).get(10, TimeUnit.SECONDS);
+				} catch (Exception e) {
+					throw new AssertionError(RECORRIDO_BLOQUEA, e);
+				}
+			}
+			assertThat(LECTURA_NO_COHERENTE, prestamo.getFechaDevolucion() == null, is(true));
+		});
+		assertThat(LECTURA_NO_COHERENTE, recorridos[0], is(2));
+		assertThat(LECTURA_NO_COHERENTE, modelo.getPrestamos().size(), is(2));
+		int[] alumnosRecorridos = { 0 };
+		modelo.recorrerAlumnos(alumno -> {
+			if (alumnosRecorridos[0]++ == 0) {
+				try {
+					hilos.submit(() -> {
+						modelo.borrar(alumnos[NUM_ALUMNOS - 1]);
+						return null;
+					}).get(10, TimeUnit.SECONDS);
+				} catch (Exception e) {
+					throw new AssertionError(RECORRIDO_BLOQUEA, e);
+				}
+			}
+		});
+		assertThat(LECTURA_NO_COHERENTE, alumnosRecorridos[0], is(NUM_ALUMNOS));
+		assertThat(LECTURA_NO_COHERENTE, modelo.getAlumnos().size(), is(NUM_ALUMNOS - 1));
+	}
+
+}
@@ -3,12 +3,15 @@ package org.iesalandalus.programacion.biblioteca.mvc.modelo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -71,6 +74,21 @@ public class ModeloTest {
 		}
 	}
 	
+	@Test
+	public void insertarAlumnosLlamaAlumnosInsertarYDevuelveRechazados() {
+		try {
+			doThrow(new OperationNotSupportedException("ERROR: Ya existe un alumno con ese correo."))
+					.when(alumnosSimulados).insertar(alumnoExistente);
+			Map<Integer, String> rechazados = modelo.insertarAlumnos(Arrays.asList(alumnoNoExistente, alumnoExistente));
+			verify(alumnosSimulados).insertar(alumnoNoExistente);
+			verify(alumnosSimulados).insertar(alumnoExistente);
+			assertThat(MENSAJE_NO_CORRECTO, rechazados.size(), is(1));
+			assertThat(MENSAJE_NO_CORRECTO, rechazados.get(1), is("ERROR: Ya existe un alumno con ese correo."));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+	
 	@Test
 	public void buscarAlumnoLlamaAlumnosBuscar() {
 		modelo.buscar(alumnoExistente);
@@ -0,0 +1,186 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransaccionTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String EXCEPCION_ESPERADA = "Debería haber saltado la excepción.";
+	private static final String ESTADO_NO_ESPERADO = "El estado del modelo tras la transacción no es el esperado.";
+	private static final String MENSAJE_NO_CORRECTO = "El mensaje devuelto por la excepción no es correcto.";
+	private static final String REFERENCIA_NO_COMPARTIDA = "Los préstamos deberían compartir el alumno y el libro de sus colecciones.";
+	private static final LocalDate MARZO = LocalDate.of(2020, 3, 1);
+
+	private Modelo modelo;
+	private Alumno alumno1;
+	private Alumno alumno2;
+	private Libro libro1;
+	private Libro libro2;
+	private Libro libroNoExistente;
+	private Prestamo prestamo1;
+
+	@Before
+	public void inicializar() throws OperationNotSupportedException {
+		modelo = new Modelo();
+		alumno1 = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		alumno2 = new Alumno("Andrés Rubio Del Río", "andres.rubio@iesalandalus.org", Curso.TERCERO);
+		libro1 = new Libro("Don Quijote", "Cervantes", 1000);
+		libro2 = new Libro("La Celestina", "Fernando de Rojas", 300);
+		libroNoExistente = new Libro("El retrato de Dorian Gray", "Oscar Wilde", 275);
+		prestamo1 = new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2));
+		modelo.insertar(alumno1);
+		modelo.insertar(libro1);
+		modelo.insertar(libro2);
+		modelo.prestar(prestamo1);
+		modelo.prestar(new Prestamo(alumno1, libro2, LocalDate.of(2020, 3, 4)));
+		modelo.devolver(prestamo1, LocalDate.of(2020, 3, 10));
+	}
+
+	@Test
+	public void ejecutarConUnaOperacionFallidaNoAplicaNinguna() {
+		List<Prestamo> prestamosAntes = modelo.getPrestamos();
+		Map<Curso, Integer> estadisticaAntes = modelo.getEstadisticaMensualPorCurso(MARZO);
+		try {
+			modelo.ejecutar(transaccion -> {
+				transaccion.insertar(alumno2);
+				transaccion.borrar(alumno1);
+				transaccion.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 5)));
+				transaccion.prestar(new Prestamo(alumno2, libroNoExistente, LocalDate.of(2020, 3, 5)));
+			});
+			fail(EXCEPCION_ESPERADA);
+		} catch (OperationNotSupportedException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: No existe el libro del préstamo."));
+		}
+		assertThat(ESTADO_NO_ESPERADO, modelo.buscar(alumno2), is(nullValue()));
+		assertThat(ESTADO_NO_ESPERADO, modelo.buscar(alumno1), is(notNullValue()));
+		assertThat(ESTADO_NO_ESPERADO, modelo.buscar(prestamo1).getFechaDevolucion(), is(LocalDate.of(2020, 3, 10)));
+		assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos().toString(), is(prestamosAntes.toString()));
+		assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(MARZO).toString(), is(prestamosAntes.toString()));
+		assertThat(ESTADO_NO_ESPERADO, modelo.getEstadisticaMensualPorCurso(MARZO), is(estadisticaAntes));
+	}
+
+	@Test
+	public void ejecutarAplicaTodasLasOperacionesAlConfirmar() {
+		try {
+			Prestamo prestamo2 = new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 5));
+			modelo.ejecutar(transaccion -> {
+				transaccion.borrar(alumno1);
+				transaccion.insertar(alumno2);
+				transaccion.prestar(prestamo2);
+				transaccion.devolver(prestamo2, LocalDate.of(2020, 3, 8));
+			});
+			assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos().size(), is(1));
+			assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(MARZO).size(), is(1));
+			assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos().get(0).getFechaDevolucion(), is(LocalDate.of(2020, 3, 8)));
+			Map<Curso, Integer> estadistica = modelo.getEstadisticaMensualPorCurso(MARZO);
+			assertThat(ESTADO_NO_ESPERADO, estadistica.get(Curso.PRIMERO), is(0));
+			assertThat(ESTADO_NO_ESPERADO, estadistica.get(Curso.TERCERO), is(modelo.getPrestamos().get(0).getPuntos()));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void ejecutarDentroDeUnaTransaccionDeshaceSoloSusOperaciones() {
+		try {
+			modelo.ejecutar(transaccion -> {
+				transaccion.insertar(alumno2);
+				try {
+					transaccion.ejecutar(parte -> {
+						parte.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 5)));
+						parte.borrar(libroNoExistente);
+					});
+					fail(EXCEPCION_ESPERADA);
+				} catch (OperationNotSupportedException e) {
+					// Solo se deshace el préstamo de esta parte.
+				}
+				transaccion.prestar(new Prestamo(alumno2, libro2, LocalDate.of(2020, 3, 6)));
+			});
+			assertThat(ESTADO_NO_ESPERADO, modelo.buscar(alumno2), is(notNullValue()));
+			assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(alumno2).size(), is(1));
+			assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(alumno2).get(0).getLibro(), is(libro2));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void transaccionTerminadaNoAdmiteOperaciones() {
+		Transaccion[] terminada = new Transaccion[1];
+		try {
+			modelo.ejecutar(transaccion -> terminada[0] = transaccion);
+			terminada[0].insertar(alumno2);
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalStateException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: La transacción ya ha terminado."));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void ejecutarDeUnAlumnoNoAdmiteOperacionesDeOtroNiDeLibros() {
+		try {
+			modelo.ejecutar(alumno1, transaccion -> {
+				transaccion.devolver(new Prestamo(alumno1, libro2, LocalDate.of(2020, 3, 4)), LocalDate.of(2020, 3, 12));
+				transaccion.insertar(alumno2);
+			});
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalStateException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(),
+					is("ERROR: La transacción solo puede operar sobre el alumno joseramon.jimenez@iesalandalus.org."));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		assertThat(ESTADO_NO_ESPERADO, modelo.buscar(new Prestamo(alumno1, libro2, LocalDate.of(2020, 3, 4))).getFechaDevolucion(),
+				is(nullValue()));
+		try {
+			modelo.ejecutar(alumno1, transaccion -> transaccion.borrar(libro1));
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalStateException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: Una transacción de un solo alumno no puede modificar los libros."));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		assertThat(ESTADO_NO_ESPERADO, modelo.getPrestamos(libro1).size(), is(1));
+	}
+
+	@Test
+	public void prestarCompartePrestamosElAlumnoYElLibroDeSusColecciones() throws OperationNotSupportedException {
+		// Un alumno de otra franja, para que no pueda tomar el libro de otro préstamo de la suya.
+		int i = 0;
+		while (Prestamos.getFranja("alumno" + i + "@iesalandalus.org") == Prestamos.getFranja(alumno1.getCorreo())) {
+			i++;
+		}
+		Alumno alumno3 = new Alumno("Alumno Otra Franja", "alumno" + i + "@iesalandalus.org", Curso.SEGUNDO);
+		modelo.insertar(alumno3);
+		modelo.prestar(new Prestamo(alumno3, libro1, LocalDate.of(2020, 3, 3)));
+		modelo.prestar(new Prestamo(alumno3, libro2, LocalDate.of(2020, 3, 5)));
+		Prestamo prestamoAlumno1 = modelo.getPrestamos(libro1).get(0);
+		Prestamo prestamoAlumno3 = modelo.getPrestamos(libro1).get(1);
+		assertThat(ESTADO_NO_ESPERADO, prestamoAlumno3.getAlumno(), is(alumno3));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamoAlumno3.getLibro(), sameInstance(prestamoAlumno1.getLibro()));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamoAlumno3.getAlumno(), sameInstance(modelo.getPrestamos(libro2).get(1).getAlumno()));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamoAlumno3.getAlumno(), sameInstance(modelo.getAlumnos().get(0)));
+	}
+
+}
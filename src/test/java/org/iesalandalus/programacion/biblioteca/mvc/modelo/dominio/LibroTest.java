@@ -15,6 +15,8 @@ public class LibroTest {
 	private static final String ERROR_TITULO_NO_VALIDO = "ERROR: El título no puede estar vacío.";
 	private static final String ERROR_AUTOR_NULO = "ERROR: El autor no puede ser nulo.";
 	private static final String ERROR_AUTOR_NO_VALIDO = "ERROR: El autor no puede estar vacío.";
+	private static final String ERROR_TITULO_CARACTER = "ERROR: El título contiene un carácter no válido.";
+	private static final String ERROR_AUTOR_CARACTER = "ERROR: El autor contiene un carácter no válido.";
 	private static final String ERROR_NUM_PAGINAS_NO_VALIDO = "ERROR: El número de páginas debe ser mayor que cero.";
 	private static final String ERROR_COPIAR_LIBRO_NULO = "ERROR: No es posible copiar un libro nulo.";
 	private static final String TITULO_INCORRECTO = "Debería haber saltado una excepción indicando que el título es incorrecto";
@@ -273,4 +275,20 @@ public class LibroTest {
 		assertThat(CADENA_NO_ESPERADA, segundoLibro.toString(), is(String.format("título=%s, autor=%s, número de páginas=%s", TITULO2, AUTOR2, NUM_PAGINAS2)));
 	}
 
+	@Test
+	public void constructorTituloOAutorConSeparadorDeClavesLanzaExcepcion() {
+		try {
+			new Libro("Don\u001FQuijote", AUTOR1, NUM_PAGINAS1);
+			fail(TITULO_INCORRECTO);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is(ERROR_TITULO_CARACTER));
+		}
+		try {
+			new Libro(TITULO1, "Miguel\u001Fde Cervantes", NUM_PAGINAS1);
+			fail(AUTOR_INCORRECTO);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is(ERROR_AUTOR_CARACTER));
+		}
+	}
+
 }
@@ -41,6 +41,8 @@ public class PrestamoTest {
 	private static final String OBJETOS_DEBERIAN_SER_IGUALES = "Los objetos deberían ser iguales.";
 	private static final String OBJETOS_DEBERIAN_SER_DIFERENTES = "Los objetos debería ser diferentes.";
 	private static final String REFERENCIA_NO_ESPERADA = "La referencia devuelta es la misma que la pasada.";
+	private static final String REFERENCIA_NO_COMPARTIDA = "La referencia devuelta debería ser la misma que la pasada.";
+	private static final String ERROR_PRESTAMO_COMPARTIDO_DISTINTO = "ERROR: El alumno y el libro deben ser los del préstamo.";
 
 	private static Alumno alumno;
 	private static Libro libro;
@@ -291,5 +293,32 @@ public class PrestamoTest {
 		prestamo.devolver(hoy);
 		assertThat(CADENA_NO_ESPERADA, prestamo.toString(), is(String.format("alumno=(%s), libro=(%s), fecha de préstamo=%s, fecha de devolución=%s, puntos=%d", alumno, libro, semanaPasada.format(Prestamo.FORMATO_FECHA), hoy.format(Prestamo.FORMATO_FECHA), 1)));
 	}
+	
+	@Test
+	public void getPrestamoCompartidoAlumnoYLibroDelPrestamoLosReferenciaSinCopiar() {
+		Prestamo prestamo = new Prestamo(alumno, libro, semanaPasada);
+		prestamo.devolver(hoy);
+		Prestamo prestamoCompartido = Prestamo.getPrestamoCompartido(prestamo, alumno, libro);
+		assertThat(PRESTAMO_NO_ESPERADO, prestamoCompartido, is(prestamo));
+		assertThat(REFERENCIA_NO_ESPERADA, prestamoCompartido, not(sameInstance(prestamo)));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamoCompartido.getAlumno(), sameInstance(alumno));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamoCompartido.getLibro(), sameInstance(libro));
+		assertThat(FECHA_PRESTAMO_NO_ESPERADA, prestamoCompartido.getFechaPrestamo(), is(semanaPasada));
+		assertThat(FECHA_DEVOLUCION_NO_ESPERADA, prestamoCompartido.getFechaDevolucion(), is(hoy));
+	}
+	
+	@Test
+	public void getPrestamoCompartidoAlumnoDistintoLanzaExcepcion() {
+		Prestamo prestamo = new Prestamo(alumno, libro, semanaPasada);
+		Alumno otroAlumno = Alumno.getAlumnoFicticio("otro@iesalandalus.org");
+		try {
+			Prestamo.getPrestamoCompartido(prestamo, otroAlumno, libro);
+			fail(ALUMNO_INCORRECTO);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is(ERROR_PRESTAMO_COMPARTIDO_DISTINTO));
+		} catch (Exception e) {
+			fail(TIPO_NO_CORRECTO);
+		}
+	}
 
 }
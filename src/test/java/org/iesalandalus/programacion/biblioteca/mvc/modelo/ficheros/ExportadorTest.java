@@ -0,0 +1,194 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExportadorTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String LINEAS_NO_ESPERADAS = "Las líneas exportadas no son las esperadas.";
+	private static final String RESULTADO_NO_ESPERADO = "El número de filas exportadas no es el esperado.";
+	private static final String LISTADO_NO_ESPERADO = "El listado tras importar lo exportado no es el esperado.";
+	private static final String COPIA_NO_ESPERADA = "Exportar no debería hacer la copia entera de los listados.";
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	private Modelo modelo;
+	private Exportador exportador;
+	private Alumno alumno1;
+	private Alumno alumno2;
+	private Libro libro1;
+	private Libro libro2;
+
+	@Before
+	public void inicializar() throws OperationNotSupportedException {
+		modelo = new Modelo();
+		exportador = new Exportador(modelo);
+		alumno1 = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		alumno2 = new Alumno("Andrés Rubio Del Río", "andres.rubio@iesalandalus.org", Curso.CUARTO);
+		libro1 = new Libro("Don Quijote, \"edición\" de bolsillo", "Cervantes", 1000);
+		libro2 = new Libro("La Celestina", "Fernando de Rojas", 250);
+		modelo.insertar(alumno1);
+		modelo.insertar(alumno2);
+		modelo.insertar(libro1);
+		modelo.insertar(libro2);
+		modelo.prestar(new Prestamo(alumno1, libro2, LocalDate.of(2020, 3, 2)));
+		modelo.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 2)));
+		modelo.prestar(new Prestamo(alumno1, libro1, LocalDate.of(2020, 2, 20)));
+		modelo.devolver(new Prestamo(alumno1, libro1, LocalDate.of(2020, 2, 20)), LocalDate.of(2020, 3, 1));
+	}
+
+	@Test
+	public void exportarCsvSigueElOrdenDeLosListados() {
+		try {
+			StringWriter destino = new StringWriter();
+			assertThat(RESULTADO_NO_ESPERADO, exportador.exportarAlumnos(destino, FormatoExportacion.CSV), is(2L));
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString(), is("nombre,correo,curso\n"
+					+ "Andrés Rubio Del Río,andres.rubio@iesalandalus.org,4\n"
+					+ "José Ramón Jiménez Reyes,joseramon.jimenez@iesalandalus.org,1\n"));
+			destino = new StringWriter();
+			exportador.exportarLibros(destino, FormatoExportacion.CSV);
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString(), is("titulo,autor,numPaginas\n"
+					+ "\"Don Quijote, \"\"edición\"\" de bolsillo\",Cervantes,1000\n"
+					+ "La Celestina,Fernando de Rojas,250\n"));
+			destino = new StringWriter();
+			assertThat(RESULTADO_NO_ESPERADO, exportador.exportarPrestamos(destino, FormatoExportacion.CSV), is(3L));
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString(), is("correo,titulo,autor,fechaPrestamo,fechaDevolucion\n"
+					+ "joseramon.jimenez@iesalandalus.org,\"Don Quijote, \"\"edición\"\" de bolsillo\",Cervantes,20/02/2020,01/03/2020\n"
+					+ "andres.rubio@iesalandalus.org,\"Don Quijote, \"\"edición\"\" de bolsillo\",Cervantes,02/03/2020,\n"
+					+ "joseramon.jimenez@iesalandalus.org,La Celestina,Fernando de Rojas,02/03/2020,\n"));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void exportarJsonLinesEscapaCadenas() {
+		try {
+			StringWriter destino = new StringWriter();
+			exportador.exportarPrestamos(destino, FormatoExportacion.JSON_LINES);
+			String[] lineas = destino.toString().split("\n");
+			assertThat(RESULTADO_NO_ESPERADO, lineas.length, is(3));
+			assertThat(LINEAS_NO_ESPERADAS, lineas[0], is("{\"correo\":\"joseramon.jimenez@iesalandalus.org\","
+					+ "\"titulo\":\"Don Quijote, \\\"edición\\\" de bolsillo\",\"autor\":\"Cervantes\","
+					+ "\"fechaPrestamo\":\"2020-02-20\",\"fechaDevolucion\":\"2020-03-01\"}"));
+			assertThat(LINEAS_NO_ESPERADAS, lineas[2], is("{\"correo\":\"joseramon.jimenez@iesalandalus.org\","
+					+ "\"titulo\":\"La Celestina\",\"autor\":\"Fernando de Rojas\","
+					+ "\"fechaPrestamo\":\"2020-03-02\",\"fechaDevolucion\":null}"));
+			destino = new StringWriter();
+			exportador.exportarAlumnos(destino, FormatoExportacion.JSON_LINES);
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString().split("\n")[0], is("{\"nombre\":\"Andrés Rubio Del Río\","
+					+ "\"correo\":\"andres.rubio@iesalandalus.org\",\"curso\":4}"));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void importarLoExportadoReproduceLosListados() {
+		try {
+			Path alumnos = exportarAFichero(FormatoExportacion.CSV, 1);
+			Path libros = exportarAFichero(FormatoExportacion.CSV, 2);
+			Path prestamos = exportarAFichero(FormatoExportacion.CSV, 3);
+			Modelo copia = new Modelo();
+			ImportadorCsv importador = new ImportadorCsv(copia);
+			List<String> rechazos = new ArrayList<>();
+			importador.importarAlumnos(alumnos, rechazos::add);
+			importador.importarLibros(libros, rechazos::add);
+			importador.importarPrestamos(prestamos, rechazos::add);
+			assertThat(LISTADO_NO_ESPERADO, rechazos, is(Arrays.asList()));
+			assertThat(LISTADO_NO_ESPERADO, copia.getAlumnos(), is(modelo.getAlumnos()));
+			assertThat(LISTADO_NO_ESPERADO, copia.getLibros(), is(modelo.getLibros()));
+			assertThat(LISTADO_NO_ESPERADO, copia.getPrestamos().toString(), is(modelo.getPrestamos().toString()));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void exportarNoHaceLaCopiaDeLosListados() {
+		try {
+			modelo.vaciarCaches();
+			long copias = modelo.getCosteCopias().getCopias();
+			exportador.exportarAlumnos(new StringWriter(), FormatoExportacion.CSV);
+			exportador.exportarLibros(new StringWriter(), FormatoExportacion.CSV);
+			exportador.exportarPrestamos(new StringWriter(), FormatoExportacion.JSON_LINES);
+			assertThat(COPIA_NO_ESPERADA, modelo.getCosteCopias().getCopias(), is(copias));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void exportarVariosTrozosSigueElOrdenDeLosListados() {
+		try {
+			List<Libro> librosNuevos = new ArrayList<>();
+			List<Prestamo> prestamosNuevos = new ArrayList<>();
+			for (int i = 0; i < 2500; i++) {
+				Libro libro = new Libro("Libro " + i, "Autor " + (i % 7), 100 + i);
+				librosNuevos.add(libro);
+				prestamosNuevos.add(new Prestamo(i % 2 == 0 ? alumno1 : alumno2, libro, LocalDate.of(2019, 1, 1).plusDays(i % 400)));
+			}
+			assertThat(RESULTADO_NO_ESPERADO, modelo.insertarLibros(librosNuevos).size(), is(0));
+			assertThat(RESULTADO_NO_ESPERADO, modelo.prestarPrestamos(prestamosNuevos).size(), is(0));
+			StringWriter destino = new StringWriter();
+			assertThat(RESULTADO_NO_ESPERADO, exportador.exportarLibros(destino, FormatoExportacion.JSON_LINES), is(2502L));
+			StringWriter esperado = new StringWriter();
+			for (Libro libro : modelo.getLibros()) {
+				Exportador.escribirLibro(esperado, libro, FormatoExportacion.JSON_LINES);
+				esperado.write('\n');
+			}
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString(), is(esperado.toString()));
+			destino = new StringWriter();
+			assertThat(RESULTADO_NO_ESPERADO, exportador.exportarPrestamos(destino, FormatoExportacion.JSON_LINES), is(2503L));
+			esperado = new StringWriter();
+			for (Prestamo prestamo : modelo.getPrestamos()) {
+				Exportador.escribirPrestamo(esperado, prestamo, FormatoExportacion.JSON_LINES);
+				esperado.write('\n');
+			}
+			assertThat(LINEAS_NO_ESPERADAS, destino.toString(), is(esperado.toString()));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	private Path exportarAFichero(FormatoExportacion formato, int datos) throws IOException {
+		Path fichero = carpeta.newFile().toPath();
+		try (BufferedWriter destino = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+			if (datos == 1) {
+				exportador.exportarAlumnos(destino, formato);
+			} else if (datos == 2) {
+				exportador.exportarLibros(destino, formato);
+			} else {
+				exportador.exportarPrestamos(destino, formato);
+			}
+		}
+		return fichero;
+	}
+
+}
@@ -0,0 +1,113 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GeneradorDatosTest {
+
+	private static final String EXCEPCION_ESPERADA = "Debería haber saltado la excepción.";
+	private static final String MENSAJE_NO_CORRECTO = "El mensaje devuelto por la excepción no es correcto.";
+	private static final String DATOS_NO_ESPERADOS = "Los datos generados no son los esperados.";
+	private static final LocalDate HOY = LocalDate.of(2024, 10, 18);
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	@Test
+	public void mismaSemillaGeneraLosMismosDatosYOtraSemillaOtros() {
+		assertThat(DATOS_NO_ESPERADOS, generar(7), is(generar(7)));
+		assertFalse(DATOS_NO_ESPERADOS, generar(7).equals(generar(8)));
+	}
+
+	@Test
+	public void prestamosConFechasLectivasNoFuturasYPopularidadDeZipf() {
+		GeneradorDatos generador = new GeneradorDatos(1, 2000, 200, 4000, HOY);
+		int[] prestamosPorLibro = new int[200];
+		int[] devoluciones = new int[3];
+		generador.recorrerPrestamos(prestamo -> {
+			LocalDate fecha = prestamo.getFechaPrestamo();
+			assertFalse(DATOS_NO_ESPERADOS, fecha.isAfter(HOY));
+			assertFalse(DATOS_NO_ESPERADOS, fecha.isBefore(LocalDate.of(2022, 9, 15)));
+			assertTrue(DATOS_NO_ESPERADOS, fecha.getDayOfWeek() != DayOfWeek.SATURDAY && fecha.getDayOfWeek() != DayOfWeek.SUNDAY);
+			assertTrue(DATOS_NO_ESPERADOS, fecha.getMonthValue() <= 6 || fecha.getMonthValue() >= 9);
+			prestamosPorLibro[Integer.parseInt(prestamo.getLibro().getTitulo().replaceAll(".* ", "")) - 1]++;
+			if (prestamo.getFechaDevolucion() == null) {
+				devoluciones[2]++;
+			} else {
+				assertFalse(DATOS_NO_ESPERADOS, prestamo.getFechaDevolucion().isAfter(HOY));
+				long dias = ChronoUnit.DAYS.between(fecha, prestamo.getFechaDevolucion());
+				devoluciones[dias <= Prestamo.MAX_DIAS_PRESTAMO ? 0 : 1]++;
+			}
+		});
+		// Con exponente 1, el libro más popular se presta unas diez veces más que el décimo.
+		assertTrue(DATOS_NO_ESPERADOS, prestamosPorLibro[0] > 5 * prestamosPorLibro[9]);
+		assertTrue(DATOS_NO_ESPERADOS, prestamosPorLibro[9] > prestamosPorLibro[199]);
+		assertTrue(DATOS_NO_ESPERADOS, devoluciones[0] > devoluciones[1] && devoluciones[1] > 0 && devoluciones[2] > 0);
+		Map<Curso, Integer> alumnosPorCurso = new EnumMap<>(Curso.class);
+		generador.recorrerAlumnos(alumno -> alumnosPorCurso.merge(alumno.getCurso(), 1, Integer::sum));
+		for (Curso curso : Curso.values()) {
+			assertTrue(DATOS_NO_ESPERADOS, alumnosPorCurso.getOrDefault(curso, 0) > 400);
+		}
+	}
+
+	@Test
+	public void ficherosGeneradosSeImportanSinRechazos() throws IOException {
+		Path directorio = carpeta.getRoot().toPath().resolve("datos");
+		long[] escritos = new GeneradorDatos(3, 300, 150, 2000, LocalDate.now()).escribir(directorio, FormatoExportacion.CSV);
+		assertThat(DATOS_NO_ESPERADOS, escritos, is(new long[] { 300, 150, 2000 }));
+		Modelo modelo = new Modelo();
+		ImportadorCsv importador = new ImportadorCsv(modelo);
+		List<String> rechazos = new ArrayList<>();
+		importador.importarAlumnos(directorio.resolve("alumnos.csv"), rechazos::add);
+		importador.importarLibros(directorio.resolve("libros.csv"), rechazos::add);
+		importador.importarPrestamos(directorio.resolve("prestamos.csv"), rechazos::add);
+		assertThat(DATOS_NO_ESPERADOS + rechazos, rechazos.isEmpty(), is(true));
+		assertThat(DATOS_NO_ESPERADOS, modelo.getPrestamos().size(), is(2000));
+	}
+
+	@Test
+	public void constructorRechazaFechaFuturaYDemasiadosPrestamos() {
+		try {
+			new GeneradorDatos(0, 10, 10, 10, LocalDate.now().plusDays(1));
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: La fecha de hoy no puede ser futura."));
+		}
+		try {
+			new GeneradorDatos(0, 10, 10, 51, HOY);
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: Hay demasiados préstamos para tan pocos alumnos y libros."));
+		}
+	}
+
+	private List<String> generar(long semilla) {
+		GeneradorDatos generador = new GeneradorDatos(semilla, 50, 30, 300, HOY);
+		List<String> datos = new ArrayList<>();
+		generador.recorrerAlumnos(alumno -> datos.add(alumno.toString()));
+		generador.recorrerLibros(libro -> datos.add(libro.toString()));
+		generador.recorrerPrestamos(prestamo -> datos.add(prestamo.toString() + prestamo.getFechaDevolucion()));
+		return datos;
+	}
+
+}
@@ -0,0 +1,171 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.ficheros;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImportadorCsvTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String RESULTADO_NO_ESPERADO = "El número de filas importadas o rechazadas no es el esperado.";
+	private static final String RECHAZOS_NO_ESPERADOS = "Los rechazos informados no son los esperados.";
+	private static final String CAMPOS_NO_ESPERADOS = "Los campos de la línea no son los esperados.";
+	private static final String OBJETO_NO_ESPERADO = "El objeto importado no es el esperado.";
+	private static final String COMILLAS_SIN_CERRAR = "Debería haber saltado una excepción indicando que hay comillas sin cerrar.";
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	private Modelo modelo;
+	private ImportadorCsv importador;
+	private List<String> rechazos;
+
+	@Before
+	public void inicializar() {
+		modelo = new Modelo();
+		importador = new ImportadorCsv(modelo);
+		rechazos = new ArrayList<>();
+	}
+
+	private Path crearFichero(String... lineas) throws IOException {
+		Path fichero = carpeta.newFile().toPath();
+		Files.write(fichero, Arrays.asList(lineas), StandardCharsets.UTF_8);
+		return fichero;
+	}
+
+	@Test
+	public void dividirRespetaCamposEntreComillas() {
+		assertThat(CAMPOS_NO_ESPERADOS, ImportadorCsv.dividir("a,\"b, c\",\"d \"\"e\"\"\","),
+				is(new String[] { "a", "b, c", "d \"e\"", "" }));
+		try {
+			ImportadorCsv.dividir("a,\"b");
+			fail(COMILLAS_SIN_CERRAR);
+		} catch (IllegalArgumentException e) {
+			assertThat(COMILLAS_SIN_CERRAR, e.getMessage(), is("ERROR: Hay unas comillas sin cerrar."));
+		}
+	}
+
+	@Test
+	public void importarAlumnosInformaRechazosConNumeroDeLinea() {
+		try {
+			Path fichero = crearFichero("nombre,correo,curso",
+					"José Ramón Jiménez Reyes,joseramon.jimenez@iesalandalus.org,1",
+					"Andrés Rubio Del Río,correo-no-valido,2",
+					"",
+					"Ana López,ana.lopez@iesalandalus.org,7",
+					"\"Andrés Rubio Del Río\",andres.rubio@iesalandalus.org,4",
+					"Otro Alumno,joseramon.jimenez@iesalandalus.org,3",
+					"Sin Curso,sin.curso@iesalandalus.org");
+			ResultadoImportacion resultado = importador.importarAlumnos(fichero, rechazos::add);
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getImportadas(), is(2L));
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getRechazadas(), is(4L));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos, is(Arrays.asList(
+					"Línea 3: ERROR: El formato del correo no es válido.",
+					"Línea 5: ERROR: El curso debe ser un número entre 1 y 4.",
+					"Línea 8: ERROR: La fila tiene 2 campos y se esperaban 3.",
+					"Línea 7: ERROR: Ya existe un alumno con ese correo.")));
+			Alumno alumno = modelo.buscar(Alumno.getAlumnoFicticio("andres.rubio@iesalandalus.org"));
+			assertThat(OBJETO_NO_ESPERADO, alumno.getCurso(), is(Curso.CUARTO));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void importarLibrosYPrestamosInsertaEnModelo() {
+		try {
+			importador.importarAlumnos(crearFichero("José Ramón Jiménez Reyes,joseramon.jimenez@iesalandalus.org,1"),
+					rechazos::add);
+			ResultadoImportacion resultado = importador.importarLibros(crearFichero("titulo,autor,numPaginas",
+					"\"Don Quijote, edición de bolsillo\",Cervantes,1000", "La Celestina,Fernando de Rojas,muchas"), rechazos::add);
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getImportadas(), is(1L));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos,
+					is(Arrays.asList("Línea 3: ERROR: El número de páginas no es un número válido.")));
+			rechazos.clear();
+			resultado = importador.importarPrestamos(crearFichero(
+					"joseramon.jimenez@iesalandalus.org,\"Don Quijote, edición de bolsillo\",Cervantes,02/03/2020,10/03/2020",
+					"joseramon.jimenez@iesalandalus.org,La Celestina,Fernando de Rojas,02/03/2020",
+					"joseramon.jimenez@iesalandalus.org,\"Don Quijote, edición de bolsillo\",Cervantes,2020-03-02"), rechazos::add);
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getImportadas(), is(1L));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos, is(Arrays.asList(
+					"Línea 3: ERROR: El formato de la fecha no es correcto.",
+					"Línea 2: ERROR: No existe el libro del préstamo.")));
+			Prestamo prestamo = modelo.buscar(Prestamo.getPrestamoFicticio(
+					Alumno.getAlumnoFicticio("joseramon.jimenez@iesalandalus.org"),
+					Libro.getLibroFicticio("Don Quijote, edición de bolsillo", "Cervantes")));
+			assertThat(OBJETO_NO_ESPERADO, prestamo.getFechaDevolucion(), is(LocalDate.of(2020, 3, 10)));
+			assertThat(OBJETO_NO_ESPERADO, modelo.buscar(Libro.getLibroFicticio("La Celestina", "Fernando de Rojas")),
+					is(nullValue()));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void importarCampoEntreComillasConSaltosDeLineaLoLeeEnteroYNumeraLaPrimeraLinea() {
+		try {
+			Path fichero = crearFichero("titulo,autor,numPaginas",
+					"\"Poemas,", "primera parte\",Autor,100",
+					"La Celestina,Fernando de Rojas,muchas",
+					"Libro Abierto,\"Autor");
+			ResultadoImportacion resultado = importador.importarLibros(fichero, rechazos::add);
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getImportadas(), is(1L));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos, is(Arrays.asList(
+					"Línea 4: ERROR: El número de páginas no es un número válido.",
+					"Línea 5: ERROR: Hay unas comillas sin cerrar.")));
+			assertThat(OBJETO_NO_ESPERADO, modelo.buscar(Libro.getLibroFicticio("Poemas,\nprimera parte", "Autor"))
+					.getNumPaginas(), is(100));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void importarFicheroGrandeProcesaVariosLotes() {
+		try {
+			Path fichero = carpeta.newFile().toPath();
+			try (BufferedWriter escritor = Files.newBufferedWriter(fichero, StandardCharsets.UTF_8)) {
+				for (int i = 0; i < 20000; i++) {
+					if (i == 15000) {
+						escritor.write("Libro Sin Paginas,Autor,0");
+					} else {
+						escritor.write("Libro " + i + ",Autor " + (i % 100) + "," + (i % 900 + 10));
+					}
+					escritor.newLine();
+				}
+				escritor.write("Libro 5,Autor 5,15");
+				escritor.newLine();
+			}
+			ResultadoImportacion resultado = importador.importarLibros(fichero, rechazos::add);
+			assertThat(RESULTADO_NO_ESPERADO, resultado.getImportadas(), is(19999L));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos.size(), is(2));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos.get(0).startsWith("Línea 15001: "), is(true));
+			assertThat(RECHAZOS_NO_ESPERADOS, rechazos.get(1), is("Línea 20001: ERROR: Ya existe un libro con ese título y autor."));
+			assertThat(RESULTADO_NO_ESPERADO, modelo.getLibros().size(), is(19999));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+}
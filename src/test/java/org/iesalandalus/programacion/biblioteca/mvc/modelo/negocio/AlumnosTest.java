@@ -32,6 +32,9 @@ public class AlumnosTest {
 	private static final String REFERENCIA_NO_ESPERADA = "La referencia devuelta es la misma que la pasada.";
 	private static final String TAMANO_NO_ESPERADO = "El tamaño devuelto no es el esperado.";
 	private static final String ALUMNO_NO_ESPERADO = "El alumno devuelto no es el que debería ser.";
+	private static final String COPIA_NO_REUTILIZADA = "Sin cambios en la colección se debería reutilizar la misma copia ordenada.";
+	private static final String COPIA_NO_ACTUALIZADA = "Tras modificar la colección se debería devolver una nueva copia ordenada.";
+	private static final String LISTADO_MODIFICADO = "Modificar un alumno de un listado no debería cambiar los listados siguientes.";
 	
 	private static Alumno alumno1;
 	private static Alumno alumno2;
@@ -287,5 +290,46 @@ public class AlumnosTest {
 			fail(TIPO_NO_CORRECTO);
 		}
 	}
+	
+	@Test
+	public void getSinCambiosReutilizaCopiaOrdenadaYTrasCambiosLaRenueva() {
+		Alumnos alumnos = new Alumnos();
+		insertarAlumnoValido(alumnos, alumno1);
+		insertarAlumnoValido(alumnos, alumno2);
+		List<Alumno> alumnosOrdenados = alumnos.get();
+		assertThat(COPIA_NO_REUTILIZADA, alumnos.get(), is(sameInstance(alumnosOrdenados)));
+		insertarAlumnoValido(alumnos, alumno3);
+		List<Alumno> alumnosOrdenadosTrasInsertar = alumnos.get();
+		assertThat(COPIA_NO_ACTUALIZADA, alumnosOrdenadosTrasInsertar, not(sameInstance(alumnosOrdenados)));
+		assertThat(TAMANO_NO_ESPERADO, alumnosOrdenados.size(), is(2));
+		assertThat(TAMANO_NO_ESPERADO, alumnosOrdenadosTrasInsertar.size(), is(3));
+		assertThat(ALUMNO_NO_ESPERADO, alumnosOrdenadosTrasInsertar.get(1), is(alumno3));
+		try {
+			alumnos.borrar(alumno3);
+			assertThat(COPIA_NO_ACTUALIZADA, alumnos.get().size(), is(2));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void cambiarCursoAlumnoDeUnListadoNoCambiaLosListadosSiguientes() {
+		Alumnos alumnos = new Alumnos();
+		insertarAlumnoValido(alumnos, alumno1);
+		insertarAlumnoValido(alumnos, alumno2);
+		Alumno alumnoListado = alumnos.get().get(0);
+		Curso cursoAntes = alumnoListado.getCurso();
+		try {
+			alumnoListado.setCurso(cursoAntes == Curso.CUARTO ? Curso.PRIMERO : Curso.CUARTO);
+			fail(OPERACION_NO_PERMITIDA);
+		} catch (UnsupportedOperationException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El alumno es de un listado y no se puede modificar."));
+		} catch (Exception e) {
+			fail(TIPO_NO_CORRECTO);
+		}
+		alumnos.vaciarCache();
+		assertThat(LISTADO_MODIFICADO, alumnos.get().get(0).getCurso(), is(cursoAntes));
+		assertThat(LISTADO_MODIFICADO, alumnos.buscar(alumnoListado).getCurso(), is(cursoAntes));
+	}
 
 }
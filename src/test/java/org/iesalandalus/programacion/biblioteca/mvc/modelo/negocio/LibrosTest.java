@@ -31,6 +31,8 @@ public class LibrosTest {
 	private static final String REFERENCIA_NO_ESPERADA = "La referencia devuelta es la misma que la pasada.";
 	private static final String TAMANO_NO_ESPERADO = "El tamaño devuelto no es el esperado.";
 	private static final String LIBRO_NO_ESPERADO = "El libro devuelto no es el que debería ser.";
+	private static final String COPIA_NO_REUTILIZADA = "Sin cambios en la colección se debería reutilizar la misma copia ordenada.";
+	private static final String COPIA_NO_ACTUALIZADA = "Tras modificar la colección se debería devolver una nueva copia ordenada.";
 	
 	private static Libro libro1;
 	private static Libro libro2;
@@ -298,5 +300,26 @@ public class LibrosTest {
 			fail(TIPO_NO_CORRECTO);
 		}
 	}
+	
+	@Test
+	public void getSinCambiosReutilizaCopiaOrdenadaYTrasCambiosLaRenueva() {
+		Libros libros = new Libros();
+		insertarLibroValido(libros, libro1);
+		insertarLibroValido(libros, libro4);
+		List<Libro> librosOrdenados = libros.get();
+		assertThat(COPIA_NO_REUTILIZADA, libros.get(), is(sameInstance(librosOrdenados)));
+		insertarLibroValido(libros, libro5);
+		List<Libro> librosOrdenadosTrasInsertar = libros.get();
+		assertThat(COPIA_NO_ACTUALIZADA, librosOrdenadosTrasInsertar, not(sameInstance(librosOrdenados)));
+		assertThat(TAMANO_NO_ESPERADO, librosOrdenados.size(), is(2));
+		assertThat(TAMANO_NO_ESPERADO, librosOrdenadosTrasInsertar.size(), is(3));
+		assertThat(LIBRO_NO_ESPERADO, librosOrdenadosTrasInsertar.get(1), is(libro5));
+		try {
+			libros.borrar(libro5);
+			assertThat(COPIA_NO_ACTUALIZADA, libros.get().size(), is(2));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
 
 }
@@ -41,10 +41,16 @@ public class PrestamosTest {
 	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
 	private static final String PRESTAMOS_NO_CREADOS = "Debería haber creado los préstamos correctamente.";
 	private static final String REFERENCIA_NO_ESPERADA = "La referencia devuelta es la misma que la pasada.";
+	private static final String REFERENCIA_NO_COMPARTIDA = "Los préstamos de un mismo libro deberían compartir su instancia.";
+	private static final String CURSO_NO_ESPERADO = "Cambiar el curso de un alumno fuera de la colección no debería cambiar sus préstamos.";
 	private static final String TAMANO_NO_ESPERADO = "El tamaño devuelto no es el esperado.";
 	private static final String PRESTAMO_NO_ESPERADO = "El préstamo devuelto no es el que debería ser.";
 	private static final String OBJETO_DEBERIA_SER_NULO = "No se debería haber creado el objeto.";
 	private static final String PUNTOS_NO_ESPERADOS = "Los puntos de la estadística no son los esperados.";
+	private static final String COPIA_NO_REUTILIZADA = "Sin cambios en la colección se debería reutilizar la misma copia ordenada.";
+	private static final String COPIA_NO_ACTUALIZADA = "Tras modificar la colección se debería devolver una nueva copia ordenada.";
+	private static final String ESTADISTICAS_INCONSISTENTES = "Las estadísticas acumuladas no coinciden con las recalculadas.";
+	private static final String LISTADO_MODIFICADO = "Modificar un préstamo de un listado no debería cambiar los listados siguientes.";
 	
 	private static Prestamo prestamo1;
 	private static Prestamo prestamo2;
@@ -351,6 +357,36 @@ public class PrestamosTest {
 		assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(Curso.CUARTO), is(0));
 	}
 	
+	@Test
+	public void getEstadisticasMensualesPorCursoTrasBorrarDescuentaPuntosPrestamo() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		try {
+			for (Prestamo prestamo : prestamos.get()) {
+				prestamos.devolver(prestamo, tercerDiaMesPasado);
+			}
+			assertThat(ESTADISTICAS_INCONSISTENTES, prestamos.comprobarEstadisticas(), is(true));
+			prestamos.borrar(prestamo3);
+			prestamos.borrar(prestamo7);
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		Map<Curso, Integer> estadisticasMensualesPorCurso = prestamos.getEstadisticaMensualPorCurso(primerDiaMesPasado);
+		assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(Curso.PRIMERO), is(19));
+		assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(Curso.SEGUNDO), is(0));
+		assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(Curso.TERCERO), is(2));
+		assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(Curso.CUARTO), is(0));
+		assertThat(ESTADISTICAS_INCONSISTENTES, prestamos.comprobarEstadisticas(), is(true));
+	}
+	
+	@Test
+	public void getEstadisticasMensualesPorCursoMesSinPrestamosDevuelveCeros() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		Map<Curso, Integer> estadisticasMensualesPorCurso = prestamos.getEstadisticaMensualPorCurso(primerDiaMesPasado.minusYears(5));
+		for (Curso curso : Curso.values()) {
+			assertThat(PUNTOS_NO_ESPERADOS, estadisticasMensualesPorCurso.get(curso), is(0));
+		}
+	}
+	
 	@Test
 	public void devolverPrestamoExistenteDevuelvePrestamoCorrectamente() {
 		Prestamos prestamos = new Prestamos();
@@ -483,4 +519,160 @@ public class PrestamosTest {
 		}
 	}
 
+	@Test
+	public void devolverYBorrarPrestamoActualizanPrestamosAlumno() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		Alumno alumno = Alumno.getAlumnoFicticio("bob@gmail.com");
+		try {
+			prestamos.devolver(prestamo1, tercerDiaMesPasado);
+			prestamos.borrar(prestamo5);
+			List<Prestamo> prestamosAlumno = prestamos.get(alumno);
+			assertThat(TAMANO_NO_ESPERADO, prestamosAlumno.size(), is(3));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosAlumno.get(0), is(prestamo2));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosAlumno.get(1), is(prestamo1));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosAlumno.get(1).getFechaDevolucion(), is(tercerDiaMesPasado));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosAlumno.get(2), is(prestamo6));
+			prestamos.borrar(prestamo1);
+			prestamos.borrar(prestamo2);
+			prestamos.borrar(prestamo6);
+			assertThat(TAMANO_NO_ESPERADO, prestamos.get(alumno).size(), is(0));
+			assertThat(TAMANO_NO_ESPERADO, prestamos.getTamano(), is(4));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void devolverYBorrarPrestamoActualizanPrestamosLibro() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		Libro libro = Libro.getLibroFicticio("El retrato de Dorian Gray", "Oscar Wilde");
+		try {
+			prestamos.devolver(prestamo3, tercerDiaMesPasado);
+			List<Prestamo> prestamosLibro = prestamos.get(libro);
+			assertThat(TAMANO_NO_ESPERADO, prestamosLibro.size(), is(2));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosLibro.get(0), is(prestamo2));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosLibro.get(1), is(prestamo3));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosLibro.get(1).getFechaDevolucion(), is(tercerDiaMesPasado));
+			prestamos.borrar(prestamo2);
+			prestamosLibro = prestamos.get(libro);
+			assertThat(TAMANO_NO_ESPERADO, prestamosLibro.size(), is(1));
+			assertThat(PRESTAMO_NO_ESPERADO, prestamosLibro.get(0), is(prestamo3));
+			prestamos.borrar(prestamo3);
+			assertThat(TAMANO_NO_ESPERADO, prestamos.get(libro).size(), is(0));
+			assertThat(TAMANO_NO_ESPERADO, prestamos.getTamano(), is(6));
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+	
+	@Test
+	public void getSinCambiosReutilizaCopiaOrdenadaYTrasDevolverLaRenueva() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		List<Prestamo> prestamosOrdenados = prestamos.get();
+		assertThat(COPIA_NO_REUTILIZADA, prestamos.get(), is(sameInstance(prestamosOrdenados)));
+		try {
+			prestamos.devolver(prestamo1, tercerDiaMesPasado);
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		List<Prestamo> prestamosOrdenadosTrasDevolver = prestamos.get();
+		assertThat(COPIA_NO_ACTUALIZADA, prestamosOrdenadosTrasDevolver, not(sameInstance(prestamosOrdenados)));
+		assertThat(PRESTAMO_NO_ESPERADO, prestamosOrdenados.get(4).getFechaDevolucion(), is(nullValue()));
+		assertThat(PRESTAMO_NO_ESPERADO, prestamosOrdenadosTrasDevolver.get(4), is(prestamo1));
+		assertThat(PRESTAMO_NO_ESPERADO, prestamosOrdenadosTrasDevolver.get(4).getFechaDevolucion(), is(tercerDiaMesPasado));
+	}
+	
+	@Test
+	public void devolverPrestamoDeUnListadoNoCambiaLosListadosSiguientes() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		List<Prestamo> prestamosOrdenados = prestamos.get();
+		String listadoAntes = prestamosOrdenados.toString();
+		try {
+			prestamosOrdenados.get(4).devolver(tercerDiaMesPasado);
+			fail(OPERACION_NO_PERMITIDA);
+		} catch (UnsupportedOperationException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El préstamo es de un listado y no se puede modificar."));
+		} catch (Exception e) {
+			fail(TIPO_NO_CORRECTO);
+		}
+		Prestamo copia = new Prestamo(prestamosOrdenados.get(4));
+		copia.devolver(tercerDiaMesPasado);
+		assertThat(LISTADO_MODIFICADO, prestamos.get().toString(), is(listadoAntes));
+		assertThat(LISTADO_MODIFICADO, prestamos.get().get(4).getFechaDevolucion(), is(nullValue()));
+		assertThat(LISTADO_MODIFICADO, prestamos.buscar(prestamo1).getFechaDevolucion(), is(nullValue()));
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getNumAbiertos(), is(8));
+	}
+	
+	@Test
+	public void cambiarCursoAlumnoDeUnListadoNoCambiaLosListadosSiguientes() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		Map<Curso, Integer> estadisticaAntes = prestamos.getEstadisticaMensualPorCurso(segundoDiaMesPasado);
+		List<Prestamo> prestamosOrdenados = prestamos.get();
+		String listadoAntes = prestamosOrdenados.toString();
+		try {
+			prestamosOrdenados.get(4).getAlumno().setCurso(Curso.CUARTO);
+			fail(OPERACION_NO_PERMITIDA);
+		} catch (UnsupportedOperationException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El alumno es de un listado y no se puede modificar."));
+		} catch (Exception e) {
+			fail(TIPO_NO_CORRECTO);
+		}
+		Alumno copia = new Alumno(prestamosOrdenados.get(4).getAlumno());
+		copia.setCurso(Curso.CUARTO);
+		prestamos.vaciarCache();
+		assertThat(LISTADO_MODIFICADO, prestamos.get().toString(), is(listadoAntes));
+		assertThat(LISTADO_MODIFICADO, prestamos.get().get(4).getAlumno().getCurso(), is(Curso.PRIMERO));
+		assertThat(LISTADO_MODIFICADO, prestamos.getEstadisticaMensualPorCurso(segundoDiaMesPasado), is(estadisticaAntes));
+	}
+	
+	@Test
+	public void getNumAbiertosCuentaLosNoDevueltosYVaciarCacheRenuevaLaCopia() {
+		Prestamos prestamos = insertarOchoPrestamos();
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getNumAbiertos(), is(8));
+		try {
+			prestamos.devolver(prestamo1, tercerDiaMesPasado);
+		} catch (OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getNumAbiertos(), is(7));
+		List<Prestamo> prestamosOrdenados = prestamos.get();
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getCosteCopias().getCopias(), is(1L));
+		prestamos.vaciarCache();
+		assertThat(COPIA_NO_ACTUALIZADA, prestamos.get(), not(sameInstance(prestamosOrdenados)));
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getCosteCopias().getCopias(), is(2L));
+		assertThat(TAMANO_NO_ESPERADO, prestamos.getCosteCopias().getElementosCopiados(), is(16L));
+	}
+	
+	@Test
+	public void prestarVariosPrestamosMismoLibroEnUnaFranjaCompartenInstancia() {
+		Prestamos prestamos = new Prestamos();
+		String correo1 = "alumno0@gmail.com";
+		String correo2 = correo1;
+		for (int i = 1; Prestamos.getFranja(correo2) != Prestamos.getFranja(correo1) || correo2.equals(correo1); i++) {
+			correo2 = "alumno" + i + "@gmail.com";
+		}
+		Alumno alumno1 = new Alumno("Bob Esponja", correo1, Curso.PRIMERO);
+		Alumno alumno2 = new Alumno("Patricio Estrella", correo2, Curso.SEGUNDO);
+		Libro libro = new Libro("Cien años de soledad", "Gabriel García Márquez", 471);
+		prestarPrestamoValido(prestamos, new Prestamo(alumno1, libro, segundoDiaMesPasado));
+		prestarPrestamoValido(prestamos, new Prestamo(alumno2, libro, tercerDiaMesPasado));
+		List<Prestamo> prestamosLibro = prestamos.get(Libro.getLibroFicticio("Cien años de soledad", "Gabriel García Márquez"));
+		assertThat(TAMANO_NO_ESPERADO, prestamosLibro.size(), is(2));
+		assertThat(REFERENCIA_NO_COMPARTIDA, prestamosLibro.get(0).getLibro(), sameInstance(prestamosLibro.get(1).getLibro()));
+	}
+	
+	@Test
+	public void cambiarCursoAlumnoFueraDeLaColeccionNoCambiaSusPrestamos() {
+		Prestamos prestamos = new Prestamos();
+		Prestamo prestamo = new Prestamo(prestamo1);
+		prestarPrestamoValido(prestamos, prestamo);
+		prestarPrestamoValido(prestamos, prestamo2);
+		prestamo.getAlumno().setCurso(Curso.CUARTO);
+		List<Prestamo> prestamosAlumno = prestamos.get(Alumno.getAlumnoFicticio("bob@gmail.com"));
+		new Alumno(prestamosAlumno.get(0).getAlumno()).setCurso(Curso.CUARTO);
+		for (Prestamo prestamoAlumno : prestamos.get(Alumno.getAlumnoFicticio("bob@gmail.com"))) {
+			assertThat(CURSO_NO_ESPERADO, prestamoAlumno.getAlumno().getCurso(), is(Curso.PRIMERO));
+		}
+	}
+
 }
@@ -0,0 +1,172 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Alumnos;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Libros;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.negocio.Prestamos;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PuntoControlTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String PUNTO_CONTROL_DANADO = "Debería haber saltado una excepción indicando que el punto de control está dañado.";
+	private static final String MENSAJE_NO_CORRECTO = "El mensaje devuelto por la excepción no es correcto.";
+	private static final String COLECCION_NO_ESPERADA = "La colección cargada no es la guardada.";
+	private static final String GENERACION_NO_ESPERADA = "La generación cargada no es la guardada.";
+	private static final String PUNTOS_NO_ESPERADOS = "Los puntos de la estadística no son los esperados.";
+	private static final String OPERACIONES_NO_ESPERADAS = "El número de operaciones aplicadas no es el esperado.";
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	private Path fichero;
+	private Alumnos alumnos;
+	private Libros libros;
+	private Prestamos prestamos;
+	private Alumno alumno1;
+	private Alumno alumno2;
+	private Libro libro1;
+	private Libro libro2;
+
+	@Before
+	public void inicializar() throws OperationNotSupportedException {
+		fichero = carpeta.getRoot().toPath().resolve("biblioteca.chk");
+		alumno1 = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		alumno2 = new Alumno("Andrés Rubio Del Río", "andres.rubio@iesalandalus.org", Curso.CUARTO);
+		libro1 = new Libro("Don Quijote", "Cervantes", 1000);
+		libro2 = new Libro("Novelas Ejemplares", "Cervantes", 300);
+		alumnos = new Alumnos();
+		libros = new Libros();
+		prestamos = new Prestamos();
+		alumnos.insertar(alumno1);
+		alumnos.insertar(alumno2);
+		libros.insertar(libro1);
+		libros.insertar(libro2);
+		Prestamo devuelto = new Prestamo(alumno1, libro1, LocalDate.of(2020, 2, 3));
+		prestamos.prestar(devuelto);
+		prestamos.devolver(devuelto, LocalDate.of(2020, 2, 8));
+		prestamos.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 2, 4)));
+		prestamos.prestar(new Prestamo(alumno2, libro2, LocalDate.of(2020, 3, 1)));
+	}
+
+	@Test
+	public void escribirYLeerRecuperaColecciones() {
+		try {
+			PuntoControl.escribir(fichero, alumnos, libros, prestamos, 5);
+			Alumnos alumnosLeidos = new Alumnos();
+			Libros librosLeidos = new Libros();
+			Prestamos prestamosLeidos = new Prestamos();
+			assertThat(GENERACION_NO_ESPERADA, PuntoControl.leer(fichero, alumnosLeidos, librosLeidos, prestamosLeidos), is(5L));
+			assertThat(COLECCION_NO_ESPERADA, alumnosLeidos.get(), is(alumnos.get()));
+			assertThat(COLECCION_NO_ESPERADA, alumnosLeidos.buscar(alumno2).getCurso(), is(Curso.CUARTO));
+			assertThat(COLECCION_NO_ESPERADA, librosLeidos.get(), is(libros.get()));
+			assertThat(COLECCION_NO_ESPERADA, librosLeidos.buscar(libro2).getNumPaginas(), is(300));
+			assertThat(COLECCION_NO_ESPERADA, prestamosLeidos.get(), is(prestamos.get()));
+			for (int i = 0; i < prestamos.getTamano(); i++) {
+				assertThat(COLECCION_NO_ESPERADA, prestamosLeidos.get().get(i).getFechaDevolucion(),
+						is(prestamos.get().get(i).getFechaDevolucion()));
+			}
+			assertThat(PUNTOS_NO_ESPERADOS, prestamosLeidos.getEstadisticaMensualPorCurso(LocalDate.of(2020, 2, 1)),
+					is(prestamos.getEstadisticaMensualPorCurso(LocalDate.of(2020, 2, 1))));
+			assertThat(PUNTOS_NO_ESPERADOS, prestamosLeidos.comprobarEstadisticas(), is(true));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void leerPuntoControlDanadoLanzaExcepcion() {
+		try {
+			PuntoControl.escribir(fichero, alumnos, libros, prestamos, 1);
+			try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.WRITE)) {
+				canal.write(ByteBuffer.wrap(new byte[] { 7 }), 20);
+			}
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+		try {
+			PuntoControl.leer(fichero, new Alumnos(), new Libros(), new Prestamos());
+			fail(PUNTO_CONTROL_DANADO);
+		} catch (IOException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El punto de control está dañado."));
+		}
+	}
+
+	@Test
+	public void comenzarCargaPuntoControlYOperacionesPosteriores() {
+		Path directorio = carpeta.getRoot().toPath();
+		try {
+			Modelo modelo = new Modelo();
+			modelo.comenzar(directorio);
+			modelo.insertar(alumno1);
+			modelo.insertar(libro1);
+			modelo.guardarPuntoControl();
+			modelo.insertar(alumno2);
+			modelo.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 2, 4)));
+			modelo.terminar();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(directorio.resolve("operaciones.wal"),
+					new Modelo(), 2), is(0));
+			modelo = new Modelo();
+			modelo.comenzar(directorio);
+			assertThat(COLECCION_NO_ESPERADA, modelo.getAlumnos().size(), is(2));
+			assertThat(COLECCION_NO_ESPERADA, modelo.getLibros().size(), is(1));
+			assertThat(COLECCION_NO_ESPERADA, modelo.getPrestamos().size(), is(1));
+			modelo.terminar();
+		} catch (IOException | OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void comenzarIgnoraRegistroYaIncluidoEnPuntoControl() {
+		Path directorio = carpeta.getRoot().toPath();
+		Path ficheroRegistro = directorio.resolve("operaciones.wal");
+		try {
+			Modelo modelo = new Modelo();
+			modelo.comenzar(directorio);
+			modelo.insertar(alumno1);
+			modelo.insertar(libro1);
+			modelo.terminar();
+			// Simula una caída después de guardar el punto de control y antes de vaciar el registro.
+			Files.delete(ficheroRegistro);
+			RegistroOperaciones registro = new RegistroOperaciones(ficheroRegistro, 0);
+			registro.registrarInsercion(alumno1);
+			registro.registrarInsercion(libro1);
+			registro.cerrar();
+			modelo = new Modelo();
+			modelo.comenzar(directorio);
+			assertThat(COLECCION_NO_ESPERADA, modelo.getAlumnos().size(), is(1));
+			assertThat(COLECCION_NO_ESPERADA, modelo.getLibros().size(), is(1));
+			modelo.insertar(alumno2);
+			modelo.terminar();
+			modelo = new Modelo();
+			modelo.comenzar(directorio);
+			assertThat(COLECCION_NO_ESPERADA, modelo.getAlumnos().size(), is(2));
+			modelo.terminar();
+		} catch (IOException | OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+}
@@ -0,0 +1,438 @@
+package org.iesalandalus.programacion.biblioteca.mvc.modelo.persistencia;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Alumno;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Curso;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Libro;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.dominio.Prestamo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegistroOperacionesTest {
+
+	private static final String EXCEPCION_NO_PROCEDE = "No debería haber saltado la excepción.";
+	private static final String TAMANO_NO_ESPERADO = "El tamaño devuelto no es el esperado.";
+	private static final String ALUMNO_NO_ESPERADO = "El alumno devuelto no es el que debería ser.";
+	private static final String LIBRO_NO_ESPERADO = "El libro devuelto no es el que debería ser.";
+	private static final String PRESTAMO_NO_ESPERADO = "El préstamo devuelto no es el que debería ser.";
+	private static final String PUNTOS_NO_ESPERADOS = "Los puntos de la estadística no son los esperados.";
+	private static final String OPERACIONES_NO_ESPERADAS = "El número de operaciones aplicadas no es el esperado.";
+	private static final String REGISTRO_INCOHERENTE = "Debería haber saltado una excepción indicando que el registro no es coherente.";
+	private static final String VOLCADO_FALLIDO = "Una operación cuyo volcado falló no debería darse por registrada.";
+
+	/**
+	 * Canal de fichero que puede detener una escritura hasta que se le indique y
+	 * que falla al forzar a disco a partir de un número de volcados.
+	 */
+	private static class CanalQueFalla extends FileChannel {
+
+		private final FileChannel canal;
+		private final int volcadosCorrectos;
+		private int volcados;
+		private final CountDownLatch escribiendo = new CountDownLatch(1);
+		private volatile CountDownLatch seguir;
+
+		private CanalQueFalla(FileChannel canal, int volcadosCorrectos) {
+			this.canal = canal;
+			this.volcadosCorrectos = volcadosCorrectos;
+		}
+
+		private void detenerSiguienteEscritura() {
+			seguir = new CountDownLatch(1);
+		}
+
+		private void esperarEscritura() throws InterruptedException {
+			assertThat(escribiendo.await(10, TimeUnit.SECONDS), is(true));
+		}
+
+		private void reanudarEscritura() {
+			seguir.countDown();
+		}
+
+		@Override
+		public int write(ByteBuffer origen) throws IOException {
+			CountDownLatch espera = seguir;
+			if (espera != null && escribiendo.getCount() > 0) {
+				escribiendo.countDown();
+				try {
+					espera.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			return canal.write(origen);
+		}
+
+		@Override
+		public void force(boolean metadatos) throws IOException {
+			if (++volcados > volcadosCorrectos) {
+				throw new IOException("disco lleno");
+			}
+			canal.force(metadatos);
+		}
+
+		@Override
+		public int read(ByteBuffer destino) throws IOException {
+			return canal.read(destino);
+		}
+
+		@Override
+		public long read(ByteBuffer[] destinos, int desplazamiento, int longitud) throws IOException {
+			return canal.read(destinos, desplazamiento, longitud);
+		}
+
+		@Override
+		public long write(ByteBuffer[] origenes, int desplazamiento, int longitud) throws IOException {
+			return canal.write(origenes, desplazamiento, longitud);
+		}
+
+		@Override
+		public long position() throws IOException {
+			return canal.position();
+		}
+
+		@Override
+		public FileChannel position(long posicion) throws IOException {
+			canal.position(posicion);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return canal.size();
+		}
+
+		@Override
+		public FileChannel truncate(long tamano) throws IOException {
+			canal.truncate(tamano);
+			return this;
+		}
+
+		@Override
+		public long transferTo(long posicion, long cantidad, WritableByteChannel destino) throws IOException {
+			return canal.transferTo(posicion, cantidad, destino);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel origen, long posicion, long cantidad) throws IOException {
+			return canal.transferFrom(origen, posicion, cantidad);
+		}
+
+		@Override
+		public int read(ByteBuffer destino, long posicion) throws IOException {
+			return canal.read(destino, posicion);
+		}
+
+		@Override
+		public int write(ByteBuffer origen, long posicion) throws IOException {
+			return canal.write(origen, posicion);
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode modo, long posicion, long tamano) throws IOException {
+			return canal.map(modo, posicion, tamano);
+		}
+
+		@Override
+		public FileLock lock(long posicion, long tamano, boolean compartido) throws IOException {
+			return canal.lock(posicion, tamano, compartido);
+		}
+
+		@Override
+		public FileLock tryLock(long posicion, long tamano, boolean compartido) throws IOException {
+			return canal.tryLock(posicion, tamano, compartido);
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			canal.close();
+		}
+	}
+
+	@Rule
+	public TemporaryFolder carpeta = new TemporaryFolder();
+
+	private Path directorio;
+	private Alumno alumno1;
+	private Alumno alumno2;
+	private Libro libro1;
+	private Libro libro2;
+
+	@Before
+	public void inicializar() {
+		directorio = carpeta.getRoot().toPath();
+		alumno1 = new Alumno("José Ramón Jiménez Reyes", "joseramon.jimenez@iesalandalus.org", Curso.PRIMERO);
+		alumno2 = new Alumno("Andrés Rubio Del Río", "andres.rubio@iesalandalus.org", Curso.TERCERO);
+		libro1 = new Libro("Don Quijote", "Cervantes", 1000);
+		libro2 = new Libro("La Celestina", "Fernando de Rojas", 300);
+	}
+
+	private Modelo crearModelo() throws IOException, OperationNotSupportedException {
+		Modelo modelo = new Modelo();
+		modelo.comenzar(directorio);
+		modelo.insertar(alumno1);
+		modelo.insertar(alumno2);
+		modelo.insertar(libro1);
+		modelo.insertar(libro2);
+		modelo.prestar(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+		modelo.prestar(new Prestamo(alumno1, libro2, LocalDate.of(2020, 3, 4)));
+		modelo.prestar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 5)));
+		modelo.devolver(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)), LocalDate.of(2020, 3, 10));
+		return modelo;
+	}
+
+	@Test
+	public void comenzarTrasTerminarRecuperaEstado() {
+		try {
+			Modelo original = crearModelo();
+			Map<Curso, Integer> estadisticasOriginales = original.getEstadisticaMensualPorCurso(LocalDate.of(2020, 3, 1));
+			original.terminar();
+			Modelo modelo = new Modelo();
+			modelo.comenzar(directorio);
+			assertThat(TAMANO_NO_ESPERADO, modelo.getAlumnos().size(), is(2));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getLibros().size(), is(2));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getPrestamos().size(), is(3));
+			assertThat(ALUMNO_NO_ESPERADO, modelo.buscar(alumno2), is(alumno2));
+			assertThat(ALUMNO_NO_ESPERADO, modelo.buscar(alumno2).getCurso(), is(Curso.TERCERO));
+			assertThat(LIBRO_NO_ESPERADO, modelo.buscar(libro1).getNumPaginas(), is(1000));
+			Prestamo devuelto = modelo.buscar(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+			assertThat(PRESTAMO_NO_ESPERADO, devuelto.getFechaDevolucion(), is(LocalDate.of(2020, 3, 10)));
+			assertThat(PUNTOS_NO_ESPERADOS, estadisticasOriginales.get(Curso.PRIMERO) > 0, is(true));
+			assertThat(PUNTOS_NO_ESPERADOS, modelo.getEstadisticaMensualPorCurso(LocalDate.of(2020, 3, 1)),
+					is(estadisticasOriginales));
+			modelo.terminar();
+		} catch (IOException | OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void comenzarTrasBorrarRecuperaBorradosEnCascada() {
+		try {
+			Modelo modelo = crearModelo();
+			modelo.borrar(alumno1);
+			modelo.borrar(new Prestamo(alumno2, libro1, LocalDate.of(2020, 3, 5)));
+			modelo.borrar(libro2);
+			modelo.terminar();
+			modelo = new Modelo();
+			modelo.comenzar(directorio);
+			assertThat(TAMANO_NO_ESPERADO, modelo.getAlumnos().size(), is(1));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getLibros().size(), is(1));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getPrestamos().size(), is(0));
+			assertThat(ALUMNO_NO_ESPERADO, modelo.buscar(alumno1), is(nullValue()));
+			assertThat(LIBRO_NO_ESPERADO, modelo.buscar(libro2), is(nullValue()));
+			modelo.terminar();
+		} catch (IOException | OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void operacionConfirmadaYaEstaEnDiscoSinCerrarElRegistro() {
+		try {
+			Modelo modelo = new Modelo();
+			modelo.comenzar(directorio);
+			modelo.insertar(alumno1);
+			modelo.insertar(libro1);
+			modelo.prestar(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+			// Sin terminar el modelo: lo que ya se ha confirmado debe poder reproducirse.
+			Modelo recuperado = new Modelo();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(directorio.resolve("operaciones.wal"), recuperado), is(3));
+			assertThat(TAMANO_NO_ESPERADO, recuperado.getPrestamos().size(), is(1));
+			modelo.terminar();
+		} catch (IOException | OperationNotSupportedException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void reproducirDescartaUltimoRegistroIncompleto() {
+		try {
+			Path fichero = directorio.resolve("operaciones.wal");
+			Prestamo prestamo = new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2));
+			RegistroOperaciones registro = new RegistroOperaciones(fichero);
+			registro.registrarInsercion(alumno1);
+			registro.registrarInsercion(libro1);
+			registro.registrarPrestamo(prestamo);
+			registro.registrarDevolucion(prestamo, LocalDate.of(2020, 3, 10));
+			registro.cerrar();
+			long tamano = Files.size(fichero);
+			try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.WRITE)) {
+				canal.truncate(tamano - 3);
+			}
+			Modelo modelo = new Modelo();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, modelo), is(3));
+			Prestamo noDevuelto = modelo.buscar(prestamo);
+			assertThat(PRESTAMO_NO_ESPERADO, noDevuelto.getFechaDevolucion(), is(nullValue()));
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, new Modelo()), is(3));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void reproducirTransaccionIncompletaNoAplicaNingunaDeSusOperaciones() {
+		try {
+			Path fichero = directorio.resolve("transaccion.wal");
+			RegistroOperaciones registro = new RegistroOperaciones(fichero);
+			registro.registrarInsercion(alumno1);
+			registro.registrarTransaccion(operaciones -> {
+				operaciones.registrarInsercion(libro1);
+				operaciones.registrarPrestamo(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+			});
+			registro.cerrar();
+			Modelo modelo = new Modelo();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, modelo), is(2));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getPrestamos().size(), is(1));
+			try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.WRITE)) {
+				canal.truncate(Files.size(fichero) - 3);
+			}
+			modelo = new Modelo();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, modelo), is(1));
+			assertThat(LIBRO_NO_ESPERADO, modelo.buscar(libro1), is(nullValue()));
+			assertThat(TAMANO_NO_ESPERADO, modelo.getPrestamos().size(), is(0));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void sincronizarEscribeOperacionesSinCerrar() {
+		try {
+			Modelo modelo = new Modelo();
+			modelo.comenzar(directorio);
+			Path fichero = directorio.resolve("operaciones.wal");
+			RegistroOperaciones registro = new RegistroOperaciones(directorio.resolve("otro.wal"));
+			registro.registrarInsercion(alumno1);
+			registro.registrarInsercion(libro1);
+			registro.registrarPrestamo(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+			registro.sincronizar();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(directorio.resolve("otro.wal"), new Modelo()), is(3));
+			registro.cerrar();
+			modelo.terminar();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, new Modelo(), 1), is(0));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void reproducirRegistroDeGeneracionAnteriorLoVacia() {
+		try {
+			Path fichero = directorio.resolve("anterior.wal");
+			RegistroOperaciones registro = new RegistroOperaciones(fichero, 2);
+			registro.registrarInsercion(alumno1);
+			registro.cerrar();
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, new Modelo(), 2), is(1));
+			assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, new Modelo(), 3), is(0));
+			assertThat(TAMANO_NO_ESPERADO, Files.size(fichero), is(0L));
+		} catch (IOException e) {
+			fail(EXCEPCION_NO_PROCEDE);
+		}
+	}
+
+	@Test
+	public void reproducirRegistroIncoherenteLanzaExcepcion() {
+		try {
+			Path fichero = directorio.resolve("incoherente.wal");
+			RegistroOperaciones registro = new RegistroOperaciones(fichero);
+			registro.registrarPrestamo(new Prestamo(alumno1, libro1, LocalDate.of(2020, 3, 2)));
+			registro.cerrar();
+			RegistroOperaciones.reproducir(fichero, new Modelo());
+			fail(REGISTRO_INCOHERENTE);
+		} catch (IOException e) {
+			assertThat(REGISTRO_INCOHERENTE, e.getCause() instanceof OperationNotSupportedException, is(true));
+		}
+	}
+
+	@Test
+	public void volcadoFallidoHaceFallarATodasSusOperacionesYLasSiguientes() throws Exception {
+		Path fichero = directorio.resolve("falla.wal");
+		// El primer volcado es el de la generación y el segundo el del primer alumno; el tercero falla.
+		CanalQueFalla canal = new CanalQueFalla(FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND), 2);
+		RegistroOperaciones registro = new RegistroOperaciones(canal, 0);
+		canal.detenerSiguienteEscritura();
+		Thread primero = registrarEnOtroHilo(() -> registro.registrarInsercion(alumno1), new AtomicReference<>());
+		canal.esperarEscritura();
+		// Mientras se escribe el primer volcado, otros dos hilos añaden sus operaciones y
+		// esperan: las dos van en el siguiente volcado, que vuelca uno de ellos y falla.
+		AtomicReference<RuntimeException> errorSegundo = new AtomicReference<>();
+		AtomicReference<RuntimeException> errorTercero = new AtomicReference<>();
+		Thread segundo = registrarEnOtroHilo(() -> registro.registrarInsercion(alumno2), errorSegundo);
+		Thread tercero = registrarEnOtroHilo(() -> registro.registrarInsercion(libro1), errorTercero);
+		esperarBloqueados(segundo, tercero);
+		canal.reanudarEscritura();
+		primero.join(10000);
+		segundo.join(10000);
+		tercero.join(10000);
+		assertThat(VOLCADO_FALLIDO, errorSegundo.get() instanceof IllegalStateException, is(true));
+		assertThat(VOLCADO_FALLIDO, errorTercero.get() instanceof IllegalStateException, is(true));
+		try {
+			registro.registrarInsercion(libro2);
+			fail(VOLCADO_FALLIDO);
+		} catch (IllegalStateException e) {
+			// El registro ya no admite operaciones.
+		}
+		try {
+			registro.sincronizar();
+			fail(VOLCADO_FALLIDO);
+		} catch (IOException e) {
+			// Ni volcados.
+		}
+		canal.close();
+		Modelo modelo = new Modelo();
+		assertThat(OPERACIONES_NO_ESPERADAS, RegistroOperaciones.reproducir(fichero, modelo) <= 3, is(true));
+	}
+
+	private static Thread registrarEnOtroHilo(Runnable registro, AtomicReference<RuntimeException> error) {
+		Thread hilo = new Thread(() -> {
+			try {
+				registro.run();
+			} catch (RuntimeException e) {
+				error.set(e);
+			}
+		});
+		hilo.start();
+		return hilo;
+	}
+
+	private static void esperarBloqueados(Thread... hilos) throws InterruptedException {
+		long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		int comprobaciones = 0;
+		while (comprobaciones < 2 && System.nanoTime() < limite) {
+			boolean bloqueados = true;
+			for (Thread hilo : hilos) {
+				bloqueados &= hilo.getState() == Thread.State.BLOCKED;
+			}
+			comprobaciones = bloqueados ? comprobaciones + 1 : 0;
+			Thread.sleep(20);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package org.iesalandalus.programacion.biblioteca.mvc.vista.http;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.iesalandalus.programacion.biblioteca.mvc.controlador.Controlador;
+import org.iesalandalus.programacion.biblioteca.mvc.modelo.Modelo;
+import org.iesalandalus.programacion.biblioteca.mvc.vista.Vista;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServidorHttpTest {
+
+	private static final String EXCEPCION_ESPERADA = "Debería haber saltado la excepción.";
+	private static final String MENSAJE_NO_CORRECTO = "El mensaje devuelto por la excepción no es correcto.";
+	private static final String ESTADO_NO_ESPERADO = "El código de estado de la respuesta no es el esperado.";
+	private static final String CUERPO_NO_ESPERADO = "El cuerpo de la respuesta no es el esperado.";
+
+	private Modelo modelo;
+	private ServidorHttp servidor;
+
+	@Before
+	public void inicializar() throws IOException {
+		modelo = new Modelo();
+		servidor = new ServidorHttp(new Controlador(modelo, new Vista()), 0);
+		servidor.comenzar();
+	}
+
+	@After
+	public void terminar() {
+		servidor.terminar();
+	}
+
+	@Test
+	public void insertarYListarAlumnosPorPaginas() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			String cuerpo = "{\"nombre\":\"Alumno De Prueba\",\"correo\":\"alumno" + i + "@iesalandalus.org\",\"curso\":" + (i % 4 + 1) + "}";
+			assertThat(ESTADO_NO_ESPERADO, pedir("POST", "/alumnos", cuerpo)[0], is("201"));
+		}
+		String[] respuesta = pedir("GET", "/alumnos?pagina=1&tamano=2", null);
+		assertThat(ESTADO_NO_ESPERADO, respuesta[0], is("200"));
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1], containsString("\"pagina\":1,\"tamano\":2,\"total\":5,"));
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1].split("\"correo\"").length, is(3));
+		respuesta = pedir("GET", "/alumnos?correo=alumno3%40iesalandalus.org", null);
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1],
+				is("{\"nombre\":\"Alumno De Prueba\",\"correo\":\"alumno3@iesalandalus.org\",\"curso\":4}"));
+		assertThat(ESTADO_NO_ESPERADO, pedir("GET", "/alumnos?tamano=0", null)[0], is("400"));
+	}
+
+	@Test
+	public void prestarDevolverYErroresDelModelo() throws IOException {
+		pedir("POST", "/alumnos", "{\"nombre\":\"Alumno De Prueba\",\"correo\":\"alumno@iesalandalus.org\",\"curso\":1}");
+		pedir("POST", "/libros", "{\"titulo\":\"Don Quijote\",\"autor\":\"Cervantes\",\"numPaginas\":1000}");
+		String prestamo = "{\"correo\":\"alumno@iesalandalus.org\",\"titulo\":\"Don Quijote\",\"autor\":\"Cervantes\",";
+		assertThat(ESTADO_NO_ESPERADO, pedir("POST", "/prestamos", prestamo + "\"fechaPrestamo\":\"2020-03-02\"}")[0], is("201"));
+		String[] respuesta = pedir("POST", "/prestamos", prestamo + "\"fechaPrestamo\":\"2020-03-02\"}");
+		assertThat(ESTADO_NO_ESPERADO, respuesta[0], is("409"));
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1], is("{\"error\":\"ERROR: Ya existe un préstamo igual.\"}"));
+		respuesta = pedir("POST", "/devoluciones", prestamo + "\"fechaDevolucion\":\"2020-03-10\"}");
+		assertThat(ESTADO_NO_ESPERADO, respuesta[0], is("200"));
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1], containsString("\"fechaDevolucion\":\"2020-03-10\""));
+		respuesta = pedir("GET", "/estadisticas?fecha=2020-03-15", null);
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1], containsString("\"mes\":\"2020-03\""));
+		assertThat(ESTADO_NO_ESPERADO, pedir("GET", "/alumnos/otro", null)[0], is("404"));
+		assertThat(ESTADO_NO_ESPERADO, pedir("PUT", "/libros", "{}")[0], is("405"));
+		assertThat(ESTADO_NO_ESPERADO, pedir("POST", "/libros", "{\"titulo\":")[0], is("400"));
+	}
+
+	@Test
+	public void cuerpoDemasiadoGrandeSeRechazaSinLeerlo() throws IOException {
+		StringBuilder nombre = new StringBuilder();
+		while (nombre.length() <= 64 * 1024) {
+			nombre.append("Alumno De Prueba ");
+		}
+		String[] respuesta = pedir("POST", "/alumnos", "{\"nombre\":\"" + nombre + "\",\"correo\":\"alumno@iesalandalus.org\",\"curso\":1}");
+		assertThat(ESTADO_NO_ESPERADO, respuesta[0], is("413"));
+		assertThat(CUERPO_NO_ESPERADO, respuesta[1], is("{\"error\":\"ERROR: El cuerpo de la petición no puede superar 65536 bytes.\"}"));
+		assertThat(ESTADO_NO_ESPERADO, pedir("GET", "/alumnos", null)[1], containsString("\"total\":0,"));
+	}
+
+	@Test
+	public void leerObjetoResuelveEscapesYRechazaLoQueNoEsUnObjeto() {
+		Map<String, String> campos = LectorJson.leerObjeto(" {\"a\" : \"x\\\"y\\u00f1\", \"b\":-12.5e3, \"c\":true, \"d\":null} ");
+		assertThat(campos.get("a"), is("x\"yñ"));
+		assertThat(campos.get("b"), is("-12.5e3"));
+		assertThat(campos.get("c"), is("true"));
+		assertThat(campos.get("d"), is(nullValue()));
+		try {
+			LectorJson.leerObjeto("{\"a\":1} x");
+			fail(EXCEPCION_ESPERADA);
+		} catch (IllegalArgumentException e) {
+			assertThat(MENSAJE_NO_CORRECTO, e.getMessage(), is("ERROR: El cuerpo de la petición no es un objeto JSON válido."));
+		}
+	}
+
+	private String[] pedir(String metodo, String ruta, String cuerpo) throws IOException {
+		HttpURLConnection conexion = (HttpURLConnection) new URL("http://localhost:" + servidor.getPuerto() + ruta).openConnection();
+		conexion.setRequestMethod(metodo);
+		if (cuerpo != null) {
+			conexion.setDoOutput(true);
+			try (OutputStream salida = conexion.getOutputStream()) {
+				salida.write(cuerpo.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int estado = conexion.getResponseCode();
+		String respuesta = "";
+		try (InputStream entrada = estado < 400 ? conexion.getInputStream() : conexion.getErrorStream()) {
+			if (entrada != null) {
+				respuesta = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+			}
+		}
+		return new String[] { String.valueOf(estado), respuesta };
+	}
+
+}